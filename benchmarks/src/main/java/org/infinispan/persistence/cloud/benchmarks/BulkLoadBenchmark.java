@@ -0,0 +1,126 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.util.Util;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a random set of {@code keys} keys from a container of the filesystem provider, one key after
+ * the other as a {@code getAll} does through the persistence manager, or with
+ * {@link CloudStore#loadAll(Set)}. A local read costs far less than a network round trip, so the gap
+ * widens against a remote provider.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+   @Param({"20", "200"})
+   int keys;
+
+   @Param({"8", "32"})
+   int maxConcurrentRequests;
+
+   @Param({"10000"})
+   int entries;
+
+   @Param({"512"})
+   int valueSize;
+
+   private Path directory;
+   private DefaultCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("bulk-load-benchmark");
+      cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("filesystem")
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            .addProperty("jclouds.filesystem.basedir", directory.toString());
+      cacheManager.defineConfiguration("benchmark", builder.build());
+      Cache<Object, Object> cache = cacheManager.getCache("benchmark");
+      store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+            .getStores(CloudStore.class).iterator().next();
+      MarshalledEntryFactory<Object, Object> entryFactory = cache.getAdvancedCache().getComponentRegistry()
+            .getComponent(MarshalledEntryFactory.class);
+      byte[] value = new byte[valueSize];
+      ThreadLocalRandom.current().nextBytes(value);
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, null));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   private Set<Object> randomKeys() {
+      Set<Object> selected = new HashSet<>();
+      while (selected.size() < keys) {
+         selected.add("key-" + ThreadLocalRandom.current().nextInt(entries));
+      }
+      return selected;
+   }
+
+   @Benchmark
+   public int serial() {
+      int loaded = 0;
+      for (Object key : randomKeys()) {
+         if (store.load(key) != null) {
+            loaded++;
+         }
+      }
+      return loaded;
+   }
+
+   @Benchmark
+   public long loadAll() {
+      return store.loadAll(randomKeys()).count().blockingGet();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      cacheManager.stop();
+      Util.recursiveFileRemove(directory.toFile());
+   }
+}
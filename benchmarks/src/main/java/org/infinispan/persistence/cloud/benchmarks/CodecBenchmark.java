@@ -0,0 +1,107 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.persistence.cloud.codec.Codec;
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compresses and decompresses JSON like documents with each codec, GZIP being the baseline. The
+ * {@code +dictionary} variants use a dictionary trained by the codec from other documents of the
+ * same shape, as the store does once it has sampled enough payloads. The compression ratio of each
+ * variant is printed during the setup.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CodecBenchmark {
+   private static final int DOCUMENTS = 1024;
+
+   @Param({"gzip", "lz4", "deflate", "deflate+dictionary", "zstd", "zstd+dictionary"})
+   String codec;
+
+   @Param({"256", "4096"})
+   int valueSize;
+
+   private Codec selected;
+   private byte[] dictionary;
+   private byte[][] documents;
+   private byte[][] compressed;
+   private int next;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      Random random = new Random(17);
+      documents = new byte[DOCUMENTS][];
+      for (int i = 0; i < DOCUMENTS; i++) {
+         documents[i] = document(random, valueSize);
+      }
+      if (codec.endsWith("+dictionary")) {
+         selected = Codecs.forName(codec.substring(0, codec.indexOf('+')));
+         List<byte[]> samples = new ArrayList<>();
+         for (int i = 0; i < 1000; i++) {
+            samples.add(document(random, valueSize));
+         }
+         dictionary = selected.trainDictionary(samples, 16384);
+      } else {
+         selected = Codecs.forName(codec);
+      }
+      compressed = new byte[DOCUMENTS][];
+      long uncompressedBytes = 0, compressedBytes = 0;
+      for (int i = 0; i < DOCUMENTS; i++) {
+         compressed[i] = selected.compress(documents[i], dictionary);
+         uncompressedBytes += documents[i].length;
+         compressedBytes += compressed[i].length;
+      }
+      System.out.printf("%n%s, %d bytes: compression ratio %.2f%n", codec, valueSize, (double) uncompressedBytes / compressedBytes);
+   }
+
+   private static byte[] document(Random random, int size) {
+      String[] statuses = {"active", "suspended", "pending", "closed"};
+      String[] countries = {"FR", "DE", "US", "GB", "JP", "BR"};
+      StringBuilder document = new StringBuilder("[");
+      while (document.length() < size) {
+         int id = random.nextInt(1000000);
+         document.append(String.format("{\"id\":%d,\"name\":\"customer-%d\",\"email\":\"customer-%d@example.com\"," +
+                     "\"status\":\"%s\",\"country\":\"%s\",\"balance\":%d.%02d,\"created\":\"2018-%02d-%02dT%02d:%02d:%02dZ\"},",
+               id, id, id, statuses[random.nextInt(statuses.length)], countries[random.nextInt(countries.length)],
+               random.nextInt(100000), random.nextInt(100), random.nextInt(12) + 1, random.nextInt(28) + 1,
+               random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+      }
+      document.setLength(size - 1);
+      return document.append(']').toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   @Benchmark
+   public byte[] compress() throws IOException {
+      return selected.compress(documents[next++ & (DOCUMENTS - 1)], dictionary);
+   }
+
+   @Benchmark
+   public byte[] decompress() throws IOException {
+      byte[] data = compressed[next++ & (DOCUMENTS - 1)];
+      return selected.decompress(data, 0, data.length, dictionary);
+   }
+}
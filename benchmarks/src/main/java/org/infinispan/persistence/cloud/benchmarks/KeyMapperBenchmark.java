@@ -0,0 +1,106 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.marshall.WrappedByteArray;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
+import org.infinispan.persistence.cloud.keymappers.BlobNameKeyMapper;
+import org.infinispan.persistence.keymappers.MarshallingTwoWayKey2StringMapper;
+import org.infinispan.persistence.keymappers.WrappedByteArrayOrPrimitiveMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maps keys to blob names and back with the default {@link WrappedByteArrayOrPrimitiveMapper} and
+ * with the {@link BlobNameKeyMapper}, with and without its cache. The keys cycle through a working
+ * set of {@code keys} keys, so the cache of 4096 mappings holds all of them or very few. String
+ * keys are those of embedded caches, the wrapped bytes those of caches accessed remotely. Run with
+ * {@code -prof gc} to compare the allocations.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyMapperBenchmark {
+   private static final int CACHE_SIZE = 4096;
+
+   @Param({"default", "blob-name", "blob-name+cache"})
+   String mapper;
+
+   @Param({"string", "long", "wrapped-bytes"})
+   String keyType;
+
+   @Param({"1000", "100000"})
+   int keys;
+
+   private MarshallingTwoWayKey2StringMapper selected;
+   private Object[] keySet;
+   private String[] names;
+   private int next;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      if (mapper.startsWith("blob-name")) {
+         BlobNameKeyMapper blobNameKeyMapper = new BlobNameKeyMapper();
+         blobNameKeyMapper.setCacheSize(mapper.endsWith("+cache") ? CACHE_SIZE : 0);
+         selected = blobNameKeyMapper;
+      } else {
+         selected = new WrappedByteArrayOrPrimitiveMapper();
+      }
+      selected.setMarshaller(new GenericJBossMarshaller());
+      Random random = new Random(17);
+      keySet = new Object[keys];
+      names = new String[keys];
+      for (int i = 0; i < keys; i++) {
+         keySet[i] = key(random, i);
+         names[i] = selected.getStringMapping(keySet[i]);
+      }
+   }
+
+   private Object key(Random random, int i) {
+      switch (keyType) {
+         case "string":
+            return "customer-" + random.nextInt() + "-" + i;
+         case "long":
+            return random.nextLong();
+         case "wrapped-bytes":
+            // about the size of a marshalled string key
+            byte[] bytes = new byte[24];
+            random.nextBytes(bytes);
+            return new WrappedByteArray(bytes);
+         default:
+            throw new IllegalArgumentException(keyType);
+      }
+   }
+
+   private int nextIndex() {
+      int index = next;
+      next = index + 1 == keys ? 0 : index + 1;
+      return index;
+   }
+
+   @Benchmark
+   public String encode() {
+      return selected.getStringMapping(keySet[nextIndex()]);
+   }
+
+   @Benchmark
+   public Object decode() {
+      return selected.getKeyMapping(names[nextIndex()]);
+   }
+}
@@ -0,0 +1,115 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the packed layout with the one blob per entry layout. Run with several threads, e.g.
+ * {@code -t 16}, to see the effect of group commit on writes. The transient provider has no network
+ * latency, so these numbers measure the CPU cost of each layout and the number of blobs it needs,
+ * not the request latency saved against a real provider.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PackedStoreBenchmark {
+
+   @Param({"false", "true"})
+   boolean packed;
+
+   @Param({"200", "4096"})
+   int valueSize;
+
+   @Param({"10000"})
+   int entries;
+
+   private DefaultCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+   private MarshalledEntryFactory<Object, Object> entryFactory;
+   private byte[] value;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("transient")
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .packed(packed);
+      cacheManager.defineConfiguration("benchmark", builder.build());
+      Cache<Object, Object> cache = cacheManager.getCache("benchmark");
+      store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+            .getStores(CloudStore.class).iterator().next();
+      entryFactory = cache.getAdvancedCache().getComponentRegistry().getComponent(MarshalledEntryFactory.class);
+
+      value = new byte[valueSize];
+      ThreadLocalRandom.current().nextBytes(value);
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, null));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   private String randomKey() {
+      return "key-" + ThreadLocalRandom.current().nextInt(entries);
+   }
+
+   @Benchmark
+   public void write() {
+      store.write(entryFactory.newMarshalledEntry(randomKey(), value, null));
+   }
+
+   @Benchmark
+   public MarshalledEntry<Object, Object> load() {
+      return store.load(randomKey());
+   }
+
+   @Benchmark
+   public boolean containsMissing() {
+      return store.contains("missing-" + ThreadLocalRandom.current().nextInt());
+   }
+
+   @Benchmark
+   public long iterate() {
+      return store.publishEntries(null, true, true).count().blockingGet();
+   }
+}
@@ -0,0 +1,134 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.util.Util;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cold start of a cache which preloads a container of the filesystem provider, which
+ * unlike the transient provider keeps the container once the cache manager is stopped. Without
+ * listing partitions the container is listed one page after the other; with them, the partitions
+ * are listed concurrently, up to {@code maxConcurrentRequests} at a time. With a snapshot, the
+ * entries are streamed from the snapshot parts instead of being read one by one. Local listings and
+ * reads are cheap, so the gaps widen against a provider whose every request costs a network round
+ * trip.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PreloadBenchmark {
+
+   @Param({"0", "16", "64"})
+   int listingPartitions;
+
+   @Param({"8", "32"})
+   int maxConcurrentRequests;
+
+   @Param({"false", "true"})
+   boolean snapshot;
+
+   @Param({"20000"})
+   int entries;
+
+   @Param({"512"})
+   int valueSize;
+
+   private Path directory;
+   private DefaultCacheManager cacheManager;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("preload-benchmark");
+      DefaultCacheManager writer = startCacheManager(false);
+      try {
+         Cache<Object, Object> cache = writer.getCache("benchmark");
+         CloudStore<Object, Object> store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+               .getStores(CloudStore.class).iterator().next();
+         MarshalledEntryFactory<Object, Object> entryFactory = cache.getAdvancedCache().getComponentRegistry()
+               .getComponent(MarshalledEntryFactory.class);
+         byte[] value = new byte[valueSize];
+         ThreadLocalRandom.current().nextBytes(value);
+         List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+         for (int i = 0; i < entries; i++) {
+            batch.add(entryFactory.newMarshalledEntry("key-" + i, value, null));
+         }
+         store.writeBatch((Iterable) batch);
+         if (snapshot) {
+            store.writeSnapshot();
+         }
+      } finally {
+         writer.stop();
+      }
+   }
+
+   private DefaultCacheManager startCacheManager(boolean preload) {
+      DefaultCacheManager manager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("filesystem")
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .listingPartitions(listingPartitions)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            // only written by the setup
+            .snapshotInterval(snapshot ? TimeUnit.DAYS.toMillis(1) : 0)
+            .addProperty("jclouds.filesystem.basedir", directory.toString())
+            .preload(preload);
+      manager.defineConfiguration("benchmark", builder.build());
+      return manager;
+   }
+
+   @Benchmark
+   public int preload() {
+      cacheManager = startCacheManager(true);
+      return cacheManager.getCache("benchmark").size();
+   }
+
+   @TearDown(Level.Iteration)
+   public void stopCacheManager() {
+      if (cacheManager != null) {
+         cacheManager.stop();
+         cacheManager = null;
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      Util.recursiveFileRemove(directory.toFile());
+   }
+}
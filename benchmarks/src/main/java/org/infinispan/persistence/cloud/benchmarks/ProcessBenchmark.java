@@ -0,0 +1,115 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.util.Util;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processes the {@code entries} entries of a container with {@link CloudStore#process}, loading
+ * the values or, as the expiration reaper does, the metadata only. Preloading a cache goes through
+ * the same path, see {@link PreloadBenchmark} for its cold start. The entries are loaded up to
+ * {@code maxConcurrentRequests} at a time, against the transient provider or a container of the
+ * filesystem provider in a temporary directory.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProcessBenchmark {
+
+   @Param({"transient", "filesystem"})
+   String provider;
+
+   @Param({"false", "true"})
+   boolean loadValue;
+
+   @Param({"8", "32"})
+   int maxConcurrentRequests;
+
+   @Param({"false", "true"})
+   boolean compress;
+
+   @Param({"20000"})
+   int entries;
+
+   @Param({"512"})
+   int valueSize;
+
+   private Path directory;
+   private DefaultCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("process-benchmark");
+      cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider(provider)
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .compress(compress)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            .addProperty("jclouds.filesystem.basedir", directory.toString());
+      cacheManager.defineConfiguration("benchmark", builder.build());
+      Cache<Object, Object> cache = cacheManager.getCache("benchmark");
+      store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+            .getStores(CloudStore.class).iterator().next();
+      MarshalledEntryFactory<Object, Object> entryFactory = cache.getAdvancedCache().getComponentRegistry()
+            .getComponent(MarshalledEntryFactory.class);
+      byte[] value = StoreOperationsBenchmark.document(new Random(17), valueSize);
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, null));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   @Benchmark
+   public long process() {
+      LongAdder processed = new LongAdder();
+      store.process(null, (entry, context) -> processed.increment(), Runnable::run, loadValue, true);
+      return processed.sum();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      cacheManager.stop();
+      Util.recursiveFileRemove(directory.toFile());
+   }
+}
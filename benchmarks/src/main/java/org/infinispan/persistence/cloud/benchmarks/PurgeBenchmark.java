@@ -0,0 +1,137 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.util.Util;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Purges a container of {@code entries} entries of which {@code expiredFraction} have expired an
+ * hour ago, scanning the whole container or, with the expiration index, listing the markers of the
+ * buckets which are due. The expired entries are written again before each invocation, the others
+ * once per trial, against the transient provider or a container of the filesystem provider in a
+ * temporary directory.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PurgeBenchmark {
+
+   @Param({"transient", "filesystem"})
+   String provider;
+
+   @Param({"0.01", "0.1", "0.5"})
+   double expiredFraction;
+
+   @Param({"false", "true"})
+   boolean expirationIndex;
+
+   @Param({"32"})
+   int maxConcurrentRequests;
+
+   @Param({"20000"})
+   int entries;
+
+   @Param({"512"})
+   int valueSize;
+
+   private Path directory;
+   private DefaultCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+   private MarshalledEntryFactory<Object, Object> entryFactory;
+   private byte[] value;
+   private int expired;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("purge-benchmark");
+      cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider(provider)
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .expirationIndex(expirationIndex)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            .addProperty("jclouds.filesystem.basedir", directory.toString());
+      cacheManager.defineConfiguration("benchmark", builder.build());
+      Cache<Object, Object> cache = cacheManager.getCache("benchmark");
+      store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+            .getStores(CloudStore.class).iterator().next();
+      entryFactory = cache.getAdvancedCache().getComponentRegistry().getComponent(MarshalledEntryFactory.class);
+      value = StoreOperationsBenchmark.document(new Random(17), valueSize);
+
+      expired = (int) (entries * expiredFraction);
+      // live for a day, so that they are never purged during the trial
+      InternalMetadata live = new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(1, TimeUnit.DAYS).build(),
+            System.currentTimeMillis(), System.currentTimeMillis());
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+      for (int i = expired; i < entries; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, live));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   @Setup(Level.Invocation)
+   public void writeExpired() {
+      long created = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+      InternalMetadata metadata = new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(1, TimeUnit.MINUTES).build(),
+            created, created);
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(expired);
+      for (int i = 0; i < expired; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, metadata));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   @Benchmark
+   public long purge() {
+      LongAdder purged = new LongAdder();
+      store.purge(Runnable::run, key -> purged.increment());
+      return purged.sum();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      cacheManager.stop();
+      Util.recursiveFileRemove(directory.toFile());
+   }
+}
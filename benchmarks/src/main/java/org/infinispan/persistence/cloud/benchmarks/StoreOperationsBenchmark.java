@@ -0,0 +1,209 @@
+package org.infinispan.persistence.cloud.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.Cache;
+import org.infinispan.commons.util.Util;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of the single entry operations and of the batches of {@code batchSize}
+ * entries, against the transient provider or a container of the filesystem provider in a temporary
+ * directory, so that no network is involved. The values are JSON like text, so that compression
+ * has something to work with. The concurrency of the callers is the number of JMH threads, e.g.
+ * {@code -t 16}; the fan out of the batches is bounded by {@code maxConcurrentRequests}. The
+ * deletes remove the {@code batchSize} entries written by the setup of each invocation, one after
+ * the other or in a batch, so that an invocation is long enough not to be dominated by the
+ * timestamps JMH takes around it. To measure the store against the latency and throttling of a
+ * remote object store, run with the simulated provider of the store's tests and its settings, e.g.
+ * {@code -p provider=simulated -jvmArgsAppend -Dsimulated.latency=20}.
+ *
+ * @since 9.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StoreOperationsBenchmark {
+
+   @Param({"transient", "filesystem"})
+   String provider;
+
+   @Param({"512", "16384"})
+   int valueSize;
+
+   @Param({"false", "true"})
+   boolean compress;
+
+   @Param({"8", "32"})
+   int maxConcurrentRequests;
+
+   @Param({"100"})
+   int batchSize;
+
+   @Param({"10000"})
+   int entries;
+
+   private final AtomicInteger threads = new AtomicInteger();
+   private Path directory;
+   private DefaultCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+   private MarshalledEntryFactory<Object, Object> entryFactory;
+   private byte[] value;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      directory = Files.createTempDirectory("store-operations-benchmark");
+      cacheManager = new DefaultCacheManager(new GlobalConfigurationBuilder().build());
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider(provider)
+            .identity("benchmark")
+            .credential("benchmark")
+            .container("benchmark")
+            .normalizeCacheNames(true)
+            .compress(compress)
+            .maxConcurrentRequests(maxConcurrentRequests)
+            .addProperty("jclouds.filesystem.basedir", directory.toString());
+      cacheManager.defineConfiguration("benchmark", builder.build());
+      Cache<Object, Object> cache = cacheManager.getCache("benchmark");
+      store = cache.getAdvancedCache().getComponentRegistry().getComponent(PersistenceManager.class)
+            .getStores(CloudStore.class).iterator().next();
+      entryFactory = cache.getAdvancedCache().getComponentRegistry().getComponent(MarshalledEntryFactory.class);
+
+      value = document(new Random(17), valueSize);
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(entries);
+      for (int i = 0; i < entries; i++) {
+         batch.add(entryFactory.newMarshalledEntry("key-" + i, value, null));
+      }
+      store.writeBatch((Iterable) batch);
+   }
+
+   static byte[] document(Random random, int size) {
+      String[] statuses = {"active", "suspended", "pending", "closed"};
+      StringBuilder document = new StringBuilder("[");
+      while (document.length() < size) {
+         int id = random.nextInt(1000000);
+         document.append(String.format("{\"id\":%d,\"name\":\"customer-%d\",\"status\":\"%s\",\"balance\":%d.%02d},",
+               id, id, statuses[random.nextInt(statuses.length)], random.nextInt(100000), random.nextInt(100)));
+      }
+      document.setLength(size - 1);
+      return document.append(']').toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      cacheManager.stop();
+      Util.recursiveFileRemove(directory.toFile());
+   }
+
+   private String randomKey() {
+      return "key-" + ThreadLocalRandom.current().nextInt(entries);
+   }
+
+   private List<MarshalledEntry<?, ?>> randomBatch() {
+      List<MarshalledEntry<?, ?>> batch = new ArrayList<>(batchSize);
+      for (int i = 0; i < batchSize; i++) {
+         batch.add(entryFactory.newMarshalledEntry(randomKey(), value, null));
+      }
+      return batch;
+   }
+
+   /**
+    * The keys deleted by one thread, written again before each invocation.
+    */
+   @State(Scope.Thread)
+   public static class Deletes {
+      private final List<Object> keys = new ArrayList<>();
+      private String prefix;
+
+      @Setup(Level.Trial)
+      public void setUp(StoreOperationsBenchmark benchmark) {
+         prefix = "deleted-" + benchmark.threads.incrementAndGet() + "-";
+         for (int i = 0; i < benchmark.batchSize; i++) {
+            keys.add(prefix + i);
+         }
+      }
+
+      @Setup(Level.Invocation)
+      public void write(StoreOperationsBenchmark benchmark) {
+         List<MarshalledEntry<?, ?>> batch = new ArrayList<>(keys.size());
+         for (Object key : keys) {
+            batch.add(benchmark.entryFactory.newMarshalledEntry(key, benchmark.value, null));
+         }
+         benchmark.store.writeBatch((Iterable) batch);
+      }
+   }
+
+   @Benchmark
+   public void write() {
+      store.write(entryFactory.newMarshalledEntry(randomKey(), value, null));
+   }
+
+   @Benchmark
+   public MarshalledEntry<Object, Object> load() {
+      return store.load(randomKey());
+   }
+
+   @Benchmark
+   public boolean contains() {
+      return store.contains(randomKey());
+   }
+
+   @Benchmark
+   public boolean containsMissing() {
+      return store.contains("missing-" + ThreadLocalRandom.current().nextInt());
+   }
+
+   @Benchmark
+   public int delete(Deletes deletes) {
+      int deleted = 0;
+      for (Object key : deletes.keys) {
+         if (store.delete(key)) {
+            deleted++;
+         }
+      }
+      return deleted;
+   }
+
+   @Benchmark
+   public void writeBatch() {
+      store.writeBatch((Iterable) randomBatch());
+   }
+
+   @Benchmark
+   public void deleteBatch(Deletes deletes) {
+      store.deleteBatch(deletes.keys);
+   }
+}
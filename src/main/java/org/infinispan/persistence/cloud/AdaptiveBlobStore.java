@@ -0,0 +1,244 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.infinispan.persistence.spi.PersistenceException;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.CreateContainerOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.blobstore.util.ForwardingBlobStore;
+import org.jclouds.domain.Location;
+import org.jclouds.http.HttpResponseException;
+
+/**
+ * Sends the requests of every component of the store through an {@link AdaptiveConcurrencyLimiter}
+ * and retries those which the provider throttles, with a {@code 503 Slow Down} or a
+ * {@code 429 Too Many Requests} response. Each retry waits for an exponentially growing delay, half
+ * of which is random so that the requests throttled together are not retried together. Retries are
+ * also limited by a budget, which refills with a tenth of the requests sent and ten tokens per
+ * second: when the provider stays overloaded, the requests fail instead of multiplying the load.
+ * Throttled requests have no effect, so every request can be sent again.
+ *
+ * @since 9.0
+ */
+final class AdaptiveBlobStore extends ForwardingBlobStore {
+   private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(20);
+
+   private final AdaptiveConcurrencyLimiter limiter;
+   private final RetryBudget retryBudget = new RetryBudget();
+   private final int maxRetries;
+   private final long backoff;
+   private final CloudStoreMetrics metrics;
+
+   /**
+    * @param limiter the limiter of the requests in flight, or {@code null} not to limit them
+    * @param maxRetries how many times a throttled request is sent again
+    * @param backoff the delay in milliseconds before the first retry, doubled for each of the next ones
+    */
+   AdaptiveBlobStore(BlobStore blobStore, AdaptiveConcurrencyLimiter limiter, int maxRetries, long backoff, CloudStoreMetrics metrics) {
+      super(blobStore);
+      this.limiter = limiter;
+      this.maxRetries = maxRetries;
+      this.backoff = backoff;
+      this.metrics = metrics;
+   }
+
+   static boolean isThrottled(Throwable t) {
+      for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+         if (cause instanceof HttpResponseException) {
+            HttpResponseException e = (HttpResponseException) cause;
+            if (e.getResponse() != null && (e.getResponse().getStatusCode() == 503 || e.getResponse().getStatusCode() == 429)) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   private <T> T send(Supplier<T> request) {
+      retryBudget.deposit();
+      for (int attempt = 0; ; attempt++) {
+         if (limiter != null) {
+            limiter.acquire();
+         }
+         long start = System.nanoTime();
+         boolean recorded = false;
+         try {
+            T result = request.get();
+            recorded = true;
+            if (limiter != null) {
+               limiter.onSuccess(System.nanoTime() - start);
+            }
+            return result;
+         } catch (RuntimeException e) {
+            recorded = true;
+            if (!isThrottled(e)) {
+               if (limiter != null) {
+                  limiter.onFailure();
+               }
+               throw e;
+            }
+            if (limiter != null) {
+               limiter.onThrottle();
+            }
+            metrics.recordThrottle();
+            if (attempt >= maxRetries) {
+               throw e;
+            }
+            if (!retryBudget.withdraw()) {
+               metrics.recordRetryBudgetExhausted();
+               throw e;
+            }
+            metrics.recordRetry();
+            pause(attempt, e);
+         } finally {
+            // errors must not leak the permit
+            if (!recorded && limiter != null) {
+               limiter.onFailure();
+            }
+         }
+      }
+   }
+
+   private void send(Runnable request) {
+      send(() -> {
+         request.run();
+         return null;
+      });
+   }
+
+   private void pause(int attempt, RuntimeException throttled) {
+      long delay = Math.min(MAX_BACKOFF, backoff << Math.min(attempt, 30));
+      try {
+         Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new PersistenceException("Interrupted while waiting to retry a throttled request", throttled);
+      }
+   }
+
+   @Override
+   public boolean containerExists(String container) {
+      return send(() -> super.containerExists(container));
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container) {
+      return send(() -> super.createContainerInLocation(location, container));
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container, CreateContainerOptions options) {
+      return send(() -> super.createContainerInLocation(location, container, options));
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return send(() -> super.list(container));
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      return send(() -> super.list(container, options));
+   }
+
+   @Override
+   public void clearContainer(String container) {
+      send(() -> super.clearContainer(container));
+   }
+
+   @Override
+   public void clearContainer(String container, ListContainerOptions options) {
+      send(() -> super.clearContainer(container, options));
+   }
+
+   @Override
+   public void deleteContainer(String container) {
+      send(() -> super.deleteContainer(container));
+   }
+
+   @Override
+   public boolean blobExists(String container, String name) {
+      return send(() -> super.blobExists(container, name));
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob) {
+      return send(() -> super.putBlob(container, blob));
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob, PutOptions options) {
+      return send(() -> super.putBlob(container, blob, options));
+   }
+
+   @Override
+   public BlobMetadata blobMetadata(String container, String name) {
+      return send(() -> super.blobMetadata(container, name));
+   }
+
+   @Override
+   public Blob getBlob(String container, String name) {
+      return send(() -> super.getBlob(container, name));
+   }
+
+   @Override
+   public Blob getBlob(String container, String name, GetOptions options) {
+      return send(() -> super.getBlob(container, name, options));
+   }
+
+   @Override
+   public void removeBlob(String container, String name) {
+      send(() -> super.removeBlob(container, name));
+   }
+
+   @Override
+   public void removeBlobs(String container, Iterable<String> names) {
+      send(() -> super.removeBlobs(container, names));
+   }
+
+   @Override
+   public long countBlobs(String container) {
+      return send(() -> super.countBlobs(container));
+   }
+
+   @Override
+   public long countBlobs(String container, ListContainerOptions options) {
+      return send(() -> super.countBlobs(container, options));
+   }
+
+   /**
+    * Tokens earned by the requests sent and by the passing time, each retry costing a whole token.
+    */
+   static final class RetryBudget {
+      private static final double TOKENS_PER_REQUEST = 0.1;
+      private static final double TOKENS_PER_SECOND = 10;
+      private static final double CAPACITY = 100;
+
+      private double tokens = TOKENS_PER_SECOND;
+      private long refilled = System.nanoTime();
+
+      synchronized void deposit() {
+         tokens = Math.min(CAPACITY, tokens + TOKENS_PER_REQUEST);
+      }
+
+      synchronized boolean withdraw() {
+         long now = System.nanoTime();
+         tokens = Math.min(CAPACITY, tokens + (now - refilled) * TOKENS_PER_SECOND / TimeUnit.SECONDS.toNanos(1));
+         refilled = now;
+         if (tokens < 1) {
+            return false;
+         }
+         tokens--;
+         return true;
+      }
+   }
+}
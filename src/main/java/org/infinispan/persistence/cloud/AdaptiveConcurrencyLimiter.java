@@ -0,0 +1,156 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Limits the number of blob store requests in flight, adapting the limit to the provider in the
+ * manner of TCP congestion control (AIMD). The limit grows by one request each time a whole limit's
+ * worth of requests completes, as long as the requests actually use it and their latency holds. It
+ * shrinks by a quarter when a request is throttled, at most once per round trip, since the requests
+ * which were already in flight are throttled by the same overload. The limit then oscillates
+ * slightly below the provider's capacity instead of between overload and idle.
+ * <p>
+ * The latency holds while its short term average stays below twice its long term one: a growing
+ * gap means that requests queue up in the provider, so the limit stops growing before the provider
+ * starts throttling.
+ *
+ * @since 9.0
+ */
+final class AdaptiveConcurrencyLimiter {
+   private static final double DECREASE_RATIO = 0.75;
+   private static final double LATENCY_TOLERANCE = 2;
+   private static final double SHORT_TERM_WEIGHT = 0.1;
+   private static final double LONG_TERM_WEIGHT = 0.01;
+
+   private final int maxLimit;
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition available = lock.newCondition();
+   private final LongAdder decreases = new LongAdder();
+   private double limit;
+   private int inFlight;
+   private double shortTermLatency;
+   private double longTermLatency;
+   private long lastDecrease;
+
+   AdaptiveConcurrencyLimiter(int maxLimit) {
+      this.maxLimit = maxLimit;
+      this.limit = maxLimit;
+      this.lastDecrease = System.nanoTime();
+   }
+
+   /**
+    * Waits until a request can be sent, which must then be followed by one of
+    * {@link #onSuccess(long)}, {@link #onThrottle()} or {@link #onFailure()}.
+    */
+   void acquire() {
+      lock.lock();
+      try {
+         while (inFlight >= (int) limit) {
+            available.await();
+         }
+         inFlight++;
+         if (inFlight < (int) limit) {
+            // the limit may have grown past more than one waiter
+            available.signal();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new PersistenceException("Interrupted while waiting for a free blob store request slot", e);
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Records a request which succeeded after the given time.
+    */
+   void onSuccess(long latencyNanos) {
+      lock.lock();
+      try {
+         if (longTermLatency == 0) {
+            shortTermLatency = longTermLatency = latencyNanos;
+         } else {
+            shortTermLatency += (latencyNanos - shortTermLatency) * SHORT_TERM_WEIGHT;
+            longTermLatency += (latencyNanos - longTermLatency) * LONG_TERM_WEIGHT;
+         }
+         // an idle limit says nothing about the capacity of the provider
+         boolean used = inFlight * 2 >= limit;
+         if (used && limit < maxLimit && shortTermLatency <= longTermLatency * LATENCY_TOLERANCE) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+         }
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Records a request which the provider throttled.
+    */
+   void onThrottle() {
+      lock.lock();
+      try {
+         long now = System.nanoTime();
+         if (now - lastDecrease > shortTermLatency) {
+            limit = Math.max(1, limit * DECREASE_RATIO);
+            lastDecrease = now;
+            decreases.increment();
+         }
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Records a request which failed for another reason than throttling, which says nothing about the
+    * load of the provider.
+    */
+   void onFailure() {
+      lock.lock();
+      try {
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   private void release() {
+      inFlight--;
+      if (inFlight < (int) limit) {
+         available.signal();
+      }
+   }
+
+   /**
+    * @return the number of requests which may currently be in flight
+    */
+   int getLimit() {
+      lock.lock();
+      try {
+         return (int) limit;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   int getInFlight() {
+      lock.lock();
+      try {
+         return inFlight;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return how many times the limit was lowered after a throttled request
+    */
+   long getDecreaseCount() {
+      return decreases.sum();
+   }
+}
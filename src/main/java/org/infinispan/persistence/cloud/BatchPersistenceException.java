@@ -0,0 +1,30 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.Map;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Thrown when some of the entries of a batch operation could not be written to or deleted from the
+ * blob store. The entries which are not reported by {@link #getFailures()} have been processed
+ * successfully.
+ *
+ * @since 9.0
+ */
+public class BatchPersistenceException extends PersistenceException {
+   private static final long serialVersionUID = 6402263536744815826L;
+
+   private final transient Map<Object, Throwable> failures;
+
+   public BatchPersistenceException(String message, Map<Object, Throwable> failures) {
+      super(message, failures.values().iterator().next());
+      this.failures = failures;
+   }
+
+   /**
+    * @return the cause of the failure for each key that could not be processed
+    */
+   public Map<Object, Throwable> getFailures() {
+      return failures;
+   }
+}
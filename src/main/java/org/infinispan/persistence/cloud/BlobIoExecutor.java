@@ -0,0 +1,164 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Dedicated executor for blob store requests. A fixed number of threads caps the number of requests
+ * in flight, while a permit per submitted task caps the number of requests waiting for a thread.
+ * When all permits are taken, submitters block until a request completes, which pushes back on the
+ * producers instead of growing the queue without limit. Tasks submitted from one of the executor's
+ * own threads are run directly, so nested submissions can never deadlock on the permits.
+ *
+ * @since 9.0
+ */
+final class BlobIoExecutor implements Executor {
+   private static final ThreadLocal<Boolean> IO_THREAD = new ThreadLocal<>();
+
+   private final ThreadPoolExecutor executor;
+   private final Semaphore permits;
+   private final int maxPending;
+   private final AtomicInteger active = new AtomicInteger();
+   private final LongAdder completed = new LongAdder();
+   private final LongAdder blocked = new LongAdder();
+
+   BlobIoExecutor(String name, int maxConcurrent, int maxPending) {
+      AtomicInteger threadCounter = new AtomicInteger();
+      this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            r -> {
+               Thread thread = new Thread(() -> {
+                  IO_THREAD.set(Boolean.TRUE);
+                  r.run();
+               }, String.format("CloudStore-%s-%d", name, threadCounter.incrementAndGet()));
+               thread.setDaemon(true);
+               return thread;
+            });
+      this.maxPending = maxConcurrent + maxPending;
+      this.permits = new Semaphore(this.maxPending);
+   }
+
+   static boolean isIoThread() {
+      return IO_THREAD.get() != null;
+   }
+
+   @Override
+   public void execute(Runnable command) {
+      if (isIoThread()) {
+         command.run();
+         return;
+      }
+      if (!permits.tryAcquire()) {
+         blocked.increment();
+         try {
+            permits.acquire();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for a free blob store request slot", e);
+         }
+      }
+      try {
+         executor.execute(() -> {
+            try {
+               run(command);
+            } finally {
+               permits.release();
+            }
+         });
+      } catch (RejectedExecutionException e) {
+         permits.release();
+         throw e;
+      }
+   }
+
+   /**
+    * Executes a task on one of the executor's threads, even when it is submitted from one of them.
+    * This is meant for the requests fanned out by the executor's own threads, such as the loads of
+    * the blobs they list, which would otherwise run one after the other on the listing thread. The
+    * submitter caps their concurrency, so they take no permit, and it must never block on them.
+    */
+   void fork(Runnable command) {
+      if (!isIoThread()) {
+         execute(command);
+         return;
+      }
+      executor.execute(() -> run(command));
+   }
+
+   private void run(Runnable command) {
+      active.incrementAndGet();
+      try {
+         command.run();
+      } finally {
+         active.decrementAndGet();
+         completed.increment();
+      }
+   }
+
+   /**
+    * Runs the given request on this executor, completing the returned stage with its outcome.
+    */
+   <T> CompletableFuture<T> submit(Callable<T> request) {
+      CompletableFuture<T> future = new CompletableFuture<>();
+      try {
+         execute(() -> {
+            try {
+               future.complete(request.call());
+            } catch (Throwable t) {
+               future.completeExceptionally(t);
+            }
+         });
+      } catch (Throwable t) {
+         future.completeExceptionally(t);
+      }
+      return future;
+   }
+
+   /**
+    * @return the number of requests currently being executed
+    */
+   int getActiveCount() {
+      return active.get();
+   }
+
+   /**
+    * @return the number of submitted requests waiting for a free thread
+    */
+   int getQueueDepth() {
+      return executor.getQueue().size();
+   }
+
+   /**
+    * @return the number of requests executed so far
+    */
+   long getCompletedCount() {
+      return completed.sum();
+   }
+
+   /**
+    * @return how many times a submitter had to wait because the pending request limit was reached
+    */
+   long getBlockedCount() {
+      return blocked.sum();
+   }
+
+   /**
+    * @return the maximum number of requests that can be running or waiting at once
+    */
+   int getMaxPending() {
+      return maxPending;
+   }
+
+   void shutdown() {
+      executor.shutdownNow();
+   }
+}
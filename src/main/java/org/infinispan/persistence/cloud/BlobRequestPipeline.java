@@ -0,0 +1,90 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Executes a group of independent blob requests on an {@link Executor}, keeping at most a fixed
+ * number of them in flight. Submission blocks while the limit is reached, so the amount of queued
+ * work stays bounded no matter how large the batch is. Failures are collected per key and reported
+ * together once all requests of the batch have completed.
+ *
+ * @since 9.0
+ */
+final class BlobRequestPipeline {
+   private final Executor executor;
+   private final Semaphore inFlight;
+   private final Phaser pending = new Phaser(1);
+   private final Map<Object, Throwable> failures = new ConcurrentHashMap<>();
+   private int submitted;
+
+   BlobRequestPipeline(Executor executor, int maxInFlight) {
+      this.executor = executor;
+      this.inFlight = new Semaphore(maxInFlight);
+   }
+
+   /**
+    * Submits a request for the given key, waiting for a free slot if the pipeline is full.
+    */
+   void submit(Object key, Runnable request) {
+      submit(Collections.singletonList(key), request);
+   }
+
+   /**
+    * Submits a single request covering several keys. If the request fails, the failure is reported
+    * for each of the keys.
+    */
+   void submit(Collection<?> keys, Runnable request) {
+      try {
+         inFlight.acquire();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new PersistenceException("Interrupted while submitting batch request", e);
+      }
+      submitted += keys.size();
+      pending.register();
+      try {
+         executor.execute(() -> {
+            try {
+               request.run();
+            } catch (Throwable t) {
+               fail(keys, t);
+            } finally {
+               inFlight.release();
+               pending.arriveAndDeregister();
+            }
+         });
+      } catch (RejectedExecutionException e) {
+         fail(keys, e);
+         inFlight.release();
+         pending.arriveAndDeregister();
+      }
+   }
+
+   private void fail(Collection<?> keys, Throwable t) {
+      for (Object key : keys) {
+         failures.put(key, t);
+      }
+   }
+
+   /**
+    * Waits for all submitted requests to complete.
+    *
+    * @throws BatchPersistenceException if any of the requests failed
+    */
+   void await() {
+      pending.arriveAndAwaitAdvance();
+      if (!failures.isEmpty()) {
+         throw new BatchPersistenceException(String.format("%d of %d batch requests failed", failures.size(), submitted),
+               Collections.unmodifiableMap(failures));
+      }
+   }
+}
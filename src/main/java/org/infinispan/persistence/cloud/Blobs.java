@@ -0,0 +1,54 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.infinispan.persistence.spi.PersistenceException;
+import org.jclouds.blobstore.domain.Blob;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * @since 9.0
+ */
+final class Blobs {
+
+   private Blobs() {
+   }
+
+   /**
+    * Reads the whole payload of a blob. When the provider reports the content length, the payload
+    * is read straight into an array of that size, instead of being copied through a growing buffer.
+    */
+   static byte[] readPayload(Blob blob) {
+      Long contentLength = blob.getMetadata().getContentMetadata().getContentLength();
+      try (InputStream input = blob.getPayload().openStream()) {
+         if (contentLength == null || contentLength > Integer.MAX_VALUE - 8) {
+            return ByteStreams.toByteArray(input);
+         }
+         byte[] payload = new byte[contentLength.intValue()];
+         int read = 0;
+         while (read < payload.length) {
+            int count = input.read(payload, read, payload.length - read);
+            if (count < 0) {
+               return Arrays.copyOf(payload, read);
+            }
+            read += count;
+         }
+         int next = input.read();
+         if (next < 0) {
+            return payload;
+         }
+         // longer than announced
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length * 2);
+         bytes.write(payload);
+         bytes.write(next);
+         ByteStreams.copy(input, bytes);
+         return bytes.toByteArray();
+      } catch (IOException e) {
+         throw new PersistenceException(e);
+      }
+   }
+}
@@ -0,0 +1,112 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Thread safe Bloom filter of blob names. Bits are only ever set, using compare-and-set, so
+ * concurrent additions never get lost and {@link #mightContain(String)} never returns
+ * {@code false} for a name which has been added. The bit positions are derived from a single
+ * 128 bit hash with the double hashing scheme of Kirsch and Mitzenmacher.
+ *
+ * @since 9.0
+ */
+final class BloomFilter {
+   private static final int MAGIC = 0x49424c46;
+   private static final HashFunction HASH = Hashing.murmur3_128();
+
+   private final AtomicLongArray words;
+   private final long numBits;
+   private final int numHashes;
+
+   private BloomFilter(long numBits, int numHashes) {
+      this.words = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+      this.numBits = numBits;
+      this.numHashes = numHashes;
+   }
+
+   /**
+    * Creates a filter sized so that its false positive rate stays below the given one until the
+    * expected number of names has been added.
+    */
+   static BloomFilter create(int expectedEntries, double falsePositiveRate) {
+      long numBits = Math.max(64, (long) (-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+      int numHashes = Math.max(1, (int) Math.round((double) numBits / expectedEntries * Math.log(2)));
+      return new BloomFilter(numBits, numHashes);
+   }
+
+   void add(String name) {
+      byte[] hash = HASH.hashString(name, StandardCharsets.UTF_8).asBytes();
+      long hash1 = littleEndianLong(hash, 0), hash2 = littleEndianLong(hash, 8);
+      for (int i = 0; i < numHashes; i++) {
+         long bit = bitIndex(hash1, hash2, i);
+         int word = (int) (bit >>> 6);
+         long mask = 1L << bit;
+         long current;
+         while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+            // retry
+         }
+      }
+   }
+
+   boolean mightContain(String name) {
+      byte[] hash = HASH.hashString(name, StandardCharsets.UTF_8).asBytes();
+      long hash1 = littleEndianLong(hash, 0), hash2 = littleEndianLong(hash, 8);
+      for (int i = 0; i < numHashes; i++) {
+         long bit = bitIndex(hash1, hash2, i);
+         if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   void clear() {
+      for (int i = 0; i < words.length(); i++) {
+         words.set(i, 0L);
+      }
+   }
+
+   private long bitIndex(long hash1, long hash2, int i) {
+      return ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+   }
+
+   private static long littleEndianLong(byte[] bytes, int offset) {
+      long value = 0;
+      for (int i = offset + 7; i >= offset; i--) {
+         value = (value << 8) | (bytes[i] & 0xFF);
+      }
+      return value;
+   }
+
+   void writeTo(DataOutput output) throws IOException {
+      output.writeInt(MAGIC);
+      output.writeLong(numBits);
+      output.writeInt(numHashes);
+      for (int i = 0; i < words.length(); i++) {
+         output.writeLong(words.get(i));
+      }
+   }
+
+   /**
+    * Reads a filter written by {@link #writeTo(DataOutput)}, provided it has the same size as
+    * the given one.
+    *
+    * @return whether the filter could be read
+    */
+   boolean readFrom(DataInput input) throws IOException {
+      if (input.readInt() != MAGIC || input.readLong() != numBits || input.readInt() != numHashes) {
+         return false;
+      }
+      for (int i = 0; i < words.length(); i++) {
+         words.set(i, input.readLong());
+      }
+      return true;
+   }
+}
@@ -1,24 +1,37 @@
 package org.infinispan.persistence.cloud;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.io.ByteBufferImpl;
+import org.infinispan.commons.util.IntSet;
+import org.infinispan.commons.util.IntSets;
 import org.infinispan.commons.util.Util;
-import org.infinispan.executors.ExecutorAllCompletionService;
+import org.infinispan.distribution.ch.KeyPartitioner;
 import org.infinispan.filter.KeyFilter;
 import org.infinispan.marshall.core.MarshalledEntry;
 import org.infinispan.metadata.EmbeddedMetadata;
@@ -26,14 +39,19 @@ import org.infinispan.metadata.InternalMetadata;
 import org.infinispan.metadata.Metadata;
 import org.infinispan.metadata.impl.InternalMetadataImpl;
 import org.infinispan.persistence.TaskContextImpl;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Operation;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Outcome;
+import org.infinispan.persistence.cloud.codec.Codec;
+import org.infinispan.persistence.cloud.codec.Codecs;
 import org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration;
+import org.infinispan.persistence.cloud.keymappers.BlobNameKeyMapper;
 import org.infinispan.persistence.cloud.logging.Log;
 import org.infinispan.persistence.keymappers.MarshallingTwoWayKey2StringMapper;
-import org.infinispan.persistence.spi.AdvancedLoadWriteStore;
 import org.infinispan.persistence.spi.InitializationContext;
 import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.persistence.spi.SegmentedAdvancedLoadWriteStore;
 import org.infinispan.util.logging.LogFactory;
-import org.infinispan.util.stream.Streams;
+import org.jclouds.Constants;
 import org.jclouds.ContextBuilder;
 import org.jclouds.blobstore.BlobStore;
 import org.jclouds.blobstore.BlobStoreContext;
@@ -42,15 +60,26 @@ import org.jclouds.blobstore.domain.BlobMetadata;
 import org.jclouds.blobstore.domain.PageSet;
 import org.jclouds.blobstore.domain.StorageMetadata;
 import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.GetOptions;
 import org.jclouds.blobstore.options.ListContainerOptions;
 import org.jclouds.domain.Location;
 import org.jclouds.domain.LocationBuilder;
 import org.jclouds.domain.LocationScope;
+import org.reactivestreams.Publisher;
 
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.common.net.MediaType;
 
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 /**
  * The CloudStore implementation that utilizes <a
  * href="http://code.google.com/p/jclouds">JClouds</a> to communicate with cloud storage providers
@@ -65,14 +94,27 @@ import com.google.common.net.MediaType;
  * @author Vojtech Juranek
  * @since 7.2
  */
-public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
+public class CloudStore<K, V> implements SegmentedAdvancedLoadWriteStore<K, V> {
    private static final Log log = LogFactory.getLog(CloudStore.class, Log.class);
    private static final org.infinispan.util.logging.Log coreLog = LogFactory.getLog(CloudStore.class, org.infinispan.util.logging.Log.class);
 
+   // only read from blobs written before the entry header, which now holds the metadata
    protected static final String LIFESPAN = "metadata_lifespan";
    protected static final String MAX_IDLE = "metadata_max_idle";
    protected static final String EXPIRE_TIME = "expire_time";
    protected static final int BATCH_SIZE = 1000;
+   protected static final int LISTING_PREFETCH_PAGES = 2;
+   // S3 and Azure accept at most 1000 names per bulk delete request
+   protected static final int DELETE_BATCH_SIZE = 1000;
+   // the entries being processed at once by a task of process
+   private static final int PROCESS_PARALLELISM = Runtime.getRuntime().availableProcessors();
+   // blobs under this prefix hold the store's own data and are never exposed as entries
+   protected static final String INTERNAL_PREFIX = ".ispn/";
+   protected static final String BLOOM_FILTER_SNAPSHOT = INTERNAL_PREFIX + "bloom-filter";
+   // changed whenever blobs may be written without invalidating the read cache, which is then discarded
+   static final String EPOCH = INTERNAL_PREFIX + "epoch";
+   // returned by the lookups of an expired entry, so that the statistics tell it apart from a missing one
+   private static final MarshalledEntry EXPIRED = new LazyMarshalledEntry<>(null, null, null, null);
 
    private CloudStoreConfiguration configuration;
    private InitializationContext initializationContext;
@@ -82,6 +124,31 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
    private BlobStoreContext blobStoreContext;
    private BlobStore blobStore;
    private String containerName;
+   private ContainerLayout containerLayout;
+   private BlobIoExecutor ioExecutor;
+   private Scheduler ioScheduler;
+   // for the requests fanned out from a listing, which must not run on the listing thread
+   private Scheduler forkScheduler;
+   private HedgedRequests hedgedRequests;
+   private KeyPartitioner keyPartitioner;
+   private boolean segmented;
+   private int listingPartitions;
+   private int numSegments;
+   private ExpirationIndex expirationIndex;
+   private BloomFilter bloomFilter;
+   private volatile boolean bloomFilterComplete;
+   private Disposable bloomFilterBuild;
+   private ReadCache readCache;
+   private PackStore packStore;
+   private PayloadCodec payloadCodec;
+   private SnapshotStore snapshotStore;
+   private ScheduledExecutorService snapshotExecutor;
+   private WriteBackQueue writeBackQueue;
+   private final SingleFlight<MarshalledEntry<K, V>> loadFlights = new SingleFlight<>();
+   private final SingleFlight<Boolean> containsFlights = new SingleFlight<>();
+   private final CloudStoreMetrics metrics = new CloudStoreMetrics(() -> writeBackQueue == null ? 0 : writeBackQueue.getRetriedCount());
+   private final LongAdder bloomFilterAvoided = new LongAdder();
+   private final LongAdder bloomFilterFalsePositives = new LongAdder();
 
    public CloudStoreConfiguration getConfiguration() {
       return configuration;
@@ -95,19 +162,50 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
 
    @Override
    public void start() {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         startStore();
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.START, outcome, start);
+      }
+      try {
+         metrics.register(initializationContext.getCache());
+      } catch (Exception e) {
+         log.unableToRegisterMetrics(containerName, e);
+      }
+   }
+
+   private void startStore() {
       key2StringMapper = Util.getInstance(configuration.key2StringMapper(), initializationContext.getCache()
             .getAdvancedCache().getClassLoader());
       key2StringMapper.setMarshaller(initializationContext.getMarshaller());
+      if (key2StringMapper instanceof BlobNameKeyMapper) {
+         ((BlobNameKeyMapper) key2StringMapper).setCacheSize(configuration.keyMappingCacheSize());
+      }
+      keyPartitioner = initializationContext.getKeyPartitioner();
+      segmented = configuration.segmented();
+      listingPartitions = configuration.listingPartitions();
+      numSegments = initializationContext.getCache().getCacheConfiguration().clustering().hash().numSegments();
 
       ContextBuilder contextBuilder = ContextBuilder.newBuilder(configuration.provider()).credentials(configuration.identity(), configuration.credential());
-      if(!configuration.properties().isEmpty())
-         contextBuilder.overrides(configuration.properties());
+      Properties overrides = new Properties();
+      if (configuration.maxRetries() > 0) {
+         // AdaptiveBlobStore retries the throttled requests, retrying them in jclouds as well would multiply the load
+         overrides.setProperty(Constants.PROPERTY_MAX_RETRIES, "0");
+      }
+      overrides.putAll(configuration.properties());
+      if(!overrides.isEmpty())
+         contextBuilder.overrides(overrides);
       if(configuration.endpoint() != null && !configuration.endpoint().isEmpty())
          contextBuilder.endpoint(configuration.endpoint());
 
       blobStoreContext = contextBuilder.buildView(BlobStoreContext.class);
 
-      blobStore = blobStoreContext.getBlobStore();
+      AdaptiveConcurrencyLimiter limiter = configuration.adaptiveConcurrency() ? new AdaptiveConcurrencyLimiter(configuration.maxConcurrentRequests()) : null;
+      metrics.trackLimiter(limiter);
+      blobStore = new AdaptiveBlobStore(blobStoreContext.getBlobStore(), limiter, configuration.maxRetries(), configuration.retryBackoff(), metrics);
       String cacheName = initializationContext.getCache().getName();
       if (configuration.normalizeCacheNames()) { 
          cacheName = cacheName.replaceAll("[^a-zA-Z0-9-]", "-"); // s3 allows [a-zA-Z0-9-.], but azure forbids periods in bucket name 
@@ -139,12 +237,195 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
             }
          }
       }
+
+      containerLayout = new ContainerLayout(configuration.packed(), segmented, numSegments, listingPartitions,
+            configuration.key2StringMapper());
+      containerLayout.check(blobStore, containerName);
+
+      ioExecutor = new BlobIoExecutor(containerName, configuration.maxConcurrentRequests(), configuration.maxPendingRequests());
+      ioScheduler = Schedulers.from(ioExecutor);
+      if (configuration.hedgePercentile() > 0 && configuration.hedgeRate() > 0) {
+         // the hedges in flight are bounded by their share of the requests
+         int maxHedges = Math.max(1, configuration.maxConcurrentRequests() * configuration.hedgeRate() / 100);
+         hedgedRequests = new HedgedRequests(containerName, configuration.hedgePercentile(), configuration.hedgeRate(), maxHedges, metrics);
+      }
+      metrics.trackHedgedRequests(hedgedRequests);
+      forkScheduler = Schedulers.from(ioExecutor::fork);
+
+      payloadCodec = new PayloadCodec(codec(), configuration.compressionThreshold(), configuration.compressionDictionarySize(),
+            configuration.compressionDictionarySamples(), blobStore, containerName, ioExecutor);
+      payloadCodec.start();
+
+      if (configuration.packed()) {
+         // compaction is forked, so that it never runs inline on the I/O thread of the write which requested it
+         packStore = new PackStore(blobStore, containerName, ioExecutor, ioExecutor::fork, ioScheduler,
+               configuration.maxConcurrentRequests(), segmented, configuration.packSize(), configuration.packCompactionThreshold(),
+               initializationContext.getTimeService()::wallClockTime);
+         packStore.start();
+      }
+
+      if (configuration.snapshotInterval() > 0) {
+         snapshotStore = new SnapshotStore(blobStore, containerName, ioScheduler, configuration.maxConcurrentRequests(),
+               SnapshotStore.PART_SIZE, prefix -> listGroup(prefix, false));
+         snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, String.format("CloudStore-%s-snapshot", containerName));
+            thread.setDaemon(true);
+            return thread;
+         });
+         snapshotExecutor.scheduleWithFixedDelay(() -> {
+            try {
+               writeSnapshot();
+            } catch (Exception e) {
+               log.unableToWriteSnapshot(containerName, e);
+            }
+         }, configuration.snapshotInterval(), configuration.snapshotInterval(), TimeUnit.MILLISECONDS);
+      }
+
+      if (configuration.expirationIndex()) {
+         expirationIndex = new ExpirationIndex(configuration.expirationBucketSize());
+      } else {
+         // entries written from now on are not indexed, so an index left by a previous run can no longer be trusted
+         blobStore.removeBlob(containerName, ExpirationIndex.COMPLETE_MARKER);
+      }
+
+      if (configuration.bloomFilter() && configuration.shared()) {
+         log.bloomFilterDisabledForSharedStore(containerName);
+      }
+      // the index of the packed layout already answers lookups for missing keys locally
+      if (configuration.bloomFilter() && !configuration.shared() && packStore == null) {
+         bloomFilter = BloomFilter.create(configuration.bloomFilterExpectedEntries(), configuration.bloomFilterFalsePositiveRate());
+         bloomFilterComplete = loadBloomFilterSnapshot();
+         if (!bloomFilterComplete) {
+            // any complete listing fills the filter, this one makes sure there is one even without preload
+            bloomFilterBuild = publishBlobs(null, false).ignoreElements()
+                  .subscribe(() -> {}, t -> log.unableToBuildBloomFilter(containerName, t));
+         }
+      } else {
+         // writes from now on are not added to the filter, so a snapshot left by a previous run can no longer be trusted
+         blobStore.removeBlob(containerName, BLOOM_FILTER_SNAPSHOT);
+      }
+
+      if (configuration.readCacheLocation() != null && configuration.shared()) {
+         log.readCacheDisabledForSharedStore(containerName);
+      }
+      if (configuration.readCacheLocation() != null && !configuration.shared() && packStore == null) {
+         try {
+            readCache = new ReadCache(Paths.get(configuration.readCacheLocation(), containerName), configuration.readCacheSize());
+            Blob epoch = blobStore.getBlob(containerName, EPOCH);
+            if (epoch == null || !new String(Blobs.readPayload(epoch), StandardCharsets.UTF_8).equals(readCache.readEpoch())) {
+               if (readCache.size() > 0) {
+                  log.readCacheDiscarded(containerName);
+               }
+               readCache.clear();
+               readCache.writeEpoch(nextEpoch());
+            }
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+      } else {
+         // the blobs written from now on would not be invalidated in a read cache left by a previous run
+         nextEpoch();
+      }
+      if (configuration.writeBackLocation() != null) {
+         if (configuration.shared()) {
+            // the other nodes would read the blobs without the writes pending on this one
+            log.writeBackDisabledForSharedStore(containerName);
+         } else {
+            try {
+               writeBackQueue = new WriteBackQueue(containerName, Paths.get(configuration.writeBackLocation(), containerName),
+                     (int) configuration.writeBackJournalSize(), configuration.writeBackFlushSize(),
+                     configuration.writeBackFlushInterval(), this::flushWrites);
+            } catch (IOException e) {
+               throw new PersistenceException(e);
+            }
+            // the writes left by an earlier run are stored before the cache can read the container
+            writeBackQueue.start();
+         }
+      }
    }
 
    @Override
    public void stop() {
-      if (blobStoreContext != null) {
-         blobStoreContext.close();
+      try {
+         metrics.unregister();
+      } catch (Exception e) {
+         log.debugf(e, "Unable to unregister the statistics of container %s", containerName);
+      }
+      try {
+         if (writeBackQueue != null) {
+            try {
+               writeBackQueue.stop();
+            } catch (Exception e) {
+               // they are still in the journal, and stored on the next start
+               log.unableToFlushWrites(containerName, e);
+            }
+         }
+         if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+         }
+         if (packStore != null) {
+            packStore.stop();
+         }
+         if (bloomFilterBuild != null) {
+            bloomFilterBuild.dispose();
+         }
+         if (bloomFilterComplete) {
+            saveBloomFilterSnapshot();
+         }
+      } finally {
+         if (hedgedRequests != null) {
+            hedgedRequests.shutdown();
+         }
+         if (ioExecutor != null) {
+            ioExecutor.shutdown();
+         }
+         if (blobStoreContext != null) {
+            blobStoreContext.close();
+         }
+         if (readCache != null) {
+            try {
+               readCache.close();
+            } catch (IOException e) {
+               throw new PersistenceException(e);
+            }
+         }
+      }
+   }
+
+   /**
+    * The snapshot is deleted once read: it only holds until the next write, so a node which stops
+    * without writing a new one has to rebuild the filter on restart.
+    */
+   /*package*/ boolean loadBloomFilterSnapshot() {
+      Blob blob = blobStore.getBlob(containerName, BLOOM_FILTER_SNAPSHOT);
+      if (blob == null) {
+         return false;
+      }
+      boolean loaded;
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(blob.getPayload().openStream()))) {
+         loaded = bloomFilter.readFrom(input);
+      } catch (IOException e) {
+         loaded = false;
+      }
+      if (!loaded) {
+         bloomFilter.clear();
+      }
+      blobStore.removeBlob(containerName, BLOOM_FILTER_SNAPSHOT);
+      return loaded;
+   }
+
+   /*package*/ void saveBloomFilterSnapshot() {
+      try {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         try (DataOutputStream output = new DataOutputStream(bytes)) {
+            bloomFilter.writeTo(output);
+         }
+         blobStore.putBlob(containerName, blobStore.blobBuilder(BLOOM_FILTER_SNAPSHOT)
+               .payload(bytes.toByteArray())
+               .contentType(MediaType.OCTET_STREAM)
+               .build());
+      } catch (IOException e) {
+         throw new PersistenceException(e);
       }
    }
 
@@ -156,55 +437,318 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
       return key2StringMapper.getKeyMapping(key);
    }
 
-   private byte[] marshall(MarshalledEntry<? extends K, ? extends V> entry) throws IOException, InterruptedException {
-      return initializationContext.getMarshaller().objectToByteBuffer(entry.getValue());
+   /**
+    * In segmented mode every blob is stored under a prefix made of its segment number, so that
+    * the blobs of a segment can be listed without touching the rest of the container.
+    */
+   private static String segmentPrefix(int segment) {
+      return segment + "/";
+   }
+
+   private String objectName(Object key) {
+      return segmented ? objectName(keyPartitioner.getSegment(key), key) : flatObjectName(key);
+   }
+
+   private String objectName(int segment, Object key) {
+      return segmented ? segmentPrefix(segment) + encodeKey(key) : flatObjectName(key);
+   }
+
+   private String flatObjectName(Object key) {
+      String objectName = encodeKey(key);
+      if (listingPartitions > 0) {
+         return segmentPrefix(listingPartition(objectName)) + objectName;
+      }
+      if (objectName.startsWith(INTERNAL_PREFIX)) {
+         throw log.reservedObjectName(key, objectName);
+      }
+      return objectName;
    }
 
-   private Object unmarshall(byte[] bytearray) throws IOException, ClassNotFoundException {
-      return initializationContext.getMarshaller().objectFromByteBuffer(bytearray);
+   /**
+    * With listing partitions, the blobs of the flat layout are spread over prefixes like those of
+    * the segments, chosen from a hash of their name instead, so that they can be listed in parallel.
+    * The hash must never change, as it is part of the stored names.
+    */
+   private int listingPartition(String encodedKey) {
+      return Math.floorMod(Hashing.murmur3_32().hashString(encodedKey, StandardCharsets.UTF_8).asInt(), listingPartitions);
+   }
+
+   private Object keyFromObjectName(String objectName) {
+      return decodeKey(segmented || listingPartitions > 0 ? objectName.substring(objectName.indexOf('/') + 1) : objectName);
+   }
+
+   private ByteBuffer valueBytes(MarshalledEntry<? extends K, ? extends V> entry) throws IOException, InterruptedException {
+      // usually marshalled already, by the cache or by the store the entry was loaded from
+      ByteBuffer valueBytes = entry.getValueBytes();
+      return valueBytes != null ? valueBytes : initializationContext.getMarshaller().objectToBuffer(entry.getValue());
    }
 
    @Override
    public void write(MarshalledEntry<? extends K, ? extends V> entry) {
-      String objectName = encodeKey(entry.getKey());
+      putEntry(objectName(entry.getKey()), entry);
+   }
+
+   @Override
+   public void write(int segment, MarshalledEntry<? extends K, ? extends V> entry) {
+      putEntry(objectName(segment, entry.getKey()), entry);
+   }
+
+   private void putEntry(String objectName, MarshalledEntry<? extends K, ? extends V> entry) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
       try {
-         byte[] entryBytes =  configuration.compress() ? compress(marshall(entry)) : marshall(entry);
-         ByteSource payload = ByteSource.wrap(entryBytes);
-         Date expiresDate = null;
+         storeEntry(objectName, entry);
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.WRITE, outcome, start);
+      }
+   }
 
-         InternalMetadata metadata = entry.getMetadata();
-         if (metadata != null && metadata.expiryTime() > -1) {
-            expiresDate = new Date(metadata.expiryTime());
-         }
-         Map<String, String> ispnMetadata = new HashMap<String, String>();
-         ispnMetadata.put(LIFESPAN, metadata == null ? "-1" : String.valueOf(metadata.lifespan()));
-         ispnMetadata.put(MAX_IDLE, metadata == null ? "-1" : String.valueOf(metadata.maxIdle()));
-         ispnMetadata.put(EXPIRE_TIME, metadata == null ? "-1" : String.valueOf(metadata.expiryTime()));
+   private void storeEntry(String objectName, MarshalledEntry<? extends K, ? extends V> entry) {
+      if (packStore != null) {
+         packStore.write(Collections.singletonList(packRecord(objectName, entry)));
+         return;
+      }
+      if (bloomFilter != null) {
+         bloomFilter.add(objectName);
+      }
+      InternalMetadata metadata = entry.getMetadata();
+      long expiryTime = metadata == null ? -1 : metadata.expiryTime();
+      if (writeBackQueue != null) {
+         byte[] payload = entryBytes(entry);
+         invalidateCached(objectName);
+         writeBackQueue.write(objectName, payload, expiryTime);
+         return;
+      }
+      ByteSource payload;
+      try {
+         PayloadCodec.EncodedPayload encoded = payloadCodec.encode(valueBytes(entry));
+         metrics.recordOut(encoded.valueLength, encoded.length);
+         payload = EntryFormat.payload(EntryFormat.header(encoded, metadata, initializationContext.getMarshaller()), encoded);
+      } catch (Exception e) {
+         throw new PersistenceException(e);
+      }
+      putPayload(objectName, payload, expiryTime);
+   }
+
+   private void putPayload(String objectName, ByteSource payload, long expiryTime) {
+      // invalidated both before and after the put: before so that a crash cannot leave a stale record behind,
+      // after so that a load racing with the put cannot cache the previous value
+      invalidateCached(objectName);
+      try {
+         Date expiresDate = expiryTime > -1 ? new Date(expiryTime) : null;
 
+         // the metadata is in the header, the expiry time is repeated for the purges, which only list the blobs
          Blob blob = blobStore.blobBuilder(objectName)
                   .payload(payload)
                   .contentLength(payload.size())
                   .contentType(MediaType.OCTET_STREAM)
                   .expires(expiresDate)
-                  .userMetadata(ispnMetadata)
+                  .userMetadata(Collections.singletonMap(EXPIRE_TIME, String.valueOf(expiryTime)))
                   .build();
 
+         if (expirationIndex != null && expiresDate != null) {
+            // the marker goes first, a marker without its entry is harmless while the opposite would never be purged
+            putMarker(expirationIndex.markerName(objectName, expiryTime));
+         }
          blobStore.putBlob(containerName, blob);
       } catch (Exception e) {
          throw new PersistenceException(e);
+      } finally {
+         invalidateCached(objectName);
       }
    }
 
+   private byte[] entryBytes(MarshalledEntry<? extends K, ? extends V> entry) {
+      try {
+         PayloadCodec.EncodedPayload encoded = payloadCodec.encode(valueBytes(entry));
+         metrics.recordOut(encoded.valueLength, encoded.length);
+         return EntryFormat.toArray(EntryFormat.header(encoded, entry.getMetadata(), initializationContext.getMarshaller()), encoded);
+      } catch (Exception e) {
+         throw new PersistenceException(e);
+      }
+   }
+
+   private PackStore.PackRecord packRecord(String objectName, MarshalledEntry<? extends K, ? extends V> entry) {
+      byte[] entryBytes = entryBytes(entry);
+      InternalMetadata metadata = entry.getMetadata();
+      return metadata == null ? new PackStore.PackRecord(objectName, entryBytes, PayloadFormat.HEADER, -1, -1, -1) :
+            new PackStore.PackRecord(objectName, entryBytes, PayloadFormat.HEADER, metadata.lifespan(), metadata.maxIdle(), metadata.expiryTime());
+   }
+
+   private void putMarker(String markerName) {
+      blobStore.putBlob(containerName, blobStore.blobBuilder(markerName).payload(new byte[0]).build());
+   }
+
+   @Override
+   public void writeBatch(Iterable<MarshalledEntry<? extends K, ? extends V>> entries) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         storeBatch(entries);
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.WRITE_BATCH, outcome, start);
+      }
+   }
+
+   private void storeBatch(Iterable<MarshalledEntry<? extends K, ? extends V>> entries) {
+      if (packStore != null) {
+         // the whole batch is committed together, in packs of up to the pack size
+         List<PackStore.PackRecord> records = new ArrayList<>();
+         for (MarshalledEntry<? extends K, ? extends V> entry : entries) {
+            records.add(packRecord(objectName(entry.getKey()), entry));
+         }
+         packStore.write(records);
+         return;
+      }
+      if (writeBackQueue != null) {
+         // queued without any request, the queue batches them on its own
+         for (MarshalledEntry<? extends K, ? extends V> entry : entries) {
+            write(entry);
+         }
+         return;
+      }
+      BlobRequestPipeline pipeline = new BlobRequestPipeline(ioExecutor, configuration.maxConcurrentRequests());
+      for (MarshalledEntry<? extends K, ? extends V> entry : entries) {
+         pipeline.submit(entry.getKey(), () -> write(entry));
+      }
+      pipeline.await();
+   }
+
+   @Override
+   public void deleteBatch(Iterable<Object> keys) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         removeBatch(keys);
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.DELETE_BATCH, outcome, start);
+      }
+   }
+
+   private void removeBatch(Iterable<Object> keys) {
+      if (packStore != null) {
+         List<String> objectNames = new ArrayList<>();
+         for (Object key : keys) {
+            objectNames.add(objectName(key));
+         }
+         packStore.delete(objectNames);
+         return;
+      }
+      if (writeBackQueue != null) {
+         for (Object key : keys) {
+            delete(key);
+         }
+         return;
+      }
+      BlobRequestPipeline pipeline = new BlobRequestPipeline(ioExecutor, configuration.maxConcurrentRequests());
+      List<Object> batchKeys = new ArrayList<>(DELETE_BATCH_SIZE);
+      List<String> batchNames = new ArrayList<>(DELETE_BATCH_SIZE);
+      for (Object key : keys) {
+         batchKeys.add(key);
+         batchNames.add(objectName(key));
+         if (batchNames.size() == DELETE_BATCH_SIZE) {
+            submitDeleteBatch(pipeline, batchKeys, batchNames);
+            batchKeys = new ArrayList<>(DELETE_BATCH_SIZE);
+            batchNames = new ArrayList<>(DELETE_BATCH_SIZE);
+         }
+      }
+      if (!batchNames.isEmpty()) {
+         submitDeleteBatch(pipeline, batchKeys, batchNames);
+      }
+      pipeline.await();
+   }
+
+   private void submitDeleteBatch(BlobRequestPipeline pipeline, List<Object> keys, List<String> objectNames) {
+      // a bulk delete is a single request, so a failure is reported for each of its keys
+      pipeline.submit(keys, () -> removeBlobs(objectNames));
+   }
+
    @Override
    public void clear() {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         clearContainer();
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.CLEAR, outcome, start);
+      }
+   }
+
+   private void clearContainer() {
+      if (packStore != null) {
+         packStore.clear(null);
+         return;
+      }
+      if (writeBackQueue != null) {
+         writeBackQueue.clear();
+      }
+      if (bloomFilter != null) {
+         // cleared first, so that the names written while the container is being cleared stay in the filter
+         bloomFilter.clear();
+      }
       blobStore.clearContainer(containerName);
+      containerLayout.store(blobStore, containerName);
+      String epoch = nextEpoch();
+      if (readCache != null) {
+         readCache.clear();
+         try {
+            readCache.writeEpoch(epoch);
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+      }
+      loadFlights.clear();
+      containsFlights.clear();
+      payloadCodec.restoreDictionary();
+      if (expirationIndex != null) {
+         // an empty container is trivially indexed
+         putMarker(ExpirationIndex.COMPLETE_MARKER);
+      }
    }
 
    @Override
    public boolean delete(Object key) {
-      String objectName = encodeKey(key);
+      return removeEntry(objectName(key));
+   }
+
+   @Override
+   public boolean delete(int segment, Object key) {
+      return removeEntry(objectName(segment, key));
+   }
+
+   private boolean removeEntry(String objectName) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         boolean result = deleteEntry(objectName);
+         outcome = Outcome.SUCCESS;
+         return result;
+      } finally {
+         metrics.record(Operation.DELETE, outcome, start);
+      }
+   }
+
+   private boolean deleteEntry(String objectName) {
+      if (packStore != null) {
+         return packStore.delete(Collections.singletonList(objectName)) > 0;
+      }
+      if (writeBackQueue != null) {
+         // the blob is only checked when the queue does not know, its delete request is queued
+         WriteBackQueue.Operation pending = writeBackQueue.get(objectName);
+         boolean existed = pending != null ? pending.payload != null : mightExist(objectName) && blobStore.blobExists(containerName, objectName);
+         if (existed) {
+            invalidateCached(objectName);
+            writeBackQueue.delete(objectName);
+         }
+         return existed;
+      }
       if (blobStore.blobExists(containerName, objectName)) {
          blobStore.removeBlob(containerName, objectName);
+         invalidateCached(objectName);
          return true;
       }
       return false;
@@ -212,10 +756,162 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
 
    @Override
    public MarshalledEntry<K, V> load(Object key) {
-      String objectName = encodeKey(key);
-      Blob blob = blobStore.getBlob(containerName, objectName);
+      return lookup(objectName(key), key);
+   }
+
+   @Override
+   public MarshalledEntry<K, V> load(int segment, Object key) {
+      return lookup(objectName(segment, key), key);
+   }
+
+   private MarshalledEntry<K, V> lookup(String objectName, Object key) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         MarshalledEntry<K, V> entry = mightExist(objectName) ? lookupEntry(objectName, key) : null;
+         if (entry == EXPIRED) {
+            outcome = Outcome.EXPIRED;
+            return null;
+         }
+         outcome = entry == null ? Outcome.MISS : Outcome.HIT;
+         return entry;
+      } finally {
+         metrics.record(Operation.LOAD, outcome, start);
+      }
+   }
+
+   /**
+    * Loads the given keys concurrently, at most {@code maxConcurrentRequests} at a time, and
+    * publishes their entries in the order they are loaded. Keys which are not stored, or whose entry
+    * has expired, are skipped. A load failure terminates the publisher.
+    * <p/>
+    * The persistence SPI has no bulk load, so the cache still loads the misses of a {@code getAll}
+    * one after the other; this is meant for callers which can reach the store directly.
+    */
+   public Flowable<MarshalledEntry<K, V>> loadAll(Set<?> keys) {
+      return Flowable.fromIterable(keys)
+            .flatMapMaybe(key -> Maybe.fromCallable(() -> load(key)).subscribeOn(forkScheduler), false,
+                  configuration.maxConcurrentRequests());
+   }
+
+   /**
+    * @return {@code false} if the Bloom filter proves that there is no blob with the given name
+    */
+   private boolean mightExist(String objectName) {
+      if (bloomFilterComplete && !bloomFilter.mightContain(objectName)) {
+         bloomFilterAvoided.increment();
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * @return the latest write or delete of the given name which is not stored yet, or {@code null}
+    */
+   private WriteBackQueue.Operation pendingOperation(String objectName) {
+      return writeBackQueue == null ? null : writeBackQueue.get(objectName);
+   }
+
+   /**
+    * Stores the writes and deletes of the write-back queue, which the listings would miss.
+    */
+   private void flushPendingWrites() {
+      if (writeBackQueue != null) {
+         writeBackQueue.flush();
+      }
+   }
+
+   /**
+    * Stores a batch of the write-back queue: the writes run in parallel with the bulk deletes.
+    */
+   private void flushWrites(Collection<WriteBackQueue.Operation> operations) {
+      BlobRequestPipeline pipeline = new BlobRequestPipeline(ioExecutor, configuration.maxConcurrentRequests());
+      List<String> objectNames = new ArrayList<>(DELETE_BATCH_SIZE);
+      for (WriteBackQueue.Operation operation : operations) {
+         if (operation.payload == null) {
+            objectNames.add(operation.objectName);
+            if (objectNames.size() == DELETE_BATCH_SIZE) {
+               submitDeletes(pipeline, objectNames);
+               objectNames = new ArrayList<>(DELETE_BATCH_SIZE);
+            }
+         } else {
+            if (bloomFilter != null) {
+               // replayed writes were never added to the filter of this run
+               bloomFilter.add(operation.objectName);
+            }
+            pipeline.submit(operation.objectName, () -> putPayload(operation.objectName, ByteSource.wrap(operation.payload), operation.expiryTime));
+         }
+      }
+      if (!objectNames.isEmpty()) {
+         submitDeletes(pipeline, objectNames);
+      }
+      pipeline.await();
+   }
+
+   private void submitDeletes(BlobRequestPipeline pipeline, List<String> objectNames) {
+      pipeline.submit(objectNames, () -> {
+         removeBlobs(objectNames);
+         objectNames.forEach(this::invalidateCached);
+      });
+   }
+
+   /**
+    * Gets a blob for a lookup, hedging the request if enabled.
+    */
+   private Blob getBlob(String objectName) {
+      if (hedgedRequests == null) {
+         return blobStore.getBlob(containerName, objectName);
+      }
+      return hedgedRequests.execute(() -> blobStore.getBlob(containerName, objectName), blob -> blob.getPayload().release());
+   }
+
+   private void recordMissingBlob() {
+      if (bloomFilterComplete) {
+         bloomFilterFalsePositives.increment();
+      }
+   }
+
+   private MarshalledEntry<K, V> loadEntry(String objectName, Object key) {
+      MarshalledEntry<K, V> entry = lookupEntry(objectName, key);
+      return entry == EXPIRED ? null : entry;
+   }
+
+   /**
+    * @return the entry, {@code null} if it is not stored, or {@link #EXPIRED} if it has expired
+    */
+   private MarshalledEntry<K, V> lookupEntry(String objectName, Object key) {
+      if (packStore != null) {
+         PackStore.StoredRecord record = packStore.read(objectName);
+         return record == null ? null : newMarshalledEntry(key, record);
+      }
+      WriteBackQueue.Operation pending = pendingOperation(objectName);
+      if (pending != null) {
+         if (pending.payload == null) {
+            return null;
+         }
+         return isExpired(pending.expiryTime) ? EXPIRED : headerEntry(key, pending.payload);
+      }
+      if (readCache != null) {
+         ReadCache.CachedBlob cached = readCache.get(objectName);
+         if (cached != null && !isExpired(expiryTime(cached.userMetadata, cached.expires))) {
+            return toMarshalledEntry(key, cached.payload, cached.userMetadata, cached.expires);
+         }
+      }
+      MarshalledEntry<K, V> entry = loadFlights.execute(objectName, () -> fetchEntry(objectName, key));
+      // the fetched bytes are shared, but each caller unmarshals its own copy of the value
+      return entry == null || entry == EXPIRED ? entry : new LazyMarshalledEntry<>((K) key, entry.getValueBytes(), entry.getMetadata(),
+            initializationContext.getMarshaller());
+   }
+
+   /**
+    * Fetches and decodes an entry, on behalf of all the concurrent loads of its blob.
+    */
+   private MarshalledEntry<K, V> fetchEntry(String objectName, Object key) {
+      long cacheVersion = readCache == null ? 0 : readCache.version(objectName);
+      Blob blob = getBlob(objectName);
 
       if (blob == null) {
+         recordMissingBlob();
          return null;
       }
 
@@ -223,32 +919,111 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
 
       if(isExpired(blobMetadata)) {
          blobStore.removeBlob(containerName, objectName);
-         return null;
+         invalidateCached(objectName);
+         return EXPIRED;
       }
 
-      final byte[] payloadByteArray;
-      try {
-         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         Streams.copy(blob.getPayload().openStream(), bos);
-         final byte[] payloadRaw = bos.toByteArray();
-
-         HashCode expectedHashCode = blob.getMetadata().getContentMetadata().getContentMD5AsHashCode();
-         // not all blobstores support md5 on GET request
-         if (expectedHashCode != null){
-            HashCode actualHash = HashCode.fromBytes(payloadRaw);
-            if(expectedHashCode.equals(actualHash)) {
-               throw new PersistenceException("MD5 hash failed when reading data from " + blob.getMetadata().getName());
+      byte[] payloadRaw = Blobs.readPayload(blob);
+      HashCode expectedHashCode = blob.getMetadata().getContentMetadata().getContentMD5AsHashCode();
+      // not all blobstores support md5 on GET request
+      if (expectedHashCode != null && !expectedHashCode.equals(Hashing.md5().hashBytes(payloadRaw))) {
+         throw new PersistenceException("MD5 hash failed when reading data from " + blob.getMetadata().getName());
+      }
+
+      Map<String, String> ispnMetadata = blob.getMetadata().getUserMetadata();
+      Date expiresDate = blobMetadata.getContentMetadata().getExpires();
+      if (readCache != null) {
+         readCache.putIfUnmodified(objectName, payloadRaw, ispnMetadata, expiresDate, cacheVersion);
+      }
+      MarshalledEntry<K, V> entry = toMarshalledEntry(key, payloadRaw, ispnMetadata, expiresDate);
+      if (entry.getMetadata() != null && entry.getMetadata().isExpired(initializationContext.getTimeService().wallClockTime())) {
+         // only the header knew, the provider dropped the expiry time from the blob metadata
+         blobStore.removeBlob(containerName, objectName);
+         invalidateCached(objectName);
+         return EXPIRED;
+      }
+      return entry;
+   }
+
+   /**
+    * Loads the metadata of an entry without its value: a ranged GET fetches the header of the
+    * payload, or only the first bytes of the blobs written by earlier versions of the store, whose
+    * metadata comes with the blob. Entries found in the read cache are not requested at all. Packs
+    * hold small records and are read whole.
+    */
+   private MarshalledEntry<K, V> loadMetadata(String objectName, Object key) {
+      if (packStore != null) {
+         return loadEntry(objectName, key);
+      }
+      WriteBackQueue.Operation pending = pendingOperation(objectName);
+      if (pending != null) {
+         return pending.payload == null || isExpired(pending.expiryTime) ? null : metadataEntry(key, pending.payload, null, null);
+      }
+      if (readCache != null) {
+         ReadCache.CachedBlob cached = readCache.get(objectName);
+         if (cached != null && !isExpired(expiryTime(cached.userMetadata, cached.expires))) {
+            return metadataEntry(key, cached.payload, cached.userMetadata, cached.expires);
+         }
+      }
+      Blob blob = blobStore.getBlob(containerName, objectName, new GetOptions().range(0, EntryFormat.HEADER_PREFETCH - 1));
+      if (blob == null) {
+         recordMissingBlob();
+         return null;
+      }
+      BlobMetadata blobMetadata = blob.getMetadata();
+      if (isExpired(blobMetadata)) {
+         blobStore.removeBlob(containerName, objectName);
+         invalidateCached(objectName);
+         return null;
+      }
+      Map<String, String> ispnMetadata = blobMetadata.getUserMetadata();
+      byte[] bytes = Blobs.readPayload(blob);
+      if (format(bytes) == PayloadFormat.HEADER) {
+         int headerLength = EntryFormat.headerLength(bytes, bytes.length);
+         if (headerLength > bytes.length) {
+            blob = blobStore.getBlob(containerName, objectName, new GetOptions().range(0, headerLength - 1));
+            if (blob == null) {
+               return null;
             }
+            bytes = Blobs.readPayload(blob);
          }
+      }
+      MarshalledEntry<K, V> entry = metadataEntry(key, bytes, ispnMetadata, blobMetadata.getContentMetadata().getExpires());
+      if (entry.getMetadata() != null && entry.getMetadata().isExpired(initializationContext.getTimeService().wallClockTime())) {
+         blobStore.removeBlob(containerName, objectName);
+         invalidateCached(objectName);
+         return null;
+      }
+      return entry;
+   }
 
-         payloadByteArray = configuration.compress() ? uncompress(payloadRaw) : payloadRaw;
-      } catch(Exception e) {
-         throw new PersistenceException(e);
+   /**
+    * @param bytes the payload of a blob, or its first bytes as long as they hold the whole header
+    * @return an entry with the metadata of the blob and without value
+    */
+   private MarshalledEntry<K, V> metadataEntry(Object key, byte[] bytes, Map<String, String> ispnMetadata, Date expiresDate) {
+      InternalMetadata metadata;
+      if (format(bytes) == PayloadFormat.HEADER) {
+         metadata = EntryFormat.readHeader(bytes, EntryFormat.headerLength(bytes, bytes.length), initializationContext.getMarshaller()).metadata;
+      } else {
+         metadata = legacyMetadata(ispnMetadata, expiresDate);
       }
+      return new LazyMarshalledEntry<>((K) key, null, metadata, initializationContext.getMarshaller());
+   }
 
-      Map<String, String> ispnMetadata = blob.getMetadata().getUserMetadata();
-      Date expiresDate = blobMetadata.getContentMetadata().getExpires();
-      long ttl = -1, maxIdle = -1, now = initializationContext.getTimeService().wallClockTime();
+   private MarshalledEntry<K, V> toMarshalledEntry(Object key, byte[] payloadRaw, Map<String, String> ispnMetadata, Date expiresDate) {
+      PayloadFormat format = format(payloadRaw);
+      if (format == PayloadFormat.HEADER) {
+         return headerEntry(key, payloadRaw);
+      }
+      return newMarshalledEntry(key, payloadRaw, legacyMetadata(ispnMetadata, expiresDate));
+   }
+
+   /**
+    * @return the metadata of an entry stored without a header, from the user metadata of its blob
+    */
+   private InternalMetadata legacyMetadata(Map<String, String> ispnMetadata, Date expiresDate) {
+      long ttl = -1, maxIdle = -1;
 
       if (ispnMetadata != null) {
          try {
@@ -259,164 +1034,315 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
          }
       } else {
          if (expiresDate != null) {
-            ttl = expiresDate.getTime() - now;
+            ttl = expiresDate.getTime() - initializationContext.getTimeService().wallClockTime();
          }
       }
+      return legacyMetadata(ttl, maxIdle);
+   }
 
+   /**
+    * @return the metadata of an entry stored without a header, whose creation time was not kept
+    */
+   private InternalMetadata legacyMetadata(long ttl, long maxIdle) {
+      long now = initializationContext.getTimeService().wallClockTime();
       Metadata metadata = new EmbeddedMetadata.Builder().lifespan(ttl, TimeUnit.MILLISECONDS)
             .maxIdle(maxIdle, TimeUnit.MILLISECONDS).build();
-      InternalMetadata internalMetadata = new InternalMetadataImpl(metadata, now, now);
-
-      try {
-         return initializationContext.getMarshalledEntryFactory().newMarshalledEntry(key,
-               unmarshall(payloadByteArray), internalMetadata);
-      } catch (Exception e) {
-         throw new PersistenceException(e);
-      }
+      return new InternalMetadataImpl(metadata, now, now);
    }
 
-   @Override
-   public void process(KeyFilter<? super K> keyFilter, final CacheLoaderTask<K, V> cacheLoaderTask, Executor executor,
-         boolean loadValue, boolean loadMetadata) {
-      String nextMarker = null;
-      PageSet<? extends StorageMetadata> pageSet;
-
-      do {
-         ListContainerOptions listOptions = nextMarker == null ? ListContainerOptions.NONE
-               : ListContainerOptions.Builder.afterMarker(nextMarker);
-
-         pageSet = blobStore.list(containerName, listOptions);
-
-         ExecutorAllCompletionService eacs = new ExecutorAllCompletionService(executor);
-         final TaskContext taskContext = new TaskContextImpl();
+   /**
+    * @return the format of a blob's payload
+    */
+   private static PayloadFormat format(byte[] payloadRaw) {
+      return EntryFormat.headerLength(payloadRaw, payloadRaw.length) < 0 ? PayloadFormat.LEGACY : PayloadFormat.HEADER;
+   }
 
-         Set<Object> entries = new HashSet<Object>(BATCH_SIZE);
+   private MarshalledEntry<K, V> newMarshalledEntry(Object key, PackStore.StoredRecord record) {
+      if (record.format == PayloadFormat.HEADER) {
+         return headerEntry(key, record.payload);
+      }
+      return newMarshalledEntry(key, record.payload, legacyMetadata(record.lifespan, record.maxIdle));
+   }
 
-         Iterator<? extends StorageMetadata> storageMetadataIterator = pageSet.iterator();
-         while (storageMetadataIterator.hasNext()) {
-            StorageMetadata blobMetadata = storageMetadataIterator.next();
-            K key = (K) key2StringMapper.getKeyMapping(blobMetadata.getName());
-            if (keyFilter == null || keyFilter.accept(key)) {
-               entries.add(key);
-            }
-            if (entries.size() == BATCH_SIZE) {
-               final Set<Object> batch = entries;
-               entries = new HashSet<Object>(BATCH_SIZE);
-               submitProcessTask(cacheLoaderTask, eacs, taskContext, batch, loadValue, loadMetadata);
-            }
-         }
+   private MarshalledEntry<K, V> headerEntry(Object key, byte[] payloadRaw) {
+      EntryFormat.Header header = EntryFormat.read(payloadRaw, initializationContext.getMarshaller());
+      if (header == null) {
+         throw new PersistenceException("Missing entry header");
+      }
+      ByteBufferImpl valueBytes = payloadCodec.decode(header.marker, header.dictionaryId, payloadRaw, header.length,
+            payloadRaw.length - header.length, header.valueLength);
+      metrics.recordIn(valueBytes.getLength(), payloadRaw.length - header.length);
+      return new LazyMarshalledEntry<>((K) key, valueBytes, header.metadata, initializationContext.getMarshaller());
+   }
 
-         if (!entries.isEmpty()) {
-            submitProcessTask(cacheLoaderTask, eacs, taskContext, entries, loadValue, loadMetadata);
-         }
-         eacs.waitUntilAllCompleted();
-         if (eacs.isExceptionThrown()) {
-            throw new PersistenceException("Process execution exception!", eacs.getFirstException());
+   /**
+    * @return the entry of a payload without header
+    */
+   private MarshalledEntry<K, V> newMarshalledEntry(Object key, byte[] payloadRaw, InternalMetadata metadata) {
+      ByteBufferImpl valueBytes;
+      if (configuration.compress()) {
+         // written before codecs were introduced, when compress was the only option
+         try {
+            valueBytes = new ByteBufferImpl(Codecs.GZIP.decompress(payloadRaw, 0, payloadRaw.length, null));
+         } catch (IOException e) {
+            throw new PersistenceException(e);
          }
+      } else {
+         valueBytes = new ByteBufferImpl(payloadRaw);
+      }
+      metrics.recordIn(valueBytes.getLength(), payloadRaw.length);
+      return new LazyMarshalledEntry<>((K) key, valueBytes, metadata, initializationContext.getMarshaller());
+   }
 
-         nextMarker = pageSet.getNextMarker();
-      } while (nextMarker != null);
+   private void invalidateCached(String objectName) {
+      if (readCache != null) {
+         readCache.invalidate(objectName);
+      }
+      // the loads arriving from now on must not be served the blob being replaced
+      loadFlights.forget(objectName);
+      containsFlights.forget(objectName);
    }
 
-   private void submitProcessTask(final CacheLoaderTask<K, V> cacheLoaderTask, CompletionService<Void> ecs,
-         final TaskContext taskContext, final Set<Object> batch, final boolean loadEntry, final boolean loadMetadata) {
-      ecs.submit(new Callable<Void>() {
-         @Override
-         public Void call() throws Exception {
-            try {
-               for (Object key : batch) {
-                  if (taskContext.isStopped())
-                     break;
-                  if (!loadEntry && !loadMetadata) {
-                     cacheLoaderTask.processEntry(
-                           initializationContext.getMarshalledEntryFactory().newMarshalledEntry(key, (Object) null,
-                                 null), taskContext);
-                  } else {
-                     cacheLoaderTask.processEntry(load(key), taskContext);
+   /**
+    * Processes the entries through {@link #publishEntries(Predicate, boolean, boolean)}, so listing,
+    * loading and processing overlap. When only the metadata is requested, as the expiration reaper
+    * does, a few bytes of each blob are downloaded instead of the whole value. The blob requests run
+    * on the store's I/O threads, while the task processes the entries on the given executor, at most
+    * one per available processor at a time. Once the task is stopped, the remaining entries are
+    * skipped.
+    */
+   @Override
+   public void process(KeyFilter<? super K> keyFilter, final CacheLoaderTask<K, V> cacheLoaderTask, Executor executor,
+         boolean loadValue, boolean loadMetadata) {
+      TaskContext taskContext = new TaskContextImpl();
+      Scheduler taskScheduler = executor == null ? Schedulers.trampoline() : Schedulers.from(executor);
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         publishEntries(keyFilter == null ? null : keyFilter::accept, loadValue, loadMetadata)
+               .takeWhile(entry -> !taskContext.isStopped())
+               .flatMapCompletable(entry -> Completable.fromAction(() -> {
+                  if (!taskContext.isStopped()) {
+                     cacheLoaderTask.processEntry(entry, taskContext);
                   }
-               }
-            } catch (Exception e) {
-               coreLog.errorExecutingParallelStoreTask(e);
-               throw e;
-            }
-            return null;
-         }
-      });
+               }).subscribeOn(taskScheduler), false, PROCESS_PARALLELISM)
+               .blockingAwait();
+         outcome = Outcome.SUCCESS;
+      } catch (Exception e) {
+         coreLog.errorExecutingParallelStoreTask(e);
+         throw new PersistenceException("Process execution exception!", e);
+      } finally {
+         metrics.record(Operation.PROCESS, outcome, start);
+      }
    }
 
+   /**
+    * Removes the expired entries, deciding from blob metadata only. Payloads are never downloaded.
+    * When the expiration index is enabled and complete, only the markers of the buckets which are
+    * already due are listed, and each of their entries is checked with a HEAD request. Otherwise the
+    * whole container is scanned, rebuilding the index if it is enabled. The blob requests run on
+    * the store's I/O threads, the given executor is not used.
+    */
    @Override
    public void purge(Executor executor, PurgeListener<? super K> purgeListener) {
-      String nextMarker = null;
-      PageSet<? extends StorageMetadata> pageSet;
-
-      do {
-         ListContainerOptions listOptions = nextMarker == null ? ListContainerOptions.NONE
-               : ListContainerOptions.Builder.afterMarker(nextMarker);
-         pageSet = blobStore.list(containerName, listOptions);
-
-         ExecutorAllCompletionService eacs = new ExecutorAllCompletionService(executor);
-         Set<String> entries = new HashSet<String>(BATCH_SIZE);
-
-         Iterator<? extends StorageMetadata> storageMetadataIterator = pageSet.iterator();
-         while (storageMetadataIterator.hasNext()) {
-            StorageMetadata storageMetadata = storageMetadataIterator.next();
-            if(storageMetadata.getType().equals(StorageType.BLOB)) {
-                 Blob blob = blobStore.getBlob(containerName, storageMetadata.getName());
-                 BlobMetadata blobMetadata = blob.getMetadata();
-
-                 if (isExpired(blobMetadata)) {
-                     entries.add(storageMetadata.getName());
-                     if (entries.size() == BATCH_SIZE) {
-                         final Set<String> batch = entries;
-                         entries = new HashSet<String>(BATCH_SIZE);
-                         submitPurgeTask(eacs, batch, purgeListener);
-                     }
-                 }
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         flushPendingWrites();
+         if (packStore != null) {
+            purgePacked(purgeListener);
+         } else if (expirationIndex == null) {
+            purgeScan(purgeListener, false);
+         } else if (!blobStore.blobExists(containerName, ExpirationIndex.COMPLETE_MARKER)) {
+            purgeScan(purgeListener, true);
+         } else {
+            try {
+               purgeIndexed(purgeListener);
+            } catch (IllegalArgumentException e) {
+               log.rebuildingExpirationIndex(containerName, e);
+               blobStore.removeBlob(containerName, ExpirationIndex.COMPLETE_MARKER);
+               removeObjects(listObjectNames(ExpirationIndex.PREFIX));
+               purgeScan(purgeListener, true);
             }
          }
+         outcome = Outcome.SUCCESS;
+      } catch (Exception e) {
+         coreLog.errorExecutingParallelStoreTask(e);
+         throw new PersistenceException("Purge execution exception!", e);
+      } finally {
+         metrics.record(Operation.PURGE, outcome, start);
+      }
+   }
 
-         if (!entries.isEmpty()) {
-            submitPurgeTask(eacs, entries, purgeListener);
-         }
-         eacs.waitUntilAllCompleted();
-         if (eacs.isExceptionThrown()) {
-            throw new PersistenceException("Purge execution exception!", eacs.getFirstException());
-         }
-
-         nextMarker = pageSet.getNextMarker();
-      } while (nextMarker != null);
+   /**
+    * The expired entries are found in the index of the packs, they are deleted with tombstones.
+    */
+   private void purgePacked(PurgeListener<? super K> purgeListener) {
+      List<String> objectNames = packStore.expiredNames();
+      packStore.delete(objectNames);
+      for (String objectName : objectNames) {
+         purgeListener.entryPurged((K) keyFromObjectName(objectName));
+      }
+   }
 
+   /**
+    * Lists the index markers in expiration order, stopping at the first bucket which is not due yet.
+    * Markers are removed whether their entry expired or not: an entry which has been written again
+    * since has a marker of its own, if any.
+    */
+   private void purgeIndexed(PurgeListener<? super K> purgeListener) {
+      long now = initializationContext.getTimeService().wallClockTime();
+      listObjectNames(ExpirationIndex.PREFIX)
+            .takeWhile(markerName -> ExpirationIndex.bucketEnd(markerName) <= now)
+            .flatMapSingle(markerName -> Single.fromCallable(() -> {
+               String objectName = ExpirationIndex.objectName(markerName);
+               BlobMetadata blobMetadata = blobStore.blobMetadata(containerName, objectName);
+               boolean expired = blobMetadata != null && isExpired(blobMetadata);
+               return new SimpleImmutableEntry<>(markerName, expired ? objectName : null);
+            }).subscribeOn(forkScheduler), false, configuration.maxConcurrentRequests())
+            .buffer(DELETE_BATCH_SIZE)
+            .blockingForEach(batch -> {
+               List<String> markerNames = new ArrayList<>(batch.size());
+               List<String> objectNames = new ArrayList<>(batch.size());
+               for (Map.Entry<String, String> marker : batch) {
+                  markerNames.add(marker.getKey());
+                  if (marker.getValue() != null) {
+                     objectNames.add(marker.getValue());
+                  }
+               }
+               removeExpired(objectNames, purgeListener);
+               blobStore.removeBlobs(containerName, markerNames);
+            });
    }
 
-   private void submitPurgeTask(CompletionService<Void> ecs, final Set<String> batch, final PurgeListener<? super K> purgeListener) {
-      ecs.submit(new Callable<Void>() {
-         @Override
-         public Void call() throws Exception {
-            try {
-               for (String key : batch) {
-                  blobStore.removeBlob(containerName, key);
-                  purgeListener.entryPurged((K)key2StringMapper.getKeyMapping(key));
+   /**
+    * Scans the metadata of all blobs. The listing is requested with details, which already carries
+    * the user metadata for some providers; for the others the metadata of each blob is fetched with
+    * a HEAD request. When rebuilding the index, a marker is written for every entry which has not
+    * expired yet, and the index is flagged as complete once the scan is over.
+    */
+   private void purgeScan(PurgeListener<? super K> purgeListener, boolean rebuildIndex) {
+      publishBlobs(null, true)
+            .flatMapMaybe(metadata -> {
+               if (metadata instanceof BlobMetadata && hasExpirationMetadata(metadata)) {
+                  long expiryTime = expiryTime((BlobMetadata) metadata);
+                  if (isExpired(expiryTime)) {
+                     return Maybe.just(metadata.getName());
+                  } else if (!rebuildIndex || expiryTime < 0) {
+                     return Maybe.<String>empty();
+                  }
                }
-            } catch (Exception e) {
-               coreLog.errorExecutingParallelStoreTask(e);
-               throw e;
-            }
-            return null;
-         }
-      });
+               return Maybe.fromCallable(() -> {
+                  BlobMetadata blobMetadata = metadata instanceof BlobMetadata && hasExpirationMetadata(metadata) ?
+                        (BlobMetadata) metadata : blobStore.blobMetadata(containerName, metadata.getName());
+                  if (blobMetadata == null) {
+                     return null;
+                  }
+                  long expiryTime = expiryTime(blobMetadata);
+                  if (isExpired(expiryTime)) {
+                     return metadata.getName();
+                  }
+                  if (rebuildIndex && expiryTime > -1) {
+                     putMarker(expirationIndex.markerName(metadata.getName(), expiryTime));
+                  }
+                  return null;
+               }).subscribeOn(forkScheduler);
+            }, false, configuration.maxConcurrentRequests())
+            .buffer(DELETE_BATCH_SIZE)
+            .blockingForEach(objectNames -> removeExpired(objectNames, purgeListener));
+      if (rebuildIndex) {
+         putMarker(ExpirationIndex.COMPLETE_MARKER);
+      }
+   }
+
+   private void removeExpired(List<String> objectNames, PurgeListener<? super K> purgeListener) {
+      if (objectNames.isEmpty()) {
+         return;
+      }
+      removeBlobs(objectNames);
+      for (String objectName : objectNames) {
+         purgeListener.entryPurged((K) keyFromObjectName(objectName));
+      }
+   }
+
+   private static boolean hasExpirationMetadata(StorageMetadata metadata) {
+      Map<String, String> userMetadata = metadata.getUserMetadata();
+      return userMetadata != null && userMetadata.containsKey(EXPIRE_TIME);
    }
 
    @Override
    public int size() {
-      return (int) blobStore.countBlobs(containerName);
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         int result = countEntries();
+         outcome = Outcome.SUCCESS;
+         return result;
+      } finally {
+         metrics.record(Operation.SIZE, outcome, start);
+      }
+   }
+
+   private int countEntries() {
+      flushPendingWrites();
+      if (packStore != null) {
+         return packStore.names(null).count().blockingGet().intValue();
+      }
+      return (int) (blobStore.countBlobs(containerName) - blobStore.countBlobs(containerName, listOptions(INTERNAL_PREFIX, null)));
    }
 
    @Override
    public boolean contains(Object key) {
-      String objectName = encodeKey(key);
-      Blob blob = blobStore.getBlob(containerName, objectName);
+      return exists(objectName(key));
+   }
+
+   @Override
+   public boolean contains(int segment, Object key) {
+      return exists(objectName(segment, key));
+   }
+
+   /**
+    * The statistics count the expired entries as misses, which only loads tell apart.
+    */
+   private boolean exists(String objectName) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         boolean result = mightExist(objectName) && containsEntry(objectName);
+         outcome = result ? Outcome.HIT : Outcome.MISS;
+         return result;
+      } finally {
+         metrics.record(Operation.CONTAINS, outcome, start);
+      }
+   }
+
+   private boolean containsEntry(String objectName) {
+      if (packStore != null) {
+         return packStore.locate(objectName) != null;
+      }
+      WriteBackQueue.Operation pending = pendingOperation(objectName);
+      if (pending != null) {
+         return pending.payload != null && !isExpired(pending.expiryTime);
+      }
+      if (readCache != null) {
+         ReadCache.CachedBlob cached = readCache.get(objectName);
+         if (cached != null && !isExpired(expiryTime(cached.userMetadata, cached.expires))) {
+            return true;
+         }
+      }
+      CompletableFuture<MarshalledEntry<K, V>> load = loadFlights.share(objectName);
+      if (load != null) {
+         MarshalledEntry<K, V> entry = SingleFlight.join(load);
+         return entry != null && entry != EXPIRED;
+      }
+      return containsFlights.execute(objectName, () -> fetchContains(objectName));
+   }
+
+   private boolean fetchContains(String objectName) {
+      Blob blob = getBlob(objectName);
 
       if (blob == null) {
+         recordMissingBlob();
          return false;
       }
 
@@ -424,18 +1350,456 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
 
       if(isExpired(blobMetadata)) {
          blobStore.removeBlob(containerName, objectName);
+         invalidateCached(objectName);
          return false;
       } else {
          return true;
       }
    }
 
+   @Override
+   public int size(IntSet segments) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         int result = countEntries(segments);
+         outcome = Outcome.SUCCESS;
+         return result;
+      } finally {
+         metrics.record(Operation.SIZE, outcome, start);
+      }
+   }
+
+   private int countEntries(IntSet segments) {
+      flushPendingWrites();
+      if (!segmented || packStore != null) {
+         return (int) Flowable.fromPublisher(publishKeys(segments, null)).count().blockingGet().longValue();
+      }
+      return Flowable.fromIterable(segments)
+            .flatMap(segment -> Flowable.fromCallable(() -> blobStore.countBlobs(containerName, listOptions(segmentPrefix(segment), null)))
+                  .subscribeOn(ioScheduler), configuration.maxConcurrentRequests())
+            .reduce(0L, Long::sum)
+            .blockingGet().intValue();
+   }
+
+   @Override
+   public Flowable<K> publishKeys(IntSet segments, Predicate<? super K> filter) {
+      return afterPendingWrites(publishObjectNames(segments)
+            .map(objectName -> (K) keyFromObjectName(objectName))
+            .filter(key -> acceptKey(segments, filter, key)));
+   }
+
+   /**
+    * @return the given publisher, subscribed once the pending writes are stored
+    */
+   private <T> Flowable<T> afterPendingWrites(Flowable<T> flowable) {
+      return writeBackQueue == null ? flowable : Completable.fromAction(writeBackQueue::flush).andThen(flowable);
+   }
+
+   @Override
+   public Flowable<MarshalledEntry<K, V>> publishEntries(IntSet segments, Predicate<? super K> filter, boolean fetchValue,
+         boolean fetchMetadata) {
+      if (!fetchValue && !fetchMetadata) {
+         return publishKeys(segments, filter)
+               .map(key -> initializationContext.getMarshalledEntryFactory().newMarshalledEntry(key, (Object) null, null));
+      }
+      if (packStore != null) {
+         return packStore.records(objectName -> inSegments(segments, objectName) && acceptKey(segments, filter, (K) keyFromObjectName(objectName)))
+               .map(record -> newMarshalledEntry(keyFromObjectName(record.name), record));
+      }
+      if (snapshotStore != null) {
+         return afterPendingWrites(publishFromSnapshot(segments, filter, fetchValue));
+      }
+      return afterPendingWrites(publishObjectNames(segments).flatMapMaybe(objectName -> Maybe.fromCallable(() -> {
+         K key = (K) keyFromObjectName(objectName);
+         if (!acceptKey(segments, filter, key)) {
+            return null;
+         }
+         return fetchValue ? loadEntry(objectName, key) : loadMetadata(objectName, key);
+      }).subscribeOn(forkScheduler), false, configuration.maxConcurrentRequests()));
+   }
+
+   /**
+    * Publishes the entries found in the snapshot as they are streamed, then loads the tail of each
+    * group, the entries which were written since the snapshot, from their blobs.
+    */
+   private Flowable<MarshalledEntry<K, V>> publishFromSnapshot(IntSet segments, Predicate<? super K> filter, boolean fetchValue) {
+      return snapshotStore.records(listingPrefixes(segments)).flatMapMaybe(record -> {
+         K key = (K) keyFromObjectName(record.name);
+         if (!acceptKey(segments, filter, key)) {
+            return Maybe.empty();
+         }
+         if (record.payload != null) {
+            MarshalledEntry<K, V> entry = fetchValue ? headerEntry(key, record.payload) : metadataEntry(key, record.payload, null, null);
+            boolean expired = entry.getMetadata() != null && entry.getMetadata().isExpired(initializationContext.getTimeService().wallClockTime());
+            return expired ? Maybe.empty() : Maybe.just(entry);
+         }
+         return Maybe.fromCallable(() -> fetchValue ? loadEntry(record.name, key) : loadMetadata(record.name, key)).subscribeOn(forkScheduler);
+      }, false, configuration.maxConcurrentRequests());
+   }
+
+   /**
+    * Writes a snapshot of the entries now, in addition to those written every
+    * {@link CloudStoreConfiguration#snapshotInterval()}.
+    *
+    * @throws IllegalStateException if the store is not configured to write snapshots
+    */
+   public void writeSnapshot() {
+      if (snapshotStore == null) {
+         throw new IllegalStateException("Snapshots are not enabled for container " + containerName);
+      }
+      flushPendingWrites();
+      snapshotStore.write(listingPrefixes(null));
+   }
+
+   /**
+    * @param segments the segments to publish, or {@code null} for all of them
+    */
+   private boolean acceptKey(IntSet segments, Predicate<? super K> filter, K key) {
+      // the flat layout cannot list a segment on its own, so its keys have to be filtered here
+      return (segmented || segments == null || segments.contains(keyPartitioner.getSegment(key))) && (filter == null || filter.test(key));
+   }
+
+   /**
+    * @return whether a name of the segmented layout belongs to the given segments
+    */
+   private boolean inSegments(IntSet segments, String objectName) {
+      return !segmented || segments == null || segments.contains(Integer.parseInt(objectName.substring(0, objectName.indexOf('/'))));
+   }
+
+   private Flowable<String> publishObjectNames(IntSet segments) {
+      if (packStore != null) {
+         return packStore.names(objectName -> inSegments(segments, objectName));
+      }
+      return publishBlobs(segments, false).map(StorageMetadata::getName);
+   }
+
+   private Flowable<StorageMetadata> publishBlobs(IntSet segments, boolean details) {
+      Flowable<StorageMetadata> blobs = Flowable.fromIterable(listingPrefixes(segments))
+            .flatMap(prefix -> listGroup(prefix, details), configuration.maxConcurrentRequests());
+      if (segments == null && bloomFilter != null && !bloomFilterComplete) {
+         // a complete listing has seen every stored name, so the filter can be trusted once it is over
+         blobs = blobs.doOnNext(metadata -> bloomFilter.add(metadata.getName()))
+               .doOnComplete(() -> bloomFilterComplete = true);
+      }
+      return blobs;
+   }
+
+   /**
+    * @return the prefixes under which the blobs of the given segments are listed, an empty prefix
+    * standing for the whole container
+    */
+   private List<String> listingPrefixes(IntSet segments) {
+      List<String> prefixes = new ArrayList<>();
+      if (segmented) {
+         for (int segment : segments == null ? allSegments() : segments) {
+            prefixes.add(segmentPrefix(segment));
+         }
+      } else if (listingPartitions > 0) {
+         for (int partition = 0; partition < listingPartitions; partition++) {
+            prefixes.add(segmentPrefix(partition));
+         }
+      } else {
+         prefixes.add("");
+      }
+      return prefixes;
+   }
+
+   private Flowable<StorageMetadata> listGroup(String prefix, boolean details) {
+      if (prefix.isEmpty()) {
+         return listBlobs(null, details).filter(metadata -> !metadata.getName().startsWith(INTERNAL_PREFIX));
+      }
+      return listBlobs(prefix, details);
+   }
+
+   @Override
+   public Flowable<K> publishKeys(Predicate<? super K> filter) {
+      return publishKeys(null, filter);
+   }
+
+   @Override
+   public Flowable<MarshalledEntry<K, V>> publishEntries(Predicate<? super K> filter, boolean fetchValue, boolean fetchMetadata) {
+      return publishEntries(null, filter, fetchValue, fetchMetadata);
+   }
+
+   @Override
+   public void clear(IntSet segments) {
+      long start = metrics.start();
+      Outcome outcome = Outcome.ERROR;
+      try {
+         clearSegments(segments);
+         outcome = Outcome.SUCCESS;
+      } finally {
+         metrics.record(Operation.CLEAR, outcome, start);
+      }
+   }
+
+   private void clearSegments(IntSet segments) {
+      if (segmented && packStore != null) {
+         packStore.clear(group -> segments.contains(Integer.parseInt(group.substring(0, group.length() - 1))));
+         return;
+      }
+      // the pending deletes go first, so that a listed name cannot be written back once cleared
+      flushPendingWrites();
+      if (!segmented) {
+         deleteBatch(Flowable.fromPublisher(publishKeys(segments, null)).map(key -> (Object) key).blockingIterable());
+         return;
+      }
+      BlobRequestPipeline pipeline = new BlobRequestPipeline(ioExecutor, configuration.maxConcurrentRequests());
+      for (int segment : segments) {
+         pipeline.submit(segment, () -> removeObjects(listObjectNames(segmentPrefix(segment))));
+      }
+      pipeline.await();
+   }
+
+   @Override
+   public void removeSegments(IntSet segments) {
+      // only invoked for stores which are not shared, the segments are no longer owned by this node
+      if (segmented) {
+         clear(segments);
+      }
+   }
+
+   private IntSet allSegments() {
+      return IntSets.immutableRangeSet(numSegments);
+   }
+
+   private void removeObjects(Flowable<String> objectNames) {
+      objectNames.buffer(DELETE_BATCH_SIZE).blockingForEach(this::removeBlobs);
+   }
+
+   private void removeBlobs(List<String> objectNames) {
+      blobStore.removeBlobs(containerName, objectNames);
+      for (String objectName : objectNames) {
+         invalidateCached(objectName);
+      }
+   }
+
+   private ListContainerOptions listOptions(String prefix, String marker) {
+      return listOptions(prefix, marker, false);
+   }
+
+   private ListContainerOptions listOptions(String prefix, String marker, boolean details) {
+      ListContainerOptions options = new ListContainerOptions().recursive();
+      if (details) {
+         options.withDetails();
+      }
+      if (prefix != null) {
+         options.prefix(prefix);
+      }
+      if (marker != null) {
+         options.afterMarker(marker);
+      }
+      return options;
+   }
+
+   /**
+    * Lists the names of all blobs under the given prefix, page by page as they are requested. Pages
+    * are listed on the I/O threads and the next page is requested while the current one is
+    * consumed, so listing overlaps with whatever is done with the names. At most
+    * {@link #LISTING_PREFETCH_PAGES} pages are buffered.
+    */
+   private Flowable<String> listObjectNames(String prefix) {
+      return listBlobs(prefix, false).map(StorageMetadata::getName);
+   }
+
+   private Flowable<StorageMetadata> listBlobs(String prefix, boolean details) {
+      return Flowable.<PageSet<? extends StorageMetadata>, String[]>generate(() -> new String[1], (marker, emitter) -> {
+         PageSet<? extends StorageMetadata> page = blobStore.list(containerName, listOptions(prefix, marker[0], details));
+         emitter.onNext(page);
+         marker[0] = page.getNextMarker();
+         if (marker[0] == null) {
+            emitter.onComplete();
+         }
+         return marker;
+      }).subscribeOn(ioScheduler)
+            .concatMapIterable(page -> (Iterable<StorageMetadata>) page, LISTING_PREFETCH_PAGES)
+            .filter(metadata -> metadata.getType() == StorageType.BLOB);
+   }
+
+   /**
+    * Asynchronous variant of {@link #load(Object)}. The request is executed on the store's I/O
+    * threads, so the caller is never blocked on the network round trip, unless the number of
+    * pending requests exceeds {@link CloudStoreConfiguration#maxPendingRequests()}.
+    */
+   public CompletionStage<MarshalledEntry<K, V>> loadAsync(Object key) {
+      if (!mightExist(objectName(key))) {
+         return CompletableFuture.completedFuture(null);
+      }
+      return ioExecutor.submit(() -> load(key));
+   }
+
+   /**
+    * Asynchronous variant of {@link #contains(Object)}.
+    */
+   public CompletionStage<Boolean> containsAsync(Object key) {
+      if (!mightExist(objectName(key))) {
+         return CompletableFuture.completedFuture(false);
+      }
+      return ioExecutor.submit(() -> contains(key));
+   }
+
+   /**
+    * Asynchronous variant of {@link #write(MarshalledEntry)}.
+    */
+   public CompletionStage<Void> writeAsync(MarshalledEntry<? extends K, ? extends V> entry) {
+      return ioExecutor.submit(() -> {
+         write(entry);
+         return null;
+      });
+   }
+
+   /**
+    * Asynchronous variant of {@link #delete(Object)}.
+    */
+   public CompletionStage<Boolean> deleteAsync(Object key) {
+      return ioExecutor.submit(() -> delete(key));
+   }
+
+   /**
+    * @return the number of blob requests currently being executed by the store's I/O threads
+    */
+   public int getActiveRequests() {
+      return ioExecutor.getActiveCount();
+   }
+
+   /**
+    * @return the number of blob requests waiting for a free I/O thread
+    */
+   public int getQueuedRequests() {
+      return ioExecutor.getQueueDepth();
+   }
+
+   /**
+    * @return the number of blob requests executed by the store's I/O threads since it was started
+    */
+   public long getCompletedRequests() {
+      return ioExecutor.getCompletedCount();
+   }
+
+   /**
+    * @return how many times a caller was blocked because the pending request limit was reached
+    */
+   public long getBlockedSubmissions() {
+      return ioExecutor.getBlockedCount();
+   }
+
+   /**
+    * @return the number of lookups answered by the Bloom filter without a request to the blob store
+    */
+   public long getBloomFilterAvoidedRequests() {
+      return bloomFilterAvoided.sum();
+   }
+
+   /**
+    * @return the number of lookups the Bloom filter let through for blobs which did not exist
+    */
+   public long getBloomFilterFalsePositives() {
+      return bloomFilterFalsePositives.sum();
+   }
+
+   /**
+    * @return the fraction of lookups for missing blobs which the Bloom filter failed to reject
+    */
+   public double getBloomFilterFalsePositiveRate() {
+      long falsePositives = bloomFilterFalsePositives.sum();
+      long negatives = falsePositives + bloomFilterAvoided.sum();
+      return negatives == 0 ? 0 : (double) falsePositives / negatives;
+   }
+
+   /**
+    * @return the number of lookups served by the local read cache
+    */
+   public long getReadCacheHits() {
+      return readCache == null ? 0 : readCache.getHits();
+   }
+
+   /**
+    * @return the number of lookups which the local read cache could not serve
+    */
+   public long getReadCacheMisses() {
+      return readCache == null ? 0 : readCache.getMisses();
+   }
+
+   /**
+    * @return the number of names with a write or delete waiting in the write-back queue
+    */
+   public int getPendingWrites() {
+      return writeBackQueue == null ? 0 : writeBackQueue.getPendingCount();
+   }
+
+   /**
+    * @return the number of writes and deletes which replaced a pending one, and were never sent
+    */
+   public long getCoalescedWrites() {
+      return writeBackQueue == null ? 0 : writeBackQueue.getCoalescedCount();
+   }
+
+   /**
+    * @return the number of loads and contains served by the request of a concurrent caller for the same key
+    */
+   public long getCoalescedLoads() {
+      return loadFlights.getSharedCount() + containsFlights.getSharedCount();
+   }
+
+   /**
+    * @return the latency histograms and request counters of the store, which are also registered with
+    * JMX when the JMX statistics of the cache manager are enabled
+    */
+   public CloudStoreMetrics getMetrics() {
+      return metrics;
+   }
+
+   /**
+    * @return the number of entries iterated from a snapshot, without a request of their own
+    */
+   public long getSnapshotEntries() {
+      return snapshotStore == null ? 0 : snapshotStore.getSnapshotEntries();
+   }
+
+   /**
+    * @return the number of entries iterated from their own blob, as they were not in the snapshot
+    */
+   public long getSnapshotTailEntries() {
+      return snapshotStore == null ? 0 : snapshotStore.getTailEntries();
+   }
+
+   /*package*/ boolean isBloomFilterComplete() {
+      return bloomFilterComplete;
+   }
+
+   /*package*/ boolean hasCompressionDictionary() {
+      return payloadCodec.hasDictionary();
+   }
+
+   /**
+    * Gives the container a new epoch, so that the read caches filled before are discarded when they
+    * are next opened.
+    */
+   private String nextEpoch() {
+      String epoch = UUID.randomUUID().toString();
+      blobStore.putBlob(containerName, blobStore.blobBuilder(EPOCH)
+            .payload(epoch.getBytes(StandardCharsets.UTF_8))
+            .build());
+      return epoch;
+   }
+
+   private Codec codec() {
+      if (configuration.codec() != null) {
+         return Codecs.forName(configuration.codec());
+      }
+      return configuration.compress() ? Codecs.GZIP : Codecs.NONE;
+   }
+
    public String getContainerName() {
       return containerName;
    }
    
    public void removeContainer() {
       blobStore.clearContainer(containerName);
+      if (readCache != null) {
+         readCache.clear();
+      }
       blobStore.deleteContainer(containerName);
    }
    
@@ -444,8 +1808,21 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
    }
    
    protected boolean isExpired(BlobMetadata blobMetadata) {
-      long now = initializationContext.getTimeService().wallClockTime();
-      Map<String, String> ispnMetadata = blobMetadata.getUserMetadata();
+      return isExpired(expiryTime(blobMetadata));
+   }
+
+   private boolean isExpired(long expiryTime) {
+      return expiryTime > -1 && expiryTime < initializationContext.getTimeService().wallClockTime();
+   }
+
+   /**
+    * @return the time at which the entry of the given blob expires, or -1 if it never does
+    */
+   protected long expiryTime(BlobMetadata blobMetadata) {
+      return expiryTime(blobMetadata.getUserMetadata(), blobMetadata.getContentMetadata().getExpires());
+   }
+
+   private static long expiryTime(Map<String, String> ispnMetadata, Date expires) {
       long et = -1;
 
       if (ispnMetadata != null && ispnMetadata.containsKey(EXPIRE_TIME)) {
@@ -453,46 +1830,15 @@ public class CloudStore<K, V> implements AdvancedLoadWriteStore<K, V> {
             et = ispnMetadata.containsKey(EXPIRE_TIME) ? Long.parseLong(ispnMetadata.get(EXPIRE_TIME)) : -1;
          } catch(NumberFormatException e) {
             // fall back to blob store expires time
-            if (blobMetadata.getContentMetadata().getExpires() != null)
-               et = blobMetadata.getContentMetadata().getExpires().getTime();
+            if (expires != null)
+               et = expires.getTime();
          }
       } else {
-         if (blobMetadata.getContentMetadata().getExpires() != null)
-            et = blobMetadata.getContentMetadata().getExpires().getTime();
+         if (expires != null)
+            et = expires.getTime();
       }
 
-      return (et > -1 && et < now);
-   }
-
-   private byte[] uncompress(byte[] compressedByteArray) throws IOException, PersistenceException {
-      ByteArrayInputStream bis = new ByteArrayInputStream(compressedByteArray);
-
-      GZIPInputStream is = new GZIPInputStream(bis);
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Streams.copy(is, bos);
-      final byte[] uncompressedByteArray = bos.toByteArray();
-
-      is.close();
-      bis.close();
-      bos.close();
-      return uncompressedByteArray;
-   }
-
-   private byte[] compress(final byte[] uncompressedByteArray) throws IOException {
-      InputStream input = new ByteArrayInputStream(uncompressedByteArray);
-
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      GZIPOutputStream output = new GZIPOutputStream(baos);
-
-      Streams.copy(input, output);
-      output.close();
-      input.close();
-
-      final byte[] compressedByteArray = baos.toByteArray();
-
-      baos.close();
-
-      return compressedByteArray;
+      return et;
    }
 
 }
@@ -0,0 +1,511 @@
+package org.infinispan.persistence.cloud;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.global.GlobalJmxStatisticsConfiguration;
+import org.infinispan.factories.components.ManageableComponentMetadata;
+import org.infinispan.jmx.CacheJmxRegistration;
+import org.infinispan.jmx.ComponentsJmxRegistration;
+import org.infinispan.jmx.ResourceDMBean;
+import org.infinispan.jmx.annotations.DataType;
+import org.infinispan.jmx.annotations.DisplayType;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
+import org.infinispan.jmx.annotations.MeasurementType;
+import org.infinispan.jmx.annotations.Parameter;
+
+/**
+ * Statistics of a {@link CloudStore}: latency histograms per operation and outcome, and counters of
+ * the requests, retries, throttled and hedged requests, in-flight operations and bytes written and
+ * read, before and after compression, along with the adaptive limit of the concurrent requests and
+ * the delay after which the lookups are hedged. Recording never allocates, so the store records
+ * every operation. The store registers this component with JMX, next to the components of its
+ * cache, when the JMX statistics of the cache manager are enabled.
+ *
+ * @since 9.0
+ */
+@MBean(objectName = "CloudStore", description = "Statistics of the cloud store of the cache")
+public final class CloudStoreMetrics {
+   private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+   /**
+    * The operations of the store whose latency is recorded.
+    */
+   public enum Operation {
+      LOAD(true), CONTAINS(true), WRITE, DELETE, WRITE_BATCH, DELETE_BATCH, PROCESS, PURGE, SIZE, CLEAR, START;
+
+      final boolean lookup;
+
+      Operation() {
+         this(false);
+      }
+
+      Operation(boolean lookup) {
+         this.lookup = lookup;
+      }
+
+      Set<Outcome> outcomes() {
+         return lookup ? EnumSet.of(Outcome.HIT, Outcome.MISS, Outcome.EXPIRED, Outcome.ERROR) : EnumSet.of(Outcome.SUCCESS, Outcome.ERROR);
+      }
+   }
+
+   /**
+    * How an operation ended: lookups end with a hit, a miss or an expired entry, the other
+    * operations with a success, and all of them may fail.
+    */
+   public enum Outcome {
+      SUCCESS, HIT, MISS, EXPIRED, ERROR
+   }
+
+   private final LatencyHistogram[][] histograms = new LatencyHistogram[Operation.values().length][Outcome.values().length];
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private final LongAdder retries = new LongAdder();
+   private final LongAdder throttled = new LongAdder();
+   private final LongAdder retryBudgetExhausted = new LongAdder();
+   private final LongAdder hedges = new LongAdder();
+   private final LongAdder hedgesWon = new LongAdder();
+   private final LongSupplier queuedRetries;
+   private final LongAdder rawBytesOut = new LongAdder();
+   private final LongAdder compressedBytesOut = new LongAdder();
+   private final LongAdder rawBytesIn = new LongAdder();
+   private final LongAdder compressedBytesIn = new LongAdder();
+   private final Rate operationRate = new Rate(System::nanoTime);
+   private final Rate bytesOutRate = new Rate(System::nanoTime);
+   private final Rate bytesInRate = new Rate(System::nanoTime);
+   private volatile AdaptiveConcurrencyLimiter limiter;
+   private volatile HedgedRequests hedgedRequests;
+   private MBeanServer mBeanServer;
+   private ObjectName objectName;
+
+   /**
+    * @param queuedRetries the number of requests retried by the components which count their own
+    */
+   CloudStoreMetrics(LongSupplier queuedRetries) {
+      this.queuedRetries = queuedRetries;
+      for (Operation operation : Operation.values()) {
+         for (Outcome outcome : operation.outcomes()) {
+            histograms[operation.ordinal()][outcome.ordinal()] = new LatencyHistogram();
+         }
+      }
+   }
+
+   /**
+    * Marks the start of an operation, which must be followed by {@link #record(Operation, Outcome, long)}.
+    *
+    * @return the start time to record the operation with
+    */
+   long start() {
+      inFlight.incrementAndGet();
+      return System.nanoTime();
+   }
+
+   /**
+    * Records the latency of an operation which started at the given time.
+    */
+   void record(Operation operation, Outcome outcome, long startNanos) {
+      long now = System.nanoTime();
+      histogram(operation, outcome).record(now - startNanos);
+      operationRate.add(1, now);
+      inFlight.decrementAndGet();
+   }
+
+   void recordRetry() {
+      retries.increment();
+   }
+
+   void recordThrottle() {
+      throttled.increment();
+   }
+
+   void recordRetryBudgetExhausted() {
+      retryBudgetExhausted.increment();
+   }
+
+   void trackLimiter(AdaptiveConcurrencyLimiter limiter) {
+      this.limiter = limiter;
+   }
+
+   void recordHedge() {
+      hedges.increment();
+   }
+
+   void recordHedgeWon() {
+      hedgesWon.increment();
+   }
+
+   void trackHedgedRequests(HedgedRequests hedgedRequests) {
+      this.hedgedRequests = hedgedRequests;
+   }
+
+   /**
+    * Records the encoding of a value of {@code rawLength} bytes into a payload of {@code compressedLength} bytes.
+    */
+   void recordOut(long rawLength, long compressedLength) {
+      rawBytesOut.add(rawLength);
+      compressedBytesOut.add(compressedLength);
+      bytesOutRate.add(compressedLength);
+   }
+
+   /**
+    * Records the decoding of a payload of {@code compressedLength} bytes into a value of {@code rawLength} bytes.
+    */
+   void recordIn(long rawLength, long compressedLength) {
+      rawBytesIn.add(rawLength);
+      compressedBytesIn.add(compressedLength);
+      bytesInRate.add(compressedLength);
+   }
+
+   LatencyHistogram histogram(Operation operation, Outcome outcome) {
+      LatencyHistogram histogram = histograms[operation.ordinal()][outcome.ordinal()];
+      if (histogram == null) {
+         throw new IllegalArgumentException(operation + " operations never end with outcome " + outcome);
+      }
+      return histogram;
+   }
+
+   @ManagedAttribute(description = "Number of operations completed by the store", displayName = "Requests",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getRequests() {
+      long requests = 0;
+      for (LatencyHistogram[] outcomes : histograms) {
+         for (LatencyHistogram histogram : outcomes) {
+            if (histogram != null) {
+               requests += histogram.count();
+            }
+         }
+      }
+      return requests;
+   }
+
+   @ManagedAttribute(description = "Number of operations which failed", displayName = "Errors",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getErrors() {
+      long errors = 0;
+      for (Operation operation : Operation.values()) {
+         errors += histogram(operation, Outcome.ERROR).count();
+      }
+      return errors;
+   }
+
+   @ManagedAttribute(description = "Number of requests sent again after a failure", displayName = "Retries",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getRetries() {
+      return retries.sum() + queuedRetries.getAsLong();
+   }
+
+   @ManagedAttribute(description = "Number of blob store requests which the provider throttled", displayName = "Throttled requests",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getThrottledRequests() {
+      return throttled.sum();
+   }
+
+   @ManagedAttribute(description = "Number of throttled requests which failed because the retry budget was spent",
+         displayName = "Retry budget exhausted", measurementType = MeasurementType.TRENDSUP)
+   public long getRetryBudgetExhausted() {
+      return retryBudgetExhausted.sum();
+   }
+
+   @ManagedAttribute(description = "Number of blob store requests which may currently be in flight, 0 unless adaptive concurrency is enabled",
+         displayName = "Concurrency limit")
+   public int getConcurrencyLimit() {
+      AdaptiveConcurrencyLimiter limiter = this.limiter;
+      return limiter == null ? 0 : limiter.getLimit();
+   }
+
+   @ManagedAttribute(description = "Number of times the concurrency limit was lowered after a throttled request",
+         displayName = "Concurrency limit decreases", measurementType = MeasurementType.TRENDSUP)
+   public long getConcurrencyLimitDecreases() {
+      AdaptiveConcurrencyLimiter limiter = this.limiter;
+      return limiter == null ? 0 : limiter.getDecreaseCount();
+   }
+
+   @ManagedAttribute(description = "Number of lookups whose request was sent a second time because the first one was slow",
+         displayName = "Hedged requests", measurementType = MeasurementType.TRENDSUP)
+   public long getHedgedRequests() {
+      return hedges.sum();
+   }
+
+   @ManagedAttribute(description = "Number of hedged lookups which the second request answered first",
+         displayName = "Hedges won", measurementType = MeasurementType.TRENDSUP)
+   public long getHedgesWon() {
+      return hedgesWon.sum();
+   }
+
+   @ManagedAttribute(description = "Delay after which the request of a lookup is hedged, in microseconds, -1 until it is known or unless hedging is enabled",
+         displayName = "Hedge delay")
+   public long getHedgeDelay() {
+      HedgedRequests hedgedRequests = this.hedgedRequests;
+      long delay = hedgedRequests == null ? Long.MAX_VALUE : hedgedRequests.getDelay();
+      return delay == Long.MAX_VALUE ? -1 : TimeUnit.NANOSECONDS.toMicros(delay);
+   }
+
+   @ManagedAttribute(description = "Number of operations in progress", displayName = "In-flight requests")
+   public int getInFlightRequests() {
+      return inFlight.get();
+   }
+
+   @ManagedAttribute(description = "Bytes of the values written, before compression", displayName = "Raw bytes out",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getRawBytesOut() {
+      return rawBytesOut.sum();
+   }
+
+   @ManagedAttribute(description = "Bytes of the payloads written, after compression", displayName = "Compressed bytes out",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getCompressedBytesOut() {
+      return compressedBytesOut.sum();
+   }
+
+   @ManagedAttribute(description = "Bytes of the values read, after decompression", displayName = "Raw bytes in",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getRawBytesIn() {
+      return rawBytesIn.sum();
+   }
+
+   @ManagedAttribute(description = "Bytes of the payloads read, before decompression", displayName = "Compressed bytes in",
+         measurementType = MeasurementType.TRENDSUP)
+   public long getCompressedBytesIn() {
+      return compressedBytesIn.sum();
+   }
+
+   @ManagedAttribute(description = "Operations completed per second over the last minute", displayName = "Throughput")
+   public double getThroughput() {
+      return operationRate.perSecond();
+   }
+
+   @ManagedAttribute(description = "Payload bytes written per second over the last minute", displayName = "Bytes out per second")
+   public double getBytesOutPerSecond() {
+      return bytesOutRate.perSecond();
+   }
+
+   @ManagedAttribute(description = "Payload bytes read per second over the last minute", displayName = "Bytes in per second")
+   public double getBytesInPerSecond() {
+      return bytesInRate.perSecond();
+   }
+
+   @ManagedAttribute(description = "99th percentile of the latency of the loads which found their entry, in microseconds",
+         displayName = "Load hit latency p99")
+   public long getLoadHitLatencyP99() {
+      return TimeUnit.NANOSECONDS.toMicros(histogram(Operation.LOAD, Outcome.HIT).percentile(99));
+   }
+
+   @ManagedAttribute(description = "99th percentile of the latency of the writes, in microseconds", displayName = "Write latency p99")
+   public long getWriteLatencyP99() {
+      return TimeUnit.NANOSECONDS.toMicros(histogram(Operation.WRITE, Outcome.SUCCESS).percentile(99));
+   }
+
+   @ManagedAttribute(description = "Latency percentiles of every operation and outcome, in microseconds", displayName = "Latencies",
+         dataType = DataType.TRAIT, displayType = DisplayType.DETAIL)
+   public String getLatencies() {
+      StringBuilder summary = new StringBuilder();
+      for (Operation operation : Operation.values()) {
+         appendLatencies(summary, operation);
+      }
+      return summary.toString();
+   }
+
+   @ManagedOperation(description = "Returns the latency percentiles of an operation, per outcome, in microseconds",
+         displayName = "Latencies of an operation")
+   public String latencies(@Parameter(name = "operation", description = "The operation, such as load, write or purge") String operation) {
+      StringBuilder summary = new StringBuilder();
+      appendLatencies(summary, Operation.valueOf(operation.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+      return summary.toString();
+   }
+
+   private void appendLatencies(StringBuilder summary, Operation operation) {
+      for (Outcome outcome : operation.outcomes()) {
+         LatencyHistogram histogram = histogram(operation, outcome);
+         long count = histogram.count();
+         if (count == 0) {
+            continue;
+         }
+         summary.append(operation.name().toLowerCase(Locale.ROOT)).append(' ').append(outcome.name().toLowerCase(Locale.ROOT))
+               .append(": count=").append(count)
+               .append(" mean=").append(TimeUnit.NANOSECONDS.toMicros((long) histogram.mean()));
+         for (double percentile : PERCENTILES) {
+            summary.append(" p").append(percentile == (long) percentile ? Long.toString((long) percentile) : Double.toString(percentile))
+                  .append('=').append(TimeUnit.NANOSECONDS.toMicros(histogram.percentile(percentile)));
+         }
+         summary.append(" max=").append(TimeUnit.NANOSECONDS.toMicros(histogram.max())).append('\n');
+      }
+   }
+
+   @ManagedOperation(description = "Resets the statistics", displayName = "Reset statistics")
+   public void resetStatistics() {
+      for (LatencyHistogram[] outcomes : histograms) {
+         for (LatencyHistogram histogram : outcomes) {
+            if (histogram != null) {
+               histogram.reset();
+            }
+         }
+      }
+      retries.reset();
+      throttled.reset();
+      retryBudgetExhausted.reset();
+      hedges.reset();
+      hedgesWon.reset();
+      rawBytesOut.reset();
+      compressedBytesOut.reset();
+      rawBytesIn.reset();
+      compressedBytesIn.reset();
+      operationRate.reset();
+      bytesOutRate.reset();
+      bytesInRate.reset();
+   }
+
+   /**
+    * Registers this component with the MBean server of the cache manager, if its JMX statistics are
+    * enabled. The cache registers its own components after its stores are started, so the name is
+    * built the same way rather than looked up.
+    */
+   void register(Cache<?, ?> cache) throws Exception {
+      GlobalJmxStatisticsConfiguration jmx = cache.getCacheManager().getCacheManagerConfiguration().globalJmxStatistics();
+      if (!jmx.enabled() || objectName != null) {
+         return;
+      }
+      MBeanServer server = jmx.mbeanServerLookup().getMBeanServer(jmx.properties());
+      String group = CacheJmxRegistration.CACHE_JMX_GROUP + "," + ComponentsJmxRegistration.NAME_KEY + "="
+            + ObjectName.quote(cache.getName() + "(" + cache.getCacheConfiguration().clustering().cacheModeString().toLowerCase(Locale.ROOT) + ")")
+            + ",manager=" + ObjectName.quote(jmx.cacheManagerName());
+      ObjectName name = new ObjectName(ComponentsJmxRegistration.getObjectName(jmxDomain(server, jmx), group,
+            getClass().getAnnotation(MBean.class).objectName()));
+      server.registerMBean(new ResourceDMBean(this, metadata()), name);
+      mBeanServer = server;
+      objectName = name;
+   }
+
+   /**
+    * @return the domain of the cache manager's components, which differs from the configured one
+    * when the cache manager had to pick another to avoid a conflict
+    */
+   private static String jmxDomain(MBeanServer server, GlobalJmxStatisticsConfiguration jmx) throws Exception {
+      Set<ObjectName> managers = server.queryNames(new ObjectName("*:type=CacheManager,"
+            + ComponentsJmxRegistration.NAME_KEY + "=" + ObjectName.quote(jmx.cacheManagerName()) + ",*"), null);
+      if (managers.size() == 1) {
+         return managers.iterator().next().getDomain();
+      }
+      return jmx.domain();
+   }
+
+   private static ManageableComponentMetadata metadata() {
+      List<Method> attributes = new ArrayList<>();
+      List<Method> operations = new ArrayList<>();
+      for (Method method : CloudStoreMetrics.class.getMethods()) {
+         if (method.isAnnotationPresent(ManagedAttribute.class)) {
+            attributes.add(method);
+         } else if (method.isAnnotationPresent(ManagedOperation.class)) {
+            operations.add(method);
+         }
+      }
+      return new ManageableComponentMetadata(CloudStoreMetrics.class, Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), false, false, Collections.emptyList(),
+            attributes, operations, CloudStoreMetrics.class.getAnnotation(MBean.class));
+   }
+
+   void unregister() throws Exception {
+      if (objectName != null) {
+         mBeanServer.unregisterMBean(objectName);
+         objectName = null;
+      }
+   }
+
+   /**
+    * @return the name this component is registered with, or {@code null}
+    */
+   ObjectName getObjectName() {
+      return objectName;
+   }
+
+   /**
+    * The rate of the amounts added over the trailing {@link #WINDOW_SECONDS} seconds, kept in buckets
+    * of one second, so that the rate does not depend on when, how often or by whom it is read. The
+    * current second is not counted until it is over, and a rate younger than the window is taken
+    * over its whole life.
+    */
+   static final class Rate {
+      static final int WINDOW_SECONDS = 60;
+      private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+      // the seconds of the window, and the current one
+      private static final int BUCKETS = WINDOW_SECONDS + 1;
+
+      private final LongSupplier clock;
+      private final AtomicLongArray amounts = new AtomicLongArray(BUCKETS);
+      private final AtomicLongArray seconds = new AtomicLongArray(BUCKETS);
+      private volatile long startSecond;
+
+      /**
+       * @param clock the time in nanoseconds
+       */
+      Rate(LongSupplier clock) {
+         this.clock = clock;
+         reset();
+      }
+
+      void add(long amount) {
+         add(amount, clock.getAsLong());
+      }
+
+      /**
+       * Adds an amount at the given time, as read from the clock of this rate.
+       */
+      void add(long amount, long nanos) {
+         long second = Math.floorDiv(nanos, NANOS_PER_SECOND);
+         int bucket = (int) Math.floorMod(second, BUCKETS);
+         if (seconds.get(bucket) != second) {
+            recycle(bucket, second);
+         }
+         amounts.addAndGet(bucket, amount);
+      }
+
+      /**
+       * Gives a bucket to a new second, once a second. The amount is cleared first, so that the
+       * threads which see the new second only add to the cleared bucket.
+       */
+      private synchronized void recycle(int bucket, long second) {
+         if (seconds.get(bucket) < second) {
+            amounts.set(bucket, 0);
+            seconds.set(bucket, second);
+         }
+      }
+
+      double perSecond() {
+         long current = Math.floorDiv(clock.getAsLong(), NANOS_PER_SECOND);
+         long duration = Math.min(WINDOW_SECONDS, current - startSecond);
+         if (duration <= 0) {
+            return 0;
+         }
+         long total = 0;
+         for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long second = seconds.get(bucket);
+            if (second < current && second >= current - duration) {
+               total += amounts.get(bucket);
+            }
+         }
+         return (double) total / duration;
+      }
+
+      synchronized void reset() {
+         for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seconds.set(bucket, Long.MIN_VALUE);
+            amounts.set(bucket, 0);
+         }
+         startSecond = Math.floorDiv(clock.getAsLong(), NANOS_PER_SECOND);
+      }
+   }
+}
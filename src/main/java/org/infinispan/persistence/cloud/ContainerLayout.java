@@ -0,0 +1,67 @@
+package org.infinispan.persistence.cloud;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.infinispan.persistence.cloud.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+
+/**
+ * The settings which decide the names of the blobs, recorded in the container when the store first
+ * starts. A store configured differently would neither find the entries nor overwrite them, but
+ * would write new ones beside them, so it refuses to start instead.
+ *
+ * @since 9.0
+ */
+final class ContainerLayout {
+   private static final Log log = LogFactory.getLog(ContainerLayout.class, Log.class);
+
+   static final String NAME = CloudStore.INTERNAL_PREFIX + "layout";
+
+   private final Map<String, String> settings = new LinkedHashMap<>();
+
+   /**
+    * @param segments the number of segments, which only matters to a segmented store
+    */
+   ContainerLayout(boolean packed, boolean segmented, int segments, int listingPartitions, String keyMapper) {
+      settings.put("packed", String.valueOf(packed));
+      settings.put("segmented", String.valueOf(segmented));
+      if (segmented) {
+         settings.put("segments", String.valueOf(segments));
+      }
+      settings.put("listing-partitions", String.valueOf(listingPartitions));
+      settings.put("key-to-string-mapper", keyMapper);
+   }
+
+   /**
+    * Records the layout in a container which has none, or checks that it is the recorded one.
+    *
+    * @throws org.infinispan.commons.CacheConfigurationException if the container holds another layout
+    */
+   void check(BlobStore blobStore, String containerName) {
+      Blob blob = blobStore.getBlob(containerName, NAME);
+      if (blob == null) {
+         store(blobStore, containerName);
+         return;
+      }
+      String recorded = new String(Blobs.readPayload(blob), StandardCharsets.UTF_8);
+      if (!recorded.equals(toString())) {
+         throw log.layoutMismatch(containerName, recorded, toString());
+      }
+   }
+
+   void store(BlobStore blobStore, String containerName) {
+      blobStore.putBlob(containerName, blobStore.blobBuilder(NAME)
+            .payload(toString().getBytes(StandardCharsets.UTF_8))
+            .build());
+   }
+
+   @Override
+   public String toString() {
+      return settings.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(", "));
+   }
+}
@@ -0,0 +1,230 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.container.versioning.EntryVersion;
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.container.versioning.SimpleClusteredVersion;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.spi.PersistenceException;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * The binary format of the stored entries: a header holding everything the store knows about an
+ * entry, followed by its value as encoded by the {@link PayloadCodec}. The metadata is read back
+ * exactly as it was written, including when the entry was created and last used and its version,
+ * and it does not depend on the user metadata of the blobs, which some providers restrict, rename
+ * or drop.
+ * <p/>
+ * The header starts with a fixed part, in big endian order:
+ * <pre>
+ *  0  magic            2 bytes
+ *  2  format version   1 byte
+ *  3  codec marker     1 byte, see {@link PayloadCodec}
+ *  4  flags            1 byte, how the metadata is stored
+ *  5  reserved         3 bytes
+ *  8  header length    4 bytes
+ * 12  checksum         4 bytes, CRC32 of the whole payload but this field
+ * 16  dictionary id    4 bytes
+ * 20  value length     4 bytes, before compression
+ * 24  created          8 bytes
+ * 32  last used        8 bytes
+ * 40  lifespan         8 bytes
+ * 48  max idle         8 bytes
+ * </pre>
+ * followed by the version of the entry if it has one, or by the marshalled metadata if it is not an
+ * {@link EmbeddedMetadata}. The header of most entries fits in {@link #HEADER_PREFETCH} bytes, so
+ * their metadata is read with a single ranged GET, without downloading the value.
+ *
+ * @since 9.0
+ */
+final class EntryFormat {
+   static final int FIXED_HEADER_SIZE = 56;
+   static final int HEADER_PREFETCH = 128;
+
+   private static final short MAGIC = (short) 0xC10D;
+   private static final byte VERSION = 1;
+   private static final int LENGTH_OFFSET = 8;
+   private static final int CHECKSUM_OFFSET = 12;
+   private static final int NO_METADATA = 1;
+   private static final int NUMERIC_VERSION = 2;
+   private static final int CLUSTERED_VERSION = 4;
+   private static final int MARSHALLED_METADATA = 8;
+
+   private EntryFormat() {
+   }
+
+   /**
+    * @return the header of an entry, to be stored in front of its encoded value
+    */
+   static byte[] header(PayloadCodec.EncodedPayload value, InternalMetadata metadata, StreamingMarshaller marshaller)
+         throws IOException, InterruptedException {
+      int flags = 0;
+      int extraLength = 0;
+      byte[] marshalledMetadata = null;
+      if (metadata == null) {
+         flags = NO_METADATA;
+      } else {
+         Metadata actual = metadata instanceof InternalMetadataImpl ? ((InternalMetadataImpl) metadata).actual() : metadata;
+         EntryVersion version = actual.version();
+         if (!(actual instanceof EmbeddedMetadata) || version != null && !(version instanceof NumericVersion)
+               && !(version instanceof SimpleClusteredVersion)) {
+            flags = MARSHALLED_METADATA;
+            marshalledMetadata = marshaller.objectToByteBuffer(actual);
+            extraLength = 4 + marshalledMetadata.length;
+         } else if (version instanceof NumericVersion) {
+            flags = NUMERIC_VERSION;
+            extraLength = 8;
+         } else if (version instanceof SimpleClusteredVersion) {
+            flags = CLUSTERED_VERSION;
+            extraLength = 12;
+         }
+      }
+      ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_SIZE + extraLength);
+      header.putShort(MAGIC).put(VERSION).put((byte) value.marker).put((byte) flags).position(LENGTH_OFFSET);
+      header.putInt(header.capacity()).putInt(0).putInt(value.dictionaryId).putInt(value.valueLength);
+      if (metadata == null) {
+         header.putLong(-1).putLong(-1).putLong(-1).putLong(-1);
+      } else {
+         header.putLong(metadata.created()).putLong(metadata.lastUsed()).putLong(metadata.lifespan()).putLong(metadata.maxIdle());
+      }
+      if (flags == MARSHALLED_METADATA) {
+         header.putInt(marshalledMetadata.length).put(marshalledMetadata);
+      } else if (flags == NUMERIC_VERSION) {
+         header.putLong(((NumericVersion) metadata.version()).getVersion());
+      } else if (flags == CLUSTERED_VERSION) {
+         SimpleClusteredVersion version = (SimpleClusteredVersion) metadata.version();
+         header.putInt(version.topologyId).putLong(version.version);
+      }
+      byte[] bytes = header.array();
+      header.putInt(CHECKSUM_OFFSET, checksum(bytes, bytes.length, value.bytes, value.offset, value.length));
+      return bytes;
+   }
+
+   /**
+    * @return a payload made of the given header and of the encoded value, which it refers to
+    */
+   static ByteSource payload(byte[] header, PayloadCodec.EncodedPayload value) {
+      return ByteSource.concat(ByteSource.wrap(header), ByteSource.wrap(value.bytes).slice(value.offset, value.length));
+   }
+
+   /**
+    * @return a payload made of the given header and of a copy of the encoded value
+    */
+   static byte[] toArray(byte[] header, PayloadCodec.EncodedPayload value) {
+      byte[] payload = new byte[header.length + value.length];
+      System.arraycopy(header, 0, payload, 0, header.length);
+      System.arraycopy(value.bytes, value.offset, payload, header.length, value.length);
+      return payload;
+   }
+
+   private static int checksum(byte[] header, int headerLength, byte[] value, int offset, int length) {
+      CRC32 crc = new CRC32();
+      crc.update(header, 0, CHECKSUM_OFFSET);
+      crc.update(header, CHECKSUM_OFFSET + 4, headerLength - CHECKSUM_OFFSET - 4);
+      crc.update(value, offset, length);
+      return (int) crc.getValue();
+   }
+
+   /**
+    * @param length the number of bytes available, which may be only the first bytes of a payload
+    * @return the length of the header the bytes start with, or -1 if they do not start with one
+    */
+   static int headerLength(byte[] bytes, int length) {
+      if (length < FIXED_HEADER_SIZE) {
+         return -1;
+      }
+      ByteBuffer header = ByteBuffer.wrap(bytes, 0, length);
+      if (header.getShort(0) != MAGIC) {
+         return -1;
+      }
+      if (bytes[2] != VERSION) {
+         throw new PersistenceException(String.format("Unsupported entry format version %d", bytes[2]));
+      }
+      int headerLength = header.getInt(LENGTH_OFFSET);
+      return headerLength < FIXED_HEADER_SIZE ? -1 : headerLength;
+   }
+
+   /**
+    * Reads the header of a whole payload, after verifying the checksum of the payload.
+    *
+    * @return the header, or {@code null} if the payload does not start with one
+    */
+   static Header read(byte[] payload, StreamingMarshaller marshaller) {
+      int headerLength = headerLength(payload, payload.length);
+      if (headerLength < 0) {
+         return null;
+      }
+      if (headerLength > payload.length
+            || ByteBuffer.wrap(payload).getInt(CHECKSUM_OFFSET) != checksum(payload, headerLength, payload, headerLength, payload.length - headerLength)) {
+         throw new PersistenceException("Checksum mismatch, the stored entry is corrupt");
+      }
+      return readHeader(payload, headerLength, marshaller);
+   }
+
+   /**
+    * Reads a header without verifying the checksum, which needs the whole payload.
+    *
+    * @param headerLength the length returned by {@link #headerLength(byte[], int)}
+    */
+   static Header readHeader(byte[] bytes, int headerLength, StreamingMarshaller marshaller) {
+      ByteBuffer header = ByteBuffer.wrap(bytes, 0, headerLength);
+      int marker = bytes[3] & 0xFF;
+      int flags = bytes[4] & 0xFF;
+      header.position(CHECKSUM_OFFSET + 4);
+      int dictionaryId = header.getInt();
+      int valueLength = header.getInt();
+      long created = header.getLong();
+      long lastUsed = header.getLong();
+      long lifespan = header.getLong();
+      long maxIdle = header.getLong();
+      InternalMetadata metadata = null;
+      if ((flags & NO_METADATA) == 0) {
+         Metadata actual;
+         if ((flags & MARSHALLED_METADATA) != 0) {
+            int length = header.getInt();
+            try {
+               actual = (Metadata) marshaller.objectFromByteBuffer(bytes, header.position(), length);
+            } catch (IOException | ClassNotFoundException e) {
+               throw new PersistenceException(e);
+            }
+         } else {
+            Metadata.Builder builder = new EmbeddedMetadata.Builder()
+                  .lifespan(lifespan, TimeUnit.MILLISECONDS)
+                  .maxIdle(maxIdle, TimeUnit.MILLISECONDS);
+            if ((flags & NUMERIC_VERSION) != 0) {
+               builder.version(new NumericVersion(header.getLong()));
+            } else if ((flags & CLUSTERED_VERSION) != 0) {
+               builder.version(new SimpleClusteredVersion(header.getInt(), header.getLong()));
+            }
+            actual = builder.build();
+         }
+         metadata = new InternalMetadataImpl(actual, created, lastUsed);
+      }
+      return new Header(headerLength, marker, dictionaryId, valueLength, metadata);
+   }
+
+   static final class Header {
+      final int length;
+      final int marker;
+      final int dictionaryId;
+      final int valueLength;
+      final InternalMetadata metadata;
+
+      Header(int length, int marker, int dictionaryId, int valueLength, InternalMetadata metadata) {
+         this.length = length;
+         this.marker = marker;
+         this.dictionaryId = dictionaryId;
+         this.valueLength = valueLength;
+         this.metadata = metadata;
+      }
+   }
+}
@@ -0,0 +1,53 @@
+package org.infinispan.persistence.cloud;
+
+/**
+ * Naming scheme of the expiration index kept in the store's container. For every entry with an
+ * expiration time, an empty marker blob is written under a prefix made of the end of the time
+ * bucket the entry expires in, e.g. {@code .ispn/expiration/0000001546300800000/<object name>}.
+ * Bucket ends are zero padded, so listing the index returns the buckets in expiration order and a
+ * purge can stop listing at the first bucket which is not due yet.
+ * <p/>
+ * Markers are only hints: they are not removed when an entry is deleted or overwritten, so the
+ * entry itself is always checked before it is purged. The index is considered complete only while
+ * the {@link #COMPLETE_MARKER} blob exists; without it, purge falls back to a full scan of the
+ * container which also rebuilds the index.
+ *
+ * @since 9.0
+ */
+final class ExpirationIndex {
+   static final String PREFIX = CloudStore.INTERNAL_PREFIX + "expiration/";
+   static final String COMPLETE_MARKER = CloudStore.INTERNAL_PREFIX + "expiration.complete";
+
+   private final long bucketSize;
+
+   ExpirationIndex(long bucketSize) {
+      this.bucketSize = bucketSize;
+   }
+
+   /**
+    * @return the name of the marker blob of an entry expiring at the given time
+    */
+   String markerName(String objectName, long expiryTime) {
+      long bucketEnd = (expiryTime / bucketSize + 1) * bucketSize;
+      return String.format("%s%019d/%s", PREFIX, bucketEnd, objectName);
+   }
+
+   /**
+    * @return the time at which all the entries of the marker's bucket have expired
+    * @throws IllegalArgumentException if the name is not a valid marker name
+    */
+   static long bucketEnd(String markerName) {
+      int separator = markerName.indexOf('/', PREFIX.length());
+      if (!markerName.startsWith(PREFIX) || separator < 0) {
+         throw new IllegalArgumentException(markerName);
+      }
+      return Long.parseLong(markerName.substring(PREFIX.length(), separator));
+   }
+
+   /**
+    * @return the name of the blob the marker refers to
+    */
+   static String objectName(String markerName) {
+      return markerName.substring(markerName.indexOf('/', PREFIX.length()) + 1);
+   }
+}
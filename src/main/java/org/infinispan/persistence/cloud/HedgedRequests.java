@@ -0,0 +1,284 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Cuts the tail latency of the lookups by hedging their requests: when a request has not answered
+ * once the given percentile of the latency of the lookups has passed, the same request is sent a
+ * second time, the first of the two to answer is used and the other one is cancelled. Only the
+ * slowest requests are hedged, so hedging costs a few percent more requests, and at most
+ * {@code hedgeRate} percent of the requests are hedged, even when the provider slows down as a
+ * whole, in which case the hedges would only add to its load.
+ * <p/>
+ * The delay is the percentile of the latencies recorded during the last second, as soon as
+ * {@value #MIN_SAMPLES} of them were recorded; until then, no request is hedged. The latency of a
+ * lookup is the time until either of its requests answered.
+ * <p/>
+ * The first request runs on the caller's thread. Hedges run on a few threads of their own, and a
+ * hedge which finds them all busy is not sent. When the hedge answers first, the caller's thread is
+ * interrupted to give up on the first request, and returns the answer of the hedge.
+ *
+ * @since 9.0
+ */
+final class HedgedRequests {
+   private static final int MIN_SAMPLES = 100;
+   private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+   private final double percentile;
+   private final HedgeBudget budget;
+   private final CloudStoreMetrics metrics;
+   private final ScheduledThreadPoolExecutor timer;
+   private final ThreadPoolExecutor executor;
+   private final LatencyHistogram latencies = new LatencyHistogram();
+   private volatile long delay = Long.MAX_VALUE;
+   private volatile long refreshed = System.nanoTime();
+
+   /**
+    * @param percentile the percentile of the latency after which a request is hedged
+    * @param hedgeRate the largest percentage of the requests which are hedged
+    * @param maxHedges the largest number of hedges in flight
+    */
+   HedgedRequests(String name, double percentile, int hedgeRate, int maxHedges, CloudStoreMetrics metrics) {
+      this.percentile = percentile;
+      this.budget = new HedgeBudget(hedgeRate / 100.0);
+      this.metrics = metrics;
+      this.timer = new ScheduledThreadPoolExecutor(1, threadFactory(name + "-hedge-timer"));
+      this.timer.setRemoveOnCancelPolicy(true);
+      // no queue: a hedge which would have to wait for a thread is dropped
+      this.executor = new ThreadPoolExecutor(0, maxHedges, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            threadFactory(name + "-hedge"), new ThreadPoolExecutor.AbortPolicy());
+   }
+
+   private static ThreadFactory threadFactory(String name) {
+      AtomicInteger threadCounter = new AtomicInteger();
+      return r -> {
+         Thread thread = new Thread(r, String.format("CloudStore-%s-%d", name, threadCounter.incrementAndGet()));
+         thread.setDaemon(true);
+         return thread;
+      };
+   }
+
+   /**
+    * Sends the given request on the caller's thread, and a second one if the first is too slow to
+    * answer.
+    *
+    * @param discard releases the result of the request which answered last, such as the payload of
+    * a blob
+    */
+   <T> T execute(Supplier<T> request, Consumer<T> discard) {
+      long start = System.nanoTime();
+      budget.deposit();
+      long delay = this.delay;
+      if (delay == Long.MAX_VALUE) {
+         T value = request.get();
+         record(System.nanoTime() - start);
+         return value;
+      }
+      Lookup<T> lookup = new Lookup<>(request, discard);
+      ScheduledFuture<?> hedgeTimer = timer.schedule(lookup::hedge, delay, TimeUnit.NANOSECONDS);
+      try {
+         T value = lookup.run();
+         record(System.nanoTime() - start);
+         return value;
+      } finally {
+         hedgeTimer.cancel(false);
+      }
+   }
+
+   private void record(long latency) {
+      latencies.record(latency);
+      long now = System.nanoTime();
+      if (now - refreshed > REFRESH_INTERVAL) {
+         refreshed = now;
+         // concurrent refreshes are harmless, the samples of a few lookups are lost at worst
+         if (latencies.count() >= MIN_SAMPLES) {
+            delay = latencies.percentile(percentile);
+         }
+         latencies.reset();
+      }
+   }
+
+   /**
+    * @return the delay after which a request is hedged, in nanoseconds, or {@link Long#MAX_VALUE}
+    * until enough latencies were recorded
+    */
+   long getDelay() {
+      return delay;
+   }
+
+   void shutdown() {
+      timer.shutdownNow();
+      executor.shutdownNow();
+   }
+
+   /**
+    * The requests sent for a lookup. The first one runs on the caller's thread, which keeps waiting
+    * for the hedge if the first one fails.
+    */
+   private final class Lookup<T> {
+      private static final int RUNNING = 0;
+      private static final int ANSWERED = 1;
+      private static final int FAILED = 2;
+      private static final int HEDGE_WON = 3;
+      private static final int INTERRUPTED = 4;
+
+      final Supplier<T> request;
+      final Consumer<T> discard;
+      final Thread caller = Thread.currentThread();
+      final AtomicInteger state = new AtomicInteger(RUNNING);
+      // completed by the hedge once the first request failed
+      final CompletableFuture<T> hedgeResult = new CompletableFuture<>();
+      Future<?> hedge;
+      volatile T hedgeValue;
+
+      Lookup(Supplier<T> request, Consumer<T> discard) {
+         this.request = request;
+         this.discard = discard;
+      }
+
+      /**
+       * Sends the hedge, on the timer's thread, unless the first request answered, the budget is
+       * spent or all the hedge threads are busy.
+       */
+      synchronized void hedge() {
+         if (state.get() != RUNNING || !budget.withdraw()) {
+            return;
+         }
+         try {
+            hedge = executor.submit(this::runHedge);
+            metrics.recordHedge();
+         } catch (RejectedExecutionException e) {
+            budget.refund();
+         }
+      }
+
+      private void runHedge() {
+         T value;
+         try {
+            value = request.get();
+         } catch (Throwable t) {
+            hedgeResult.completeExceptionally(t);
+            return;
+         }
+         if (state.compareAndSet(RUNNING, HEDGE_WON)) {
+            hedgeValue = value;
+            caller.interrupt();
+            state.set(INTERRUPTED);
+         } else if (state.get() == FAILED) {
+            hedgeResult.complete(value);
+         } else if (value != null) {
+            discard.accept(value);
+         }
+      }
+
+      T run() {
+         T value = null;
+         Throwable failure = null;
+         try {
+            value = request.get();
+         } catch (Throwable t) {
+            failure = t;
+         }
+         if (failure == null && state.compareAndSet(RUNNING, ANSWERED)) {
+            cancelHedge();
+            return value;
+         }
+         if (failure != null) {
+            Future<?> sent;
+            synchronized (this) {
+               sent = state.compareAndSet(RUNNING, FAILED) ? hedge : null;
+               if (sent == null && state.get() == FAILED) {
+                  throw rethrow(failure);
+               }
+            }
+            if (sent != null) {
+               return awaitHedge(failure);
+            }
+         }
+         // the hedge won, its interruption of this thread must not outlive the lookup
+         while (state.get() != INTERRUPTED) {
+            Thread.yield();
+         }
+         Thread.interrupted();
+         if (value != null) {
+            discard.accept(value);
+         }
+         metrics.recordHedgeWon();
+         return hedgeValue;
+      }
+
+      private T awaitHedge(Throwable failure) {
+         try {
+            T value = hedgeResult.get();
+            metrics.recordHedgeWon();
+            return value;
+         } catch (InterruptedException e) {
+            cancelHedge();
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Interrupted while waiting for a blob store request", e);
+         } catch (ExecutionException e) {
+            throw rethrow(failure);
+         }
+      }
+
+      private synchronized void cancelHedge() {
+         if (hedge != null) {
+            hedge.cancel(true);
+         }
+      }
+
+      private RuntimeException rethrow(Throwable failure) {
+         if (failure instanceof RuntimeException) {
+            return (RuntimeException) failure;
+         }
+         if (failure instanceof Error) {
+            throw (Error) failure;
+         }
+         return new PersistenceException(failure);
+      }
+   }
+
+   /**
+    * Tokens earned by the requests sent, each hedge costing a whole token.
+    */
+   static final class HedgeBudget {
+      private static final double CAPACITY = 10;
+
+      private final double tokensPerRequest;
+      private double tokens;
+
+      HedgeBudget(double tokensPerRequest) {
+         this.tokensPerRequest = tokensPerRequest;
+      }
+
+      synchronized void deposit() {
+         tokens = Math.min(CAPACITY, tokens + tokensPerRequest);
+      }
+
+      synchronized boolean withdraw() {
+         if (tokens < 1) {
+            return false;
+         }
+         tokens--;
+         return true;
+      }
+
+      synchronized void refund() {
+         tokens = Math.min(CAPACITY, tokens + 1);
+      }
+   }
+}
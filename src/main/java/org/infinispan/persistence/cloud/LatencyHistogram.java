@@ -0,0 +1,108 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds, with log-linear buckets in the manner of HdrHistogram: each
+ * power of two is split in {@value #SUB_BUCKETS} buckets of equal width, so that any recorded value
+ * is known within about 3% up to about 18 minutes. Larger values fall in the last bucket. Recording
+ * a value increments a counter of a fixed array and never allocates.
+ *
+ * @since 9.0
+ */
+final class LatencyHistogram {
+   private static final int SUB_BUCKET_BITS = 5;
+   static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   // values up to 2^40 ns, about 18 minutes
+   private static final int MAX_EXPONENT = 39;
+   private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   private final LongAdder count = new LongAdder();
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong();
+
+   void record(long nanos) {
+      long value = Math.max(0, nanos);
+      counts.incrementAndGet(bucket(value));
+      count.increment();
+      sum.add(value);
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+         current = max.get();
+      }
+   }
+
+   static int bucket(long value) {
+      if (value < SUB_BUCKETS) {
+         return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      if (exponent > MAX_EXPONENT) {
+         return BUCKETS - 1;
+      }
+      int shift = exponent - SUB_BUCKET_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+   }
+
+   /**
+    * @return the largest value which falls in the given bucket
+    */
+   static long highestValue(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+         return bucket;
+      }
+      int shift = bucket / SUB_BUCKETS - 1;
+      long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+      return lowest + (1L << shift) - 1;
+   }
+
+   long count() {
+      return count.sum();
+   }
+
+   long max() {
+      return max.get();
+   }
+
+   double mean() {
+      long n = count.sum();
+      return n == 0 ? 0 : (double) sum.sum() / n;
+   }
+
+   /**
+    * @param percentile between 0 and 100
+    * @return the value below which the given percentage of the recorded values fall, or 0 if none
+    * was recorded; values recorded concurrently may or may not be taken into account
+    */
+   long percentile(double percentile) {
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         total += counts.get(i);
+      }
+      if (total == 0) {
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+         seen += counts.get(i);
+         if (seen >= rank) {
+            // the top of the bucket, but never above the largest value actually recorded
+            return Math.min(highestValue(i), max.get());
+         }
+      }
+      return max.get();
+   }
+
+   void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+         counts.set(i, 0);
+      }
+      count.reset();
+      sum.reset();
+      max.set(0);
+   }
+}
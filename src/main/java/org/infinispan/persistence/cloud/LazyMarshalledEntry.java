@@ -0,0 +1,99 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.Objects;
+
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * An entry loaded by the store, backed by the bytes of its value which are only unmarshalled the
+ * first time the value is requested. Loads made to check an entry's metadata, or to copy it to
+ * another store, never pay for unmarshalling. Like the entries of the marshalled entry factory, the
+ * key and metadata bytes are produced on demand.
+ *
+ * @since 9.0
+ */
+final class LazyMarshalledEntry<K, V> implements MarshalledEntry<K, V> {
+   private final K key;
+   private final ByteBuffer valueBytes;
+   private final InternalMetadata metadata;
+   private final StreamingMarshaller marshaller;
+   private volatile V value;
+
+   LazyMarshalledEntry(K key, ByteBuffer valueBytes, InternalMetadata metadata, StreamingMarshaller marshaller) {
+      this.key = key;
+      this.valueBytes = valueBytes;
+      this.metadata = metadata;
+      this.marshaller = marshaller;
+   }
+
+   @Override
+   public ByteBuffer getKeyBytes() {
+      return marshall(key);
+   }
+
+   @Override
+   public ByteBuffer getValueBytes() {
+      return valueBytes;
+   }
+
+   @Override
+   public ByteBuffer getMetadataBytes() {
+      return metadata == null ? null : marshall(metadata);
+   }
+
+   @Override
+   public K getKey() {
+      return key;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public V getValue() {
+      V v = value;
+      if (v == null && valueBytes != null) {
+         try {
+            v = (V) marshaller.objectFromByteBuffer(valueBytes.getBuf(), valueBytes.getOffset(), valueBytes.getLength());
+         } catch (Exception e) {
+            throw new PersistenceException(e);
+         }
+         value = v;
+      }
+      return v;
+   }
+
+   @Override
+   public InternalMetadata getMetadata() {
+      return metadata;
+   }
+
+   private ByteBuffer marshall(Object object) {
+      try {
+         return marshaller.objectToBuffer(object);
+      } catch (Exception e) {
+         throw new PersistenceException(e);
+      }
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof MarshalledEntry)) return false;
+      MarshalledEntry<?, ?> that = (MarshalledEntry<?, ?>) o;
+      return Objects.equals(key, that.getKey()) && Objects.equals(getValue(), that.getValue())
+            && Objects.equals(metadata, that.getMetadata());
+   }
+
+   @Override
+   public int hashCode() {
+      return Objects.hashCode(key);
+   }
+
+   @Override
+   public String toString() {
+      return "LazyMarshalledEntry{key=" + key + ", valueBytes=" + valueBytes + ", metadata=" + metadata + "}";
+   }
+}
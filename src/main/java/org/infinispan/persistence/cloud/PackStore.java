@@ -0,0 +1,849 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import org.infinispan.persistence.cloud.logging.Log;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.logging.LogFactory;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+
+import com.google.common.net.MediaType;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+
+/**
+ * Packed storage layout: instead of one blob per entry, the payloads of many entries are stored
+ * together in immutable pack blobs, under {@code .ispn/packs/[<segment>/]<pack id>}. Each pack
+ * ends with a footer listing its records, so the index which maps every name to its pack, offset
+ * and length is kept in memory and rebuilt from the footers on start. Entries are read with ranged
+ * GETs and lookups for names which are not in the index need no request at all.
+ * <p/>
+ * Writes and deletes are group committed: the records submitted while a pack is being uploaded are
+ * uploaded together as the next packs, split so that none is larger than the pack size unless it
+ * holds a single record, and a write only returns once its packs are stored. Every
+ * record carries a version, and the most recent version of a name wins when the footers are
+ * replayed, regardless of the order of the packs. This lets compaction copy the live records of
+ * packs which are mostly garbage, or too small, into a new pack before deleting them, while
+ * writes go on.
+ * <p/>
+ * The store does not interpret the payloads, but records the {@link PayloadFormat} of each one, so
+ * packs written by earlier versions of the store stay readable.
+ * <p/>
+ * The index is local state, so this layout is only supported by stores which are not shared.
+ *
+ * @since 9.0
+ */
+final class PackStore {
+   private static final Log log = LogFactory.getLog(PackStore.class, Log.class);
+
+   static final String PREFIX = CloudStore.INTERNAL_PREFIX + "packs/";
+
+   private static final int MAGIC = 0x4950434b;
+   private static final int TRAILER_SIZE = 8;
+   // the record count of a footer
+   private static final int FOOTER_HEADER_SIZE = 4;
+   // the type, name length, version, offset, length, lifespan, max idle and expiry time of a footer record
+   private static final int FOOTER_RECORD_SIZE = 45;
+   // packs are built in an array, and their offsets are ints
+   private static final int MAX_PACK_SIZE = Integer.MAX_VALUE - 8;
+   private static final int FOOTER_PREFETCH = 64 * 1024;
+   private static final int SMALL_PACK_MERGE_THRESHOLD = 16;
+   private static final byte RECORD = 1;
+   private static final byte TOMBSTONE = 2;
+   // a record whose payload starts with the header of its entry
+   private static final byte HEADER_RECORD = 3;
+
+   private final BlobStore blobStore;
+   private final String containerName;
+   private final Executor ioExecutor;
+   private final Executor compactionExecutor;
+   private final Scheduler ioScheduler;
+   private final int maxConcurrentRequests;
+   private final boolean segmented;
+   private final long packSize;
+   private final double compactionThreshold;
+   private final LongSupplier clock;
+
+   private final Map<String, Location> index = new ConcurrentHashMap<>();
+   private final Map<String, Pack> packs = new ConcurrentHashMap<>();
+   private final Map<String, GroupWriter> writers = new ConcurrentHashMap<>();
+   private final AtomicLong nextVersion = new AtomicLong(1);
+   private final AtomicLong nextPackId = new AtomicLong(1);
+   private final Map<String, AtomicInteger> smallPacks = new ConcurrentHashMap<>();
+   private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+   private final AtomicBoolean compactionRequested = new AtomicBoolean();
+   private final Object compactionLock = new Object();
+   private volatile boolean stopped;
+
+   PackStore(BlobStore blobStore, String containerName, Executor ioExecutor, Executor compactionExecutor, Scheduler ioScheduler,
+         int maxConcurrentRequests, boolean segmented, long packSize, double compactionThreshold, LongSupplier clock) {
+      this.blobStore = blobStore;
+      this.containerName = containerName;
+      this.ioExecutor = ioExecutor;
+      this.compactionExecutor = compactionExecutor;
+      this.ioScheduler = ioScheduler;
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      this.segmented = segmented;
+      this.packSize = packSize;
+      this.compactionThreshold = compactionThreshold;
+      this.clock = clock;
+   }
+
+   /**
+    * Rebuilds the index from the footers of all the packs in the container.
+    */
+   void start() {
+      List<Map.Entry<Pack, List<FooterRecord>>> footers = listPacks()
+            .flatMap(metadata -> Flowable.fromCallable(() -> {
+               Long size = metadata.getSize();
+               if (size == null) {
+                  size = blobStore.blobMetadata(containerName, metadata.getName()).getSize();
+               }
+               Pack pack = new Pack(metadata.getName(), groupOf(metadata.getName()), size);
+               return (Map.Entry<Pack, List<FooterRecord>>) new SimpleImmutableEntry<>(pack, readFooter(pack));
+            }).subscribeOn(ioScheduler), maxConcurrentRequests)
+            .toList().blockingGet();
+      for (Map.Entry<Pack, List<FooterRecord>> footer : footers) {
+         Pack pack = footer.getKey();
+         pack.size = 0;
+         for (FooterRecord record : footer.getValue()) {
+            pack.add(record);
+            nextVersion.accumulateAndGet(record.version + 1, Math::max);
+            // tombstones are kept until compaction, the records they delete may not be replayed yet
+            apply(record.name, new Location(pack, record), null, true);
+         }
+         addPack(pack);
+         nextPackId.accumulateAndGet(pack.id + 1, Math::max);
+      }
+      requestCompaction();
+   }
+
+   /**
+    * Prevents further compactions, waiting for a running one to complete.
+    */
+   void stop() {
+      stopped = true;
+      synchronized (compactionLock) {
+         compactionRequested.set(false);
+      }
+   }
+
+   private Flowable<StorageMetadata> listPacks() {
+      return Flowable.<PageSet<? extends StorageMetadata>, String[]>generate(() -> new String[1], (marker, emitter) -> {
+         ListContainerOptions options = new ListContainerOptions().prefix(PREFIX).recursive();
+         if (marker[0] != null) {
+            options.afterMarker(marker[0]);
+         }
+         PageSet<? extends StorageMetadata> page = blobStore.list(containerName, options);
+         emitter.onNext(page);
+         marker[0] = page.getNextMarker();
+         if (marker[0] == null) {
+            emitter.onComplete();
+         }
+         return marker;
+      }).concatMapIterable(page -> (Iterable<StorageMetadata>) page)
+            .filter(metadata -> metadata.getType() == StorageType.BLOB);
+   }
+
+   private String groupOf(String name) {
+      // the name of an entry in segmented mode, or of a pack, starts with the segment and a slash
+      if (name.startsWith(PREFIX)) {
+         return name.substring(PREFIX.length(), name.lastIndexOf('/') + 1);
+      }
+      return segmented ? name.substring(0, name.indexOf('/') + 1) : "";
+   }
+
+   /**
+    * Stores the given records, waiting until the packs holding them are uploaded. The records of
+    * different groups are committed concurrently.
+    */
+   void write(Collection<PackRecord> records) {
+      Map<String, List<PackRecord>> byGroup = new HashMap<>();
+      for (PackRecord record : records) {
+         byGroup.computeIfAbsent(groupOf(record.name), g -> new ArrayList<>()).add(record);
+      }
+      if (byGroup.size() == 1) {
+         Map.Entry<String, List<PackRecord>> group = byGroup.entrySet().iterator().next();
+         writers.computeIfAbsent(group.getKey(), GroupWriter::new).commit(group.getValue(), null);
+      } else {
+         BlobRequestPipeline pipeline = new BlobRequestPipeline(ioExecutor, maxConcurrentRequests);
+         for (Map.Entry<String, List<PackRecord>> group : byGroup.entrySet()) {
+            GroupWriter writer = writers.computeIfAbsent(group.getKey(), GroupWriter::new);
+            pipeline.submit(group.getKey(), () -> writer.commit(group.getValue(), null));
+         }
+         pipeline.await();
+      }
+      requestCompaction();
+   }
+
+   /**
+    * Deletes the given names, writing a tombstone for those which are stored.
+    *
+    * @return the number of names which were stored
+    */
+   int delete(Collection<String> names) {
+      List<PackRecord> tombstones = new ArrayList<>();
+      for (String name : names) {
+         Location location = index.get(name);
+         if (location != null && !location.tombstone) {
+            tombstones.add(new PackRecord(name, null, PayloadFormat.LEGACY, -1, -1, -1));
+         }
+      }
+      if (!tombstones.isEmpty()) {
+         write(tombstones);
+      }
+      return tombstones.size();
+   }
+
+   /**
+    * @return the location of the given name, or {@code null} if it is not stored or expired
+    */
+   Location locate(String name) {
+      Location location = index.get(name);
+      return location == null || location.tombstone || location.isExpired(clock.getAsLong()) ? null : location;
+   }
+
+   /**
+    * Reads the payload of an entry with a ranged GET. If the pack has been compacted in the
+    * meantime, the entry is looked up again.
+    *
+    * @return the record, or {@code null} if it is not stored or expired
+    */
+   StoredRecord read(String name) {
+      Location location = locate(name);
+      while (location != null) {
+         Blob blob = blobStore.getBlob(containerName, location.pack.name,
+               new GetOptions().range(location.offset, location.offset + location.length - 1));
+         if (blob != null) {
+            byte[] payload = Blobs.readPayload(blob);
+            if (payload.length == location.length) {
+               return new StoredRecord(name, payload, location);
+            }
+         }
+         Location current = locate(name);
+         if (current == location) {
+            throw new PersistenceException(String.format("Unable to read %s from pack %s", name, location.pack.name));
+         }
+         location = current;
+      }
+      return null;
+   }
+
+   /**
+    * @return the names of the stored entries which are not expired
+    */
+   Flowable<String> names(Predicate<String> filter) {
+      long now = clock.getAsLong();
+      return Flowable.fromIterable(index.entrySet())
+            .filter(entry -> !entry.getValue().tombstone && !entry.getValue().isExpired(now) && (filter == null || filter.test(entry.getKey())))
+            .map(Map.Entry::getKey);
+   }
+
+   /**
+    * Reads the given entries pack by pack, with one GET per pack.
+    */
+   Flowable<StoredRecord> records(Predicate<String> filter) {
+      return Flowable.defer(() -> {
+         long now = clock.getAsLong();
+         Map<Pack, List<Map.Entry<String, Location>>> byPack = new HashMap<>();
+         for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (!location.tombstone && !location.isExpired(now) && (filter == null || filter.test(entry.getKey()))) {
+               byPack.computeIfAbsent(location.pack, p -> new ArrayList<>()).add(entry);
+            }
+         }
+         return Flowable.fromIterable(byPack.entrySet())
+               .flatMap(pack -> Flowable.fromCallable(() -> readPack(pack.getKey(), pack.getValue()))
+                     .subscribeOn(ioScheduler)
+                     .flatMapIterable(records -> records), maxConcurrentRequests);
+      });
+   }
+
+   private List<StoredRecord> readPack(Pack pack, List<Map.Entry<String, Location>> entries) {
+      Blob blob = blobStore.getBlob(containerName, pack.name);
+      List<StoredRecord> records = new ArrayList<>(entries.size());
+      if (blob == null) {
+         // compacted in the meantime, its entries have moved
+         for (Map.Entry<String, Location> entry : entries) {
+            StoredRecord record = read(entry.getKey());
+            if (record != null) {
+               records.add(record);
+            }
+         }
+         return records;
+      }
+      byte[] bytes = Blobs.readPayload(blob);
+      for (Map.Entry<String, Location> entry : entries) {
+         Location location = entry.getValue();
+         byte[] payload = new byte[location.length];
+         System.arraycopy(bytes, location.offset, payload, 0, location.length);
+         records.add(new StoredRecord(entry.getKey(), payload, location));
+      }
+      return records;
+   }
+
+   /**
+    * @return the names of the expired entries
+    */
+   List<String> expiredNames() {
+      long now = clock.getAsLong();
+      List<String> expired = new ArrayList<>();
+      for (Map.Entry<String, Location> entry : index.entrySet()) {
+         if (!entry.getValue().tombstone && entry.getValue().isExpired(now)) {
+            expired.add(entry.getKey());
+         }
+      }
+      return expired;
+   }
+
+   /**
+    * Removes the packs of the given groups, or of all groups if {@code null}, along with their entries.
+    */
+   void clear(Predicate<String> groups) {
+      synchronized (compactionLock) {
+         List<String> removed = new ArrayList<>();
+         for (Pack pack : packs.values()) {
+            if (groups == null || groups.test(pack.group)) {
+               removed.add(pack.name);
+               removePack(pack);
+            }
+         }
+         index.values().removeIf(location -> !packs.containsKey(location.pack.name));
+         Flowable.fromIterable(removed).buffer(CloudStore.DELETE_BATCH_SIZE)
+               .blockingForEach(batch -> blobStore.removeBlobs(containerName, batch));
+      }
+   }
+
+   int packCount() {
+      return packs.size();
+   }
+
+   private void addPack(Pack pack) {
+      packs.put(pack.name, pack);
+      if (pack.isSmall() && smallPacks.computeIfAbsent(pack.group, g -> new AtomicInteger()).incrementAndGet() >= SMALL_PACK_MERGE_THRESHOLD) {
+         compactionRequested.set(true);
+      }
+   }
+
+   private void removePack(Pack pack) {
+      if (packs.remove(pack.name) != null && pack.isSmall()) {
+         smallPacks.get(pack.group).decrementAndGet();
+      }
+   }
+
+   /**
+    * Updates the index with a stored record, unless the name has a more recent version already or,
+    * for a record moved by compaction, unless it is no longer at its previous location.
+    */
+   private void apply(String name, Location location, Location expected, boolean keepTombstone) {
+      index.compute(name, (n, current) -> {
+         boolean stale = expected != null ? current != expected : current != null && current.version > location.version;
+         if (stale || (current == null && location.tombstone && !keepTombstone)) {
+            release(location);
+            return current;
+         }
+         if (current != null) {
+            release(current);
+         }
+         return location;
+      });
+   }
+
+   private void release(Location location) {
+      Pack pack = location.pack;
+      pack.liveRecords.decrementAndGet();
+      if (pack.liveBytes.addAndGet(-location.length) < (1 - compactionThreshold) * pack.size || pack.liveRecords.get() == 0) {
+         compactionRequested.set(true);
+      }
+   }
+
+   private void requestCompaction() {
+      if (compactionRequested.get() && !stopped && compactionScheduled.compareAndSet(false, true)) {
+         compactionExecutor.execute(this::compact);
+      }
+   }
+
+   private void compact() {
+      try {
+         while (compactionRequested.getAndSet(false) && !stopped) {
+            synchronized (compactionLock) {
+               for (List<Pack> candidates : selectCandidates()) {
+                  if (stopped) {
+                     break;
+                  }
+                  rewrite(candidates);
+               }
+            }
+         }
+      } catch (Throwable t) {
+         // the garbage stays until the next write triggers another attempt
+         log.packCompactionFailed(t);
+         compactionRequested.set(true);
+         compactionScheduled.set(false);
+         return;
+      }
+      compactionScheduled.set(false);
+      // a request made while the last round was ending would otherwise wait for the next write
+      requestCompaction();
+   }
+
+   /**
+    * Selects, for each group, the packs which are mostly garbage, as many as their live records fit
+    * in one pack. Small packs are merged by size tier: once there are enough of them, the smallest
+    * ones are merged together, so that each record is only rewritten a logarithmic number of times
+    * until it ends up in a pack which is not small.
+    */
+   private List<List<Pack>> selectCandidates() {
+      Map<String, List<Pack>> garbageByGroup = new HashMap<>();
+      Map<String, List<Pack>> smallByGroup = new HashMap<>();
+      for (Pack pack : packs.values()) {
+         if (pack.liveBytes.get() < (1 - compactionThreshold) * pack.size || pack.liveRecords.get() == 0) {
+            garbageByGroup.computeIfAbsent(pack.group, g -> new ArrayList<>()).add(pack);
+         } else if (pack.isSmall()) {
+            smallByGroup.computeIfAbsent(pack.group, g -> new ArrayList<>()).add(pack);
+         }
+      }
+      List<List<Pack>> selected = new ArrayList<>();
+      for (List<Pack> candidates : garbageByGroup.values()) {
+         candidates.sort(Comparator.comparingLong(pack -> pack.id));
+         List<Pack> batch = new ArrayList<>();
+         long liveBytes = 0;
+         for (Pack pack : candidates) {
+            if (!batch.isEmpty() && liveBytes + pack.liveBytes.get() > packSize) {
+               selected.add(batch);
+               batch = new ArrayList<>();
+               liveBytes = 0;
+            }
+            batch.add(pack);
+            liveBytes += pack.liveBytes.get();
+         }
+         selected.add(batch);
+      }
+      for (List<Pack> candidates : smallByGroup.values()) {
+         if (candidates.size() >= SMALL_PACK_MERGE_THRESHOLD) {
+            candidates.sort(Comparator.comparingLong(pack -> pack.size));
+            List<Pack> batch = new ArrayList<>();
+            long liveBytes = 0;
+            for (Pack pack : candidates.subList(0, SMALL_PACK_MERGE_THRESHOLD)) {
+               if (!batch.isEmpty() && liveBytes + pack.liveBytes.get() > packSize) {
+                  break;
+               }
+               batch.add(pack);
+               liveBytes += pack.liveBytes.get();
+            }
+            if (batch.size() > 1) {
+               selected.add(batch);
+            }
+         }
+      }
+      return selected;
+   }
+
+   private void rewrite(List<Pack> candidates) {
+      List<PackRecord> moved = new ArrayList<>();
+      List<Location> previous = new ArrayList<>();
+      for (Pack pack : candidates) {
+         if (!packs.containsKey(pack.name)) {
+            continue;
+         }
+         Blob blob = blobStore.getBlob(containerName, pack.name);
+         if (blob == null) {
+            continue;
+         }
+         byte[] bytes = Blobs.readPayload(blob);
+         for (FooterRecord record : parseFooter(pack, ByteBuffer.wrap(bytes))) {
+            Location location = index.get(record.name);
+            if (location == null || location.pack != pack || location.offset != record.offset || location.version != record.version) {
+               continue;
+            }
+            if (location.tombstone && !isTombstoneNeeded(location, candidates)) {
+               index.remove(record.name, location);
+               continue;
+            }
+            byte[] payload = null;
+            if (!location.tombstone) {
+               payload = new byte[record.length];
+               System.arraycopy(bytes, record.offset, payload, 0, record.length);
+            }
+            moved.add(new PackRecord(record.name, payload, record.format, record.lifespan, record.maxIdle, record.expiryTime, record.version));
+            previous.add(location);
+         }
+      }
+      if (!moved.isEmpty()) {
+         writers.computeIfAbsent(candidates.get(0).group, GroupWriter::new).commit(moved, previous);
+      }
+      List<String> removed = new ArrayList<>();
+      for (Pack pack : candidates) {
+         if (packs.containsKey(pack.name)) {
+            removePack(pack);
+            removed.add(pack.name);
+         }
+      }
+      if (!removed.isEmpty()) {
+         blobStore.removeBlobs(containerName, removed);
+      }
+   }
+
+   /**
+    * A tombstone has to be kept while an older version of its name may still be stored in another
+    * pack. Packs do not track their names, so any other pack holding a record older than the
+    * tombstone keeps it.
+    */
+   private boolean isTombstoneNeeded(Location tombstone, List<Pack> candidates) {
+      for (Pack pack : packs.values()) {
+         if (!candidates.contains(pack) && pack.minRecordVersion < tombstone.version) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private List<FooterRecord> readFooter(Pack pack) throws IOException {
+      long size = pack.size;
+      long start = Math.max(0, size - FOOTER_PREFETCH);
+      Blob tail = blobStore.getBlob(containerName, pack.name, new GetOptions().range(start, size - 1));
+      byte[] bytes = Blobs.readPayload(tail);
+      ByteBuffer trailer = ByteBuffer.wrap(bytes, bytes.length - TRAILER_SIZE, TRAILER_SIZE);
+      int footerLength = trailer.getInt();
+      if (trailer.getInt() != MAGIC) {
+         throw new IOException("Invalid pack " + pack.name);
+      }
+      if (footerLength + TRAILER_SIZE > bytes.length) {
+         bytes = Blobs.readPayload(blobStore.getBlob(containerName, pack.name,
+               new GetOptions().range(size - TRAILER_SIZE - footerLength, size - 1)));
+      }
+      ByteBuffer footer = ByteBuffer.wrap(bytes, bytes.length - TRAILER_SIZE - footerLength, footerLength);
+      return parseRecords(footer);
+   }
+
+   private List<FooterRecord> parseFooter(Pack pack, ByteBuffer bytes) {
+      int end = bytes.limit();
+      int footerLength = bytes.getInt(end - TRAILER_SIZE);
+      if (bytes.getInt(end - 4) != MAGIC) {
+         throw new PersistenceException("Invalid pack " + pack.name);
+      }
+      ByteBuffer footer = bytes.duplicate();
+      footer.position(end - TRAILER_SIZE - footerLength);
+      footer.limit(end - TRAILER_SIZE);
+      return parseRecords(footer);
+   }
+
+   private static PayloadFormat format(byte type) {
+      return type == HEADER_RECORD ? PayloadFormat.HEADER : PayloadFormat.LEGACY;
+   }
+
+   private static byte recordType(PayloadFormat format) {
+      return format == PayloadFormat.HEADER ? HEADER_RECORD : RECORD;
+   }
+
+   private static List<FooterRecord> parseRecords(ByteBuffer footer) {
+      int count = footer.getInt();
+      List<FooterRecord> records = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         byte type = footer.get();
+         byte[] name = new byte[footer.getInt()];
+         footer.get(name);
+         records.add(new FooterRecord(type == TOMBSTONE, format(type), new String(name, StandardCharsets.UTF_8), footer.getLong(),
+               footer.getInt(), footer.getInt(), footer.getLong(), footer.getLong(), footer.getLong()));
+      }
+      return records;
+   }
+
+   /**
+    * Group commit of the records of one group: the first committer uploads a pack with all the
+    * records submitted so far, while the others wait for it; those submitted during the upload go
+    * into the next pack.
+    */
+   private final class GroupWriter {
+      private final String group;
+      private Batch pending = new Batch();
+      private boolean uploading;
+
+      GroupWriter(String group) {
+         this.group = group;
+      }
+
+      void commit(List<PackRecord> records, List<Location> previous) {
+         Batch batch;
+         synchronized (this) {
+            batch = pending;
+            for (int i = 0; i < records.size(); i++) {
+               PackRecord record = records.get(i);
+               batch.records.add(record.version > 0 ? record : record.withVersion(nextVersion.getAndIncrement()));
+               batch.previous.add(previous == null ? null : previous.get(i));
+            }
+            while (uploading && !batch.done) {
+               try {
+                  wait();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new PersistenceException("Interrupted while waiting for a pack upload", e);
+               }
+            }
+            if (!batch.done) {
+               uploading = true;
+               pending = new Batch();
+            }
+         }
+         if (!batch.done) {
+            try {
+               upload(batch);
+            } catch (Throwable t) {
+               batch.failure = t;
+            } finally {
+               synchronized (this) {
+                  batch.done = true;
+                  uploading = false;
+                  notifyAll();
+               }
+            }
+         }
+         if (batch.failure != null) {
+            throw new PersistenceException("Unable to upload pack", batch.failure);
+         }
+      }
+
+      /**
+       * Uploads the records of a batch in as many packs as needed to keep each one within the pack
+       * size.
+       */
+      private void upload(Batch batch) {
+         List<PackRecord> records = batch.records;
+         byte[][] names = new byte[records.size()][];
+         long maxSize = Math.min(packSize, MAX_PACK_SIZE);
+         int first = 0;
+         long size = FOOTER_HEADER_SIZE + TRAILER_SIZE;
+         for (int i = 0; i < records.size(); i++) {
+            PackRecord record = records.get(i);
+            names[i] = record.name.getBytes(StandardCharsets.UTF_8);
+            long recordSize = FOOTER_RECORD_SIZE + names[i].length + (record.payload == null ? 0 : record.payload.length);
+            if (i > first && size + recordSize > maxSize) {
+               uploadPack(batch, names, first, i, size);
+               first = i;
+               size = FOOTER_HEADER_SIZE + TRAILER_SIZE;
+            }
+            size += recordSize;
+         }
+         uploadPack(batch, names, first, records.size(), size);
+      }
+
+      /**
+       * Uploads the records of a batch between {@code from}, inclusive, and {@code to}, exclusive, as
+       * one pack of the given size.
+       */
+      private void uploadPack(Batch batch, byte[][] names, int from, int to, long size) {
+         if (size > MAX_PACK_SIZE) {
+            throw new PersistenceException(String.format("Record %s is too large for a pack", batch.records.get(from).name));
+         }
+         Pack pack = new Pack(String.format("%s%s%019d", PREFIX, group, nextPackId.getAndIncrement()), group, 0);
+         ByteBuffer bytes = ByteBuffer.allocate((int) size);
+         List<FooterRecord> records = new ArrayList<>(to - from);
+         for (int i = from; i < to; i++) {
+            PackRecord record = batch.records.get(i);
+            int length = record.payload == null ? 0 : record.payload.length;
+            records.add(new FooterRecord(record.payload == null, record.format, record.name, record.version, bytes.position(), length,
+                  record.lifespan, record.maxIdle, record.expiryTime));
+            if (record.payload != null) {
+               bytes.put(record.payload);
+            }
+         }
+         int footerStart = bytes.position();
+         bytes.putInt(records.size());
+         for (int i = from; i < to; i++) {
+            PackRecord record = batch.records.get(i);
+            FooterRecord footerRecord = records.get(i - from);
+            bytes.put(record.payload == null ? TOMBSTONE : recordType(record.format));
+            bytes.putInt(names[i].length);
+            bytes.put(names[i]);
+            bytes.putLong(record.version);
+            bytes.putInt(footerRecord.offset);
+            bytes.putInt(footerRecord.length);
+            bytes.putLong(record.lifespan);
+            bytes.putLong(record.maxIdle);
+            bytes.putLong(record.expiryTime);
+         }
+         bytes.putInt(bytes.position() - footerStart);
+         bytes.putInt(MAGIC);
+         blobStore.putBlob(containerName, blobStore.blobBuilder(pack.name)
+               .payload(bytes.array())
+               .contentType(MediaType.OCTET_STREAM)
+               .build());
+
+         for (FooterRecord record : records) {
+            pack.add(record);
+         }
+         addPack(pack);
+         for (int i = 0; i < records.size(); i++) {
+            apply(records.get(i).name, new Location(pack, records.get(i)), batch.previous.get(from + i), false);
+         }
+      }
+   }
+
+   private static final class Batch {
+      final List<PackRecord> records = new ArrayList<>();
+      final List<Location> previous = new ArrayList<>();
+      boolean done;
+      Throwable failure;
+   }
+
+   private final class Pack {
+      final String name;
+      final String group;
+      final long id;
+      long size;
+      long minRecordVersion = Long.MAX_VALUE;
+      final AtomicLong liveBytes = new AtomicLong();
+      final AtomicInteger liveRecords = new AtomicInteger();
+
+      Pack(String name, String group, long size) {
+         this.name = name;
+         this.group = group;
+         this.id = Long.parseLong(name.substring(name.lastIndexOf('/') + 1));
+         this.size = size;
+      }
+
+      void add(FooterRecord record) {
+         size += record.length;
+         liveBytes.addAndGet(record.length);
+         liveRecords.incrementAndGet();
+         if (!record.tombstone) {
+            minRecordVersion = Math.min(minRecordVersion, record.version);
+         }
+      }
+
+      boolean isSmall() {
+         return size < packSize / 4;
+      }
+   }
+
+   private static final class FooterRecord {
+      final boolean tombstone;
+      final PayloadFormat format;
+      final String name;
+      final long version;
+      final int offset;
+      final int length;
+      final long lifespan;
+      final long maxIdle;
+      final long expiryTime;
+
+      FooterRecord(boolean tombstone, PayloadFormat format, String name, long version, int offset, int length, long lifespan, long maxIdle,
+            long expiryTime) {
+         this.tombstone = tombstone;
+         this.format = format;
+         this.name = name;
+         this.version = version;
+         this.offset = offset;
+         this.length = length;
+         this.lifespan = lifespan;
+         this.maxIdle = maxIdle;
+         this.expiryTime = expiryTime;
+      }
+   }
+
+   /**
+    * Where the most recent version of a name is stored, along with its metadata.
+    */
+   static final class Location {
+      final Pack pack;
+      final boolean tombstone;
+      final PayloadFormat format;
+      final long version;
+      final int offset;
+      final int length;
+      final long lifespan;
+      final long maxIdle;
+      final long expiryTime;
+
+      Location(Pack pack, FooterRecord record) {
+         this.pack = pack;
+         this.tombstone = record.tombstone;
+         this.format = record.format;
+         this.version = record.version;
+         this.offset = record.offset;
+         this.length = record.length;
+         this.lifespan = record.lifespan;
+         this.maxIdle = record.maxIdle;
+         this.expiryTime = record.expiryTime;
+      }
+
+      boolean isExpired(long now) {
+         return expiryTime > -1 && expiryTime < now;
+      }
+   }
+
+   /**
+    * A record to store, or a tombstone if it has no payload.
+    */
+   static final class PackRecord {
+      final String name;
+      final byte[] payload;
+      final PayloadFormat format;
+      final long lifespan;
+      final long maxIdle;
+      final long expiryTime;
+      final long version;
+
+      PackRecord(String name, byte[] payload, PayloadFormat format, long lifespan, long maxIdle, long expiryTime) {
+         this(name, payload, format, lifespan, maxIdle, expiryTime, 0);
+      }
+
+      PackRecord(String name, byte[] payload, PayloadFormat format, long lifespan, long maxIdle, long expiryTime, long version) {
+         this.name = name;
+         this.payload = payload;
+         this.format = format;
+         this.lifespan = lifespan;
+         this.maxIdle = maxIdle;
+         this.expiryTime = expiryTime;
+         this.version = version;
+      }
+
+      PackRecord withVersion(long version) {
+         return new PackRecord(name, payload, format, lifespan, maxIdle, expiryTime, version);
+      }
+   }
+
+   /**
+    * A stored entry, with its payload.
+    */
+   static final class StoredRecord {
+      final String name;
+      final byte[] payload;
+      final PayloadFormat format;
+      final long lifespan;
+      final long maxIdle;
+      final long expiryTime;
+
+      StoredRecord(String name, byte[] payload, Location location) {
+         this.name = name;
+         this.payload = payload;
+         this.format = location.format;
+         this.lifespan = location.lifespan;
+         this.maxIdle = location.maxIdle;
+         this.expiryTime = location.expiryTime;
+      }
+   }
+}
@@ -0,0 +1,299 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.io.ByteBufferImpl;
+import org.infinispan.commons.io.ExposedByteArrayOutputStream;
+import org.infinispan.persistence.cloud.codec.Codec;
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.infinispan.persistence.cloud.logging.Log;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.logging.LogFactory;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+
+import com.google.common.hash.Hashing;
+import com.google.common.net.MediaType;
+import com.google.common.primitives.Ints;
+
+/**
+ * Compresses values with the configured {@link Codec} and describes the result with a marker made
+ * of the codec identifier, whose high bit is set when a dictionary was used. Values which are too
+ * small, or whose byte distribution looks random, are stored uncompressed, as well as those which
+ * the codec fails to shrink. The marker and the dictionary identifier are kept in the header of the
+ * entry, see {@link EntryFormat}.
+ * <p/>
+ * When the codec supports dictionaries, the first payloads written are sampled to train one.
+ * Dictionaries are immutable blobs named after a hash of their content, under
+ * {@code .ispn/dictionaries/}, so nodes sharing a container can train their own without conflict.
+ * The dictionary to use for new payloads is recorded in a pointer blob, per codec, and reused on
+ * the next start.
+ *
+ * @since 9.0
+ */
+final class PayloadCodec {
+   private static final Log log = LogFactory.getLog(PayloadCodec.class, Log.class);
+
+   static final String DICTIONARY_PREFIX = CloudStore.INTERNAL_PREFIX + "dictionaries/";
+
+   private static final int DICTIONARY_FLAG = 0x80;
+   private static final int CODEC_MASK = 0x7F;
+   private static final int ENTROPY_SAMPLE_SIZE = 4096;
+   // bits per byte above which a payload is considered incompressible
+   private static final double MAX_ENTROPY = 7.5;
+   private static final int MAX_SAMPLE_BYTES = 16 * 1024 * 1024;
+   // compressed payloads are written to a buffer kept by each thread, unless they may grow past this size
+   private static final int MAX_RETAINED_OUTPUT = 1024 * 1024;
+   private static final int INITIAL_OUTPUT_SIZE = 16 * 1024;
+   private static final ThreadLocal<ExposedByteArrayOutputStream> OUTPUT =
+         ThreadLocal.withInitial(() -> new ExposedByteArrayOutputStream(INITIAL_OUTPUT_SIZE));
+
+   private final Codec codec;
+   private final int threshold;
+   private final int dictionarySize;
+   private final int dictionarySamples;
+   private final BlobStore blobStore;
+   private final String containerName;
+   private final Executor executor;
+   private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+   private volatile Dictionary current;
+   private List<byte[]> samples;
+   private int sampleBytes;
+
+   PayloadCodec(Codec codec, int threshold, int dictionarySize, int dictionarySamples, BlobStore blobStore, String containerName,
+         Executor executor) {
+      this.codec = codec;
+      this.threshold = threshold;
+      this.dictionarySize = dictionarySize;
+      this.dictionarySamples = dictionarySamples;
+      this.blobStore = blobStore;
+      this.containerName = containerName;
+      this.executor = executor;
+   }
+
+   void start() {
+      if (!codec.supportsDictionary() || dictionarySize <= 0) {
+         return;
+      }
+      Blob pointer = blobStore.getBlob(containerName, pointerName());
+      if (pointer != null) {
+         int id = Ints.fromByteArray(Blobs.readPayload(pointer));
+         current = new Dictionary(id, dictionary(id));
+      } else {
+         samples = new ArrayList<>(dictionarySamples);
+      }
+   }
+
+   private String pointerName() {
+      return DICTIONARY_PREFIX + "current-" + codec.name();
+   }
+
+   private static String dictionaryName(int id) {
+      return String.format("%s%08x", DICTIONARY_PREFIX, id);
+   }
+
+   /**
+    * Encodes a value. The encoded value may refer to the given one, and to a buffer which is reused
+    * by the next encoding on the same thread, so it must be stored or copied before then.
+    */
+   EncodedPayload encode(ByteBuffer value) {
+      byte[] bytes = value.getBuf();
+      int offset = value.getOffset();
+      int length = value.getLength();
+      if (codec == Codecs.NONE || length < threshold || entropy(bytes, offset, length) > MAX_ENTROPY) {
+         return uncompressed(bytes, offset, length);
+      }
+      if (samples != null) {
+         sample(bytes, offset, length);
+      }
+      Dictionary dictionary = current;
+      ExposedByteArrayOutputStream output = output(length);
+      try {
+         codec.compress(bytes, offset, length, dictionary == null ? null : dictionary.bytes, output);
+      } catch (IOException e) {
+         throw new PersistenceException(e);
+      }
+      if (output.size() > length) {
+         return uncompressed(bytes, offset, length);
+      }
+      return dictionary == null ? new EncodedPayload(codec, codec.id(), 0, length, output.getRawBuffer(), 0, output.size()) :
+            new EncodedPayload(codec, codec.id() | DICTIONARY_FLAG, dictionary.id, length, output.getRawBuffer(), 0, output.size());
+   }
+
+   private static EncodedPayload uncompressed(byte[] bytes, int offset, int length) {
+      return new EncodedPayload(Codecs.NONE, Codecs.NONE.id(), 0, length, bytes, offset, length);
+   }
+
+   private static ExposedByteArrayOutputStream output(int length) {
+      if (length > MAX_RETAINED_OUTPUT) {
+         return new ExposedByteArrayOutputStream(length / 2);
+      }
+      ExposedByteArrayOutputStream output = OUTPUT.get();
+      if (output.getRawBuffer().length > MAX_RETAINED_OUTPUT) {
+         // grew past the limit because the value was incompressible
+         output = new ExposedByteArrayOutputStream(INITIAL_OUTPUT_SIZE);
+         OUTPUT.set(output);
+      }
+      output.reset();
+      return output;
+   }
+
+   /**
+    * @param valueLength the length of the value before compression, or -1 if it is not known
+    * @return the value bytes, which share the given array if the value is not compressed
+    */
+   ByteBufferImpl decode(int marker, int dictionaryId, byte[] bytes, int offset, int length, int valueLength) {
+      Codec payloadCodec = codec(marker);
+      try {
+         if (payloadCodec == Codecs.NONE) {
+            if (valueLength >= 0 && valueLength != length) {
+               throw new PersistenceException(String.format("Stored %d bytes instead of %d", length, valueLength));
+            }
+            return new ByteBufferImpl(bytes, offset, length);
+         }
+         byte[] dictionary = usesDictionary(marker) ? dictionary(dictionaryId) : null;
+         return new ByteBufferImpl(valueLength < 0 ? payloadCodec.decompress(bytes, offset, length, dictionary) :
+               payloadCodec.decompress(bytes, offset, length, dictionary, valueLength));
+      } catch (IOException e) {
+         throw new PersistenceException(e);
+      }
+   }
+
+   /**
+    * @return the codec of the given marker
+    */
+   static Codec codec(int marker) {
+      Codec codec = Codecs.forId(marker & CODEC_MASK);
+      if (codec == null) {
+         throw new PersistenceException(String.format("Unknown codec %d", marker & CODEC_MASK));
+      }
+      return codec;
+   }
+
+   static boolean usesDictionary(int marker) {
+      return (marker & DICTIONARY_FLAG) != 0;
+   }
+
+   private byte[] dictionary(int id) {
+      return dictionaries.computeIfAbsent(id, i -> {
+         Blob blob = blobStore.getBlob(containerName, dictionaryName(i));
+         if (blob == null) {
+            throw new PersistenceException(String.format("Missing compression dictionary %08x", i));
+         }
+         return Blobs.readPayload(blob);
+      });
+   }
+
+   /**
+    * @return the Shannon entropy of the first bytes of the value, in bits per byte
+    */
+   static double entropy(byte[] bytes, int offset, int length) {
+      length = Math.min(length, ENTROPY_SAMPLE_SIZE);
+      int[] counts = new int[256];
+      for (int i = offset; i < offset + length; i++) {
+         counts[bytes[i] & 0xFF]++;
+      }
+      double entropy = 0;
+      for (int count : counts) {
+         if (count > 0) {
+            double p = (double) count / length;
+            entropy -= p * Math.log(p);
+         }
+      }
+      return entropy / Math.log(2);
+   }
+
+   private synchronized void sample(byte[] bytes, int offset, int length) {
+      if (samples == null) {
+         return;
+      }
+      samples.add(Arrays.copyOfRange(bytes, offset, offset + length));
+      sampleBytes += length;
+      if (samples.size() >= dictionarySamples || sampleBytes >= MAX_SAMPLE_BYTES) {
+         List<byte[]> trainingSamples = samples;
+         samples = null;
+         executor.execute(() -> train(trainingSamples));
+      }
+   }
+
+   private void train(List<byte[]> trainingSamples) {
+      try {
+         byte[] bytes = codec.trainDictionary(trainingSamples, dictionarySize);
+         if (bytes.length == 0) {
+            return;
+         }
+         Dictionary dictionary = new Dictionary(Hashing.murmur3_32().hashBytes(bytes).asInt(), bytes);
+         store(dictionary);
+         dictionaries.put(dictionary.id, dictionary.bytes);
+         current = dictionary;
+      } catch (Exception e) {
+         log.unableToTrainDictionary(containerName, e);
+      }
+   }
+
+   private void store(Dictionary dictionary) {
+      // the dictionary goes first, a pointer must never refer to a missing dictionary
+      blobStore.putBlob(containerName, blobStore.blobBuilder(dictionaryName(dictionary.id))
+            .payload(dictionary.bytes)
+            .contentType(MediaType.OCTET_STREAM)
+            .build());
+      blobStore.putBlob(containerName, blobStore.blobBuilder(pointerName())
+            .payload(Ints.toByteArray(dictionary.id))
+            .contentType(MediaType.OCTET_STREAM)
+            .build());
+   }
+
+   /**
+    * Stores the current dictionary again, after the container has been cleared.
+    */
+   void restoreDictionary() {
+      Dictionary dictionary = current;
+      if (dictionary != null) {
+         store(dictionary);
+      }
+   }
+
+   /*package*/ boolean hasDictionary() {
+      return current != null;
+   }
+
+   /**
+    * An encoded value, held by a range of an array.
+    */
+   static final class EncodedPayload {
+      final Codec codec;
+      final int marker;
+      final int dictionaryId;
+      final int valueLength;
+      final byte[] bytes;
+      final int offset;
+      final int length;
+
+      EncodedPayload(Codec codec, int marker, int dictionaryId, int valueLength, byte[] bytes, int offset, int length) {
+         this.codec = codec;
+         this.marker = marker;
+         this.dictionaryId = dictionaryId;
+         this.valueLength = valueLength;
+         this.bytes = bytes;
+         this.offset = offset;
+         this.length = length;
+      }
+   }
+
+   private static final class Dictionary {
+      final int id;
+      final byte[] bytes;
+
+      Dictionary(int id, byte[] bytes) {
+         this.id = id;
+         this.bytes = bytes;
+      }
+   }
+}
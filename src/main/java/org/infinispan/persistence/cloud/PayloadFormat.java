@@ -0,0 +1,20 @@
+package org.infinispan.persistence.cloud;
+
+/**
+ * The layouts of the stored payloads. Payloads are always written with a header, payloads without
+ * one are only read, for entries stored by earlier versions of the store.
+ *
+ * @since 9.0
+ */
+enum PayloadFormat {
+   /**
+    * The marshalled value, compressed with GZIP if the store compresses. The metadata of the entry
+    * is kept next to the payload, in the user metadata of its blob or in the footer of its pack.
+    */
+   LEGACY,
+   /**
+    * The header described by {@link EntryFormat}, which holds the metadata of the entry, followed
+    * by the compressed value.
+    */
+   HEADER
+}
@@ -0,0 +1,410 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Local disk cache of blob payloads, kept in a ring of memory-mapped segment files. Records are
+ * appended to the most recent segment; when it is full, the oldest segment is evicted as a whole
+ * and reused. Records read from the older half of the ring are appended again to the current
+ * segment, so entries which keep being read survive eviction, much like a segmented LRU.
+ * <p/>
+ * Invalidations append a tombstone when the name is cached, and every record carries a checksum
+ * which covers the generation of its segment. On start, the segments are replayed from the oldest
+ * to the most recent, which restores the cache as it was, minus any record whose write was torn.
+ * Readers never lock: a record whose segment is reused while it is being read fails its checksum
+ * and is treated as a miss.
+ * <p/>
+ * The segments are only as current as the container they were read from: the store records the
+ * epoch of the container next to them, and discards them on start unless the container still has
+ * the same epoch.
+ *
+ * @since 9.0
+ */
+final class ReadCache implements Closeable {
+   static final int SEGMENTS = 8;
+
+   private static final int MAGIC = 0x49435243;
+   private static final int HEADER_SIZE = 12;
+   private static final int RECORD_HEADER_SIZE = 8;
+   private static final byte ENTRY = 1;
+   private static final byte TOMBSTONE = 2;
+   private static final int VERSION_STRIPES = 1024;
+   private static final String EPOCH_FILE = "epoch";
+
+   private final Path directory;
+   private final Segment[] segments = new Segment[SEGMENTS];
+   private final Map<String, Location> index = new ConcurrentHashMap<>();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final int segmentSize;
+   // the versions of the names, by stripe of their hash, changed whenever a name is invalidated
+   private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+   private Segment active;
+
+   ReadCache(Path directory, long size) throws IOException {
+      this.directory = directory;
+      this.segmentSize = (int) Math.min(Integer.MAX_VALUE, size / SEGMENTS);
+      Files.createDirectories(directory);
+      for (int i = 0; i < SEGMENTS; i++) {
+         segments[i] = new Segment(directory.resolve(String.format("segment-%d.dat", i)), segmentSize);
+      }
+      recover();
+   }
+
+   private void recover() {
+      List<Segment> byGeneration = new ArrayList<>();
+      for (Segment segment : segments) {
+         if (segment.generation > 0) {
+            byGeneration.add(segment);
+         }
+      }
+      byGeneration.sort(Comparator.comparingLong(segment -> segment.generation));
+      for (Segment segment : byGeneration) {
+         segment.position = HEADER_SIZE;
+         Record record;
+         while ((record = segment.read(segment.position, segment.generation, false)) != null) {
+            Location location = new Location(segment, segment.generation, segment.position);
+            if (record.type == ENTRY) {
+               index.put(record.name, location);
+            } else {
+               index.remove(record.name);
+            }
+            segment.position += RECORD_HEADER_SIZE + record.length;
+         }
+      }
+      if (byGeneration.isEmpty()) {
+         active = segments[0];
+         active.reset(1);
+      } else {
+         active = byGeneration.get(byGeneration.size() - 1);
+      }
+   }
+
+   /**
+    * @return the cached blob with the given name, or {@code null} if it is not cached
+    */
+   CachedBlob get(String name) {
+      Location location = index.get(name);
+      Record record = location == null ? null : location.segment.read(location.offset, location.generation, true);
+      if (record == null || record.type != ENTRY || !record.name.equals(name)) {
+         misses.increment();
+         return null;
+      }
+      hits.increment();
+      if (location.generation <= active.generation - SEGMENTS / 2) {
+         promote(name, location, record);
+      }
+      return record.blob;
+   }
+
+   private synchronized void promote(String name, Location location, Record record) {
+      if (index.get(name) == location) {
+         index.put(name, append(record.body));
+      }
+   }
+
+   private static int stripe(String name) {
+      int hash = name.hashCode();
+      return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+   }
+
+   /**
+    * @return a version which changes whenever the given name is invalidated, to be read before
+    * fetching its blob, which is then cached with {@link #putIfUnmodified(String, byte[], Map, Date, long)}
+    */
+   long version(String name) {
+      return versions.get(stripe(name));
+   }
+
+   /**
+    * Caches a blob, unless its name has been invalidated since the given version was read: the
+    * blob may have been fetched before a concurrent write and would then be stale. Names share
+    * their version with those of the same stripe, which only costs a few blobs left uncached.
+    */
+   synchronized void putIfUnmodified(String name, byte[] payload, Map<String, String> userMetadata, Date expires,
+         long expectedVersion) {
+      if (versions.get(stripe(name)) != expectedVersion) {
+         return;
+      }
+      byte[] body = encode(name, payload, userMetadata, expires);
+      if (RECORD_HEADER_SIZE + body.length <= segmentSize - HEADER_SIZE) {
+         index.put(name, append(body));
+      }
+   }
+
+   synchronized void invalidate(String name) {
+      versions.incrementAndGet(stripe(name));
+      if (index.remove(name) != null) {
+         append(encode(name, null, null, null));
+      }
+   }
+
+   synchronized void clear() {
+      for (int i = 0; i < VERSION_STRIPES; i++) {
+         versions.incrementAndGet(i);
+      }
+      index.clear();
+      for (Segment segment : segments) {
+         segment.reset(0);
+         // on disk before any epoch recorded after the clear
+         segment.buffer.force();
+      }
+      active = segments[0];
+      active.reset(1);
+   }
+
+   /**
+    * @return the epoch of the container which the cached blobs were read from, or {@code null} if
+    * none was recorded
+    */
+   String readEpoch() throws IOException {
+      try {
+         return new String(Files.readAllBytes(directory.resolve(EPOCH_FILE)), StandardCharsets.UTF_8);
+      } catch (NoSuchFileException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Records the epoch of the container, which must not be older than any cached blob.
+    */
+   void writeEpoch(String epoch) throws IOException {
+      Path temporary = directory.resolve(EPOCH_FILE + ".tmp");
+      Files.write(temporary, epoch.getBytes(StandardCharsets.UTF_8));
+      Files.move(temporary, directory.resolve(EPOCH_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+   }
+
+   long getHits() {
+      return hits.sum();
+   }
+
+   long getMisses() {
+      return misses.sum();
+   }
+
+   int size() {
+      return index.size();
+   }
+
+   @Override
+   public synchronized void close() throws IOException {
+      for (Segment segment : segments) {
+         segment.close();
+      }
+   }
+
+   private Location append(byte[] body) {
+      if (active.position + RECORD_HEADER_SIZE + body.length > segmentSize) {
+         rotate();
+      }
+      Location location = new Location(active, active.generation, active.position);
+      active.write(body);
+      return location;
+   }
+
+   private void rotate() {
+      Segment oldest = active;
+      for (Segment segment : segments) {
+         if (segment.generation < oldest.generation) {
+            oldest = segment;
+         }
+      }
+      Segment evicted = oldest;
+      index.values().removeIf(location -> location.segment == evicted);
+      evicted.reset(active.generation + 1);
+      active = evicted;
+   }
+
+   private static byte[] encode(String name, byte[] payload, Map<String, String> userMetadata, Date expires) {
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      List<byte[]> metadataBytes = new ArrayList<>();
+      int size = 1 + 4 + nameBytes.length;
+      if (payload != null) {
+         for (Map.Entry<String, String> entry : (userMetadata == null ? Collections.<String, String>emptyMap() : userMetadata).entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            metadataBytes.add(key);
+            metadataBytes.add(value);
+            size += 8 + key.length + value.length;
+         }
+         size += 4 + 8 + 4 + payload.length;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      buffer.put(payload == null ? TOMBSTONE : ENTRY);
+      buffer.putInt(nameBytes.length).put(nameBytes);
+      if (payload != null) {
+         buffer.putInt(metadataBytes.size() / 2);
+         for (byte[] bytes : metadataBytes) {
+            buffer.putInt(bytes.length).put(bytes);
+         }
+         buffer.putLong(expires == null ? -1 : expires.getTime());
+         buffer.putInt(payload.length).put(payload);
+      }
+      return buffer.array();
+   }
+
+   private static Record decode(byte[] body, boolean withBlob) {
+      ByteBuffer buffer = ByteBuffer.wrap(body);
+      byte type = buffer.get();
+      String name = readString(buffer);
+      if (type != ENTRY || !withBlob) {
+         return new Record(type, name, body, null);
+      }
+      int metadataCount = buffer.getInt();
+      Map<String, String> userMetadata = new HashMap<>(metadataCount * 2);
+      for (int i = 0; i < metadataCount; i++) {
+         userMetadata.put(readString(buffer), readString(buffer));
+      }
+      long expires = buffer.getLong();
+      byte[] payload = new byte[buffer.getInt()];
+      buffer.get(payload);
+      return new Record(type, name, body, new CachedBlob(payload, Collections.unmodifiableMap(userMetadata),
+            expires < 0 ? null : new Date(expires)));
+   }
+
+   private static String readString(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   private static int checksum(long generation, byte[] body) {
+      CRC32 crc = new CRC32();
+      crc.update(ByteBuffer.allocate(8).putLong(generation).array());
+      crc.update(body);
+      return (int) crc.getValue();
+   }
+
+   /**
+    * A blob as it was stored, with its payload still compressed if compression is enabled.
+    */
+   static final class CachedBlob {
+      final byte[] payload;
+      final Map<String, String> userMetadata;
+      final Date expires;
+
+      CachedBlob(byte[] payload, Map<String, String> userMetadata, Date expires) {
+         this.payload = payload;
+         this.userMetadata = userMetadata;
+         this.expires = expires;
+      }
+   }
+
+   private static final class Location {
+      final Segment segment;
+      final long generation;
+      final int offset;
+
+      Location(Segment segment, long generation, int offset) {
+         this.segment = segment;
+         this.generation = generation;
+         this.offset = offset;
+      }
+   }
+
+   private static final class Record {
+      final byte type;
+      final String name;
+      final byte[] body;
+      final CachedBlob blob;
+      final int length;
+
+      Record(byte type, String name, byte[] body, CachedBlob blob) {
+         this.type = type;
+         this.name = name;
+         this.body = body;
+         this.blob = blob;
+         this.length = body.length;
+      }
+   }
+
+   /**
+    * A segment file starts with a magic number and its generation, which is 0 while it is unused.
+    * Each record is made of its length, its checksum and its body.
+    */
+   private static final class Segment {
+      private final RandomAccessFile file;
+      private final MappedByteBuffer buffer;
+      volatile long generation;
+      int position;
+
+      Segment(Path path, int size) throws IOException {
+         file = new RandomAccessFile(path.toFile(), "rw");
+         boolean resized = file.length() != size;
+         file.setLength(size);
+         buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+         if (resized || buffer.getInt(0) != MAGIC) {
+            reset(0);
+         } else {
+            generation = buffer.getLong(4);
+         }
+      }
+
+      void reset(long generation) {
+         this.generation = generation;
+         buffer.putInt(0, MAGIC);
+         buffer.putLong(4, generation);
+         buffer.putInt(HEADER_SIZE, 0);
+         position = HEADER_SIZE;
+      }
+
+      void write(byte[] body) {
+         ByteBuffer target = buffer.duplicate();
+         target.position(position);
+         target.putInt(body.length);
+         target.putInt(checksum(generation, body));
+         target.put(body);
+         position = target.position();
+      }
+
+      /**
+       * @return the record at the given offset, or {@code null} if there is none or if the segment
+       * has been reused since the record was written with the given generation. The blob is only
+       * decoded if requested.
+       */
+      Record read(int offset, long expectedGeneration, boolean withBlob) {
+         ByteBuffer source = buffer.duplicate();
+         if (offset + RECORD_HEADER_SIZE > source.capacity()) {
+            return null;
+         }
+         int length = source.getInt(offset);
+         if (length <= 0 || offset + RECORD_HEADER_SIZE + length > source.capacity()) {
+            return null;
+         }
+         int checksum = source.getInt(offset + 4);
+         byte[] body = new byte[length];
+         source.position(offset + RECORD_HEADER_SIZE);
+         source.get(body);
+         if (generation != expectedGeneration || checksum(expectedGeneration, body) != checksum) {
+            return null;
+         }
+         return decode(body, withBlob);
+      }
+
+      void close() throws IOException {
+         buffer.force();
+         file.close();
+      }
+   }
+}
@@ -0,0 +1,100 @@
+package org.infinispan.persistence.cloud;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Deduplicates concurrent requests for the same blob: the first caller for a name runs the request,
+ * the callers arriving while it is in flight wait for its result instead of sending their own. A
+ * failure is reported to all of them.
+ * <p/>
+ * A request in flight must not serve callers which arrive once the blob has changed, so writes
+ * {@link #forget(String)} the name when they complete: the callers arriving after that start a
+ * new request.
+ *
+ * @since 9.0
+ */
+final class SingleFlight<T> {
+   private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+   private final LongAdder shared = new LongAdder();
+
+   /**
+    * @return the result of the request in flight for the given name, or of the given request
+    */
+   T execute(String name, Supplier<T> request) {
+      CompletableFuture<T> future = new CompletableFuture<>();
+      CompletableFuture<T> existing = inFlight.putIfAbsent(name, future);
+      if (existing != null) {
+         shared.increment();
+         return join(existing);
+      }
+      try {
+         T result = request.get();
+         future.complete(result);
+         return result;
+      } catch (Throwable t) {
+         future.completeExceptionally(t);
+         throw t;
+      } finally {
+         inFlight.remove(name, future);
+      }
+   }
+
+   /**
+    * @return the request in flight for the given name, which the caller waits for instead of
+    * sending a request of its own, or {@code null}
+    */
+   CompletableFuture<T> share(String name) {
+      CompletableFuture<T> future = inFlight.get(name);
+      if (future != null) {
+         shared.increment();
+      }
+      return future;
+   }
+
+   boolean isInFlight(String name) {
+      return inFlight.containsKey(name);
+   }
+
+   /**
+    * Detaches the request in flight for the given name, if any, from the callers to come.
+    */
+   void forget(String name) {
+      inFlight.remove(name);
+   }
+
+   /**
+    * Detaches all the requests in flight, for a store which is being cleared.
+    */
+   void clear() {
+      inFlight.clear();
+   }
+
+   /**
+    * @return the number of callers served by the request of another caller
+    */
+   long getSharedCount() {
+      return shared.sum();
+   }
+
+   static <T> T join(CompletableFuture<T> future) {
+      try {
+         return future.join();
+      } catch (CompletionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         if (cause instanceof Error) {
+            throw (Error) cause;
+         }
+         throw new PersistenceException(cause);
+      }
+   }
+}
@@ -0,0 +1,615 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.infinispan.persistence.cloud.logging.Log;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.logging.LogFactory;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.ListContainerOptions;
+
+import com.google.common.net.MediaType;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+
+/**
+ * Snapshots of the entries of a store, so that preload and iteration stream a few large blobs
+ * instead of requesting every entry on its own. A snapshot is made of compressed parts, each
+ * holding the payloads of many entries, and of a manifest, {@code .ispn/snapshot}, which lists the
+ * parts of every group and is written last. A group is the set of blobs under one listing prefix:
+ * a segment, a listing partition, or the whole container.
+ * <p/>
+ * A snapshot is never trusted blindly: every entry is recorded with the version of its blob, made
+ * of its ETag and of its last modification time, and a group is always listed before its parts are
+ * read. An entry is taken from the snapshot only if its blob is still listed with the same version;
+ * the blobs written since the snapshot, and those the snapshot does not hold, form the tail of the
+ * group and are read one by one. Entries removed since the snapshot are not listed, so they are
+ * skipped. Only payloads with an entry header are put in snapshots, the others are always part of
+ * the tail.
+ * <p/>
+ * Each part comes with an index of the names and versions of its entries. Writing a snapshot
+ * compares the indexes of a group with its listing, and the parts of a group which did not change
+ * are reused as they are. The other groups are written again, copying the entries which did not
+ * change from the previous parts, so only the tail is requested. The parts of the previous
+ * snapshot are kept until the next one is written, for the iterations which are still reading them.
+ *
+ * @since 9.0
+ */
+final class SnapshotStore {
+   private static final Log log = LogFactory.getLog(SnapshotStore.class, Log.class);
+
+   static final String MANIFEST = CloudStore.INTERNAL_PREFIX + "snapshot";
+   static final String PREFIX = CloudStore.INTERNAL_PREFIX + "snapshots/";
+   static final String INDEX_SUFFIX = ".index";
+   static final int PART_SIZE = 16 * 1024 * 1024;
+
+   private static final int MAGIC = 0x49534e50;
+   private static final byte VERSION = 1;
+   private static final int END = -1;
+   // the payload length of an entry which is only in the index, as the snapshot does not hold it
+   private static final int EXCLUDED = -1;
+   private static final int GROUP_CONCURRENCY = 4;
+
+   private final BlobStore blobStore;
+   private final String containerName;
+   private final Scheduler ioScheduler;
+   private final int maxConcurrentRequests;
+   private final int partSize;
+   private final Function<String, Flowable<StorageMetadata>> lister;
+   private final LongAdder snapshotEntries = new LongAdder();
+   private final LongAdder tailEntries = new LongAdder();
+   // held while the manifest is written or removed
+   private final Object manifestLock = new Object();
+
+   /**
+    * @param lister lists the entries of a group, given its listing prefix
+    */
+   SnapshotStore(BlobStore blobStore, String containerName, Scheduler ioScheduler, int maxConcurrentRequests, int partSize,
+         Function<String, Flowable<StorageMetadata>> lister) {
+      this.blobStore = blobStore;
+      this.containerName = containerName;
+      this.ioScheduler = ioScheduler;
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      this.partSize = partSize;
+      this.lister = lister;
+   }
+
+   /**
+    * @return the version of a listed blob, or an empty string if the provider does not tell
+    */
+   static String version(StorageMetadata metadata) {
+      if (metadata.getETag() == null || metadata.getLastModified() == null) {
+         return "";
+      }
+      return metadata.getETag() + "@" + metadata.getLastModified().getTime();
+   }
+
+   /**
+    * Publishes the entries of the given groups: those found in the snapshot with their payload,
+    * then the tail of each group, whose blobs have to be read.
+    *
+    * @param groups the listing prefixes of the groups
+    */
+   Flowable<Record> records(List<String> groups) {
+      return Flowable.defer(() -> {
+         Manifest manifest = readManifest();
+         return Flowable.fromIterable(groups)
+               .flatMap(group -> records(group, manifest == null ? Collections.emptyList() : manifest.parts(group)), GROUP_CONCURRENCY);
+      });
+   }
+
+   private Flowable<Record> records(String group, List<String> parts) {
+      if (parts.isEmpty()) {
+         return lister.apply(group).map(metadata -> tailRecord(metadata.getName()));
+      }
+      AtomicBoolean discarded = new AtomicBoolean();
+      return lister.apply(group)
+            .collect(ConcurrentHashMap<String, String>::new, (listing, metadata) -> listing.put(metadata.getName(), version(metadata)))
+            .flatMapPublisher(listing -> Flowable.concat(
+                  Flowable.fromIterable(parts).flatMap(part -> readPart(part, listing, discarded), GROUP_CONCURRENCY),
+                  // whatever the parts did not hold, including the entries of a part which could not be read
+                  Flowable.defer(() -> Flowable.fromIterable(listing.keySet()).map(this::tailRecord))));
+   }
+
+   private Record tailRecord(String name) {
+      tailEntries.increment();
+      return new Record(name, null);
+   }
+
+   /**
+    * Streams the entries of a part whose blob is still listed with the same version, removing them
+    * from the listing. A part which cannot be read ends early, the entries it did not provide are
+    * left in the listing. The snapshot is discarded if its manifest still references the part: an
+    * iteration which outlived two snapshots finds its parts removed, but the current snapshot is
+    * not affected.
+    */
+   private Flowable<Record> readPart(String part, Map<String, String> listing, AtomicBoolean discarded) {
+      return Flowable.<Record, EntryReader>generate(() -> new EntryReader(part, true), (reader, emitter) -> {
+         try {
+            for (Entry entry = reader.next(); entry != null; entry = reader.next()) {
+               if (!entry.version.isEmpty() && listing.remove(entry.name, entry.version)) {
+                  snapshotEntries.increment();
+                  emitter.onNext(new Record(entry.name, entry.payload));
+                  return;
+               }
+            }
+         } catch (IOException e) {
+            if (discarded.compareAndSet(false, true)) {
+               discard(part, e);
+            }
+         }
+         emitter.onComplete();
+      }, EntryReader::close).subscribeOn(ioScheduler);
+   }
+
+   /**
+    * Removes the manifest if it references the given unreadable part, so the next snapshot starts
+    * from scratch rather than reusing the part.
+    */
+   private void discard(String part, IOException cause) {
+      synchronized (manifestLock) {
+         Manifest manifest = readManifest();
+         if (manifest != null && manifest.references(part)) {
+            log.discardingSnapshot(part, containerName, cause);
+            blobStore.removeBlob(containerName, MANIFEST);
+         }
+      }
+   }
+
+   /**
+    * Writes a new snapshot of the given groups and removes the parts which are referenced neither by
+    * the new snapshot nor by the previous one.
+    *
+    * @param groups the listing prefixes of the groups
+    */
+   synchronized void write(List<String> groups) {
+      Manifest previous = readManifest();
+      PartWriter writer = new PartWriter(PREFIX + UUID.randomUUID() + "/");
+      Map<String, List<String>> parts = new LinkedHashMap<>();
+      for (String group : groups) {
+         parts.put(group, writeGroup(group, previous == null ? Collections.emptyList() : previous.parts(group), writer));
+      }
+      Manifest manifest = new Manifest(parts);
+      synchronized (manifestLock) {
+         put(MANIFEST, manifest.toBytes());
+      }
+      removeUnreferenced(manifest, previous);
+   }
+
+   private List<String> writeGroup(String group, List<String> previousParts, PartWriter writer) {
+      Map<String, String> listing = lister.apply(group)
+            .collect(HashMap<String, String>::new, (names, metadata) -> names.put(metadata.getName(), version(metadata)))
+            .blockingGet();
+      Map<String, String> indexed = new HashMap<>();
+      Set<String> excluded = new HashSet<>();
+      try {
+         readIndexes(previousParts, indexed, excluded);
+      } catch (IOException e) {
+         previousParts = Collections.emptyList();
+         indexed.clear();
+      }
+      if (!previousParts.isEmpty() && indexed.equals(listing)) {
+         return previousParts;
+      }
+
+      writer.startGroup();
+      for (String part : previousParts) {
+         try (EntryReader reader = new EntryReader(part, true)) {
+            for (Entry entry = reader.next(); entry != null; entry = reader.next()) {
+               if (!entry.version.isEmpty() && listing.remove(entry.name, entry.version)) {
+                  writer.add(entry.name, entry.version, entry.payload);
+               }
+            }
+         } catch (IOException e) {
+            // the entries which were not copied are still in the listing, so they are read from their blobs
+         }
+      }
+      List<Map.Entry<String, String>> tail = new ArrayList<>();
+      for (Map.Entry<String, String> entry : listing.entrySet()) {
+         String version = entry.getValue();
+         if (version.isEmpty() || excluded.contains(entry.getKey()) && version.equals(indexed.get(entry.getKey()))) {
+            writer.add(entry.getKey(), version, null);
+         } else {
+            tail.add(entry);
+         }
+      }
+      Flowable.fromIterable(tail)
+            .flatMapMaybe(entry -> Maybe.fromCallable(() -> fetch(entry.getKey(), entry.getValue())).subscribeOn(ioScheduler),
+                  false, maxConcurrentRequests)
+            .blockingForEach(entry -> writer.add(entry.name, entry.version, entry.payload));
+      return writer.finishGroup();
+   }
+
+   /**
+    * @return the entry of a blob, without payload if the blob has no entry header, or {@code null}
+    * if the blob no longer exists
+    */
+   private Entry fetch(String name, String version) {
+      Blob blob = blobStore.getBlob(containerName, name);
+      if (blob == null) {
+         return null;
+      }
+      byte[] payload = Blobs.readPayload(blob);
+      return new Entry(name, version, EntryFormat.headerLength(payload, payload.length) < 0 ? null : payload);
+   }
+
+   private void readIndexes(List<String> parts, Map<String, String> indexed, Set<String> excluded) throws IOException {
+      for (String part : parts) {
+         try (EntryReader reader = new EntryReader(part + INDEX_SUFFIX, false)) {
+            for (Entry entry = reader.next(); entry != null; entry = reader.next()) {
+               indexed.put(entry.name, entry.version);
+               if (entry.payloadLength == EXCLUDED) {
+                  excluded.add(entry.name);
+               }
+            }
+         }
+      }
+   }
+
+   private void removeUnreferenced(Manifest manifest, Manifest previous) {
+      Set<String> referenced = new HashSet<>();
+      for (Manifest kept : new Manifest[]{manifest, previous}) {
+         if (kept != null) {
+            for (List<String> parts : kept.parts.values()) {
+               for (String part : parts) {
+                  referenced.add(part);
+                  referenced.add(part + INDEX_SUFFIX);
+               }
+            }
+         }
+      }
+      List<String> unreferenced = new ArrayList<>();
+      String marker = null;
+      do {
+         ListContainerOptions options = new ListContainerOptions().prefix(PREFIX).recursive();
+         if (marker != null) {
+            options.afterMarker(marker);
+         }
+         PageSet<? extends StorageMetadata> page = blobStore.list(containerName, options);
+         for (StorageMetadata metadata : page) {
+            if (metadata.getType() == StorageType.BLOB && !referenced.contains(metadata.getName())) {
+               unreferenced.add(metadata.getName());
+            }
+         }
+         marker = page.getNextMarker();
+      } while (marker != null);
+      for (int i = 0; i < unreferenced.size(); i += CloudStore.DELETE_BATCH_SIZE) {
+         blobStore.removeBlobs(containerName, unreferenced.subList(i, Math.min(unreferenced.size(), i + CloudStore.DELETE_BATCH_SIZE)));
+      }
+   }
+
+   /**
+    * @return the manifest of the current snapshot, or {@code null} if there is none
+    */
+   Manifest readManifest() {
+      Blob blob = blobStore.getBlob(containerName, MANIFEST);
+      if (blob == null) {
+         return null;
+      }
+      try (DataInputStream input = new DataInputStream(blob.getPayload().openStream())) {
+         if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+            return null;
+         }
+         Map<String, List<String>> parts = new LinkedHashMap<>();
+         for (int groups = input.readInt(); groups > 0; groups--) {
+            String group = input.readUTF();
+            List<String> groupParts = new ArrayList<>();
+            for (int count = input.readInt(); count > 0; count--) {
+               groupParts.add(input.readUTF());
+            }
+            parts.put(group, groupParts);
+         }
+         return new Manifest(parts);
+      } catch (IOException e) {
+         return null;
+      }
+   }
+
+   private void put(String name, byte[] bytes) {
+      blobStore.putBlob(containerName, blobStore.blobBuilder(name)
+            .payload(bytes)
+            .contentType(MediaType.OCTET_STREAM)
+            .build());
+   }
+
+   long getSnapshotEntries() {
+      return snapshotEntries.sum();
+   }
+
+   long getTailEntries() {
+      return tailEntries.sum();
+   }
+
+   static final class Record {
+      final String name;
+      // the payload of the entry as of the snapshot, or null if it has to be read from its blob
+      final byte[] payload;
+
+      Record(String name, byte[] payload) {
+         this.name = name;
+         this.payload = payload;
+      }
+   }
+
+   static final class Manifest {
+      final Map<String, List<String>> parts;
+
+      Manifest(Map<String, List<String>> parts) {
+         this.parts = parts;
+      }
+
+      List<String> parts(String group) {
+         return parts.getOrDefault(group, Collections.emptyList());
+      }
+
+      boolean references(String part) {
+         for (List<String> groupParts : parts.values()) {
+            if (groupParts.contains(part)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      byte[] toBytes() {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeInt(parts.size());
+            for (Map.Entry<String, List<String>> group : parts.entrySet()) {
+               output.writeUTF(group.getKey());
+               output.writeInt(group.getValue().size());
+               for (String part : group.getValue()) {
+                  output.writeUTF(part);
+               }
+            }
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+         return bytes.toByteArray();
+      }
+   }
+
+   private static final class Entry {
+      final String name;
+      final String version;
+      final int payloadLength;
+      final byte[] payload;
+
+      Entry(String name, String version, byte[] payload) {
+         this(name, version, payload == null ? EXCLUDED : payload.length, payload);
+      }
+
+      Entry(String name, String version, int payloadLength, byte[] payload) {
+         this.name = name;
+         this.version = version;
+         this.payloadLength = payloadLength;
+         this.payload = payload;
+      }
+   }
+
+   /**
+    * Groups the entries of the groups being written into parts of about {@code partSize} bytes
+    * before compression. Every part holds the entries of a single group.
+    */
+   private final class PartWriter {
+      private final String prefix;
+      private int nextPart;
+      private List<String> groupParts;
+      private EntryWriter part;
+      private EntryWriter index;
+
+      PartWriter(String prefix) {
+         this.prefix = prefix;
+      }
+
+      void startGroup() {
+         groupParts = new ArrayList<>();
+      }
+
+      /**
+       * @param payload the payload of the entry, or {@code null} to only record it in the index
+       */
+      void add(String name, String version, byte[] payload) {
+         try {
+            if (part == null) {
+               part = new EntryWriter(true);
+               index = new EntryWriter(false);
+            }
+            if (payload != null) {
+               part.write(name, version, payload.length, payload);
+            }
+            index.write(name, version, payload == null ? EXCLUDED : payload.length, payload);
+            if (part.size() >= partSize) {
+               flush();
+            }
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+      }
+
+      private void flush() throws IOException {
+         String name = prefix + nextPart++;
+         put(name, part.finish());
+         put(name + INDEX_SUFFIX, index.finish());
+         groupParts.add(name);
+         part = null;
+         index = null;
+      }
+
+      List<String> finishGroup() {
+         try {
+            if (part != null) {
+               flush();
+            }
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+         return groupParts;
+      }
+   }
+
+   /**
+    * Writes entries to a compressed stream, which ends with the number of entries and a checksum
+    * of everything before it.
+    */
+   private static final class EntryWriter {
+      private final boolean payloads;
+      private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      private final CheckedOutputStream checked = new CheckedOutputStream(new DeflaterOutputStream(bytes, deflater, 64 * 1024), new CRC32());
+      private final DataOutputStream output = new DataOutputStream(checked);
+      private int count;
+
+      EntryWriter(boolean payloads) {
+         this.payloads = payloads;
+      }
+
+      void write(String name, String version, int payloadLength, byte[] payload) throws IOException {
+         writeString(name);
+         writeString(version);
+         output.writeInt(payloadLength);
+         if (payloads) {
+            output.write(payload);
+         }
+         count++;
+      }
+
+      private void writeString(String string) throws IOException {
+         byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+         output.writeInt(utf8.length);
+         output.write(utf8);
+      }
+
+      int size() {
+         return output.size();
+      }
+
+      byte[] finish() throws IOException {
+         try {
+            output.writeInt(END);
+            output.writeInt(count);
+            output.writeInt((int) checked.getChecksum().getValue());
+            output.close();
+         } finally {
+            deflater.end();
+         }
+         return bytes.toByteArray();
+      }
+   }
+
+   /**
+    * Reads the entries of a part, or of its index. The blob is only requested by the first read, so
+    * that a missing blob is reported like a corrupt one.
+    */
+   private final class EntryReader implements Closeable {
+      private final String name;
+      private final boolean payloads;
+      private final Inflater inflater = new Inflater();
+      private InputStream stream;
+      private CheckedInputStream checked;
+      private DataInputStream input;
+      private int count;
+
+      EntryReader(String name, boolean payloads) {
+         this.name = name;
+         this.payloads = payloads;
+      }
+
+      private void open() throws IOException {
+         Blob blob = blobStore.getBlob(containerName, name);
+         if (blob == null) {
+            throw new IOException("Missing snapshot part " + name);
+         }
+         stream = blob.getPayload().openStream();
+         checked = new CheckedInputStream(new InflaterInputStream(stream, inflater, 64 * 1024), new CRC32());
+         input = new DataInputStream(checked);
+      }
+
+      /**
+       * @return the next entry, or {@code null} once all have been read and verified
+       */
+      Entry next() throws IOException {
+         if (input == null) {
+            open();
+         }
+         int nameLength = input.readInt();
+         if (nameLength == END) {
+            int expectedCount = input.readInt();
+            int checksum = (int) checked.getChecksum().getValue();
+            if (input.readInt() != checksum || expectedCount != count) {
+               throw new IOException("Checksum mismatch in snapshot part " + name);
+            }
+            return null;
+         }
+         String entryName = readString(nameLength);
+         String version = readString(input.readInt());
+         int payloadLength = input.readInt();
+         byte[] payload = null;
+         if (payloads) {
+            if (payloadLength < 0) {
+               throw new IOException("Corrupt snapshot part " + name);
+            }
+            payload = new byte[payloadLength];
+            input.readFully(payload);
+         }
+         count++;
+         return new Entry(entryName, version, payloadLength, payload);
+      }
+
+      private String readString(int length) throws IOException {
+         if (length < 0 || length > 64 * 1024) {
+            throw new IOException("Corrupt snapshot part " + name);
+         }
+         byte[] utf8 = new byte[length];
+         input.readFully(utf8);
+         return new String(utf8, StandardCharsets.UTF_8);
+      }
+
+      @Override
+      public void close() {
+         try {
+            if (stream != null) {
+               stream.close();
+            }
+         } catch (IOException e) {
+            // nothing left to read
+         } finally {
+            inflater.end();
+         }
+      }
+   }
+}
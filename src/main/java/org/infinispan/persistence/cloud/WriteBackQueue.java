@@ -0,0 +1,395 @@
+package org.infinispan.persistence.cloud;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.infinispan.persistence.cloud.logging.Log;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.util.logging.LogFactory;
+
+/**
+ * Write-back queue of blob writes and deletes. Operations are acknowledged as soon as they are
+ * appended to a local journal, and kept in memory by name until they are flushed, so that only the
+ * latest operation on each name is ever sent: a write replaces the pending write of the same name,
+ * and a delete replaces it with a single delete request. The pending operations are flushed by a
+ * background thread, every flush interval or as soon as {@code flushSize} names are pending.
+ * <p/>
+ * The journal is made of two memory-mapped files used in turn: a flush switches the appends to the
+ * other file and resets the file of the flushed operations once they are stored. The records carry
+ * a checksum which covers the generation of their file, like those of the {@link ReadCache}, so
+ * the records left over from an earlier use of a file are ignored. On start, the files are replayed
+ * from the oldest generation to the most recent, which restores the pending operations minus any
+ * record whose write was torn, and these operations are flushed before the store accepts new ones.
+ * The journal lives in the page cache, so it survives a crash of the process; the operations which
+ * are not flushed yet can only be lost with the machine.
+ * <p/>
+ * A full journal makes writers wait for a flush, and a failed flush is retried before anything
+ * else, so the queue never grows past the journal and never reorders the operations on a name.
+ *
+ * @since 9.0
+ */
+final class WriteBackQueue {
+   private static final Log log = LogFactory.getLog(WriteBackQueue.class, Log.class);
+
+   private static final int MAGIC = 0x4957424a;
+   private static final int HEADER_SIZE = 12;
+   private static final int RECORD_HEADER_SIZE = 8;
+   private static final byte WRITE = 1;
+   private static final byte DELETE = 2;
+
+   private final String containerName;
+   private final JournalFile[] journals = new JournalFile[2];
+   private final int flushSize;
+   private final long flushInterval;
+   private final Consumer<Collection<Operation>> flusher;
+   private final Object appendLock = new Object();
+   private final Object flushLock = new Object();
+   private final AtomicBoolean flushRequested = new AtomicBoolean();
+   private final LongAdder coalesced = new LongAdder();
+   private final LongAdder retried = new LongAdder();
+   private ScheduledExecutorService executor;
+   // guarded by appendLock
+   private JournalFile active;
+   private long generation;
+   // guarded by flushLock, the journal of the operations being flushed
+   private JournalFile flushed;
+   // written under both locks, the operations being flushed are published before the new pending map
+   private volatile Map<String, Operation> pending = new ConcurrentHashMap<>();
+   private volatile Map<String, Operation> flushing = Collections.emptyMap();
+
+   /**
+    * @param flusher stores a batch of operations, or throws if any of them could not be stored
+    */
+   WriteBackQueue(String containerName, Path directory, int journalSize, int flushSize, long flushInterval,
+         Consumer<Collection<Operation>> flusher) throws IOException {
+      this.containerName = containerName;
+      this.flushSize = flushSize;
+      this.flushInterval = flushInterval;
+      this.flusher = flusher;
+      Files.createDirectories(directory);
+      for (int i = 0; i < journals.length; i++) {
+         journals[i] = new JournalFile(directory.resolve(String.format("journal-%d.dat", i)), journalSize);
+      }
+   }
+
+   /**
+    * Flushes the operations recorded by the journal, then starts accepting new ones.
+    */
+   void start() {
+      JournalFile[] byGeneration = journals.clone();
+      Arrays.sort(byGeneration, Comparator.comparingLong(journal -> journal.generation));
+      Map<String, Operation> recovered = new LinkedHashMap<>();
+      for (JournalFile journal : byGeneration) {
+         journal.replay(operation -> recovered.put(operation.objectName, operation));
+         generation = Math.max(generation, journal.generation);
+      }
+      if (!recovered.isEmpty()) {
+         flusher.accept(recovered.values());
+      }
+      for (JournalFile journal : journals) {
+         journal.reset(0);
+      }
+      active = journals[0];
+      active.reset(++generation);
+
+      executor = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread thread = new Thread(r, String.format("CloudStore-%s-write-back", containerName));
+         thread.setDaemon(true);
+         return thread;
+      });
+      executor.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Flushes the pending operations and closes the journal. Operations which could not be flushed
+    * are kept in the journal, for the next start.
+    */
+   void stop() {
+      if (executor != null) {
+         executor.shutdownNow();
+      }
+      try {
+         flush();
+      } finally {
+         for (JournalFile journal : journals) {
+            journal.close();
+         }
+      }
+   }
+
+   void write(String objectName, byte[] payload, long expiryTime) {
+      append(new Operation(objectName, payload, expiryTime));
+   }
+
+   void delete(String objectName) {
+      append(new Operation(objectName, null, -1));
+   }
+
+   private void append(Operation operation) {
+      byte[] body = operation.encode();
+      if (RECORD_HEADER_SIZE + body.length > Math.min(journals[0].capacity(), journals[1].capacity()) - HEADER_SIZE) {
+         // too large for the journal, it is written through once everything before it is stored
+         flush();
+         flusher.accept(Collections.singletonList(operation));
+         return;
+      }
+      while (true) {
+         synchronized (appendLock) {
+            if (active.append(body)) {
+               if (pending.put(operation.objectName, operation) != null) {
+                  coalesced.increment();
+               }
+               break;
+            }
+         }
+         // the journal is full
+         flush();
+      }
+      if (pending.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+         executor.execute(() -> {
+            flushRequested.set(false);
+            flushQuietly();
+         });
+      }
+   }
+
+   /**
+    * @return the latest operation on the given name which is not stored yet, or {@code null} if
+    * there is none
+    */
+   Operation get(String objectName) {
+      Operation operation = pending.get(objectName);
+      return operation != null ? operation : flushing.get(objectName);
+   }
+
+   /**
+    * Stores the pending operations and waits until they are. The operations of a flush which failed
+    * earlier are stored first.
+    */
+   void flush() {
+      synchronized (flushLock) {
+         if (!flushing.isEmpty()) {
+            retried.add(flushing.size());
+            flusher.accept(flushing.values());
+            completeFlush();
+         }
+         Map<String, Operation> batch;
+         synchronized (appendLock) {
+            if (pending.isEmpty()) {
+               return;
+            }
+            batch = pending;
+            flushing = batch;
+            pending = new ConcurrentHashMap<>();
+            flushed = active;
+            active = active == journals[0] ? journals[1] : journals[0];
+            active.reset(++generation);
+         }
+         flusher.accept(batch.values());
+         completeFlush();
+      }
+   }
+
+   private void completeFlush() {
+      flushing = Collections.emptyMap();
+      synchronized (appendLock) {
+         // the next flush would reset it anyway, but a restart must not replay it
+         flushed.reset(0);
+      }
+   }
+
+   private void flushQuietly() {
+      try {
+         flush();
+      } catch (Exception e) {
+         log.unableToFlushWrites(containerName, e);
+      }
+   }
+
+   /**
+    * Drops the pending operations, for a store which is being cleared.
+    */
+   void clear() {
+      synchronized (flushLock) {
+         synchronized (appendLock) {
+            pending = new ConcurrentHashMap<>();
+            flushing = Collections.emptyMap();
+            for (JournalFile journal : journals) {
+               journal.reset(0);
+            }
+            active.reset(++generation);
+         }
+      }
+   }
+
+   int getPendingCount() {
+      return pending.size() + flushing.size();
+   }
+
+   long getCoalescedCount() {
+      return coalesced.sum();
+   }
+
+   /**
+    * @return the number of operations flushed again after a failed flush
+    */
+   long getRetriedCount() {
+      return retried.sum();
+   }
+
+   private static int checksum(long generation, byte[] body) {
+      CRC32 crc = new CRC32();
+      crc.update(ByteBuffer.allocate(8).putLong(generation).array());
+      crc.update(body);
+      return (int) crc.getValue();
+   }
+
+   /**
+    * A write, with the payload of the blob and the expiry time of the entry, or a delete.
+    */
+   static final class Operation {
+      final String objectName;
+      // null for a delete
+      final byte[] payload;
+      final long expiryTime;
+
+      Operation(String objectName, byte[] payload, long expiryTime) {
+         this.objectName = objectName;
+         this.payload = payload;
+         this.expiryTime = expiryTime;
+      }
+
+      byte[] encode() {
+         byte[] name = objectName.getBytes(StandardCharsets.UTF_8);
+         ByteBuffer body = ByteBuffer.allocate(1 + 4 + name.length + 8 + (payload == null ? 0 : 4 + payload.length));
+         body.put(payload == null ? DELETE : WRITE).putInt(name.length).put(name).putLong(expiryTime);
+         if (payload != null) {
+            body.putInt(payload.length).put(payload);
+         }
+         return body.array();
+      }
+
+      static Operation decode(byte[] bytes) {
+         ByteBuffer body = ByteBuffer.wrap(bytes);
+         byte type = body.get();
+         byte[] name = new byte[body.getInt()];
+         body.get(name);
+         long expiryTime = body.getLong();
+         byte[] payload = null;
+         if (type == WRITE) {
+            payload = new byte[body.getInt()];
+            body.get(payload);
+         }
+         return new Operation(new String(name, StandardCharsets.UTF_8), payload, expiryTime);
+      }
+   }
+
+   /**
+    * A journal file starts with a magic number and its generation, which is 0 while it holds no
+    * operation. Each record is made of its length, its checksum and its body.
+    */
+   private static final class JournalFile {
+      private final RandomAccessFile file;
+      private final MappedByteBuffer buffer;
+      long generation;
+      int position;
+
+      JournalFile(Path path, int size) throws IOException {
+         file = new RandomAccessFile(path.toFile(), "rw");
+         if (file.length() < size) {
+            file.setLength(size);
+         }
+         // a journal left with a larger size is kept whole, its records are still to be replayed
+         buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+         if (buffer.getInt(0) != MAGIC) {
+            reset(0);
+         } else {
+            generation = buffer.getLong(4);
+         }
+      }
+
+      int capacity() {
+         return buffer.capacity();
+      }
+
+      void reset(long generation) {
+         this.generation = generation;
+         buffer.putInt(0, MAGIC);
+         buffer.putLong(4, generation);
+         buffer.putInt(HEADER_SIZE, 0);
+         position = HEADER_SIZE;
+      }
+
+      /**
+       * @return whether the record fits in the journal
+       */
+      boolean append(byte[] body) {
+         if (position + RECORD_HEADER_SIZE + body.length > buffer.capacity()) {
+            return false;
+         }
+         ByteBuffer target = buffer.duplicate();
+         target.position(position + RECORD_HEADER_SIZE);
+         target.put(body);
+         if (target.position() + 4 <= target.capacity()) {
+            // marks the end, in case the next record is torn before its length is written
+            target.putInt(target.position(), 0);
+         }
+         // the length goes last, so that a record is only seen once its body is complete
+         buffer.putInt(position + 4, checksum(generation, body));
+         buffer.putInt(position, body.length);
+         position += RECORD_HEADER_SIZE + body.length;
+         return true;
+      }
+
+      void replay(Consumer<Operation> consumer) {
+         if (generation == 0) {
+            return;
+         }
+         ByteBuffer source = buffer.duplicate();
+         int offset = HEADER_SIZE;
+         while (offset + RECORD_HEADER_SIZE <= source.capacity()) {
+            int length = source.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > source.capacity()) {
+               return;
+            }
+            byte[] body = new byte[length];
+            source.position(offset + RECORD_HEADER_SIZE);
+            source.get(body);
+            if (checksum(generation, body) != source.getInt(offset + 4)) {
+               return;
+            }
+            consumer.accept(Operation.decode(body));
+            offset += RECORD_HEADER_SIZE + length;
+         }
+      }
+
+      void close() {
+         try {
+            buffer.force();
+            file.close();
+         } catch (IOException e) {
+            throw new PersistenceException(e);
+         }
+      }
+   }
+}
@@ -0,0 +1,83 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Compression codec of the payloads stored by the cloud store. Every payload is tagged with the
+ * {@link #id()} of the codec which compressed it, so payloads compressed by different codecs can be
+ * mixed in a container and the configured codec can be changed without rewriting the stored data.
+ * <p/>
+ * Besides the built-in codecs listed in {@link Codecs}, implementations are discovered with the
+ * {@link java.util.ServiceLoader}. Implementations must be thread safe.
+ *
+ * @since 9.0
+ */
+public interface Codec {
+
+   /**
+    * @return the identifier written in front of the payloads compressed by this codec, between 0
+    * and 127. Identifiers below 16 are reserved for the built-in codecs.
+    */
+   int id();
+
+   /**
+    * @return the name of the codec in the store configuration
+    */
+   String name();
+
+   /**
+    * @return whether the codec can use a dictionary trained from sampled payloads
+    */
+   default boolean supportsDictionary() {
+      return false;
+   }
+
+   /**
+    * Trains a dictionary from sampled payloads, for codecs which support dictionaries. The default
+    * picks the content the samples most often have in common with {@link DictionaryTrainer}.
+    *
+    * @return a dictionary of at most the given size, which may be empty
+    */
+   default byte[] trainDictionary(List<byte[]> samples, int size) {
+      return DictionaryTrainer.train(samples, size);
+   }
+
+   /**
+    * Compresses a range of bytes, writing the result to the given stream.
+    *
+    * @param dictionary the dictionary to compress with, or {@code null}
+    */
+   void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException;
+
+   /**
+    * @param dictionary the dictionary to compress with, or {@code null}
+    */
+   default byte[] compress(byte[] data, byte[] dictionary) throws IOException {
+      ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 16);
+      compress(data, 0, data.length, dictionary, output);
+      return output.toByteArray();
+   }
+
+   /**
+    * @param dictionary the dictionary the data was compressed with, or {@code null}
+    */
+   byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) throws IOException;
+
+   /**
+    * Decompresses data whose decompressed length was recorded when it was compressed. Codecs which
+    * have to guess the size of their output can decompress straight into an array of that size.
+    *
+    * @param dictionary the dictionary the data was compressed with, or {@code null}
+    * @throws IOException if the decompressed length differs from the given one
+    */
+   default byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, int decompressedLength) throws IOException {
+      byte[] decompressed = decompress(data, offset, length, dictionary);
+      if (decompressed.length != decompressedLength) {
+         throw new IOException(String.format("Decompressed %d bytes instead of %d", decompressed.length, decompressedLength));
+      }
+      return decompressed;
+   }
+}
@@ -0,0 +1,103 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the codecs: {@code none}, {@code gzip}, {@code lz4} and {@code deflate}, {@code zstd}
+ * when zstd-jni is available, plus those registered with the {@link ServiceLoader}.
+ *
+ * @since 9.0
+ */
+public final class Codecs {
+   public static final Codec NONE = new NoneCodec();
+   public static final Codec GZIP = new GzipCodec();
+   public static final Codec LZ4 = new Lz4Codec();
+   public static final Codec DEFLATE = new DeflateCodec();
+
+   private static final Codec[] BY_ID = new Codec[128];
+   private static final Map<String, Codec> BY_NAME = new LinkedHashMap<>();
+
+   static {
+      for (Codec codec : new Codec[]{NONE, GZIP, LZ4, DEFLATE}) {
+         register(codec);
+      }
+      if (zstdAvailable()) {
+         register(new ZstdCodec());
+      }
+      for (Codec codec : ServiceLoader.load(Codec.class, Codecs.class.getClassLoader())) {
+         if (codec.id() < 16 || codec.id() >= BY_ID.length) {
+            throw new IllegalStateException(String.format("Codec %s uses the reserved identifier %d", codec.name(), codec.id()));
+         }
+         register(codec);
+      }
+   }
+
+   private Codecs() {
+   }
+
+   private static boolean zstdAvailable() {
+      try {
+         // initializing the class loads the native library
+         Class.forName("com.github.luben.zstd.Zstd", true, Codecs.class.getClassLoader());
+         return true;
+      } catch (ClassNotFoundException | LinkageError e) {
+         return false;
+      }
+   }
+
+   private static void register(Codec codec) {
+      if (BY_ID[codec.id()] != null || BY_NAME.containsKey(codec.name())) {
+         throw new IllegalStateException(String.format("Duplicate codec %s with identifier %d", codec.name(), codec.id()));
+      }
+      BY_ID[codec.id()] = codec;
+      BY_NAME.put(codec.name(), codec);
+   }
+
+   /**
+    * @return the codec with the given name, or {@code null} if there is none
+    */
+   public static Codec forName(String name) {
+      return BY_NAME.get(name);
+   }
+
+   /**
+    * @return the codec with the given identifier, or {@code null} if there is none
+    */
+   public static Codec forId(int id) {
+      return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+   }
+
+   public static Collection<Codec> all() {
+      return Collections.unmodifiableCollection(BY_NAME.values());
+   }
+
+   private static final class NoneCodec implements Codec {
+      @Override
+      public int id() {
+         return 0;
+      }
+
+      @Override
+      public String name() {
+         return "none";
+      }
+
+      @Override
+      public void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException {
+         output.write(data, offset, length);
+      }
+
+      @Override
+      public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) {
+         byte[] result = new byte[length];
+         System.arraycopy(data, offset, result, 0, length);
+         return result;
+      }
+   }
+}
@@ -0,0 +1,117 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The zlib format, with an optional preset dictionary. Small payloads have little redundancy of
+ * their own, so most of what they have in common with each other is lost to GZIP; a dictionary
+ * trained from sampled payloads gives the compressor that shared content upfront. Unlike
+ * {@link GzipCodec}, the deflater and inflater of each thread are reused.
+ *
+ * @since 9.0
+ */
+final class DeflateCodec implements Codec {
+   // the deflate window, a dictionary longer than this is truncated to its end
+   static final int MAX_DICTIONARY_SIZE = 32768;
+
+   private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+   private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+   private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+   // when the uncompressed size is not known upfront, payloads are inflated into a buffer kept by each
+   // thread and copied once out of it; buffers grown past this size are not kept
+   private static final int MAX_RETAINED_OUTPUT = 1024 * 1024;
+   private static final ThreadLocal<byte[]> OUTPUT = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+   @Override
+   public int id() {
+      return 3;
+   }
+
+   @Override
+   public String name() {
+      return "deflate";
+   }
+
+   @Override
+   public boolean supportsDictionary() {
+      return true;
+   }
+
+   @Override
+   public void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException {
+      Deflater deflater = DEFLATER.get();
+      deflater.reset();
+      if (dictionary != null) {
+         deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(data, offset, length);
+      deflater.finish();
+      byte[] buffer = BUFFER.get();
+      while (!deflater.finished()) {
+         output.write(buffer, 0, deflater.deflate(buffer));
+      }
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) throws IOException {
+      Inflater inflater = INFLATER.get();
+      inflater.reset();
+      inflater.setInput(data, offset, length);
+      byte[] output = OUTPUT.get();
+      int count = inflate(inflater, output, 0, dictionary);
+      while (!inflater.finished()) {
+         output = Arrays.copyOf(output, output.length * 2);
+         count = inflate(inflater, output, count, dictionary);
+      }
+      if (output.length <= MAX_RETAINED_OUTPUT) {
+         OUTPUT.set(output);
+      }
+      return Arrays.copyOf(output, count);
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, int decompressedLength) throws IOException {
+      Inflater inflater = INFLATER.get();
+      inflater.reset();
+      inflater.setInput(data, offset, length);
+      byte[] output = new byte[decompressedLength];
+      int count = inflate(inflater, output, 0, dictionary);
+      if (!inflater.finished()) {
+         // the end of the stream is not always consumed when the output is filled exactly
+         count += inflate(inflater, new byte[1], 0, dictionary);
+      }
+      if (count != decompressedLength || !inflater.finished()) {
+         throw new IOException(String.format("Deflate stream does not hold %d bytes", decompressedLength));
+      }
+      return output;
+   }
+
+   /**
+    * Inflates until the end of the stream, or until the output is full.
+    *
+    * @return the number of bytes in the output
+    */
+   private static int inflate(Inflater inflater, byte[] output, int count, byte[] dictionary) throws IOException {
+      try {
+         while (!inflater.finished() && count < output.length) {
+            int inflated = inflater.inflate(output, count, output.length - count);
+            if (inflated == 0 && !inflater.finished()) {
+               if (inflater.needsDictionary() && dictionary != null) {
+                  inflater.setDictionary(dictionary);
+               } else if (inflater.needsInput() || inflater.needsDictionary()) {
+                  throw new IOException("Truncated deflate stream or missing dictionary");
+               }
+            }
+            count += inflated;
+         }
+         return count;
+      } catch (DataFormatException e) {
+         throw new IOException(e);
+      }
+   }
+}
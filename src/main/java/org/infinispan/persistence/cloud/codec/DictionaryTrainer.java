@@ -0,0 +1,125 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Trains compression dictionaries from sampled payloads, in the spirit of the COVER algorithm of
+ * Zstandard. Every sample is split into overlapping segments, each segment is scored by how many
+ * samples share its 8 byte substrings, and the best segments are picked greedily. The substrings
+ * of a picked segment no longer count for the others, so the dictionary covers as much of the
+ * common content as possible instead of repeating the most frequent part of it. The best
+ * segments end up at the end of the dictionary, closest to the data, where matches are cheapest.
+ *
+ * @since 9.0
+ */
+public final class DictionaryTrainer {
+   private static final int DMER_LENGTH = 8;
+   private static final int SEGMENT_LENGTH = 64;
+
+   private DictionaryTrainer() {
+   }
+
+   /**
+    * @return a dictionary of at most the given size, which may be empty if the samples have
+    * nothing in common
+    */
+   public static byte[] train(List<byte[]> samples, int size) {
+      Map<Long, Integer> frequencies = new HashMap<>();
+      for (byte[] sample : samples) {
+         Set<Long> dmers = new HashSet<>();
+         for (int i = 0; i + DMER_LENGTH <= sample.length; i++) {
+            dmers.add(dmer(sample, i));
+         }
+         for (Long dmer : dmers) {
+            frequencies.merge(dmer, 1, Integer::sum);
+         }
+      }
+      // substrings seen in a single sample are of no use to the others
+      frequencies.values().removeIf(frequency -> frequency < 2);
+
+      PriorityQueue<Segment> candidates = new PriorityQueue<>((a, b) -> Long.compare(b.score, a.score));
+      for (byte[] sample : samples) {
+         for (int start = 0; start + DMER_LENGTH <= sample.length; start += SEGMENT_LENGTH / 2) {
+            Segment segment = new Segment(sample, start, Math.min(SEGMENT_LENGTH, sample.length - start));
+            segment.score = score(segment, frequencies);
+            if (segment.score > 0) {
+               candidates.add(segment);
+            }
+         }
+      }
+
+      List<Segment> selected = new ArrayList<>();
+      int selectedLength = 0;
+      while (selectedLength < size && !candidates.isEmpty()) {
+         // scores only ever decrease, so a segment whose updated score still beats the next one is the best
+         Segment best = candidates.poll();
+         best.score = score(best, frequencies);
+         if (best.score == 0) {
+            continue;
+         }
+         if (!candidates.isEmpty() && best.score < candidates.peek().score) {
+            candidates.add(best);
+            continue;
+         }
+         selected.add(best);
+         selectedLength += best.length;
+         for (int i = best.start; i + DMER_LENGTH <= best.start + best.length; i++) {
+            frequencies.remove(dmer(best.sample, i));
+         }
+      }
+
+      ByteArrayOutputStream dictionary = new ByteArrayOutputStream(selectedLength);
+      for (int i = selected.size() - 1; i >= 0; i--) {
+         Segment segment = selected.get(i);
+         dictionary.write(segment.sample, segment.start, segment.length);
+      }
+      byte[] bytes = dictionary.toByteArray();
+      if (bytes.length > size) {
+         byte[] truncated = new byte[size];
+         System.arraycopy(bytes, bytes.length - size, truncated, 0, size);
+         return truncated;
+      }
+      return bytes;
+   }
+
+   private static long score(Segment segment, Map<Long, Integer> frequencies) {
+      Set<Long> seen = new HashSet<>();
+      long score = 0;
+      for (int i = segment.start; i + DMER_LENGTH <= segment.start + segment.length; i++) {
+         long dmer = dmer(segment.sample, i);
+         Integer frequency = frequencies.get(dmer);
+         if (frequency != null && seen.add(dmer)) {
+            score += frequency;
+         }
+      }
+      return score;
+   }
+
+   private static long dmer(byte[] bytes, int offset) {
+      long value = 0;
+      for (int i = 0; i < DMER_LENGTH; i++) {
+         value = (value << 8) | (bytes[offset + i] & 0xFF);
+      }
+      return value;
+   }
+
+   private static final class Segment {
+      final byte[] sample;
+      final int start;
+      final int length;
+      long score;
+
+      Segment(byte[] sample, int start, int length) {
+         this.sample = sample;
+         this.start = start;
+         this.length = length;
+      }
+   }
+}
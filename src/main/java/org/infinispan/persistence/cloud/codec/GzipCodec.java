@@ -0,0 +1,131 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The GZIP format, as written by the store when {@code compress} was its only compression option.
+ *
+ * @since 9.0
+ */
+final class GzipCodec implements Codec {
+   // the header and the trailer of an empty payload
+   private static final int MIN_SIZE = 18;
+   private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+   // the output allocated up front when the size in the trailer cannot be verified, grown as the payload is inflated
+   private static final int MIN_INITIAL_OUTPUT = 64 * 1024;
+
+   private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+   private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+   @Override
+   public int id() {
+      return 1;
+   }
+
+   @Override
+   public String name() {
+      return "gzip";
+   }
+
+   @Override
+   public void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException {
+      // the same bytes as GZIPOutputStream, with the deflater and the buffer of the thread
+      output.write(HEADER);
+      Deflater deflater = DEFLATER.get();
+      deflater.reset();
+      deflater.setInput(data, offset, length);
+      deflater.finish();
+      byte[] buffer = BUFFER.get();
+      while (!deflater.finished()) {
+         output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      CRC32 crc = new CRC32();
+      crc.update(data, offset, length);
+      writeIntLE(output, (int) crc.getValue());
+      writeIntLE(output, length);
+   }
+
+   /**
+    * The trailer ends with the uncompressed size, but it is not trusted: a corrupt payload could
+    * claim up to 2 GB. The output starts with a size bounded by the compressed length and grows as
+    * the payload is inflated.
+    */
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) throws IOException {
+      int size = trailerSize(data, offset, length);
+      return inflate(data, offset, length, size, (int) Math.min(size, Math.max(MIN_INITIAL_OUTPUT, 4L * length)));
+   }
+
+   /**
+    * The size in the trailer is checked against the recorded one, then the payload is inflated
+    * straight into an array of that size.
+    */
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, int decompressedLength) throws IOException {
+      int size = trailerSize(data, offset, length);
+      if (size != decompressedLength) {
+         throw new IOException(String.format("GZIP payload of %d bytes instead of %d", size, decompressedLength));
+      }
+      return inflate(data, offset, length, size, size);
+   }
+
+   private static int trailerSize(byte[] data, int offset, int length) throws IOException {
+      if (length < MIN_SIZE) {
+         throw new IOException("Truncated GZIP payload");
+      }
+      int size = readIntLE(data, offset + length - 4);
+      if (size < 0) {
+         throw new IOException("Invalid GZIP payload size " + size);
+      }
+      return size;
+   }
+
+   /**
+    * @param size the uncompressed size, which the output never grows past
+    * @param capacity the size of the output allocated up front
+    */
+   private static byte[] inflate(byte[] data, int offset, int length, int size, int capacity) throws IOException {
+      byte[] result = new byte[capacity];
+      int count = 0;
+      try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data, offset, length))) {
+         while (true) {
+            if (count == result.length) {
+               if (count == size) {
+                  if (input.read() >= 0) {
+                     throw new IOException("Corrupt GZIP payload");
+                  }
+                  break;
+               }
+               result = Arrays.copyOf(result, (int) Math.min(size, 2L * count));
+            }
+            int read = input.read(result, count, result.length - count);
+            if (read < 0) {
+               break;
+            }
+            count += read;
+         }
+      }
+      if (count != size) {
+         throw new IOException("Corrupt GZIP payload");
+      }
+      return result;
+   }
+
+   private static void writeIntLE(OutputStream output, int value) throws IOException {
+      output.write(value);
+      output.write(value >>> 8);
+      output.write(value >>> 16);
+      output.write(value >>> 24);
+   }
+
+   private static int readIntLE(byte[] bytes, int offset) {
+      return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+   }
+}
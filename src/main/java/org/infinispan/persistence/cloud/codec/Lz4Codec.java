@@ -0,0 +1,374 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The LZ4 frame format, so payloads can be read by any LZ4 implementation. Frames record the
+ * content size and a checksum of the content, and are split into independent blocks of at most
+ * 4 MB, which are stored uncompressed when compressing does not shrink them. The compressor is the
+ * greedy single pass algorithm of the reference implementation, without its acceleration
+ * heuristics: it trades some ratio for speed, which is what matters for the small payloads the
+ * store usually handles.
+ *
+ * @since 9.0
+ */
+final class Lz4Codec implements Codec {
+   private static final int MAGIC = 0x184D2204;
+   private static final int VERSION = 0x40;
+   private static final int VERSION_MASK = 0xC0;
+   private static final int INDEPENDENT_BLOCKS = 0x20;
+   private static final int BLOCK_CHECKSUM = 0x10;
+   private static final int CONTENT_SIZE = 0x08;
+   private static final int CONTENT_CHECKSUM = 0x04;
+   private static final int DICTIONARY_ID = 0x01;
+   // the flags and block descriptor of the frames written by the codec, whose blocks are up to 4 MB
+   private static final int FLAGS = VERSION | INDEPENDENT_BLOCKS | CONTENT_SIZE | CONTENT_CHECKSUM;
+   private static final int BLOCK_SIZE_ID = 7;
+   private static final int UNCOMPRESSED_BLOCK = 0x80000000;
+   // the magic number, flags, block descriptor, content size and header checksum
+   private static final int HEADER_SIZE = 15;
+   // the end mark and the content checksum
+   private static final int END_SIZE = 8;
+   // a byte of a block never decompresses to more than 255 bytes
+   private static final int MAX_RATIO = 255;
+   private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+   private static final int MIN_MATCH = 4;
+   private static final int MAX_OFFSET = 65535;
+   // the last match has to start at least 12 bytes before the end, the last 5 bytes are always literals
+   private static final int MF_LIMIT = 12;
+   private static final int LAST_LITERALS = 5;
+   private static final int HASH_LOG = 12;
+
+   private static final int MAX_RETAINED_OUTPUT = 1024 * 1024;
+
+   private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+   // the frame is built in a buffer kept by each thread, then written to the output
+   private static final ThreadLocal<byte[]> OUTPUT = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+   @Override
+   public int id() {
+      return 2;
+   }
+
+   @Override
+   public String name() {
+      return "lz4";
+   }
+
+   @Override
+   public void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException {
+      int blockSize = blockSize(BLOCK_SIZE_ID);
+      int blocks = (length + blockSize - 1) / blockSize;
+      long maxLength = HEADER_SIZE + (long) blocks * 20 + length + length / 255 + END_SIZE;
+      if (maxLength > MAX_ARRAY_SIZE) {
+         throw new IOException("Payload of " + length + " bytes is too large");
+      }
+      byte[] frame = OUTPUT.get();
+      if (frame.length < maxLength) {
+         frame = new byte[(int) maxLength];
+         if (maxLength <= MAX_RETAINED_OUTPUT) {
+            OUTPUT.set(frame);
+         }
+      }
+      writeIntLE(frame, 0, MAGIC);
+      frame[4] = (byte) FLAGS;
+      frame[5] = (byte) (BLOCK_SIZE_ID << 4);
+      writeIntLE(frame, 6, length);
+      writeIntLE(frame, 10, 0);
+      frame[14] = headerChecksum(frame, 4, 10);
+      int op = HEADER_SIZE;
+      for (int start = offset; start < offset + length; start += blockSize) {
+         int blockLength = Math.min(blockSize, offset + length - start);
+         int compressedLength = compressBlock(data, start, blockLength, frame, op + 4);
+         if (compressedLength < blockLength) {
+            writeIntLE(frame, op, compressedLength);
+            op += 4 + compressedLength;
+         } else {
+            writeIntLE(frame, op, blockLength | UNCOMPRESSED_BLOCK);
+            System.arraycopy(data, start, frame, op + 4, blockLength);
+            op += 4 + blockLength;
+         }
+      }
+      writeIntLE(frame, op, 0);
+      writeIntLE(frame, op + 4, XxHash32.hash(data, offset, length, 0));
+      output.write(frame, 0, op + END_SIZE);
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) throws IOException {
+      Frame frame = new Frame(data, offset, length);
+      if (frame.contentSize < 0) {
+         return frame.decode(new byte[0], true);
+      }
+      if (frame.contentSize > (long) length * MAX_RATIO || frame.contentSize > MAX_ARRAY_SIZE) {
+         throw new IOException("Invalid LZ4 content size " + frame.contentSize);
+      }
+      return frame.decode(new byte[(int) frame.contentSize], false);
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, int decompressedLength) throws IOException {
+      Frame frame = new Frame(data, offset, length);
+      if (frame.contentSize >= 0 && frame.contentSize != decompressedLength) {
+         throw new IOException(String.format("LZ4 frame of %d bytes instead of %d", frame.contentSize, decompressedLength));
+      }
+      return frame.decode(new byte[decompressedLength], false);
+   }
+
+   private static int blockSize(int id) {
+      return 1 << (2 * id + 8);
+   }
+
+   private static byte headerChecksum(byte[] bytes, int offset, int length) {
+      return (byte) (XxHash32.hash(bytes, offset, length, 0) >>> 8);
+   }
+
+   /**
+    * The header of a frame, read and checked, followed by its blocks.
+    */
+   private static final class Frame {
+      final byte[] data;
+      final int end;
+      final int flags;
+      final int blockSize;
+      // -1 when the frame does not record it
+      final long contentSize;
+      int position;
+
+      Frame(byte[] data, int offset, int length) throws IOException {
+         this.data = data;
+         this.end = offset + length;
+         if (length < 7 + 4) {
+            throw new IOException("Truncated LZ4 frame");
+         }
+         if (XxHash32.readIntLE(data, offset) != MAGIC) {
+            throw new IOException("Not an LZ4 frame");
+         }
+         flags = data[offset + 4] & 0xFF;
+         int blockSizeId = (data[offset + 5] >>> 4) & 0x07;
+         if ((flags & VERSION_MASK) != VERSION || (flags & 0x02) != 0 || (data[offset + 5] & 0x8F) != 0 || blockSizeId < 4) {
+            throw new IOException("Unsupported LZ4 frame descriptor");
+         }
+         if ((flags & DICTIONARY_ID) != 0) {
+            throw new IOException("LZ4 frames with a dictionary are not supported");
+         }
+         blockSize = blockSize(blockSizeId);
+         int descriptorLength = (flags & CONTENT_SIZE) != 0 ? 10 : 2;
+         if (length < 4 + descriptorLength + 1 + 4) {
+            throw new IOException("Truncated LZ4 frame");
+         }
+         contentSize = (flags & CONTENT_SIZE) != 0 ?
+               (XxHash32.readIntLE(data, offset + 6) & 0xFFFFFFFFL) | (long) XxHash32.readIntLE(data, offset + 10) << 32 : -1;
+         if (contentSize < 0 && (flags & CONTENT_SIZE) != 0) {
+            throw new IOException("Invalid LZ4 content size");
+         }
+         if (headerChecksum(data, offset + 4, descriptorLength) != data[offset + 4 + descriptorLength]) {
+            throw new IOException("Corrupt LZ4 frame header");
+         }
+         position = offset + 4 + descriptorLength + 1;
+      }
+
+      /**
+       * Decodes the blocks into the given output, which is only grown when allowed.
+       */
+      byte[] decode(byte[] output, boolean grow) throws IOException {
+         int op = 0;
+         while (true) {
+            int blockHeader = next(4);
+            if (blockHeader == 0) {
+               break;
+            }
+            int blockLength = blockHeader & ~UNCOMPRESSED_BLOCK;
+            if (blockLength > blockSize || blockLength > end - position) {
+               throw new IOException("Corrupt LZ4 frame");
+            }
+            if (grow && output.length - op < blockSize) {
+               if (op > MAX_ARRAY_SIZE - blockSize) {
+                  throw new IOException("LZ4 frame is too large");
+               }
+               output = Arrays.copyOf(output, (int) Math.min(MAX_ARRAY_SIZE, Math.max(2L * output.length, op + blockSize)));
+            }
+            if ((blockHeader & UNCOMPRESSED_BLOCK) != 0) {
+               if (blockLength > output.length - op) {
+                  throw new IOException("Corrupt LZ4 frame");
+               }
+               System.arraycopy(data, position, output, op, blockLength);
+               op += blockLength;
+            } else {
+               // dependent blocks may refer to the content of the previous ones
+               int windowStart = (flags & INDEPENDENT_BLOCKS) != 0 ? op : 0;
+               op = decompressBlock(data, position, blockLength, output, op, windowStart);
+            }
+            if ((flags & BLOCK_CHECKSUM) != 0) {
+               int checksum = XxHash32.hash(data, position, blockLength, 0);
+               position += blockLength;
+               if (next(4) != checksum) {
+                  throw new IOException("Corrupt LZ4 block");
+               }
+            } else {
+               position += blockLength;
+            }
+         }
+         if (grow) {
+            output = Arrays.copyOf(output, op);
+         } else if (op != output.length) {
+            throw new IOException(String.format("LZ4 frame holds %d bytes instead of %d", op, output.length));
+         }
+         if ((flags & CONTENT_CHECKSUM) != 0 && next(4) != XxHash32.hash(output, 0, output.length, 0)) {
+            throw new IOException("Corrupt LZ4 frame content");
+         }
+         if (position != end) {
+            throw new IOException("Trailing bytes after the LZ4 frame");
+         }
+         return output;
+      }
+
+      private int next(int length) throws IOException {
+         if (end - position < length) {
+            throw new IOException("Truncated LZ4 frame");
+         }
+         int value = XxHash32.readIntLE(data, position);
+         position += length;
+         return value;
+      }
+   }
+
+   static int compressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+      int end = srcOff + srcLen;
+      int anchor = srcOff;
+      int op = dstOff;
+      if (srcLen > MF_LIMIT) {
+         int[] table = HASH_TABLE.get();
+         Arrays.fill(table, -1);
+         int matchLimit = end - LAST_LITERALS;
+         int ip = srcOff;
+         while (ip < end - MF_LIMIT) {
+            int sequence = XxHash32.readIntLE(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || XxHash32.readIntLE(src, ref) != sequence) {
+               ip++;
+               continue;
+            }
+            while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+               ip--;
+               ref--;
+            }
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+               matchLength++;
+            }
+            op = writeLiterals(src, anchor, ip - anchor, matchLength - MIN_MATCH, dst, op);
+            dst[op++] = (byte) (ip - ref);
+            dst[op++] = (byte) ((ip - ref) >>> 8);
+            op = writeLength(matchLength - MIN_MATCH, dst, op);
+            ip += matchLength;
+            anchor = ip;
+         }
+      }
+      op = writeLiterals(src, anchor, end - anchor, 0, dst, op);
+      return op - dstOff;
+   }
+
+   /**
+    * Writes the token, the literal length and the literals of a sequence.
+    */
+   private static int writeLiterals(byte[] src, int start, int length, int matchLength, byte[] dst, int op) {
+      dst[op++] = (byte) ((Math.min(length, 15) << 4) | Math.min(matchLength, 15));
+      op = writeLength(length, dst, op);
+      System.arraycopy(src, start, dst, op, length);
+      return op + length;
+   }
+
+   private static int writeLength(int length, byte[] dst, int op) {
+      if (length >= 15) {
+         length -= 15;
+         while (length >= 255) {
+            dst[op++] = (byte) 255;
+            length -= 255;
+         }
+         dst[op++] = (byte) length;
+      }
+      return op;
+   }
+
+   /**
+    * Decompresses a block into the output, starting at the given position.
+    *
+    * @param windowStart the first byte of the output which matches may refer to
+    * @return the position after the decompressed bytes
+    */
+   static int decompressBlock(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int windowStart) throws IOException {
+      int ip = srcOff;
+      int end = srcOff + srcLen;
+      int op = dstOff;
+      while (true) {
+         if (ip >= end) {
+            throw new IOException("Truncated LZ4 block");
+         }
+         int token = src[ip++] & 0xFF;
+         int literalLength = token >>> 4;
+         if (literalLength == 15) {
+            int b;
+            do {
+               if (ip >= end) {
+                  throw new IOException("Truncated LZ4 block");
+               }
+               b = src[ip++] & 0xFF;
+               literalLength += b;
+            } while (b == 255);
+         }
+         if (literalLength > end - ip || literalLength > dst.length - op) {
+            throw new IOException("Corrupt LZ4 block");
+         }
+         System.arraycopy(src, ip, dst, op, literalLength);
+         ip += literalLength;
+         op += literalLength;
+         if (ip == end) {
+            return op;
+         }
+
+         if (end - ip < 2) {
+            throw new IOException("Truncated LZ4 block");
+         }
+         int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+         ip += 2;
+         int matchLength = token & 0x0F;
+         if (matchLength == 15) {
+            int b;
+            do {
+               if (ip >= end) {
+                  throw new IOException("Truncated LZ4 block");
+               }
+               b = src[ip++] & 0xFF;
+               matchLength += b;
+            } while (b == 255);
+         }
+         matchLength += MIN_MATCH;
+         if (offset == 0 || offset > op - windowStart || matchLength > dst.length - op) {
+            throw new IOException("Corrupt LZ4 block");
+         }
+         int ref = op - offset;
+         if (offset >= matchLength) {
+            System.arraycopy(dst, ref, dst, op, matchLength);
+            op += matchLength;
+         } else {
+            // overlapping match, which repeats the last offset bytes
+            for (int i = 0; i < matchLength; i++) {
+               dst[op++] = dst[ref++];
+            }
+         }
+      }
+   }
+
+   private static void writeIntLE(byte[] bytes, int offset, int value) {
+      bytes[offset] = (byte) value;
+      bytes[offset + 1] = (byte) (value >>> 8);
+      bytes[offset + 2] = (byte) (value >>> 16);
+      bytes[offset + 3] = (byte) (value >>> 24);
+   }
+}
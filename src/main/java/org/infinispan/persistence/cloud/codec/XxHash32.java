@@ -0,0 +1,63 @@
+package org.infinispan.persistence.cloud.codec;
+
+/**
+ * The 32 bit xxHash, which the LZ4 frame format uses for its header and content checksums.
+ *
+ * @since 9.0
+ */
+final class XxHash32 {
+   private static final int PRIME1 = 0x9E3779B1;
+   private static final int PRIME2 = 0x85EBCA77;
+   private static final int PRIME3 = 0xC2B2AE3D;
+   private static final int PRIME4 = 0x27D4EB2F;
+   private static final int PRIME5 = 0x165667B1;
+
+   private XxHash32() {
+   }
+
+   static int hash(byte[] bytes, int offset, int length, int seed) {
+      int end = offset + length;
+      int p = offset;
+      int hash;
+      if (length >= 16) {
+         int limit = end - 16;
+         int v1 = seed + PRIME1 + PRIME2;
+         int v2 = seed + PRIME2;
+         int v3 = seed;
+         int v4 = seed - PRIME1;
+         do {
+            v1 = round(v1, readIntLE(bytes, p));
+            v2 = round(v2, readIntLE(bytes, p + 4));
+            v3 = round(v3, readIntLE(bytes, p + 8));
+            v4 = round(v4, readIntLE(bytes, p + 12));
+            p += 16;
+         } while (p <= limit);
+         hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+      } else {
+         hash = seed + PRIME5;
+      }
+      hash += length;
+      for (; p + 4 <= end; p += 4) {
+         hash += readIntLE(bytes, p) * PRIME3;
+         hash = Integer.rotateLeft(hash, 17) * PRIME4;
+      }
+      for (; p < end; p++) {
+         hash += (bytes[p] & 0xFF) * PRIME5;
+         hash = Integer.rotateLeft(hash, 11) * PRIME1;
+      }
+      hash ^= hash >>> 15;
+      hash *= PRIME2;
+      hash ^= hash >>> 13;
+      hash *= PRIME3;
+      hash ^= hash >>> 16;
+      return hash;
+   }
+
+   private static int round(int accumulator, int input) {
+      return Integer.rotateLeft(accumulator + input * PRIME2, 13) * PRIME1;
+   }
+
+   static int readIntLE(byte[] bytes, int offset) {
+      return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+   }
+}
@@ -0,0 +1,151 @@
+package org.infinispan.persistence.cloud.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+
+/**
+ * Zstandard, through the optional zstd-jni library, which {@link Codecs} only registers when it is
+ * on the classpath and its native library loads. Zstandard compresses about as well as GZIP at a
+ * fraction of its cost, and its dictionaries are trained by the library itself, with the entropy
+ * tables which make them much more effective than a preset deflate dictionary on small payloads.
+ * Frames record their content size, which is checked before the output is allocated.
+ *
+ * @since 9.0
+ */
+final class ZstdCodec implements Codec {
+   private static final int LEVEL = 3;
+   private static final int MAGIC = 0xFD2FB528;
+   // a block of 3 bytes repeats one byte over up to 128 KB
+   private static final int MAX_RATIO = 32768;
+   private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+   // the same dictionary arrays are used over and over, digesting them once per array is enough
+   private final Map<byte[], ZstdDictCompress> compressDictionaries = Collections.synchronizedMap(new WeakHashMap<>());
+   private final Map<byte[], ZstdDictDecompress> decompressDictionaries = Collections.synchronizedMap(new WeakHashMap<>());
+
+   @Override
+   public int id() {
+      return 4;
+   }
+
+   @Override
+   public String name() {
+      return "zstd";
+   }
+
+   @Override
+   public boolean supportsDictionary() {
+      return true;
+   }
+
+   @Override
+   public byte[] trainDictionary(List<byte[]> samples, int size) {
+      long sampleBytes = 0;
+      for (byte[] sample : samples) {
+         sampleBytes += sample.length;
+      }
+      ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(sampleBytes, MAX_ARRAY_SIZE), size);
+      for (byte[] sample : samples) {
+         trainer.addSample(sample);
+      }
+      try {
+         return trainer.trainSamples();
+      } catch (RuntimeException e) {
+         // too few or too uniform samples for the trainer, whose dictionaries still help
+         return DictionaryTrainer.train(samples, size);
+      }
+   }
+
+   @Override
+   public void compress(byte[] data, int offset, int length, byte[] dictionary, OutputStream output) throws IOException {
+      byte[] src = range(data, offset, length);
+      byte[] dst = new byte[(int) Zstd.compressBound(length)];
+      long result = dictionary == null ? Zstd.compress(dst, src, LEVEL) :
+            Zstd.compress(dst, src, compressDictionaries.computeIfAbsent(dictionary, d -> new ZstdDictCompress(d, LEVEL)));
+      output.write(dst, 0, (int) check(result));
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary) throws IOException {
+      long contentSize = contentSize(data, offset, length);
+      if (contentSize < 0 || contentSize > (long) length * MAX_RATIO || contentSize > MAX_ARRAY_SIZE) {
+         throw new IOException("Invalid Zstandard content size " + contentSize);
+      }
+      return decompress(data, offset, length, dictionary, new byte[(int) contentSize]);
+   }
+
+   @Override
+   public byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, int decompressedLength) throws IOException {
+      long contentSize = contentSize(data, offset, length);
+      if (contentSize >= 0 && contentSize != decompressedLength) {
+         throw new IOException(String.format("Zstandard frame of %d bytes instead of %d", contentSize, decompressedLength));
+      }
+      return decompress(data, offset, length, dictionary, new byte[decompressedLength]);
+   }
+
+   private byte[] decompress(byte[] data, int offset, int length, byte[] dictionary, byte[] output) throws IOException {
+      byte[] src = range(data, offset, length);
+      long result = dictionary == null ? Zstd.decompress(output, src) :
+            Zstd.decompress(output, src, decompressDictionaries.computeIfAbsent(dictionary, ZstdDictDecompress::new));
+      if (check(result) != output.length) {
+         throw new IOException(String.format("Zstandard frame holds %d bytes instead of %d", result, output.length));
+      }
+      return output;
+   }
+
+   private static long check(long result) throws IOException {
+      if (Zstd.isError(result)) {
+         throw new IOException("Zstandard error: " + Zstd.getErrorName(result));
+      }
+      return result;
+   }
+
+   private static byte[] range(byte[] data, int offset, int length) {
+      return offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+   }
+
+   /**
+    * Reads the content size from the header of a frame.
+    *
+    * @return the content size, or -1 if the frame does not record it
+    */
+   static long contentSize(byte[] data, int offset, int length) throws IOException {
+      if (length < 6 || readLE(data, offset, 4) != (MAGIC & 0xFFFFFFFFL)) {
+         throw new IOException("Not a Zstandard frame");
+      }
+      int descriptor = data[offset + 4] & 0xFF;
+      int sizeFlag = descriptor >>> 6;
+      boolean singleSegment = (descriptor & 0x20) != 0;
+      int position = offset + 5 + (singleSegment ? 0 : 1) + new int[]{0, 1, 2, 4}[descriptor & 0x03];
+      int sizeLength = sizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << sizeFlag;
+      if (sizeLength == 0) {
+         return -1;
+      }
+      if (position + sizeLength > offset + length) {
+         throw new IOException("Truncated Zstandard frame");
+      }
+      long size = readLE(data, position, sizeLength);
+      if (size < 0) {
+         throw new IOException("Invalid Zstandard content size");
+      }
+      return sizeLength == 2 ? size + 256 : size;
+   }
+
+   private static long readLE(byte[] bytes, int offset, int length) {
+      long value = 0;
+      for (int i = length - 1; i >= 0; i--) {
+         value = (value << 8) | (bytes[offset + i] & 0xFF);
+      }
+      return value;
+   }
+}
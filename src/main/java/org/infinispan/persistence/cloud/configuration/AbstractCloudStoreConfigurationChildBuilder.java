@@ -66,4 +66,144 @@ public abstract class AbstractCloudStoreConfigurationChildBuilder<S> extends Abs
    public CloudStoreConfigurationBuilder normalizeCacheNames(boolean normalizeCacheNames) {
       return builder.normalizeCacheNames(normalizeCacheNames);
    }
+
+   @Override
+   public CloudStoreConfigurationBuilder maxConcurrentRequests(int maxConcurrentRequests) {
+      return builder.maxConcurrentRequests(maxConcurrentRequests);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder maxPendingRequests(int maxPendingRequests) {
+      return builder.maxPendingRequests(maxPendingRequests);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder expirationIndex(boolean expirationIndex) {
+      return builder.expirationIndex(expirationIndex);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder expirationBucketSize(long expirationBucketSize) {
+      return builder.expirationBucketSize(expirationBucketSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilter(boolean bloomFilter) {
+      return builder.bloomFilter(bloomFilter);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilterExpectedEntries(int bloomFilterExpectedEntries) {
+      return builder.bloomFilterExpectedEntries(bloomFilterExpectedEntries);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilterFalsePositiveRate(Double bloomFilterFalsePositiveRate) {
+      return builder.bloomFilterFalsePositiveRate(bloomFilterFalsePositiveRate);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder readCacheLocation(String readCacheLocation) {
+      return builder.readCacheLocation(readCacheLocation);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder readCacheSize(long readCacheSize) {
+      return builder.readCacheSize(readCacheSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packed(boolean packed) {
+      return builder.packed(packed);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packSize(long packSize) {
+      return builder.packSize(packSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packCompactionThreshold(Double packCompactionThreshold) {
+      return builder.packCompactionThreshold(packCompactionThreshold);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder codec(String codec) {
+      return builder.codec(codec);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionThreshold(int compressionThreshold) {
+      return builder.compressionThreshold(compressionThreshold);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionDictionarySize(int compressionDictionarySize) {
+      return builder.compressionDictionarySize(compressionDictionarySize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionDictionarySamples(int compressionDictionarySamples) {
+      return builder.compressionDictionarySamples(compressionDictionarySamples);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder listingPartitions(int listingPartitions) {
+      return builder.listingPartitions(listingPartitions);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder snapshotInterval(long snapshotInterval) {
+      return builder.snapshotInterval(snapshotInterval);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackLocation(String writeBackLocation) {
+      return builder.writeBackLocation(writeBackLocation);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackFlushInterval(long writeBackFlushInterval) {
+      return builder.writeBackFlushInterval(writeBackFlushInterval);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackFlushSize(int writeBackFlushSize) {
+      return builder.writeBackFlushSize(writeBackFlushSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackJournalSize(long writeBackJournalSize) {
+      return builder.writeBackJournalSize(writeBackJournalSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder keyMappingCacheSize(int keyMappingCacheSize) {
+      return builder.keyMappingCacheSize(keyMappingCacheSize);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder adaptiveConcurrency(boolean adaptiveConcurrency) {
+      return builder.adaptiveConcurrency(adaptiveConcurrency);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder maxRetries(int maxRetries) {
+      return builder.maxRetries(maxRetries);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder retryBackoff(long retryBackoff) {
+      return builder.retryBackoff(retryBackoff);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder hedgePercentile(double hedgePercentile) {
+      return builder.hedgePercentile(hedgePercentile);
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder hedgeRate(int hedgeRate) {
+      return builder.hedgeRate(hedgeRate);
+   }
 }
@@ -31,10 +31,38 @@ public class CloudStoreConfiguration extends AbstractStoreConfiguration {
    final static AttributeDefinition<String> ENDPOINT = AttributeDefinition.builder("endpoint", null, String.class).immutable().build();
    final static AttributeDefinition<Boolean> COMPRESS = AttributeDefinition.builder("compress", false).immutable().build();
    final static AttributeDefinition<Boolean> NORMALIZE = AttributeDefinition.builder("normalize-cache-names", false).immutable().build();
+   final static AttributeDefinition<Integer> MAX_CONCURRENT_REQUESTS = AttributeDefinition.builder("max-concurrent-requests", 16).immutable().build();
    static final AttributeDefinition<String> KEY2STRING_MAPPER = AttributeDefinition.builder("key2StringMapper" , WrappedByteArrayOrPrimitiveMapper.class.getName()).immutable().xmlName("key-to-string-mapper").build();
+   final static AttributeDefinition<Integer> MAX_PENDING_REQUESTS = AttributeDefinition.builder("max-pending-requests", 1024).immutable().build();
+   final static AttributeDefinition<Boolean> EXPIRATION_INDEX = AttributeDefinition.builder("expiration-index", false).immutable().build();
+   final static AttributeDefinition<Long> EXPIRATION_BUCKET_SIZE = AttributeDefinition.builder("expiration-bucket-size", 60000L).immutable().build();
+   final static AttributeDefinition<Boolean> BLOOM_FILTER = AttributeDefinition.builder("bloom-filter", false).immutable().build();
+   final static AttributeDefinition<Integer> BLOOM_FILTER_EXPECTED_ENTRIES = AttributeDefinition.builder("bloom-filter-expected-entries", 1000000).immutable().build();
+   final static AttributeDefinition<Double> BLOOM_FILTER_FALSE_POSITIVE_RATE = AttributeDefinition.builder("bloom-filter-false-positive-rate", 0.01).immutable().build();
+   final static AttributeDefinition<String> READ_CACHE_LOCATION = AttributeDefinition.builder("read-cache-location", null, String.class).immutable().build();
+   final static AttributeDefinition<Long> READ_CACHE_SIZE = AttributeDefinition.builder("read-cache-size", 268435456L).immutable().build();
+   final static AttributeDefinition<Boolean> PACKED = AttributeDefinition.builder("packed", false).immutable().build();
+   final static AttributeDefinition<Long> PACK_SIZE = AttributeDefinition.builder("pack-size", 4194304L).immutable().build();
+   final static AttributeDefinition<Double> PACK_COMPACTION_THRESHOLD = AttributeDefinition.builder("pack-compaction-threshold", 0.5).immutable().build();
+   final static AttributeDefinition<String> CODEC = AttributeDefinition.builder("codec", null, String.class).immutable().build();
+   final static AttributeDefinition<Integer> COMPRESSION_THRESHOLD = AttributeDefinition.builder("compression-threshold", 64).immutable().build();
+   final static AttributeDefinition<Integer> COMPRESSION_DICTIONARY_SIZE = AttributeDefinition.builder("compression-dictionary-size", 0).immutable().build();
+   final static AttributeDefinition<Integer> COMPRESSION_DICTIONARY_SAMPLES = AttributeDefinition.builder("compression-dictionary-samples", 1000).immutable().build();
+   final static AttributeDefinition<Integer> LISTING_PARTITIONS = AttributeDefinition.builder("listing-partitions", 0).immutable().build();
+   final static AttributeDefinition<Long> SNAPSHOT_INTERVAL = AttributeDefinition.builder("snapshot-interval", 0L).immutable().build();
+   final static AttributeDefinition<String> WRITE_BACK_LOCATION = AttributeDefinition.builder("write-back-location", null, String.class).immutable().build();
+   final static AttributeDefinition<Long> WRITE_BACK_FLUSH_INTERVAL = AttributeDefinition.builder("write-back-flush-interval", 1000L).immutable().build();
+   final static AttributeDefinition<Integer> WRITE_BACK_FLUSH_SIZE = AttributeDefinition.builder("write-back-flush-size", 1000).immutable().build();
+   final static AttributeDefinition<Long> WRITE_BACK_JOURNAL_SIZE = AttributeDefinition.builder("write-back-journal-size", 67108864L).immutable().build();
+   final static AttributeDefinition<Integer> KEY_MAPPING_CACHE_SIZE = AttributeDefinition.builder("key-mapping-cache-size", 0).immutable().build();
+   final static AttributeDefinition<Boolean> ADAPTIVE_CONCURRENCY = AttributeDefinition.builder("adaptive-concurrency", true).immutable().build();
+   final static AttributeDefinition<Integer> MAX_RETRIES = AttributeDefinition.builder("max-retries", 5).immutable().build();
+   final static AttributeDefinition<Long> RETRY_BACKOFF = AttributeDefinition.builder("retry-backoff", 100L).immutable().build();
+   final static AttributeDefinition<Double> HEDGE_PERCENTILE = AttributeDefinition.builder("hedge-percentile", 0.0).immutable().build();
+   final static AttributeDefinition<Integer> HEDGE_RATE = AttributeDefinition.builder("hedge-rate", 5).immutable().build();
 
    public static AttributeSet attributeDefinitionSet() {
-      return new AttributeSet(CloudStoreConfiguration.class, AbstractStoreConfiguration.attributeDefinitionSet(), PROVIDER, LOCATION, IDENTITY, CREDENTIAL, CONTAINER, ENDPOINT, COMPRESS, NORMALIZE, KEY2STRING_MAPPER);
+      return new AttributeSet(CloudStoreConfiguration.class, AbstractStoreConfiguration.attributeDefinitionSet(), PROVIDER, LOCATION, IDENTITY, CREDENTIAL, CONTAINER, ENDPOINT, COMPRESS, NORMALIZE, KEY2STRING_MAPPER, MAX_CONCURRENT_REQUESTS, MAX_PENDING_REQUESTS, EXPIRATION_INDEX, EXPIRATION_BUCKET_SIZE, BLOOM_FILTER, BLOOM_FILTER_EXPECTED_ENTRIES, BLOOM_FILTER_FALSE_POSITIVE_RATE, READ_CACHE_LOCATION, READ_CACHE_SIZE, PACKED, PACK_SIZE, PACK_COMPACTION_THRESHOLD, CODEC, COMPRESSION_THRESHOLD, COMPRESSION_DICTIONARY_SIZE, COMPRESSION_DICTIONARY_SAMPLES, LISTING_PARTITIONS, SNAPSHOT_INTERVAL, WRITE_BACK_LOCATION, WRITE_BACK_FLUSH_INTERVAL, WRITE_BACK_FLUSH_SIZE, WRITE_BACK_JOURNAL_SIZE, KEY_MAPPING_CACHE_SIZE, ADAPTIVE_CONCURRENCY, MAX_RETRIES, RETRY_BACKOFF, HEDGE_PERCENTILE, HEDGE_RATE);
    }
 
    private final Attribute<String> provider;
@@ -46,6 +74,34 @@ public class CloudStoreConfiguration extends AbstractStoreConfiguration {
    private final Attribute<Boolean> compress;
    private final Attribute<Boolean> normalizeCacheNames;
    private final Attribute<String> key2StringMapper;
+   private final Attribute<Integer> maxConcurrentRequests;
+   private final Attribute<Integer> maxPendingRequests;
+   private final Attribute<Boolean> expirationIndex;
+   private final Attribute<Long> expirationBucketSize;
+   private final Attribute<Boolean> bloomFilter;
+   private final Attribute<Integer> bloomFilterExpectedEntries;
+   private final Attribute<Double> bloomFilterFalsePositiveRate;
+   private final Attribute<String> readCacheLocation;
+   private final Attribute<Long> readCacheSize;
+   private final Attribute<Boolean> packed;
+   private final Attribute<Long> packSize;
+   private final Attribute<Double> packCompactionThreshold;
+   private final Attribute<String> codec;
+   private final Attribute<Integer> compressionThreshold;
+   private final Attribute<Integer> compressionDictionarySize;
+   private final Attribute<Integer> compressionDictionarySamples;
+   private final Attribute<Integer> listingPartitions;
+   private final Attribute<Long> snapshotInterval;
+   private final Attribute<String> writeBackLocation;
+   private final Attribute<Long> writeBackFlushInterval;
+   private final Attribute<Integer> writeBackFlushSize;
+   private final Attribute<Long> writeBackJournalSize;
+   private final Attribute<Integer> keyMappingCacheSize;
+   private final Attribute<Boolean> adaptiveConcurrency;
+   private final Attribute<Integer> maxRetries;
+   private final Attribute<Long> retryBackoff;
+   private final Attribute<Double> hedgePercentile;
+   private final Attribute<Integer> hedgeRate;
 
 
    public CloudStoreConfiguration(AttributeSet attributeSet, AsyncStoreConfiguration async, SingletonStoreConfiguration singletonStore) {
@@ -59,6 +115,34 @@ public class CloudStoreConfiguration extends AbstractStoreConfiguration {
       this.compress = attributeSet.attribute(COMPRESS);
       this.normalizeCacheNames = attributeSet.attribute(NORMALIZE);
       this.key2StringMapper = attributeSet.attribute(KEY2STRING_MAPPER);
+      this.maxConcurrentRequests = attributeSet.attribute(MAX_CONCURRENT_REQUESTS);
+      this.maxPendingRequests = attributeSet.attribute(MAX_PENDING_REQUESTS);
+      this.expirationIndex = attributeSet.attribute(EXPIRATION_INDEX);
+      this.expirationBucketSize = attributeSet.attribute(EXPIRATION_BUCKET_SIZE);
+      this.bloomFilter = attributeSet.attribute(BLOOM_FILTER);
+      this.bloomFilterExpectedEntries = attributeSet.attribute(BLOOM_FILTER_EXPECTED_ENTRIES);
+      this.bloomFilterFalsePositiveRate = attributeSet.attribute(BLOOM_FILTER_FALSE_POSITIVE_RATE);
+      this.readCacheLocation = attributeSet.attribute(READ_CACHE_LOCATION);
+      this.readCacheSize = attributeSet.attribute(READ_CACHE_SIZE);
+      this.packed = attributeSet.attribute(PACKED);
+      this.packSize = attributeSet.attribute(PACK_SIZE);
+      this.packCompactionThreshold = attributeSet.attribute(PACK_COMPACTION_THRESHOLD);
+      this.codec = attributeSet.attribute(CODEC);
+      this.compressionThreshold = attributeSet.attribute(COMPRESSION_THRESHOLD);
+      this.compressionDictionarySize = attributeSet.attribute(COMPRESSION_DICTIONARY_SIZE);
+      this.compressionDictionarySamples = attributeSet.attribute(COMPRESSION_DICTIONARY_SAMPLES);
+      this.listingPartitions = attributeSet.attribute(LISTING_PARTITIONS);
+      this.snapshotInterval = attributeSet.attribute(SNAPSHOT_INTERVAL);
+      this.writeBackLocation = attributeSet.attribute(WRITE_BACK_LOCATION);
+      this.writeBackFlushInterval = attributeSet.attribute(WRITE_BACK_FLUSH_INTERVAL);
+      this.writeBackFlushSize = attributeSet.attribute(WRITE_BACK_FLUSH_SIZE);
+      this.writeBackJournalSize = attributeSet.attribute(WRITE_BACK_JOURNAL_SIZE);
+      this.keyMappingCacheSize = attributeSet.attribute(KEY_MAPPING_CACHE_SIZE);
+      this.adaptiveConcurrency = attributeSet.attribute(ADAPTIVE_CONCURRENCY);
+      this.maxRetries = attributeSet.attribute(MAX_RETRIES);
+      this.retryBackoff = attributeSet.attribute(RETRY_BACKOFF);
+      this.hedgePercentile = attributeSet.attribute(HEDGE_PERCENTILE);
+      this.hedgeRate = attributeSet.attribute(HEDGE_RATE);
    }
 
    public String provider() {
@@ -96,4 +180,116 @@ public class CloudStoreConfiguration extends AbstractStoreConfiguration {
    public boolean normalizeCacheNames() {
       return normalizeCacheNames.get();
    }
+
+   public int maxConcurrentRequests() {
+      return maxConcurrentRequests.get();
+   }
+
+   public int maxPendingRequests() {
+      return maxPendingRequests.get();
+   }
+
+   public boolean expirationIndex() {
+      return expirationIndex.get();
+   }
+
+   public long expirationBucketSize() {
+      return expirationBucketSize.get();
+   }
+
+   public boolean bloomFilter() {
+      return bloomFilter.get();
+   }
+
+   public int bloomFilterExpectedEntries() {
+      return bloomFilterExpectedEntries.get();
+   }
+
+   public Double bloomFilterFalsePositiveRate() {
+      return bloomFilterFalsePositiveRate.get();
+   }
+
+   public String readCacheLocation() {
+      return readCacheLocation.get();
+   }
+
+   public long readCacheSize() {
+      return readCacheSize.get();
+   }
+
+   public boolean packed() {
+      return packed.get();
+   }
+
+   public long packSize() {
+      return packSize.get();
+   }
+
+   public Double packCompactionThreshold() {
+      return packCompactionThreshold.get();
+   }
+
+   public String codec() {
+      return codec.get();
+   }
+
+   public int compressionThreshold() {
+      return compressionThreshold.get();
+   }
+
+   public int compressionDictionarySize() {
+      return compressionDictionarySize.get();
+   }
+
+   public int compressionDictionarySamples() {
+      return compressionDictionarySamples.get();
+   }
+
+   public int listingPartitions() {
+      return listingPartitions.get();
+   }
+
+   public long snapshotInterval() {
+      return snapshotInterval.get();
+   }
+
+   public String writeBackLocation() {
+      return writeBackLocation.get();
+   }
+
+   public long writeBackFlushInterval() {
+      return writeBackFlushInterval.get();
+   }
+
+   public int writeBackFlushSize() {
+      return writeBackFlushSize.get();
+   }
+
+   public long writeBackJournalSize() {
+      return writeBackJournalSize.get();
+   }
+
+   public int keyMappingCacheSize() {
+      return keyMappingCacheSize.get();
+   }
+
+   public boolean adaptiveConcurrency() {
+      return adaptiveConcurrency.get();
+   }
+
+   public int maxRetries() {
+      return maxRetries.get();
+   }
+
+   public long retryBackoff() {
+      return retryBackoff.get();
+   }
+
+   public double hedgePercentile() {
+      return hedgePercentile.get();
+   }
+
+   public int hedgeRate() {
+      return hedgeRate.get();
+   }
 }
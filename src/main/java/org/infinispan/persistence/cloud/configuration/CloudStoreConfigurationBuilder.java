@@ -1,18 +1,51 @@
 package org.infinispan.persistence.cloud.configuration;
 
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.ADAPTIVE_CONCURRENCY;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.BLOOM_FILTER;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.BLOOM_FILTER_EXPECTED_ENTRIES;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.BLOOM_FILTER_FALSE_POSITIVE_RATE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.CODEC;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.COMPRESS;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.COMPRESSION_DICTIONARY_SAMPLES;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.COMPRESSION_DICTIONARY_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.COMPRESSION_THRESHOLD;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.CONTAINER;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.CREDENTIAL;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.ENDPOINT;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.EXPIRATION_BUCKET_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.EXPIRATION_INDEX;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.HEDGE_PERCENTILE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.HEDGE_RATE;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.IDENTITY;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.KEY2STRING_MAPPER;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.KEY_MAPPING_CACHE_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.LISTING_PARTITIONS;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.LOCATION;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.MAX_CONCURRENT_REQUESTS;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.MAX_PENDING_REQUESTS;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.MAX_RETRIES;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.NORMALIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.PACKED;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.PACK_COMPACTION_THRESHOLD;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.PACK_SIZE;
 import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.PROVIDER;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.READ_CACHE_LOCATION;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.READ_CACHE_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.RETRY_BACKOFF;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.SNAPSHOT_INTERVAL;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.WRITE_BACK_FLUSH_INTERVAL;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.WRITE_BACK_FLUSH_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.WRITE_BACK_JOURNAL_SIZE;
+import static org.infinispan.persistence.cloud.configuration.CloudStoreConfiguration.WRITE_BACK_LOCATION;
 
+import java.util.stream.Collectors;
+
+import org.infinispan.configuration.cache.AbstractStoreConfiguration;
 import org.infinispan.configuration.cache.AbstractStoreConfigurationBuilder;
 import org.infinispan.configuration.cache.PersistenceConfigurationBuilder;
 import org.infinispan.persistence.cloud.CloudStore;
+import org.infinispan.persistence.cloud.codec.Codec;
+import org.infinispan.persistence.cloud.codec.Codecs;
 import org.infinispan.persistence.cloud.logging.Log;
 import org.infinispan.persistence.keymappers.MarshallingTwoWayKey2StringMapper;
 import org.infinispan.util.logging.LogFactory;
@@ -97,6 +130,174 @@ implements CloudStoreConfigurationChildBuilder<CloudStoreConfigurationBuilder> {
       return self();
    }
 
+   @Override
+   public CloudStoreConfigurationBuilder maxConcurrentRequests(int maxConcurrentRequests) {
+      this.attributes.attribute(MAX_CONCURRENT_REQUESTS).set(maxConcurrentRequests);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder maxPendingRequests(int maxPendingRequests) {
+      this.attributes.attribute(MAX_PENDING_REQUESTS).set(maxPendingRequests);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder expirationIndex(boolean expirationIndex) {
+      this.attributes.attribute(EXPIRATION_INDEX).set(expirationIndex);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder expirationBucketSize(long expirationBucketSize) {
+      this.attributes.attribute(EXPIRATION_BUCKET_SIZE).set(expirationBucketSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilter(boolean bloomFilter) {
+      this.attributes.attribute(BLOOM_FILTER).set(bloomFilter);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilterExpectedEntries(int bloomFilterExpectedEntries) {
+      this.attributes.attribute(BLOOM_FILTER_EXPECTED_ENTRIES).set(bloomFilterExpectedEntries);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder bloomFilterFalsePositiveRate(Double bloomFilterFalsePositiveRate) {
+      this.attributes.attribute(BLOOM_FILTER_FALSE_POSITIVE_RATE).set(bloomFilterFalsePositiveRate);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder readCacheLocation(String readCacheLocation) {
+      this.attributes.attribute(READ_CACHE_LOCATION).set(readCacheLocation);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder readCacheSize(long readCacheSize) {
+      this.attributes.attribute(READ_CACHE_SIZE).set(readCacheSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packed(boolean packed) {
+      this.attributes.attribute(PACKED).set(packed);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packSize(long packSize) {
+      this.attributes.attribute(PACK_SIZE).set(packSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder packCompactionThreshold(Double packCompactionThreshold) {
+      this.attributes.attribute(PACK_COMPACTION_THRESHOLD).set(packCompactionThreshold);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder codec(String codec) {
+      this.attributes.attribute(CODEC).set(codec);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionThreshold(int compressionThreshold) {
+      this.attributes.attribute(COMPRESSION_THRESHOLD).set(compressionThreshold);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionDictionarySize(int compressionDictionarySize) {
+      this.attributes.attribute(COMPRESSION_DICTIONARY_SIZE).set(compressionDictionarySize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder compressionDictionarySamples(int compressionDictionarySamples) {
+      this.attributes.attribute(COMPRESSION_DICTIONARY_SAMPLES).set(compressionDictionarySamples);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder listingPartitions(int listingPartitions) {
+      this.attributes.attribute(LISTING_PARTITIONS).set(listingPartitions);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder snapshotInterval(long snapshotInterval) {
+      this.attributes.attribute(SNAPSHOT_INTERVAL).set(snapshotInterval);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackLocation(String writeBackLocation) {
+      this.attributes.attribute(WRITE_BACK_LOCATION).set(writeBackLocation);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackFlushInterval(long writeBackFlushInterval) {
+      this.attributes.attribute(WRITE_BACK_FLUSH_INTERVAL).set(writeBackFlushInterval);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackFlushSize(int writeBackFlushSize) {
+      this.attributes.attribute(WRITE_BACK_FLUSH_SIZE).set(writeBackFlushSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder writeBackJournalSize(long writeBackJournalSize) {
+      this.attributes.attribute(WRITE_BACK_JOURNAL_SIZE).set(writeBackJournalSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder keyMappingCacheSize(int keyMappingCacheSize) {
+      this.attributes.attribute(KEY_MAPPING_CACHE_SIZE).set(keyMappingCacheSize);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder adaptiveConcurrency(boolean adaptiveConcurrency) {
+      this.attributes.attribute(ADAPTIVE_CONCURRENCY).set(adaptiveConcurrency);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder maxRetries(int maxRetries) {
+      this.attributes.attribute(MAX_RETRIES).set(maxRetries);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder retryBackoff(long retryBackoff) {
+      this.attributes.attribute(RETRY_BACKOFF).set(retryBackoff);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder hedgePercentile(double hedgePercentile) {
+      this.attributes.attribute(HEDGE_PERCENTILE).set(hedgePercentile);
+      return self();
+   }
+
+   @Override
+   public CloudStoreConfigurationBuilder hedgeRate(int hedgeRate) {
+      this.attributes.attribute(HEDGE_RATE).set(hedgeRate);
+      return self();
+   }
+
    @Override
    public CloudStoreConfiguration create() {
       return new CloudStoreConfiguration(attributes.protect(), async.create(), singletonStore.create());
@@ -122,5 +323,89 @@ implements CloudStoreConfigurationChildBuilder<CloudStoreConfigurationBuilder> {
       if (attributes.attribute(CONTAINER).isNull()) {
          throw log.containerNotSpecified();
       }
+      if (attributes.attribute(MAX_CONCURRENT_REQUESTS).get() < 1) {
+         throw log.invalidMaxConcurrentRequests(attributes.attribute(MAX_CONCURRENT_REQUESTS).get());
+      }
+      if (attributes.attribute(MAX_PENDING_REQUESTS).get() < 0) {
+         throw log.invalidMaxPendingRequests(attributes.attribute(MAX_PENDING_REQUESTS).get());
+      }
+      if (attributes.attribute(EXPIRATION_BUCKET_SIZE).get() < 1) {
+         throw log.invalidExpirationBucketSize(attributes.attribute(EXPIRATION_BUCKET_SIZE).get());
+      }
+      if (attributes.attribute(BLOOM_FILTER_EXPECTED_ENTRIES).get() < 1) {
+         throw log.invalidBloomFilterExpectedEntries(attributes.attribute(BLOOM_FILTER_EXPECTED_ENTRIES).get());
+      }
+      double falsePositiveRate = attributes.attribute(BLOOM_FILTER_FALSE_POSITIVE_RATE).get();
+      if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+         throw log.invalidBloomFilterFalsePositiveRate(falsePositiveRate);
+      }
+      if (attributes.attribute(READ_CACHE_SIZE).get() < 1024 * 1024) {
+         throw log.invalidReadCacheSize(attributes.attribute(READ_CACHE_SIZE).get());
+      }
+      if (attributes.attribute(PACKED).get() && attributes.attribute(AbstractStoreConfiguration.SHARED).get()) {
+         throw log.packedStoreCannotBeShared();
+      }
+      int listingPartitions = attributes.attribute(LISTING_PARTITIONS).get();
+      if (listingPartitions < 0) {
+         throw log.invalidListingPartitions(listingPartitions);
+      }
+      if (listingPartitions > 0 && (attributes.attribute(PACKED).get() || attributes.attribute(AbstractStoreConfiguration.SEGMENTED).get())) {
+         throw log.listingPartitionsNotSupported();
+      }
+      long snapshotInterval = attributes.attribute(SNAPSHOT_INTERVAL).get();
+      if (snapshotInterval < 0) {
+         throw log.invalidSnapshotInterval(snapshotInterval);
+      }
+      if (snapshotInterval > 0 && attributes.attribute(PACKED).get()) {
+         throw log.snapshotsNotSupported();
+      }
+      if (attributes.attribute(WRITE_BACK_LOCATION).get() != null && attributes.attribute(PACKED).get()) {
+         throw log.writeBackNotSupported();
+      }
+      if (attributes.attribute(WRITE_BACK_FLUSH_INTERVAL).get() < 1) {
+         throw log.invalidWriteBackFlushInterval(attributes.attribute(WRITE_BACK_FLUSH_INTERVAL).get());
+      }
+      if (attributes.attribute(WRITE_BACK_FLUSH_SIZE).get() < 1) {
+         throw log.invalidWriteBackFlushSize(attributes.attribute(WRITE_BACK_FLUSH_SIZE).get());
+      }
+      long journalSize = attributes.attribute(WRITE_BACK_JOURNAL_SIZE).get();
+      if (journalSize < 1024 * 1024 || journalSize > Integer.MAX_VALUE) {
+         throw log.invalidWriteBackJournalSize(journalSize);
+      }
+      if (attributes.attribute(KEY_MAPPING_CACHE_SIZE).get() < 0) {
+         throw log.invalidKeyMappingCacheSize(attributes.attribute(KEY_MAPPING_CACHE_SIZE).get());
+      }
+      if (attributes.attribute(MAX_RETRIES).get() < 0) {
+         throw log.invalidMaxRetries(attributes.attribute(MAX_RETRIES).get());
+      }
+      if (attributes.attribute(RETRY_BACKOFF).get() < 1) {
+         throw log.invalidRetryBackoff(attributes.attribute(RETRY_BACKOFF).get());
+      }
+      if (attributes.attribute(HEDGE_PERCENTILE).get() < 0 || attributes.attribute(HEDGE_PERCENTILE).get() >= 100) {
+         throw log.invalidHedgePercentile(attributes.attribute(HEDGE_PERCENTILE).get());
+      }
+      if (attributes.attribute(HEDGE_RATE).get() < 0 || attributes.attribute(HEDGE_RATE).get() > 100) {
+         throw log.invalidHedgeRate(attributes.attribute(HEDGE_RATE).get());
+      }
+      if (attributes.attribute(PACK_SIZE).get() < 1024) {
+         throw log.invalidPackSize(attributes.attribute(PACK_SIZE).get());
+      }
+      double compactionThreshold = attributes.attribute(PACK_COMPACTION_THRESHOLD).get();
+      if (!(compactionThreshold > 0 && compactionThreshold < 1)) {
+         throw log.invalidPackCompactionThreshold(compactionThreshold);
+      }
+      String codec = attributes.attribute(CODEC).get();
+      if (codec != null && Codecs.forName(codec) == null) {
+         throw log.unknownCodec(codec, Codecs.all().stream().map(Codec::name).collect(Collectors.toList()));
+      }
+      if (attributes.attribute(COMPRESSION_THRESHOLD).get() < 0) {
+         throw log.invalidCompressionThreshold(attributes.attribute(COMPRESSION_THRESHOLD).get());
+      }
+      if (attributes.attribute(COMPRESSION_DICTIONARY_SIZE).get() < 0) {
+         throw log.invalidCompressionDictionarySize(attributes.attribute(COMPRESSION_DICTIONARY_SIZE).get());
+      }
+      if (attributes.attribute(COMPRESSION_DICTIONARY_SAMPLES).get() < 1) {
+         throw log.invalidCompressionDictionarySamples(attributes.attribute(COMPRESSION_DICTIONARY_SAMPLES).get());
+      }
    }
 }
@@ -66,4 +66,149 @@ public interface CloudStoreConfigurationChildBuilder<S> extends StoreConfigurati
     * Normalized cache name will be used for construction of cloud container name in for $CONTAINER-$NORMALIZED_CACHE_NAME. 
     */
    CloudStoreConfigurationBuilder normalizeCacheNames(boolean normalizeCacheNames);
+
+   /**
+    * Maximum number of blob requests the store keeps in flight at once when executing batch
+    * operations. Defaults to 16.
+    */
+   CloudStoreConfigurationBuilder maxConcurrentRequests(int maxConcurrentRequests);
+
+   /**
+    * Maximum number of blob requests which may wait for a free I/O thread. When the limit is
+    * reached, callers submitting further requests block until one completes. Defaults to 1024.
+    */
+   CloudStoreConfigurationBuilder maxPendingRequests(int maxPendingRequests);
+
+   /**
+    * When enabled, the store keeps an index of the entries with an expiration time, grouped in
+    * time buckets, so that purging only lists the buckets which are already due instead of scanning
+    * the whole container.
+    */
+   CloudStoreConfigurationBuilder expirationIndex(boolean expirationIndex);
+
+   /**
+    * Width in milliseconds of the time buckets of the expiration index. Defaults to one minute.
+    */
+   CloudStoreConfigurationBuilder expirationBucketSize(long expirationBucketSize);
+
+   /**
+    * When enabled, the store keeps a Bloom filter of the stored keys, so that loading a key which is not in the store does not require a request to the blob store. Only supported by stores which are not shared.
+    */
+   CloudStoreConfigurationBuilder bloomFilter(boolean bloomFilter);
+
+   /**
+    * Number of entries the Bloom filter is sized for. Defaults to one million.
+    */
+   CloudStoreConfigurationBuilder bloomFilterExpectedEntries(int bloomFilterExpectedEntries);
+
+   /**
+    * Target rate of lookups for absent keys which the Bloom filter fails to reject, as long as the number of entries does not exceed the expected one. Defaults to 0.01.
+    */
+   CloudStoreConfigurationBuilder bloomFilterFalsePositiveRate(Double bloomFilterFalsePositiveRate);
+
+   /**
+    * Directory of the local disk cache of blob payloads. The cache is disabled unless a location is set. Only supported by stores which are not shared.
+    */
+   CloudStoreConfigurationBuilder readCacheLocation(String readCacheLocation);
+
+   /**
+    * Maximum size in bytes of the local disk cache of blob payloads. Defaults to 256 MiB.
+    */
+   CloudStoreConfigurationBuilder readCacheSize(long readCacheSize);
+
+   /**
+    * Stores entries in large pack blobs instead of one blob per entry, with an index of the packs kept in memory. Only supported by stores which are not shared.
+    */
+   CloudStoreConfigurationBuilder packed(boolean packed);
+
+   /**
+    * Target size in bytes of the packs written by compaction, which merges packs smaller than a quarter of it. Defaults to 4 MiB.
+    */
+   CloudStoreConfigurationBuilder packSize(long packSize);
+
+   /**
+    * Ratio of overwritten or deleted bytes above which a pack is rewritten by compaction.
+    */
+   CloudStoreConfigurationBuilder packCompactionThreshold(Double packCompactionThreshold);
+
+   /**
+    * Name of the codec which compresses the payloads: none, gzip, lz4, deflate, zstd when zstd-jni is on the classpath, or the name of a codec registered with the java.util.ServiceLoader. Defaults to gzip if compress is set, none otherwise. Payloads are tagged with their codec, so it can be changed without rewriting the stored entries.
+    */
+   CloudStoreConfigurationBuilder codec(String codec);
+
+   /**
+    * Size in bytes under which payloads are stored uncompressed. Payloads which look incompressible are stored uncompressed as well.
+    */
+   CloudStoreConfigurationBuilder compressionThreshold(int compressionThreshold);
+
+   /**
+    * Size in bytes of the dictionary trained from sampled payloads, for codecs which support dictionaries. Dictionaries are disabled by default.
+    */
+   CloudStoreConfigurationBuilder compressionDictionarySize(int compressionDictionarySize);
+
+   /**
+    * Number of payloads sampled to train the compression dictionary.
+    */
+   CloudStoreConfigurationBuilder compressionDictionarySamples(int compressionDictionarySamples);
+
+   /**
+    * Number of partitions the blobs of a store which is neither segmented nor packed are spread over, under a prefix derived from a hash of their name, so that the container is listed in parallel, for instance by preload. 0, the default, stores the blobs without prefix. The partitions of a container cannot be changed without rewriting its entries.
+    */
+   CloudStoreConfigurationBuilder listingPartitions(int listingPartitions);
+
+   /**
+    * Interval in milliseconds between two snapshots of the entries of a store which is not packed: a few large, compressed blobs from which preload and iteration read the entries instead of requesting each blob on its own. Only the entries written or removed since the last snapshot are then requested individually. 0, the default, writes no snapshots.
+    */
+   CloudStoreConfigurationBuilder snapshotInterval(long snapshotInterval);
+
+   /**
+    * Directory of the local journal of the write-back mode, which is disabled unless a location is set. Writes and deletes are then acknowledged once recorded in the journal, coalesced per key, and flushed to the blob store in batches. Only supported by stores which are neither shared nor packed.
+    */
+   CloudStoreConfigurationBuilder writeBackLocation(String writeBackLocation);
+
+   /**
+    * Interval in milliseconds between two flushes of the pending writes in write-back mode. Defaults to 1 second.
+    */
+   CloudStoreConfigurationBuilder writeBackFlushInterval(long writeBackFlushInterval);
+
+   /**
+    * Number of pending keys in write-back mode which triggers a flush before the interval elapses. Defaults to 1000.
+    */
+   CloudStoreConfigurationBuilder writeBackFlushSize(int writeBackFlushSize);
+
+   /**
+    * Size in bytes of each of the two memory-mapped files of the write-back journal, which bounds the size of the pending writes: when the journal is full, writes wait for a flush. Defaults to 64 MiB.
+    */
+   CloudStoreConfigurationBuilder writeBackJournalSize(long writeBackJournalSize);
+
+   /**
+    * Number of keys whose blob names are cached by the BlobNameKeyMapper, in each direction.
+    * 0 disables the cache. Ignored by the other key mappers.
+    */
+   CloudStoreConfigurationBuilder keyMappingCacheSize(int keyMappingCacheSize);
+
+   /**
+    * Adapts the number of concurrent requests, between 1 and max-concurrent-requests, to the throttling responses and the latency of the provider. Enabled by default.
+    */
+   CloudStoreConfigurationBuilder adaptiveConcurrency(boolean adaptiveConcurrency);
+
+   /**
+    * Number of times a request throttled by the provider is retried, after a jittered exponential backoff and within a retry budget. 0 disables the retries. Unless it is 0, the retries of jclouds are disabled as well, by setting jclouds.max-retries to 0, unless that property is set explicitly. Defaults to 5.
+    */
+   CloudStoreConfigurationBuilder maxRetries(int maxRetries);
+
+   /**
+    * Delay in milliseconds before the first retry of a throttled request, doubled for each of the next ones. Defaults to 100 milliseconds.
+    */
+   CloudStoreConfigurationBuilder retryBackoff(long retryBackoff);
+
+   /**
+    * Percentile of the latency of the loads and contains after which their request is sent a second time, the first answer being used, e.g. 99. 0, the default, disables hedging.
+    */
+   CloudStoreConfigurationBuilder hedgePercentile(double hedgePercentile);
+
+   /**
+    * Largest percentage of the loads and contains whose request is hedged. Defaults to 5.
+    */
+   CloudStoreConfigurationBuilder hedgeRate(int hedgeRate);
 }
@@ -23,7 +23,35 @@ public enum Attribute {
    KEY_TO_STRING_MAPPER("key-to-string-mapper"),
    COMPRESS("compress"),
    OVERRIDES("overrides"),
-   NORMALIZE_CACHE_NAMES("normalize-cache-names")
+   NORMALIZE_CACHE_NAMES("normalize-cache-names"),
+   MAX_CONCURRENT_REQUESTS("max-concurrent-requests"),
+   MAX_PENDING_REQUESTS("max-pending-requests"),
+   EXPIRATION_INDEX("expiration-index"),
+   EXPIRATION_BUCKET_SIZE("expiration-bucket-size"),
+   BLOOM_FILTER("bloom-filter"),
+   BLOOM_FILTER_EXPECTED_ENTRIES("bloom-filter-expected-entries"),
+   BLOOM_FILTER_FALSE_POSITIVE_RATE("bloom-filter-false-positive-rate"),
+   READ_CACHE_LOCATION("read-cache-location"),
+   READ_CACHE_SIZE("read-cache-size"),
+   PACKED("packed"),
+   PACK_SIZE("pack-size"),
+   PACK_COMPACTION_THRESHOLD("pack-compaction-threshold"),
+   CODEC("codec"),
+   COMPRESSION_THRESHOLD("compression-threshold"),
+   COMPRESSION_DICTIONARY_SIZE("compression-dictionary-size"),
+   COMPRESSION_DICTIONARY_SAMPLES("compression-dictionary-samples"),
+   LISTING_PARTITIONS("listing-partitions"),
+   SNAPSHOT_INTERVAL("snapshot-interval"),
+   WRITE_BACK_LOCATION("write-back-location"),
+   WRITE_BACK_FLUSH_INTERVAL("write-back-flush-interval"),
+   WRITE_BACK_FLUSH_SIZE("write-back-flush-size"),
+   WRITE_BACK_JOURNAL_SIZE("write-back-journal-size"),
+   KEY_MAPPING_CACHE_SIZE("key-mapping-cache-size"),
+   ADAPTIVE_CONCURRENCY("adaptive-concurrency"),
+   MAX_RETRIES("max-retries"),
+   RETRY_BACKOFF("retry-backoff"),
+   HEDGE_PERCENTILE("hedge-percentile"),
+   HEDGE_RATE("hedge-rate")
    ;
 
    private final String name;
@@ -127,6 +127,118 @@ public class CloudStoreConfigurationParser implements ConfigurationParser {
             builder.normalizeCacheNames(Boolean.parseBoolean(value));
             break;
          }
+         case MAX_CONCURRENT_REQUESTS: {
+            builder.maxConcurrentRequests(Integer.parseInt(value));
+            break;
+         }
+         case MAX_PENDING_REQUESTS: {
+            builder.maxPendingRequests(Integer.parseInt(value));
+            break;
+         }
+         case EXPIRATION_INDEX: {
+            builder.expirationIndex(Boolean.parseBoolean(value));
+            break;
+         }
+         case EXPIRATION_BUCKET_SIZE: {
+            builder.expirationBucketSize(Long.parseLong(value));
+            break;
+         }
+         case BLOOM_FILTER: {
+            builder.bloomFilter(Boolean.parseBoolean(value));
+            break;
+         }
+         case BLOOM_FILTER_EXPECTED_ENTRIES: {
+            builder.bloomFilterExpectedEntries(Integer.parseInt(value));
+            break;
+         }
+         case BLOOM_FILTER_FALSE_POSITIVE_RATE: {
+            builder.bloomFilterFalsePositiveRate(Double.parseDouble(value));
+            break;
+         }
+         case READ_CACHE_LOCATION: {
+            builder.readCacheLocation(value);
+            break;
+         }
+         case READ_CACHE_SIZE: {
+            builder.readCacheSize(Long.parseLong(value));
+            break;
+         }
+         case PACKED: {
+            builder.packed(Boolean.parseBoolean(value));
+            break;
+         }
+         case PACK_SIZE: {
+            builder.packSize(Long.parseLong(value));
+            break;
+         }
+         case PACK_COMPACTION_THRESHOLD: {
+            builder.packCompactionThreshold(Double.parseDouble(value));
+            break;
+         }
+         case CODEC: {
+            builder.codec(value);
+            break;
+         }
+         case COMPRESSION_THRESHOLD: {
+            builder.compressionThreshold(Integer.parseInt(value));
+            break;
+         }
+         case COMPRESSION_DICTIONARY_SIZE: {
+            builder.compressionDictionarySize(Integer.parseInt(value));
+            break;
+         }
+         case COMPRESSION_DICTIONARY_SAMPLES: {
+            builder.compressionDictionarySamples(Integer.parseInt(value));
+            break;
+         }
+         case LISTING_PARTITIONS: {
+            builder.listingPartitions(Integer.parseInt(value));
+            break;
+         }
+         case SNAPSHOT_INTERVAL: {
+            builder.snapshotInterval(Long.parseLong(value));
+            break;
+         }
+         case WRITE_BACK_LOCATION: {
+            builder.writeBackLocation(value);
+            break;
+         }
+         case WRITE_BACK_FLUSH_INTERVAL: {
+            builder.writeBackFlushInterval(Long.parseLong(value));
+            break;
+         }
+         case WRITE_BACK_FLUSH_SIZE: {
+            builder.writeBackFlushSize(Integer.parseInt(value));
+            break;
+         }
+         case WRITE_BACK_JOURNAL_SIZE: {
+            builder.writeBackJournalSize(Long.parseLong(value));
+            break;
+         }
+         case KEY_MAPPING_CACHE_SIZE: {
+            builder.keyMappingCacheSize(Integer.parseInt(value));
+            break;
+         }
+         case ADAPTIVE_CONCURRENCY: {
+            builder.adaptiveConcurrency(Boolean.parseBoolean(value));
+            break;
+         }
+         case MAX_RETRIES: {
+            builder.maxRetries(Integer.parseInt(value));
+            break;
+         }
+         case RETRY_BACKOFF: {
+            builder.retryBackoff(Long.parseLong(value));
+            break;
+         }
+         case HEDGE_PERCENTILE: {
+            builder.hedgePercentile(Double.parseDouble(value));
+            break;
+         }
+         case HEDGE_RATE: {
+            builder.hedgeRate(Integer.parseInt(value));
+            break;
+         }
          default: {
             Parser.parseStoreAttribute(reader, i, builder);
             break;
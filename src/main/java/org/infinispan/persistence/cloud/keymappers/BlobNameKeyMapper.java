@@ -0,0 +1,267 @@
+package org.infinispan.persistence.cloud.keymappers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.infinispan.commons.io.ByteBuffer;
+import org.infinispan.commons.marshall.StreamingMarshaller;
+import org.infinispan.commons.marshall.WrappedByteArray;
+import org.infinispan.persistence.keymappers.MarshallingTwoWayKey2StringMapper;
+import org.infinispan.persistence.spi.PersistenceException;
+
+/**
+ * Maps any key to a blob name made only of URL-safe characters ({@code A-Z a-z 0-9 - _ .}), which
+ * never needs escaping in a request and never collides with the prefixes used by the store. The
+ * first character of a name tells how the rest of it was encoded:
+ * <ul>
+ * <li>{@code s}: a string key made only of URL-safe characters, as is</li>
+ * <li>{@code u}: any other string key, as its UTF-8 bytes</li>
+ * <li>{@code i} and {@code l}: an integer or a long key, in decimal</li>
+ * <li>{@code w}: a {@link WrappedByteArray} key, as its bytes</li>
+ * <li>{@code m}: any other key, as its marshalled bytes</li>
+ * </ul>
+ * Bytes are written in unpadded base64url, encoded straight from the marshalled buffer into the
+ * characters of the name and decoded straight from the name, without intermediate strings.
+ * <p/>
+ * The mapper can also keep the mappings of the hot keys, in two caches of {@link #setCacheSize(int)}
+ * slots each: one by key for the names written and loaded, one by name for the keys listed by
+ * iterations and purges, so that listing the same names again does not unmarshal their keys again.
+ * The caches are direct-mapped on the hash of the key or of the name, a new mapping replacing the
+ * one in its slot. Cached keys are shared by the callers, which is safe as keys must not be mutated.
+ * <p/>
+ * The names are not those of the other mappers, so a container must keep the mapper it was
+ * written with.
+ *
+ * @since 9.0
+ */
+public class BlobNameKeyMapper implements MarshallingTwoWayKey2StringMapper {
+   private static final char SAFE = 's';
+   private static final char UTF8 = 'u';
+   private static final char INTEGER = 'i';
+   private static final char LONG = 'l';
+   private static final char WRAPPED = 'w';
+   private static final char MARSHALLED = 'm';
+   private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+   private static final byte[] VALUES = new byte[128];
+   private static final boolean[] SAFE_CHARS = new boolean[128];
+
+   static {
+      Arrays.fill(VALUES, (byte) -1);
+      for (int i = 0; i < ALPHABET.length; i++) {
+         VALUES[ALPHABET[i]] = (byte) i;
+         SAFE_CHARS[ALPHABET[i]] = true;
+      }
+      SAFE_CHARS['.'] = true;
+   }
+
+   private StreamingMarshaller marshaller;
+   private volatile Mapping[] byKey;
+   private volatile Mapping[] byName;
+
+   @Override
+   public void setMarshaller(StreamingMarshaller marshaller) {
+      this.marshaller = marshaller;
+   }
+
+   /**
+    * @param cacheSize the number of mappings cached in each direction, rounded up to a power of two,
+    * or 0 to cache none
+    */
+   public void setCacheSize(int cacheSize) {
+      if (cacheSize <= 0) {
+         byKey = null;
+         byName = null;
+      } else {
+         int slots = cacheSize == 1 ? 1 : Integer.highestOneBit(cacheSize - 1) << 1;
+         byKey = new Mapping[slots];
+         byName = new Mapping[slots];
+      }
+   }
+
+   @Override
+   public boolean isSupportedType(Class<?> keyType) {
+      // anything the marshaller supports
+      return true;
+   }
+
+   @Override
+   public String getStringMapping(Object key) {
+      Mapping[] cache = byKey;
+      int slot = 0;
+      if (cache != null) {
+         slot = slot(key.hashCode(), cache);
+         Mapping mapping = cache[slot];
+         if (mapping != null && mapping.key.equals(key)) {
+            return mapping.name;
+         }
+      }
+      String name = encode(key);
+      if (cache != null) {
+         cache[slot] = new Mapping(key, name);
+      }
+      return name;
+   }
+
+   @Override
+   public Object getKeyMapping(String name) {
+      Mapping[] cache = byName;
+      int slot = 0;
+      if (cache != null) {
+         slot = slot(name.hashCode(), cache);
+         Mapping mapping = cache[slot];
+         if (mapping != null && mapping.name.equals(name)) {
+            return mapping.key;
+         }
+      }
+      Object key = decode(name);
+      if (cache != null) {
+         cache[slot] = new Mapping(key, name);
+      }
+      return key;
+   }
+
+   private static int slot(int hashCode, Mapping[] cache) {
+      // spreads the high bits, the low ones of some hash codes are poorly distributed
+      return (hashCode ^ hashCode >>> 16) & (cache.length - 1);
+   }
+
+   private String encode(Object key) {
+      if (key instanceof String) {
+         String string = (String) key;
+         if (isSafe(string)) {
+            return "s".concat(string);
+         }
+         byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+         return encode(UTF8, bytes, 0, bytes.length);
+      }
+      if (key instanceof Integer) {
+         return "i".concat(key.toString());
+      }
+      if (key instanceof Long) {
+         return "l".concat(key.toString());
+      }
+      if (key instanceof WrappedByteArray) {
+         WrappedByteArray wrapped = (WrappedByteArray) key;
+         return encode(WRAPPED, wrapped.getBytes(), wrapped.backArrayOffset(), wrapped.getLength());
+      }
+      try {
+         ByteBuffer buffer = marshaller.objectToBuffer(key);
+         return encode(MARSHALLED, buffer.getBuf(), buffer.getOffset(), buffer.getLength());
+      } catch (IOException e) {
+         throw new PersistenceException(e);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new PersistenceException(e);
+      }
+   }
+
+   private static boolean isSafe(String string) {
+      for (int i = 0; i < string.length(); i++) {
+         char c = string.charAt(i);
+         if (c >= 128 || !SAFE_CHARS[c]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static String encode(char type, byte[] bytes, int offset, int length) {
+      int end = offset + length;
+      char[] name = new char[1 + (length * 4 + 2) / 3];
+      name[0] = type;
+      int i = offset;
+      int j = 1;
+      for (; i + 2 < end; i += 3) {
+         int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | bytes[i + 2] & 0xff;
+         name[j++] = ALPHABET[bits >>> 18];
+         name[j++] = ALPHABET[bits >>> 12 & 0x3f];
+         name[j++] = ALPHABET[bits >>> 6 & 0x3f];
+         name[j++] = ALPHABET[bits & 0x3f];
+      }
+      int remaining = end - i;
+      if (remaining > 0) {
+         int bits = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+         name[j++] = ALPHABET[bits >>> 18];
+         name[j++] = ALPHABET[bits >>> 12 & 0x3f];
+         if (remaining == 2) {
+            name[j] = ALPHABET[bits >>> 6 & 0x3f];
+         }
+      }
+      return new String(name);
+   }
+
+   private Object decode(String name) {
+      if (name.isEmpty()) {
+         throw invalidName(name);
+      }
+      switch (name.charAt(0)) {
+         case SAFE:
+            return name.substring(1);
+         case UTF8:
+            return new String(decodeBytes(name), StandardCharsets.UTF_8);
+         case INTEGER:
+            return Integer.valueOf(name.substring(1));
+         case LONG:
+            return Long.valueOf(name.substring(1));
+         case WRAPPED:
+            return new WrappedByteArray(decodeBytes(name));
+         case MARSHALLED:
+            try {
+               return marshaller.objectFromByteBuffer(decodeBytes(name));
+            } catch (IOException | ClassNotFoundException e) {
+               throw new PersistenceException(e);
+            }
+         default:
+            throw invalidName(name);
+      }
+   }
+
+   private static byte[] decodeBytes(String name) {
+      int end = name.length();
+      if ((end - 1) % 4 == 1) {
+         throw invalidName(name);
+      }
+      byte[] bytes = new byte[(end - 1) * 3 / 4];
+      int i = 1;
+      int j = 0;
+      for (; i + 3 < end; i += 4) {
+         int bits = value(name, i) << 18 | value(name, i + 1) << 12 | value(name, i + 2) << 6 | value(name, i + 3);
+         bytes[j++] = (byte) (bits >>> 16);
+         bytes[j++] = (byte) (bits >>> 8);
+         bytes[j++] = (byte) bits;
+      }
+      int remaining = end - i;
+      if (remaining > 0) {
+         int bits = value(name, i) << 18 | value(name, i + 1) << 12 | (remaining == 3 ? value(name, i + 2) << 6 : 0);
+         bytes[j++] = (byte) (bits >>> 16);
+         if (remaining == 3) {
+            bytes[j] = (byte) (bits >>> 8);
+         }
+      }
+      return bytes;
+   }
+
+   private static int value(String name, int index) {
+      char c = name.charAt(index);
+      int value = c < 128 ? VALUES[c] : -1;
+      if (value < 0) {
+         throw invalidName(name);
+      }
+      return value;
+   }
+
+   private static IllegalArgumentException invalidName(String name) {
+      return new IllegalArgumentException("Not a blob name of " + BlobNameKeyMapper.class.getSimpleName() + ": " + name);
+   }
+
+   private static final class Mapping {
+      final Object key;
+      final String name;
+
+      Mapping(Object key, String name) {
+         this.key = key;
+         this.name = name;
+      }
+   }
+}
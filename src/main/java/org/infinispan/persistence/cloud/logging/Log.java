@@ -22,9 +22,13 @@
 
 package org.infinispan.persistence.cloud.logging;
 
+import java.util.Collection;
+
 import org.infinispan.commons.CacheConfigurationException;
+import org.infinispan.persistence.spi.PersistenceException;
 import org.jboss.logging.BasicLogger;
 import org.jboss.logging.Logger.Level;
+import org.jboss.logging.annotations.Cause;
 import org.jboss.logging.annotations.LogMessage;
 import org.jboss.logging.annotations.Message;
 import org.jboss.logging.annotations.MessageLogger;
@@ -61,4 +65,136 @@ public interface Log extends BasicLogger {
    @LogMessage(level = Level.WARN)
    @Message(value = "The 'overrides' attribute is no longer supported. Use <property> elements instead", id = 7007)
    void overridesRemoved();
+
+   @Message(value = "Invalid max-concurrent-requests %d, it must be greater than zero", id = 7008)
+   CacheConfigurationException invalidMaxConcurrentRequests(int maxConcurrentRequests);
+
+   @Message(value = "Invalid max-pending-requests %d, it must not be negative", id = 7009)
+   CacheConfigurationException invalidMaxPendingRequests(int maxPendingRequests);
+
+   @Message(value = "Invalid expiration-bucket-size %d, it must be greater than zero", id = 7010)
+   CacheConfigurationException invalidExpirationBucketSize(long expirationBucketSize);
+
+   @Message(value = "Key '%s' maps to the blob name '%s' which is reserved for the store's internal data", id = 7011)
+   PersistenceException reservedObjectName(Object key, String objectName);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "The expiration index of container %s is corrupt, rebuilding it from a full scan", id = 7012)
+   void rebuildingExpirationIndex(String containerName, @Cause Throwable cause);
+
+   @Message(value = "Invalid bloom-filter-expected-entries %d, it must be greater than zero", id = 7013)
+   CacheConfigurationException invalidBloomFilterExpectedEntries(int expectedEntries);
+
+   @Message(value = "Invalid bloom-filter-false-positive-rate %f, it must be greater than zero and lower than one", id = 7014)
+   CacheConfigurationException invalidBloomFilterFalsePositiveRate(double falsePositiveRate);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "The Bloom filter of container %s is disabled because the store is shared", id = 7015)
+   void bloomFilterDisabledForSharedStore(String containerName);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to build the Bloom filter of container %s, lookups will not use it", id = 7016)
+   void unableToBuildBloomFilter(String containerName, @Cause Throwable cause);
+
+   @Message(value = "Invalid read-cache-size %d, it must be at least 1048576 bytes", id = 7017)
+   CacheConfigurationException invalidReadCacheSize(long readCacheSize);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "The read cache of container %s is disabled because the store is shared", id = 7018)
+   void readCacheDisabledForSharedStore(String containerName);
+
+   @Message(value = "The packed layout requires a store which is not shared", id = 7019)
+   CacheConfigurationException packedStoreCannotBeShared();
+
+   @Message(value = "Invalid pack-size %d, it must be at least 1024 bytes", id = 7020)
+   CacheConfigurationException invalidPackSize(long packSize);
+
+   @Message(value = "Invalid pack-compaction-threshold %f, it must be greater than zero and lower than one", id = 7021)
+   CacheConfigurationException invalidPackCompactionThreshold(double compactionThreshold);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to compact packs, retrying later", id = 7022)
+   void packCompactionFailed(@Cause Throwable cause);
+
+   @Message(value = "Unknown codec '%s', available codecs are %s", id = 7023)
+   CacheConfigurationException unknownCodec(String codec, Collection<String> codecs);
+
+   @Message(value = "Invalid compression-threshold %d, it must not be negative", id = 7024)
+   CacheConfigurationException invalidCompressionThreshold(int compressionThreshold);
+
+   @Message(value = "Invalid compression-dictionary-size %d, it must not be negative", id = 7025)
+   CacheConfigurationException invalidCompressionDictionarySize(int dictionarySize);
+
+   @Message(value = "Invalid compression-dictionary-samples %d, it must be greater than zero", id = 7026)
+   CacheConfigurationException invalidCompressionDictionarySamples(int dictionarySamples);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to train a compression dictionary for container %s, payloads are compressed without one", id = 7027)
+   void unableToTrainDictionary(String containerName, @Cause Throwable cause);
+
+   @Message(value = "Invalid listing-partitions %d, it must not be negative", id = 7028)
+   CacheConfigurationException invalidListingPartitions(int listingPartitions);
+
+   @Message(value = "listing-partitions only applies to stores which are neither segmented nor packed", id = 7029)
+   CacheConfigurationException listingPartitionsNotSupported();
+
+   @Message(value = "Invalid snapshot-interval %d, it must not be negative", id = 7030)
+   CacheConfigurationException invalidSnapshotInterval(long snapshotInterval);
+
+   @Message(value = "snapshot-interval does not apply to packed stores, whose entries are already read in bulk", id = 7031)
+   CacheConfigurationException snapshotsNotSupported();
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to write a snapshot of container %s", id = 7032)
+   void unableToWriteSnapshot(String containerName, @Cause Throwable cause);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Snapshot part %s of container %s is unreadable, the snapshot is discarded", id = 7033)
+   void discardingSnapshot(String partName, String containerName, @Cause Throwable cause);
+
+   @Message(value = "write-back-location does not apply to packed stores, whose writes are already grouped", id = 7034)
+   CacheConfigurationException writeBackNotSupported();
+
+   @Message(value = "Invalid write-back-flush-interval %d, it must be at least 1 millisecond", id = 7035)
+   CacheConfigurationException invalidWriteBackFlushInterval(long flushInterval);
+
+   @Message(value = "Invalid write-back-flush-size %d, it must be positive", id = 7036)
+   CacheConfigurationException invalidWriteBackFlushSize(int flushSize);
+
+   @Message(value = "Invalid write-back-journal-size %d, it must be between 1 MiB and 2 GiB", id = 7037)
+   CacheConfigurationException invalidWriteBackJournalSize(long journalSize);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Write-back of container %s is disabled because the store is shared", id = 7038)
+   void writeBackDisabledForSharedStore(String containerName);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to flush the pending writes of container %s, they are kept in the journal and flushed again later", id = 7039)
+   void unableToFlushWrites(String containerName, @Cause Throwable cause);
+
+   @Message(value = "Invalid key-mapping-cache-size %d, it must not be negative", id = 7040)
+   CacheConfigurationException invalidKeyMappingCacheSize(int cacheSize);
+
+   @LogMessage(level = Level.WARN)
+   @Message(value = "Unable to register the statistics of container %s with JMX", id = 7041)
+   void unableToRegisterMetrics(String containerName, @Cause Throwable cause);
+
+   @Message(value = "Invalid max-retries %d, it must not be negative", id = 7042)
+   CacheConfigurationException invalidMaxRetries(int maxRetries);
+
+   @Message(value = "Invalid retry-backoff %d, it must be at least 1 millisecond", id = 7043)
+   CacheConfigurationException invalidRetryBackoff(long retryBackoff);
+
+   @Message(value = "Invalid hedge-percentile %s, it must be at least 0 and below 100", id = 7044)
+   CacheConfigurationException invalidHedgePercentile(double hedgePercentile);
+
+   @Message(value = "Invalid hedge-rate %d, it must be between 0 and 100", id = 7045)
+   CacheConfigurationException invalidHedgeRate(int hedgeRate);
+
+   @Message(value = "The blobs of container %s are laid out as [%s], which differs from the configured [%s]", id = 7046)
+   CacheConfigurationException layoutMismatch(String container, String recorded, String configured);
+
+   @LogMessage(level = Level.INFO)
+   @Message(value = "Discarding the read cache of container %s, which may have been written since the cache was filled", id = 7047)
+   void readCacheDiscarded(String containerName);
 }
@@ -0,0 +1,132 @@
+package org.infinispan.persistence.cloud;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.jclouds.blobstore.BlobStore;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.AdaptiveConcurrencyLimiterTest")
+public class AdaptiveConcurrencyLimiterTest extends AbstractInfinispanTest {
+   private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+
+   public void testAcquireBlocksAtTheLimit() throws Exception {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2);
+      limiter.acquire();
+      limiter.acquire();
+      CompletableFuture<Void> blocked = CompletableFuture.runAsync(limiter::acquire);
+      Thread.sleep(50);
+      assertFalse(blocked.isDone());
+
+      limiter.onSuccess(LATENCY);
+      blocked.get(10, TimeUnit.SECONDS);
+      assertEquals(limiter.getInFlight(), 2);
+   }
+
+   public void testThrottlesOfTheSameRoundTripDecreaseTheLimitOnce() throws Exception {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16);
+      // a round trip of a second, so that the test is not slower than it
+      for (int i = 0; i < 16; i++) {
+         limiter.acquire();
+      }
+      limiter.onSuccess(TimeUnit.SECONDS.toNanos(1));
+      limiter.onFailure();
+      Thread.sleep(1100);
+      for (int i = 0; i < 14; i++) {
+         limiter.onThrottle();
+      }
+      assertEquals(limiter.getLimit(), 12);
+      assertEquals(limiter.getDecreaseCount(), 1);
+      assertEquals(limiter.getInFlight(), 0);
+   }
+
+   public void testLimitDecreasesDownToOne() throws Exception {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8);
+      for (int i = 0; i < 20; i++) {
+         limiter.acquire();
+         // no latency recorded yet: every throttle counts as a new round trip
+         Thread.sleep(1);
+         limiter.onThrottle();
+      }
+      assertEquals(limiter.getLimit(), 1);
+      limiter.acquire();
+      CompletableFuture<Void> blocked = CompletableFuture.runAsync(limiter::acquire);
+      Thread.sleep(50);
+      assertFalse(blocked.isDone());
+      limiter.onSuccess(LATENCY);
+      blocked.get(10, TimeUnit.SECONDS);
+      limiter.onSuccess(LATENCY);
+   }
+
+   public void testLimitGrowsBackWhenUsed() throws Exception {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8);
+      limiter.acquire();
+      Thread.sleep(1);
+      limiter.onThrottle();
+      assertEquals(limiter.getLimit(), 6);
+
+      // a single request at a time does not use the limit
+      for (int i = 0; i < 100; i++) {
+         limiter.acquire();
+         limiter.onSuccess(LATENCY);
+      }
+      assertEquals(limiter.getLimit(), 6);
+
+      // one more request for each limit's worth of requests
+      for (int round = 0; round < 50 && limiter.getLimit() < 8; round++) {
+         int limit = limiter.getLimit();
+         for (int i = 0; i < limit; i++) {
+            limiter.acquire();
+         }
+         for (int i = 0; i < limit; i++) {
+            limiter.onSuccess(LATENCY);
+         }
+      }
+      assertEquals(limiter.getLimit(), 8);
+   }
+
+   public void testLimitStopsGrowingWhenTheLatencyRises() throws Exception {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8);
+      for (int i = 0; i < 200; i++) {
+         limiter.acquire();
+         limiter.onSuccess(LATENCY);
+      }
+      limiter.acquire();
+      Thread.sleep(1);
+      limiter.onThrottle();
+      assertEquals(limiter.getLimit(), 6);
+      // enough rounds for the limit to reach the maximum if the latency held
+      for (int round = 0; round < 5; round++) {
+         for (int i = 0; i < 6; i++) {
+            limiter.acquire();
+         }
+         for (int i = 0; i < 6; i++) {
+            limiter.onSuccess(10 * LATENCY);
+         }
+      }
+      assertEquals(limiter.getLimit(), 6);
+   }
+
+   public void testErrorsReleaseThePermit() {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1);
+      BlobStore blobStore = mock(BlobStore.class);
+      when(blobStore.getBlob("container", "name")).thenThrow(new StackOverflowError());
+      AdaptiveBlobStore adaptive = new AdaptiveBlobStore(blobStore, limiter, 5, 1, new CloudStoreMetrics(() -> 0));
+      for (int i = 0; i < 2; i++) {
+         try {
+            adaptive.getBlob("container", "name");
+            fail("The error was swallowed");
+         } catch (StackOverflowError e) {
+            // expected, the second attempt would block forever if the first one leaked the permit
+         }
+      }
+      assertEquals(limiter.getInFlight(), 0);
+   }
+}
@@ -0,0 +1,182 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.ExternalPojo;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the bytes allocated by loads and writes, with the allocation counters of the JVM.
+ */
+@Test(groups = "unit", testName = "persistence.cloud.AllocationCloudCacheStoreTest")
+public class AllocationCloudCacheStoreIT extends AbstractInfinispanTest {
+   private static final int VALUE_SIZE = 256 * 1024;
+   private static final int OPERATIONS = 50;
+
+   private EmbeddedCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+   private MarshalledEntryFactory<Object, Object> entryFactory;
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   public void setUp() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("transient")
+            .identity("dummy")
+            .credential("dummy")
+            .container("allocation")
+            .compress(true)
+            .normalizeCacheNames(true);
+      cacheManager = TestCacheManagerFactory.createCacheManager(builder);
+      ComponentRegistry registry = cacheManager.getCache().getAdvancedCache().getComponentRegistry();
+      store = registry.getComponent(PersistenceManager.class).getStores(CloudStore.class).iterator().next();
+      entryFactory = registry.getComponent(MarshalledEntryFactory.class);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+   }
+
+   private MarshalledEntry<Object, Object> marshalledEntry(Object key, Object value) {
+      return entryFactory.newMarshalledEntry(key, value, null);
+   }
+
+   private static long allocatedBytes() {
+      java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+         throw new SkipException("Allocation counters are not supported by this JVM");
+      }
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+   }
+
+   private static long bytesPerOperation(Runnable operation) {
+      for (int i = 0; i < OPERATIONS; i++) {
+         operation.run();
+      }
+      long start = allocatedBytes();
+      for (int i = 0; i < OPERATIONS; i++) {
+         operation.run();
+      }
+      return (allocatedBytes() - start) / OPERATIONS;
+   }
+
+   private static String compressibleValue() {
+      StringBuilder value = new StringBuilder();
+      Random random = new Random(5);
+      while (value.length() < VALUE_SIZE) {
+         value.append("entry-").append(random.nextInt(1000)).append(';');
+      }
+      return value.toString();
+   }
+
+   public void testLoadCopiesTheValueOnce() {
+      // incompressible, so it is stored as is
+      byte[] value = new byte[VALUE_SIZE];
+      new Random(11).nextBytes(value);
+      store.write(marshalledEntry("k", value));
+
+      long perLoad = bytesPerOperation(() -> store.load("k"));
+      log.infof("%d bytes allocated per load of a %d bytes value", perLoad, VALUE_SIZE);
+      assertTrue(perLoad < 1.25 * VALUE_SIZE, perLoad + " bytes allocated per load");
+   }
+
+   public void testCompressedLoadCopiesTheValueOnce() {
+      store.write(marshalledEntry("k", compressibleValue()));
+
+      long perLoad = bytesPerOperation(() -> store.load("k"));
+      log.infof("%d bytes allocated per load of a %d bytes compressed value", perLoad, VALUE_SIZE);
+      // the decompressed value, plus the much smaller compressed payload
+      assertTrue(perLoad < 1.5 * VALUE_SIZE, perLoad + " bytes allocated per load");
+   }
+
+   public void testValueIsUnmarshalledOnDemand() {
+      store.write(marshalledEntry("k", new CountingValue("v")));
+      CountingValue.reads.set(0);
+
+      MarshalledEntry<Object, Object> entry = store.load("k");
+      assertEquals(entry.getKey(), "k");
+      assertTrue(entry.getValueBytes().getLength() > 0);
+      assertEquals(CountingValue.reads.get(), 0);
+
+      assertEquals(((CountingValue) entry.getValue()).value, "v");
+      entry.getValue();
+      assertEquals(CountingValue.reads.get(), 1);
+   }
+
+   public void testWriteAllocations() {
+      byte[] value = new byte[VALUE_SIZE];
+      new Random(13).nextBytes(value);
+      MarshalledEntry<Object, Object> entry = marshalledEntry("k", value);
+      entry.getValueBytes();
+
+      long perWrite = bytesPerOperation(() -> store.write(entry));
+      log.infof("%d bytes allocated per write of a %d bytes value", perWrite, VALUE_SIZE);
+      // the transient provider makes its own copies of the payload, besides the ones stored
+      assertTrue(perWrite < 3.5 * VALUE_SIZE, perWrite + " bytes allocated per write");
+   }
+
+   public void testCompressedWriteAllocations() {
+      MarshalledEntry<Object, Object> entry = marshalledEntry("k", compressibleValue());
+      entry.getValueBytes();
+
+      long perWrite = bytesPerOperation(() -> store.write(entry));
+      log.infof("%d bytes allocated per write of a %d bytes compressed value", perWrite, VALUE_SIZE);
+      assertTrue(perWrite < VALUE_SIZE, perWrite + " bytes allocated per write");
+   }
+
+   public void testMarshalledValueIsNotMarshalledAgain() {
+      MarshalledEntry<Object, Object> entry = marshalledEntry("k", new CountingValue("v"));
+      entry.getValueBytes();
+      CountingValue.writes.set(0);
+
+      store.write(entry);
+      assertEquals(CountingValue.writes.get(), 0);
+      assertEquals(((CountingValue) store.load("k").getValue()).value, "v");
+   }
+
+   static class CountingValue implements Serializable, ExternalPojo {
+      private static final long serialVersionUID = 1L;
+      static final AtomicInteger reads = new AtomicInteger();
+      static final AtomicInteger writes = new AtomicInteger();
+
+      final String value;
+
+      CountingValue(String value) {
+         this.value = value;
+      }
+
+      private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+         input.defaultReadObject();
+         reads.incrementAndGet();
+      }
+
+      private void writeObject(ObjectOutputStream output) throws IOException {
+         output.defaultWriteObject();
+         writes.incrementAndGet();
+      }
+   }
+}
@@ -0,0 +1,79 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.BlobIoExecutorTest")
+public class BlobIoExecutorTest extends AbstractInfinispanTest {
+
+   public void testSubmittersBlockWhenPendingLimitIsReached() throws Exception {
+      BlobIoExecutor executor = new BlobIoExecutor("test", 1, 1);
+      try {
+         CountDownLatch release = new CountDownLatch(1);
+         CompletableFuture<Integer> running = executor.submit(() -> {
+            release.await();
+            return 1;
+         });
+         CompletableFuture<Integer> queued = executor.submit(() -> 2);
+         eventuallyEquals(1, executor::getQueueDepth);
+         eventuallyEquals(1, executor::getActiveCount);
+
+         CompletableFuture<CompletableFuture<Integer>> blocked = CompletableFuture.supplyAsync(() -> executor.submit(() -> 3));
+         eventually(() -> executor.getBlockedCount() == 1);
+         assertFalse(blocked.isDone());
+
+         release.countDown();
+         assertEquals(running.get(10, TimeUnit.SECONDS).intValue(), 1);
+         assertEquals(queued.get(10, TimeUnit.SECONDS).intValue(), 2);
+         assertEquals(blocked.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS).intValue(), 3);
+         eventuallyEquals(3L, executor::getCompletedCount);
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   public void testNestedSubmissionRunsOnCallerThread() throws Exception {
+      BlobIoExecutor executor = new BlobIoExecutor("test", 1, 0);
+      try {
+         CompletableFuture<Boolean> nested = executor.submit(() -> {
+            Thread outer = Thread.currentThread();
+            return executor.submit(() -> Thread.currentThread() == outer).get();
+         });
+         assertTrue(nested.get(10, TimeUnit.SECONDS));
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   public void testForkedTasksRunConcurrently() throws Exception {
+      BlobIoExecutor executor = new BlobIoExecutor("test", 4, 0);
+      try {
+         // the forking task holds one of the threads, the forked tasks need the three others at once
+         CountDownLatch started = new CountDownLatch(3);
+         CompletableFuture<Boolean> forked = new CompletableFuture<>();
+         executor.execute(() -> {
+            for (int i = 0; i < 3; i++) {
+               executor.fork(() -> {
+                  started.countDown();
+                  try {
+                     forked.complete(started.await(10, TimeUnit.SECONDS));
+                  } catch (InterruptedException e) {
+                     forked.completeExceptionally(e);
+                  }
+               });
+            }
+         });
+         assertTrue(forked.get(10, TimeUnit.SECONDS));
+      } finally {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,47 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.BloomFilterCloudCacheStoreTest")
+public class BloomFilterCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.bloomFilter(true).bloomFilterExpectedEntries(1000);
+   }
+
+   public void testMissingKeysSkipRequests() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      eventually(store::isBloomFilterComplete);
+      store.write(marshalledEntry(internalCacheEntry("present", "v", -1)));
+      assertEquals(store.load("present").getValue(), "v");
+
+      for (int i = 0; i < 100; i++) {
+         assertNull(store.load("missing-" + i));
+         assertFalse(store.contains("missing-" + i));
+      }
+      assertEquals(store.getBloomFilterAvoidedRequests() + store.getBloomFilterFalsePositives(), 200);
+      assertTrue(store.getBloomFilterFalsePositiveRate() < 0.1);
+   }
+
+   public void testSnapshot() {
+      // the transient provider loses its blobs when the store stops, so the snapshot is written and read in place
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      eventually(store::isBloomFilterComplete);
+      store.write(marshalledEntry(internalCacheEntry("present", "v", -1)));
+      store.saveBloomFilterSnapshot();
+      assertTrue(store.getBlobStore().blobExists(store.getContainerName(), CloudStore.BLOOM_FILTER_SNAPSHOT));
+      assertEquals(store.size(), 1);
+
+      assertTrue(store.loadBloomFilterSnapshot());
+      assertFalse(store.getBlobStore().blobExists(store.getContainerName(), CloudStore.BLOOM_FILTER_SNAPSHOT));
+      assertEquals(store.load("present").getValue(), "v");
+      assertNull(store.load("missing"));
+   }
+}
@@ -0,0 +1,55 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.BloomFilterTest")
+public class BloomFilterTest extends AbstractInfinispanTest {
+
+   public void testNoFalseNegatives() {
+      BloomFilter filter = BloomFilter.create(10000, 0.01);
+      for (int i = 0; i < 10000; i++) {
+         filter.add("key-" + i);
+      }
+      for (int i = 0; i < 10000; i++) {
+         assertTrue(filter.mightContain("key-" + i));
+      }
+      int falsePositives = 0;
+      for (int i = 0; i < 10000; i++) {
+         if (filter.mightContain("other-" + i)) {
+            falsePositives++;
+         }
+      }
+      assertTrue(falsePositives < 200, "Too many false positives: " + falsePositives);
+
+      filter.clear();
+      assertFalse(filter.mightContain("key-0"));
+   }
+
+   public void testSnapshot() throws IOException {
+      BloomFilter filter = BloomFilter.create(1000, 0.01);
+      for (int i = 0; i < 1000; i++) {
+         filter.add("key-" + i);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      filter.writeTo(new DataOutputStream(bytes));
+
+      BloomFilter copy = BloomFilter.create(1000, 0.01);
+      assertTrue(copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+      for (int i = 0; i < 1000; i++) {
+         assertTrue(copy.mightContain("key-" + i));
+      }
+
+      BloomFilter resized = BloomFilter.create(2000, 0.01);
+      assertFalse(resized.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+   }
+}
@@ -1,10 +1,21 @@
 package org.infinispan.persistence.cloud;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.infinispan.configuration.cache.ConfigurationBuilder;
 import org.infinispan.marshall.core.ExternalPojo;
@@ -31,6 +42,8 @@ import org.testng.annotations.Test;
 
 import com.google.common.net.MediaType;
 
+import io.reactivex.Flowable;
+
 @Test(groups = "unit", testName = "persistence.cloud.CloudCacheStoreTest")
 public class CloudCacheStoreIT<K, V> extends BaseStoreTest {
    
@@ -76,7 +89,8 @@ public class CloudCacheStoreIT<K, V> extends BaseStoreTest {
          throws PersistenceException {
       CloudStore<K, V> cloudStore = new CloudStore<K, V>();
       ConfigurationBuilder cfgBuilder = TestCacheManagerFactory.getDefaultCacheConfiguration(false);
-      cfgBuilder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+      CloudStoreConfigurationBuilder storeBuilder = cfgBuilder.persistence().addStore(CloudStoreConfigurationBuilder.class);
+      storeBuilder
          .preload(true)
          .provider(cs)
          .endpoint(csEndpoint)
@@ -86,10 +100,14 @@ public class CloudCacheStoreIT<K, V> extends BaseStoreTest {
          .container(csBucket)
          .compress(true)
          .normalizeCacheNames(true);
+      configureStore(storeBuilder);
       cloudStore.init(createContext(cfgBuilder.build()));
       return cloudStore;
    }
    
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+   }
+
    @Override
    protected AdvancedLoadWriteStore<K, V> createStore() throws Exception {
       AdvancedLoadWriteStore<K, V> store = buildCloudCacheStoreWithStubCloudService();
@@ -164,6 +182,67 @@ public class CloudCacheStoreIT<K, V> extends BaseStoreTest {
       assertEquals(ice.getValue(), "hello");
    }
 
+   @Test
+   public void testAsyncOperations() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.writeAsync(marshalledEntry("k1", "v1", null)).toCompletableFuture().get(10, TimeUnit.SECONDS);
+      assertTrue(store.containsAsync("k1").toCompletableFuture().get(10, TimeUnit.SECONDS));
+      assertEquals(store.loadAsync("k1").toCompletableFuture().get(10, TimeUnit.SECONDS).getValue(), "v1");
+      assertTrue(store.deleteAsync("k1").toCompletableFuture().get(10, TimeUnit.SECONDS));
+      assertNull(store.loadAsync("k1").toCompletableFuture().get(10, TimeUnit.SECONDS));
+      eventually(() -> store.getCompletedRequests() >= 5);
+   }
+
+   @Test
+   public void testConcurrentLoadsGetTheirOwnValue() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry("k", new ArrayList<>(Collections.singletonList("v")), null));
+      List<CompletableFuture<Object>> loads = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+         loads.add(CompletableFuture.supplyAsync(() -> store.load("k").getValue()));
+      }
+      Set<Object> values = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (CompletableFuture<Object> load : loads) {
+         Object value = load.get(10, TimeUnit.SECONDS);
+         assertEquals(value, Collections.singletonList("v"));
+         values.add(value);
+      }
+      assertEquals(values.size(), loads.size());
+   }
+
+   @Test
+   public void testLoadAll() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      Set<Object> keys = new HashSet<>();
+      for (int i = 0; i < 60; i++) {
+         if (i < 50) {
+            store.write(marshalledEntry("key" + i, "value" + i, null));
+         }
+         keys.add("key" + i);
+      }
+      Map<Object, Object> values = new HashMap<>();
+      for (MarshalledEntry<Object, Object> entry : store.loadAll(keys).blockingIterable()) {
+         assertNull(values.put(entry.getKey(), entry.getValue()));
+      }
+      assertEquals(values.size(), 50);
+      assertEquals(values.get("key42"), "value42");
+   }
+
+   @Test
+   public void testPublishAcrossListingPages() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      List<MarshalledEntry<?, ?>> entries = new ArrayList<>();
+      for (int i = 0; i < 2500; i++) {
+         entries.add(marshalledEntry("key" + i, "value" + i, null));
+      }
+      store.writeBatch((List) entries);
+      assertEquals(Flowable.fromPublisher(store.publishKeys(null)).count().blockingGet().longValue(), 2500);
+      assertEquals(Flowable.fromPublisher(store.publishEntries(k -> ((String) k).endsWith("7"), true, true))
+            .count().blockingGet().longValue(), 250);
+      assertEquals(Flowable.fromPublisher(store.publishEntries(null, true, true)).take(10)
+            .count().blockingGet().longValue(), 10);
+   }
+
    private static class ObjectWithNegativeHashcode implements Serializable, ExternalPojo {
       private static final long serialVersionUID = 1L;
       String s = "hello";
@@ -0,0 +1,58 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Rate;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.CloudStoreMetricsTest")
+public class CloudStoreMetricsTest extends AbstractInfinispanTest {
+   private final AtomicLong nanos = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+   private void advanceSeconds(long seconds) {
+      nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+   }
+
+   public void testRateCoversTheTrailingWindow() {
+      Rate rate = new Rate(nanos::get);
+      assertEquals(rate.perSecond(), 0.0);
+      // 10 per second for 2 minutes
+      for (int i = 0; i < 120; i++) {
+         rate.add(10);
+         advanceSeconds(1);
+      }
+      assertEquals(rate.perSecond(), 10.0);
+      // reading does not reset the window
+      assertEquals(rate.perSecond(), 10.0);
+
+      // the current second is not counted until it is over
+      rate.add(600);
+      assertEquals(rate.perSecond(), 10.0);
+      advanceSeconds(1);
+      assertEquals(rate.perSecond(), 19.83, 0.01);
+
+      advanceSeconds(Rate.WINDOW_SECONDS - 1);
+      assertEquals(rate.perSecond(), 10.0);
+      advanceSeconds(1);
+      assertEquals(rate.perSecond(), 0.0);
+   }
+
+   public void testYoungRateIsTakenOverItsLife() {
+      Rate rate = new Rate(nanos::get);
+      for (int i = 0; i < 4; i++) {
+         rate.add(5);
+         advanceSeconds(1);
+      }
+      assertEquals(rate.perSecond(), 5.0);
+
+      rate.reset();
+      assertEquals(rate.perSecond(), 0.0);
+      rate.add(8);
+      advanceSeconds(2);
+      assertEquals(rate.perSecond(), 4.0);
+   }
+}
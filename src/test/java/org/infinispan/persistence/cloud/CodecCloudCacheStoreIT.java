@@ -0,0 +1,97 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.util.stream.Streams;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.CodecCloudCacheStoreTest")
+public class CodecCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private static final int SAMPLES = 20;
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.codec("deflate").compressionThreshold(0).compressionDictionarySize(2048).compressionDictionarySamples(SAMPLES);
+   }
+
+   private static String document(int i) {
+      return String.format("{\"id\":%d,\"name\":\"customer-%d\",\"email\":\"customer-%d@example.com\",\"status\":\"active\"}", i, i, i);
+   }
+
+   private Blob entryBlob(CloudStore<Object, Object> store) {
+      BlobStore blobStore = store.getBlobStore();
+      for (StorageMetadata metadata : blobStore.list(store.getContainerName())) {
+         if (metadata.getType() == StorageType.BLOB && !metadata.getName().startsWith(CloudStore.INTERNAL_PREFIX)) {
+            return blobStore.getBlob(store.getContainerName(), metadata.getName());
+         }
+      }
+      throw new AssertionError("No entry blob");
+   }
+
+   private static byte[] payload(Blob blob) throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      Streams.copy(blob.getPayload().openStream(), bytes);
+      return bytes.toByteArray();
+   }
+
+   public void testDictionaryIsTrainedAndKept() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      for (int i = 0; i < SAMPLES; i++) {
+         store.write(marshalledEntry(internalCacheEntry("k" + i, document(i), -1)));
+      }
+      eventually(store::hasCompressionDictionary);
+      store.clear();
+
+      store.write(marshalledEntry(internalCacheEntry("k", document(100), -1)));
+      EntryFormat.Header header = EntryFormat.read(payload(entryBlob(store)), getMarshaller());
+      assertEquals(PayloadCodec.codec(header.marker), Codecs.DEFLATE);
+      assertTrue(PayloadCodec.usesDictionary(header.marker));
+      assertEquals(store.load("k").getValue(), document(100));
+
+      // the dictionary survives the clear, so the entry stays readable after a restart
+      assertTrue(store.getBlobStore().countBlobs(store.getContainerName(),
+            new ListContainerOptions().prefix(PayloadCodec.DICTIONARY_PREFIX).recursive()) >= 2);
+   }
+
+   public void testIncompressiblePayloadIsStoredUncompressed() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      byte[] noise = new byte[4096];
+      new Random(3).nextBytes(noise);
+      store.write(marshalledEntry("k", noise, null));
+
+      EntryFormat.Header header = EntryFormat.read(payload(entryBlob(store)), getMarshaller());
+      assertEquals(PayloadCodec.codec(header.marker), Codecs.NONE);
+      assertEquals(store.load("k").getValue(), noise);
+   }
+
+   public void testLegacyPayloadIsReadable() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry(internalCacheEntry("k", "v", -1)));
+      String name = entryBlob(store).getMetadata().getName();
+
+      // as written before codecs were introduced: GZIP, because compress is set, and no codec metadata
+      byte[] legacy = Codecs.GZIP.compress(getMarshaller().objectToByteBuffer("legacy"), null);
+      Map<String, String> metadata = new HashMap<>();
+      metadata.put(CloudStore.LIFESPAN, "-1");
+      metadata.put(CloudStore.MAX_IDLE, "-1");
+      metadata.put(CloudStore.EXPIRE_TIME, "-1");
+      store.getBlobStore().putBlob(store.getContainerName(), store.getBlobStore().blobBuilder(name)
+            .payload(legacy)
+            .userMetadata(metadata)
+            .build());
+      assertEquals(store.load("k").getValue(), "legacy");
+   }
+}
@@ -0,0 +1,62 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.infinispan.commons.CacheConfigurationException;
+import org.infinispan.persistence.keymappers.WrappedByteArrayOrPrimitiveMapper;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.ContainerLayoutTest")
+public class ContainerLayoutTest extends AbstractInfinispanTest {
+   private static final String CONTAINER = "layout";
+   private static final String MAPPER = WrappedByteArrayOrPrimitiveMapper.class.getName();
+
+   private BlobStoreContext context;
+   private BlobStore blobStore;
+
+   @BeforeMethod
+   public void setUp() {
+      context = ContextBuilder.newBuilder("transient").credentials("dummy", "dummy").buildView(BlobStoreContext.class);
+      blobStore = context.getBlobStore();
+      blobStore.createContainerInLocation(null, CONTAINER);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      context.close();
+   }
+
+   public void testLayoutIsRecordedOnFirstStart() {
+      new ContainerLayout(false, true, 256, 0, MAPPER).check(blobStore, CONTAINER);
+      assertNotNull(blobStore.getBlob(CONTAINER, ContainerLayout.NAME));
+      // the same layout starts again
+      new ContainerLayout(false, true, 256, 0, MAPPER).check(blobStore, CONTAINER);
+   }
+
+   public void testOtherLayoutsAreRejected() {
+      new ContainerLayout(false, false, 256, 16, MAPPER).check(blobStore, CONTAINER);
+      // the number of segments only matters to segmented stores
+      new ContainerLayout(false, false, 128, 16, MAPPER).check(blobStore, CONTAINER);
+      assertRejected(new ContainerLayout(false, false, 256, 8, MAPPER));
+      assertRejected(new ContainerLayout(false, true, 256, 0, MAPPER));
+      assertRejected(new ContainerLayout(true, false, 256, 0, MAPPER));
+      assertRejected(new ContainerLayout(false, false, 256, 16, "org.example.OtherMapper"));
+   }
+
+   private void assertRejected(ContainerLayout layout) {
+      try {
+         layout.check(blobStore, CONTAINER);
+         fail("Started with " + layout);
+      } catch (CacheConfigurationException e) {
+         assertTrue(e.getMessage().contains("listing-partitions=16"), e.getMessage());
+      }
+   }
+}
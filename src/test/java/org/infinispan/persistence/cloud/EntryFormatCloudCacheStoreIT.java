@@ -0,0 +1,155 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.infinispan.util.stream.Streams;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.EntryFormatCloudCacheStoreTest")
+public class EntryFormatCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   private InternalMetadata metadata(long created, long lifespan) {
+      return new InternalMetadataImpl(new EmbeddedMetadata.Builder()
+            .lifespan(lifespan, TimeUnit.MILLISECONDS)
+            .maxIdle(lifespan / 2, TimeUnit.MILLISECONDS)
+            .version(new NumericVersion(7))
+            .build(), created, created + 10);
+   }
+
+   private static byte[] payload(Blob blob) throws Exception {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      Streams.copy(blob.getPayload().openStream(), bytes);
+      return bytes.toByteArray();
+   }
+
+   private static List<String> entryNames(CloudStore<Object, Object> store) {
+      List<String> names = new ArrayList<>();
+      for (StorageMetadata metadata : store.getBlobStore().list(store.getContainerName())) {
+         if (metadata.getType() == StorageType.BLOB && !metadata.getName().startsWith(CloudStore.INTERNAL_PREFIX)) {
+            names.add(metadata.getName());
+         }
+      }
+      return names;
+   }
+
+   /**
+    * @return the name of the blob of a new entry
+    */
+   private String write(CloudStore<Object, Object> store, String key) {
+      List<String> names = entryNames(store);
+      store.write(marshalledEntry(internalCacheEntry(key, "v", -1)));
+      List<String> written = entryNames(store);
+      written.removeAll(names);
+      return written.get(0);
+   }
+
+   /**
+    * Stores the payload of every entry again, as a provider which does not keep user metadata would.
+    */
+   private static void dropUserMetadata(CloudStore<Object, Object> store) throws Exception {
+      BlobStore blobStore = store.getBlobStore();
+      for (String name : entryNames(store)) {
+         byte[] payload = payload(blobStore.getBlob(store.getContainerName(), name));
+         blobStore.putBlob(store.getContainerName(), blobStore.blobBuilder(name).payload(payload).build());
+      }
+   }
+
+   public void testMetadataIsKeptWhole() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      long now = timeService.wallClockTime();
+      InternalMetadata metadata = metadata(now - 1000, 60000);
+      store.write(marshalledEntry((Object) "k", "v", metadata));
+
+      MarshalledEntry<Object, Object> loaded = store.load("k");
+      assertEquals(loaded.getValue(), "v");
+      assertEquals(loaded.getMetadata().created(), now - 1000);
+      assertEquals(loaded.getMetadata().lastUsed(), now - 990);
+      assertEquals(loaded.getMetadata().lifespan(), 60000);
+      assertEquals(loaded.getMetadata().maxIdle(), 30000);
+      assertEquals(loaded.getMetadata().expiryTime(), metadata.expiryTime());
+      assertEquals(((NumericVersion) loaded.getMetadata().version()).getVersion(), 7);
+
+      // only the expiry time is repeated in the user metadata, for the purges
+      Blob blob = store.getBlobStore().getBlob(store.getContainerName(), entryNames(store).get(0));
+      assertEquals(blob.getMetadata().getUserMetadata().keySet(), Collections.singleton(CloudStore.EXPIRE_TIME));
+   }
+
+   public void testUserMetadataIsNotNeeded() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      long now = timeService.wallClockTime();
+      store.write(marshalledEntry((Object) "live", "v", metadata(now, 60000)));
+      store.write(marshalledEntry((Object) "expired", "v", metadata(now - 120000, 60000)));
+      dropUserMetadata(store);
+
+      MarshalledEntry<Object, Object> loaded = store.load("live");
+      assertEquals(loaded.getValue(), "v");
+      assertEquals(loaded.getMetadata().created(), now);
+      assertEquals(loaded.getMetadata().lifespan(), 60000);
+      assertNull(store.load("expired"));
+   }
+
+   public void testMetadataOnlyPublish() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      long now = timeService.wallClockTime();
+      char[] large = new char[64 * 1024];
+      for (int i = 0; i < 10; i++) {
+         store.write(marshalledEntry((Object) ("k" + i), new String(large), metadata(now + i, 60000)));
+      }
+      List<MarshalledEntry<Object, Object>> entries = Flowable.fromPublisher(store.publishEntries(null, false, true)).toList().blockingGet();
+      assertEquals(entries.size(), 10);
+      for (MarshalledEntry<Object, Object> entry : entries) {
+         int i = Integer.parseInt(((String) entry.getKey()).substring(1));
+         assertNull(entry.getValueBytes());
+         assertEquals(entry.getMetadata().created(), now + i);
+         assertEquals(entry.getMetadata().lifespan(), 60000);
+      }
+   }
+
+   public void testEarlierPayloadsAreReadable() throws Exception {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      BlobStore blobStore = store.getBlobStore();
+      Map<String, String> metadata = new HashMap<>();
+      metadata.put(CloudStore.LIFESPAN, "60000");
+      metadata.put(CloudStore.MAX_IDLE, "-1");
+      metadata.put(CloudStore.EXPIRE_TIME, "-1");
+
+      // compressed with GZIP, as the store compresses
+      blobStore.putBlob(store.getContainerName(), blobStore.blobBuilder(write(store, "legacy"))
+            .payload(Codecs.GZIP.compress(getMarshaller().objectToByteBuffer("legacy"), null))
+            .userMetadata(metadata)
+            .build());
+      MarshalledEntry<Object, Object> loaded = store.load("legacy");
+      assertEquals(loaded.getValue(), "legacy");
+      assertEquals(loaded.getMetadata().lifespan(), 60000);
+      // the metadata comes with the first bytes of the blob, the value is not downloaded
+      List<MarshalledEntry<Object, Object>> entries = new CopyOnWriteArrayList<>();
+      store.process(null, (entry, context) -> entries.add(entry), null, false, true);
+      assertEquals(entries.size(), 1);
+      for (MarshalledEntry<Object, Object> entry : entries) {
+         assertNull(entry.getValueBytes());
+         assertEquals(entry.getMetadata().lifespan(), 60000);
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.container.versioning.NumericVersion;
+import org.infinispan.container.versioning.SimpleClusteredVersion;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.Metadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.EntryFormatTest")
+public class EntryFormatTest extends AbstractInfinispanTest {
+
+   private static byte[] payload(byte[] value, InternalMetadata metadata) throws Exception {
+      PayloadCodec.EncodedPayload encoded = new PayloadCodec.EncodedPayload(Codecs.NONE, Codecs.NONE.id(), 0, value.length, value, 0,
+            value.length);
+      // the marshaller is only needed for metadata which is not embedded
+      return EntryFormat.toArray(EntryFormat.header(encoded, metadata, null), encoded);
+   }
+
+   private static InternalMetadata metadata(long lifespan, long maxIdle, Object version) {
+      Metadata.Builder builder = new EmbeddedMetadata.Builder().lifespan(lifespan, TimeUnit.MILLISECONDS).maxIdle(maxIdle, TimeUnit.MILLISECONDS);
+      if (version instanceof NumericVersion) {
+         builder.version((NumericVersion) version);
+      } else if (version instanceof SimpleClusteredVersion) {
+         builder.version((SimpleClusteredVersion) version);
+      }
+      return new InternalMetadataImpl(builder.build(), 1000, 2000);
+   }
+
+   private static void assertSameMetadata(InternalMetadata actual, InternalMetadata expected) {
+      assertEquals(actual.created(), expected.created());
+      assertEquals(actual.lastUsed(), expected.lastUsed());
+      assertEquals(actual.lifespan(), expected.lifespan());
+      assertEquals(actual.maxIdle(), expected.maxIdle());
+      assertEquals(actual.expiryTime(), expected.expiryTime());
+   }
+
+   public void testMetadataRoundTrip() throws Exception {
+      byte[] value = {1, 2, 3};
+      InternalMetadata immortal = metadata(-1, -1, null);
+      EntryFormat.Header header = EntryFormat.read(payload(value, immortal), null);
+      assertEquals(header.length, EntryFormat.FIXED_HEADER_SIZE);
+      assertEquals(header.valueLength, value.length);
+      assertEquals(header.marker, Codecs.NONE.id());
+      assertSameMetadata(header.metadata, immortal);
+      assertNull(header.metadata.version());
+
+      InternalMetadata numeric = metadata(60000, 30000, new NumericVersion(42));
+      header = EntryFormat.read(payload(value, numeric), null);
+      assertSameMetadata(header.metadata, numeric);
+      assertEquals(((NumericVersion) header.metadata.version()).getVersion(), 42);
+
+      InternalMetadata clustered = metadata(60000, -1, new SimpleClusteredVersion(3, 7));
+      header = EntryFormat.read(payload(value, clustered), null);
+      assertSameMetadata(header.metadata, clustered);
+      SimpleClusteredVersion version = (SimpleClusteredVersion) header.metadata.version();
+      assertEquals(version.topologyId, 3);
+      assertEquals(version.version, 7);
+
+      assertNull(EntryFormat.read(payload(value, null), null).metadata);
+   }
+
+   public void testHeaderIsReadFromTheFirstBytes() throws Exception {
+      byte[] value = new byte[100000];
+      new Random(5).nextBytes(value);
+      InternalMetadata metadata = metadata(60000, -1, new NumericVersion(1));
+      byte[] prefix = Arrays.copyOf(payload(value, metadata), EntryFormat.HEADER_PREFETCH);
+
+      int headerLength = EntryFormat.headerLength(prefix, prefix.length);
+      assertEquals(headerLength, EntryFormat.FIXED_HEADER_SIZE + 8);
+      EntryFormat.Header header = EntryFormat.readHeader(prefix, headerLength, null);
+      assertEquals(header.valueLength, value.length);
+      assertSameMetadata(header.metadata, metadata);
+   }
+
+   public void testCorruptPayloadIsRejected() throws Exception {
+      byte[] payload = payload(new byte[]{1, 2, 3, 4}, metadata(60000, -1, null));
+      // a byte of the value, then a byte of the lifespan
+      for (int index : new int[]{payload.length - 2, 45}) {
+         byte[] corrupt = payload.clone();
+         corrupt[index] ^= 0x10;
+         try {
+            EntryFormat.read(corrupt, null);
+            fail("Corrupt byte " + index + " was not detected");
+         } catch (PersistenceException e) {
+            // expected
+         }
+      }
+   }
+
+   public void testPayloadsWithoutHeader() throws Exception {
+      assertNull(EntryFormat.read(new byte[]{1, 2, 3}, null));
+      assertNull(EntryFormat.read(Codecs.GZIP.compress(new byte[1000], null), null));
+      byte[] noise = new byte[1000];
+      new Random(11).nextBytes(noise);
+      assertNull(EntryFormat.read(noise, null));
+   }
+}
@@ -0,0 +1,95 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.spi.PersistenceException;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.ExpirationIndexCloudCacheStoreTest")
+public class ExpirationIndexCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.expirationIndex(true).expirationBucketSize(100);
+   }
+
+   public void testPurgeFromIndex() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      BlobStore blobStore = store.getBlobStore();
+      store.clear();
+      assertTrue(blobStore.blobExists(store.getContainerName(), ExpirationIndex.COMPLETE_MARKER));
+
+      store.write(marshalledEntry(internalCacheEntry("short", "v", 1000)));
+      store.write(marshalledEntry(internalCacheEntry("long", "v", 100000)));
+      store.write(marshalledEntry(internalCacheEntry("immortal", "v", -1)));
+      assertEquals(countMarkers(store), 2);
+      assertEquals(store.size(), 3);
+
+      timeService.advance(2000);
+      assertEquals(purge(store), 1);
+      assertEquals(countMarkers(store), 1);
+      assertEquals(store.size(), 2);
+
+      // markers of deleted entries are dropped without purging anything
+      store.delete("long");
+      timeService.advance(200000);
+      assertEquals(purge(store), 0);
+      assertEquals(countMarkers(store), 0);
+      assertEquals(store.size(), 1);
+   }
+
+   public void testRebuildCorruptIndex() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      BlobStore blobStore = store.getBlobStore();
+      store.clear();
+      store.write(marshalledEntry(internalCacheEntry("short", "v", 1000)));
+      store.write(marshalledEntry(internalCacheEntry("long", "v", 100000)));
+      blobStore.putBlob(store.getContainerName(), blobStore.blobBuilder(ExpirationIndex.PREFIX + "!corrupt/k").payload(new byte[0]).build());
+
+      timeService.advance(2000);
+      assertEquals(purge(store), 1);
+      assertFalse(store.contains("short"));
+      assertTrue(store.contains("long"));
+      assertEquals(countMarkers(store), 1);
+      assertTrue(blobStore.blobExists(store.getContainerName(), ExpirationIndex.COMPLETE_MARKER));
+   }
+
+   public void testRebuildMissingIndex() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      BlobStore blobStore = store.getBlobStore();
+      store.clear();
+      store.write(marshalledEntry(internalCacheEntry("short", "v", 1000)));
+      store.write(marshalledEntry(internalCacheEntry("long", "v", 100000)));
+      blobStore.removeBlobs(store.getContainerName(), blobStore.list(store.getContainerName(),
+            new ListContainerOptions().prefix(CloudStore.INTERNAL_PREFIX).recursive()).stream().map(m -> m.getName())::iterator);
+
+      timeService.advance(2000);
+      assertEquals(purge(store), 1);
+      assertEquals(countMarkers(store), 1);
+      assertTrue(blobStore.blobExists(store.getContainerName(), ExpirationIndex.COMPLETE_MARKER));
+   }
+
+   @Test(expectedExceptions = PersistenceException.class)
+   public void testReservedKeysAreRejected() {
+      cl.write(marshalledEntry(internalCacheEntry(CloudStore.INTERNAL_PREFIX + "key", "v", -1)));
+   }
+
+   private int purge(CloudStore<Object, Object> store) {
+      Set<Object> purged = ConcurrentHashMap.newKeySet();
+      store.purge(null, purged::add);
+      return purged.size();
+   }
+
+   private int countMarkers(CloudStore<Object, Object> store) {
+      return (int) store.getBlobStore().countBlobs(store.getContainerName(),
+            new ListContainerOptions().prefix(ExpirationIndex.PREFIX).recursive());
+   }
+}
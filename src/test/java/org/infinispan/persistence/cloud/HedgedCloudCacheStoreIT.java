@@ -0,0 +1,60 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.cloud.simulated.SimulatedBlobStore;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the store tests against a provider whose latency has a long tail, with the slowest lookups
+ * hedged.
+ */
+@Test(groups = "unit", testName = "persistence.cloud.HedgedCloudCacheStoreTest")
+public class HedgedCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.provider("simulated")
+            .addProperty(SimulatedBlobStore.LATENCY, "1")
+            .addProperty(SimulatedBlobStore.LATENCY_P99, "20")
+            .hedgePercentile(90)
+            .hedgeRate(20);
+   }
+
+   public void testSlowLoadsAreHedged() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      CloudStoreMetrics metrics = store.getMetrics();
+      SimulatedBlobStore blobStore = (SimulatedBlobStore) store.getBlobStore().getContext().getBlobStore();
+      List<MarshalledEntry<?, ?>> entries = new ArrayList<>();
+      entries.add(marshalledEntry("warm", "up", null));
+      for (int i = 0; i < 10; i++) {
+         entries.add(marshalledEntry("key" + i, "value" + i, null));
+      }
+      store.writeBatch((List) entries);
+
+      assertEquals(metrics.getHedgeDelay(), -1);
+      eventually(() -> {
+         for (int i = 0; i < 100; i++) {
+            assertEquals(store.load("warm").getValue(), "up");
+         }
+         return metrics.getHedgeDelay() >= 0;
+      });
+      metrics.resetStatistics();
+      // the first request of each lookup stalls, the hedge sent for it answers after the usual latency
+      blobStore.delayFirstGets(500, TimeUnit.MILLISECONDS);
+      for (int i = 0; i < 10; i++) {
+         assertEquals(store.load("key" + i).getValue(), "value" + i);
+      }
+      assertTrue(metrics.getHedgedRequests() > 0);
+      assertEquals(metrics.getHedgesWon(), metrics.getHedgedRequests());
+      // the rate is capped with a burst of ten hedges
+      assertTrue(metrics.getHedgedRequests() <= 10 * 0.2 + 10, metrics.getHedgedRequests() + " hedges");
+   }
+}
@@ -0,0 +1,175 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.HedgedRequestsTest")
+public class HedgedRequestsTest extends AbstractInfinispanTest {
+   private final CloudStoreMetrics metrics = new CloudStoreMetrics(() -> 0);
+   private HedgedRequests hedgedRequests;
+
+   @AfterMethod(alwaysRun = true)
+   public void shutdown() {
+      if (hedgedRequests != null) {
+         hedgedRequests.shutdown();
+      }
+      metrics.resetStatistics();
+   }
+
+   private void warmUp(int hedgeRate) throws InterruptedException {
+      warmUp(hedgeRate, 4);
+   }
+
+   private void warmUp(int hedgeRate, int maxHedges) throws InterruptedException {
+      hedgedRequests = new HedgedRequests("test", 90, hedgeRate, maxHedges, metrics);
+      Supplier<String> request = () -> {
+         sleep(2);
+         return "value";
+      };
+      for (int i = 0; i < 100; i++) {
+         hedgedRequests.execute(request, value -> {});
+      }
+      assertEquals(hedgedRequests.getDelay(), Long.MAX_VALUE);
+      Thread.sleep(1100);
+      hedgedRequests.execute(request, value -> {});
+      long delay = hedgedRequests.getDelay();
+      assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(2) && delay < TimeUnit.MILLISECONDS.toNanos(50), delay + " ns");
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   public void testNoRequestIsHedgedUntilTheDelayIsKnown() {
+      hedgedRequests = new HedgedRequests("test", 90, 100, 4, metrics);
+      for (int i = 0; i < 20; i++) {
+         hedgedRequests.execute(() -> {
+            sleep(5);
+            return "value";
+         }, value -> {});
+      }
+      assertEquals(hedgedRequests.getDelay(), Long.MAX_VALUE);
+      assertEquals(metrics.getHedgedRequests(), 0);
+   }
+
+   public void testSlowRequestIsHedgedAndCancelled() throws Exception {
+      warmUp(100);
+      AtomicInteger requests = new AtomicInteger();
+      CountDownLatch cancelled = new CountDownLatch(1);
+      List<String> discarded = new CopyOnWriteArrayList<>();
+      long start = System.nanoTime();
+      String value = hedgedRequests.execute(() -> {
+         if (requests.incrementAndGet() == 1) {
+            try {
+               Thread.sleep(10000);
+            } catch (InterruptedException e) {
+               cancelled.countDown();
+            }
+            return "primary";
+         }
+         return "hedge";
+      }, discarded::add);
+
+      assertEquals(value, "hedge");
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+      assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+      eventuallyEquals(1, discarded::size);
+      assertEquals(discarded.get(0), "primary");
+      assertEquals(metrics.getHedgedRequests(), 1);
+      assertEquals(metrics.getHedgesWon(), 1);
+   }
+
+   public void testFirstRequestRunsOnTheCallerThread() throws Exception {
+      warmUp(100);
+      Thread caller = Thread.currentThread();
+      assertEquals(hedgedRequests.execute(() -> Thread.currentThread() == caller, value -> {}), Boolean.TRUE);
+      assertEquals(metrics.getHedgedRequests(), 0);
+   }
+
+   public void testHedgeIsDroppedWhenTheHedgeThreadsAreBusy() throws Exception {
+      warmUp(100, 1);
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger requests = new AtomicInteger();
+      // both requests of the first lookup wait, so its hedge keeps the only hedge thread
+      Future<String> first = fork(() -> hedgedRequests.execute(() -> {
+         requests.incrementAndGet();
+         try {
+            release.await();
+         } catch (InterruptedException e) {
+            // the other request answered
+         }
+         return "first";
+      }, value -> {}));
+      eventuallyEquals(2, requests::get);
+
+      String value = hedgedRequests.execute(() -> {
+         sleep(50);
+         return "second";
+      }, v -> {});
+      assertEquals(value, "second");
+      assertEquals(metrics.getHedgedRequests(), 1);
+      release.countDown();
+      assertEquals(first.get(10, TimeUnit.SECONDS), "first");
+   }
+
+   public void testHedgesAreCappedByTheRate() throws Exception {
+      warmUp(5);
+      for (int i = 0; i < 40; i++) {
+         hedgedRequests.execute(() -> {
+            sleep(20);
+            return "value";
+         }, value -> {});
+      }
+      // the budget starts with 5% of the warm up requests and earns 5% of these
+      long hedges = metrics.getHedgedRequests();
+      assertTrue(hedges > 0 && hedges <= 7, hedges + " hedges");
+   }
+
+   public void testFailureIsNotHedged() throws Exception {
+      warmUp(100);
+      AtomicInteger requests = new AtomicInteger();
+      try {
+         hedgedRequests.execute(() -> {
+            requests.incrementAndGet();
+            throw new IllegalStateException("failed");
+         }, value -> {});
+         fail("the failure was not reported");
+      } catch (IllegalStateException e) {
+         assertEquals(e.getMessage(), "failed");
+      }
+      assertEquals(requests.get(), 1);
+      assertEquals(metrics.getHedgedRequests(), 0);
+   }
+
+   public void testSlowFailureIsAnsweredByTheHedge() throws Exception {
+      warmUp(100);
+      AtomicInteger requests = new AtomicInteger();
+      String value = hedgedRequests.execute(() -> {
+         if (requests.incrementAndGet() == 1) {
+            sleep(200);
+            throw new IllegalStateException("failed");
+         }
+         sleep(400);
+         return "hedge";
+      }, v -> {});
+      assertEquals(value, "hedge");
+      assertEquals(metrics.getHedgesWon(), 1);
+   }
+}
@@ -0,0 +1,43 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.cloud.keymappers.BlobNameKeyMapper;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.KeyMapperCloudCacheStoreTest")
+public class KeyMapperCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.key2StringMapper(BlobNameKeyMapper.class).keyMappingCacheSize(64);
+   }
+
+   public void testKeysAreMappedToSafeNames() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry((Object) "plain", "v1", null));
+      store.write(marshalledEntry((Object) "a/b c", "v2", null));
+      store.write(marshalledEntry((Object) 42, "v3", null));
+
+      // the store's own blobs are listed as a folder
+      List<String> names = Flowable.fromIterable(store.getBlobStore().list(store.getContainerName()))
+            .filter(metadata -> metadata.getType() == StorageType.BLOB && !metadata.getName().startsWith(CloudStore.INTERNAL_PREFIX))
+            .map(StorageMetadata::getName).toList().blockingGet();
+      assertEquals(names.size(), 3);
+      assertTrue(names.contains("splain"), names.toString());
+      for (String name : names) {
+         assertEquals(name.replaceAll("[^A-Za-z0-9._-]", ""), name);
+      }
+      assertEquals(store.load("a/b c").getValue(), "v2");
+      assertEquals(store.load(42).getValue(), "v3");
+      assertEquals(Flowable.fromPublisher(store.publishKeys(null)).count().blockingGet().longValue(), 3);
+   }
+}
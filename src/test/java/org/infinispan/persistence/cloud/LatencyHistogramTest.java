@@ -0,0 +1,78 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.LatencyHistogramTest")
+public class LatencyHistogramTest extends AbstractInfinispanTest {
+
+   public void testBucketsCoverEveryValue() {
+      int previous = -1;
+      for (long value = 0; value < 1 << 20; value++) {
+         int bucket = LatencyHistogram.bucket(value);
+         assertTrue(bucket == previous || bucket == previous + 1, "Bucket " + bucket + " for " + value);
+         assertTrue(value <= LatencyHistogram.highestValue(bucket));
+         previous = bucket;
+      }
+      long value = TimeUnit.MINUTES.toNanos(10);
+      long highest = LatencyHistogram.highestValue(LatencyHistogram.bucket(value));
+      assertTrue(highest >= value && highest - value <= value / LatencyHistogram.SUB_BUCKETS);
+      assertEquals(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.bucket(TimeUnit.DAYS.toNanos(1)));
+   }
+
+   public void testPercentiles() {
+      LatencyHistogram histogram = new LatencyHistogram();
+      assertEquals(histogram.percentile(99), 0);
+      // 1 to 10000 microseconds
+      for (int i = 1; i <= 10000; i++) {
+         histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+      }
+      assertEquals(histogram.count(), 10000);
+      assertEquals(histogram.max(), TimeUnit.MICROSECONDS.toNanos(10000));
+      assertEquals(histogram.mean(), TimeUnit.MICROSECONDS.toNanos(5000) + 500, 1);
+      for (double percentile : new double[]{50, 90, 99, 99.9}) {
+         double expected = TimeUnit.MICROSECONDS.toNanos((long) (percentile * 100));
+         double actual = histogram.percentile(percentile);
+         assertTrue(actual >= expected && actual <= expected * 1.04, "p" + percentile + " = " + actual);
+      }
+      assertEquals(histogram.percentile(100), histogram.max());
+
+      histogram.reset();
+      assertEquals(histogram.count(), 0);
+      assertEquals(histogram.percentile(50), 0);
+   }
+
+   public void testRecordingDoesNotAllocate() {
+      java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+         throw new SkipException("Allocation counters are not supported by this JVM");
+      }
+      com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+      LatencyHistogram histogram = new LatencyHistogram();
+      Random random = new Random(3);
+      long[] values = new long[1000];
+      for (int i = 0; i < values.length; i++) {
+         values[i] = random.nextInt(Integer.MAX_VALUE);
+      }
+      for (long value : values) {
+         histogram.record(value);
+      }
+      long start = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+      for (int round = 0; round < 100; round++) {
+         for (long value : values) {
+            histogram.record(value);
+         }
+      }
+      long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+      // the counter itself allocates a few bytes once
+      assertTrue(allocated < 1024, allocated + " bytes allocated by 100000 recordings");
+   }
+}
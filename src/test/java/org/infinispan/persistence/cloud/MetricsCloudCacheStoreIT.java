@@ -0,0 +1,150 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.factories.ComponentRegistry;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.core.MarshalledEntryFactory;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Operation;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Outcome;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.manager.PersistenceManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.ControlledTimeService;
+import org.infinispan.util.TimeService;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.MetricsCloudCacheStoreTest")
+public class MetricsCloudCacheStoreIT extends AbstractInfinispanTest {
+   private final ControlledTimeService timeService = new ControlledTimeService();
+
+   private EmbeddedCacheManager cacheManager;
+   private CloudStore<Object, Object> store;
+   private MarshalledEntryFactory<Object, Object> entryFactory;
+
+   @BeforeMethod
+   @SuppressWarnings("unchecked")
+   public void setUp() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("transient")
+            .identity("dummy")
+            .credential("dummy")
+            .container("metrics-operations")
+            .compress(true)
+            .normalizeCacheNames(true);
+      cacheManager = TestCacheManagerFactory.createCacheManager(builder);
+      // the store expires entries with the time service of the cache, which starts after this
+      TestingUtil.replaceComponent(cacheManager, TimeService.class, timeService, true);
+      ComponentRegistry registry = cacheManager.getCache().getAdvancedCache().getComponentRegistry();
+      store = registry.getComponent(PersistenceManager.class).getStores(CloudStore.class).iterator().next();
+      entryFactory = registry.getComponent(MarshalledEntryFactory.class);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      TestingUtil.killCacheManagers(cacheManager);
+   }
+
+   private void write(Object key, Object value, long lifespan) {
+      long now = timeService.wallClockTime();
+      store.write(entryFactory.newMarshalledEntry(key, value,
+            new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(lifespan).build(), now, now)));
+   }
+
+   private static String compressibleValue() {
+      StringBuilder value = new StringBuilder();
+      Random random = new Random(7);
+      while (value.length() < 16 * 1024) {
+         value.append("entry-").append(random.nextInt(100)).append(';');
+      }
+      return value.toString();
+   }
+
+   public void testOperationsAreRecordedPerOutcome() {
+      CloudStoreMetrics metrics = store.getMetrics();
+      assertTrue(metrics.histogram(Operation.START, Outcome.SUCCESS).count() > 0);
+      metrics.resetStatistics();
+
+      String value = compressibleValue();
+      write("k1", value, -1);
+      write("k2", "v2", 1000);
+      assertEquals(store.load("k1").getValue(), value);
+      assertNull(store.load("k3"));
+      assertTrue(store.contains("k1"));
+      assertFalse(store.contains("k3"));
+      timeService.advance(2000);
+      assertNull(store.load("k2"));
+
+      assertEquals(metrics.histogram(Operation.WRITE, Outcome.SUCCESS).count(), 2);
+      assertEquals(metrics.histogram(Operation.LOAD, Outcome.HIT).count(), 1);
+      assertEquals(metrics.histogram(Operation.LOAD, Outcome.MISS).count(), 1);
+      assertEquals(metrics.histogram(Operation.LOAD, Outcome.EXPIRED).count(), 1);
+      assertEquals(metrics.histogram(Operation.CONTAINS, Outcome.HIT).count(), 1);
+      assertEquals(metrics.histogram(Operation.CONTAINS, Outcome.MISS).count(), 1);
+      assertEquals(metrics.getRequests(), 7);
+      assertEquals(metrics.getErrors(), 0);
+      assertEquals(metrics.getInFlightRequests(), 0);
+      assertTrue(metrics.histogram(Operation.LOAD, Outcome.HIT).percentile(99) > 0);
+      assertTrue(metrics.getLatencies().contains("load hit: count=1"), metrics.getLatencies());
+      assertTrue(metrics.latencies("load").startsWith("load hit: count=1"), metrics.latencies("load"));
+
+      // the store compresses, the marshalled value is a bit larger than the string
+      assertTrue(metrics.getRawBytesOut() > value.length());
+      assertTrue(metrics.getCompressedBytesOut() < metrics.getRawBytesOut() / 2, metrics.getCompressedBytesOut() + " bytes");
+      assertTrue(metrics.getRawBytesIn() > value.length());
+      assertTrue(metrics.getCompressedBytesIn() < metrics.getRawBytesIn() / 2, metrics.getCompressedBytesIn() + " bytes");
+   }
+
+   public void testStatisticsAreRegisteredWithJmx() throws Exception {
+      GlobalConfigurationBuilder global = new GlobalConfigurationBuilder().nonClusteredDefault();
+      global.globalJmxStatistics().enable().jmxDomain(getClass().getSimpleName()).allowDuplicateDomains(true);
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.persistence().addStore(CloudStoreConfigurationBuilder.class)
+            .provider("transient")
+            .identity("dummy")
+            .credential("dummy")
+            .container("metrics")
+            .normalizeCacheNames(true);
+      EmbeddedCacheManager jmxCacheManager = TestCacheManagerFactory.createCacheManager(global, builder);
+      try {
+         jmxCacheManager.getCache().put("k", "v");
+         CloudStore<?, ?> jmxStore = jmxCacheManager.getCache().getAdvancedCache().getComponentRegistry()
+               .getComponent(PersistenceManager.class).getStores(CloudStore.class).iterator().next();
+         ObjectName name = jmxStore.getMetrics().getObjectName();
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         // registered next to the components of the cache
+         assertTrue(server.isRegistered(new ObjectName(name.getDomain() + ":type=Cache,name=" + name.getKeyProperty("name")
+               + ",manager=" + name.getKeyProperty("manager") + ",component=Cache")), name.toString());
+
+         assertTrue((Long) server.getAttribute(name, "requests") >= 2);
+         assertEquals(server.getAttribute(name, "inFlightRequests"), 0);
+         String latencies = (String) server.invoke(name, "latencies", new Object[]{"write"}, new String[]{String.class.getName()});
+         assertTrue(latencies.startsWith("write success: count=1"), latencies);
+         server.invoke(name, "resetStatistics", new Object[0], new String[0]);
+         assertEquals(server.getAttribute(name, "requests"), 0L);
+
+         jmxCacheManager.stop();
+         assertFalse(server.isRegistered(name));
+      } finally {
+         TestingUtil.killCacheManagers(jmxCacheManager);
+      }
+   }
+}
@@ -0,0 +1,222 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.reactivex.schedulers.Schedulers;
+
+@Test(groups = "unit", testName = "persistence.cloud.PackStoreTest")
+public class PackStoreTest extends AbstractInfinispanTest {
+   private static final String CONTAINER = "packs";
+   private static final long PACK_SIZE = 4096;
+
+   private final AtomicLong now = new AtomicLong(1000);
+   private BlobStoreContext context;
+   private BlobStore blobStore;
+
+   @BeforeMethod
+   public void setUp() {
+      context = ContextBuilder.newBuilder("transient").credentials("dummy", "dummy").buildView(BlobStoreContext.class);
+      blobStore = context.getBlobStore();
+      blobStore.createContainerInLocation(null, CONTAINER);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      context.close();
+   }
+
+   private PackStore start(boolean segmented) {
+      // compaction runs inline, right after the write which triggers it
+      PackStore packStore = new PackStore(blobStore, CONTAINER, Runnable::run, Runnable::run, Schedulers.trampoline(), 1, segmented, PACK_SIZE, 0.5, now::get);
+      packStore.start();
+      return packStore;
+   }
+
+   private static PackStore.PackRecord record(String name, int value, long expiryTime) {
+      return new PackStore.PackRecord(name, new byte[]{(byte) value}, PayloadFormat.LEGACY, -1, -1, expiryTime);
+   }
+
+   private static byte[] payload(PackStore packStore, String name) {
+      PackStore.StoredRecord record = packStore.read(name);
+      return record == null ? null : record.payload;
+   }
+
+   private int countPacks() {
+      return (int) blobStore.countBlobs(CONTAINER, new ListContainerOptions().prefix(PackStore.PREFIX).recursive());
+   }
+
+   private long storedBytes() {
+      long size = 0;
+      for (StorageMetadata metadata : blobStore.list(CONTAINER, new ListContainerOptions().prefix(PackStore.PREFIX).recursive())) {
+         size += metadata.getSize();
+      }
+      return size;
+   }
+
+   public void testBatchSharesAPack() {
+      PackStore packStore = start(false);
+      List<PackStore.PackRecord> records = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+         records.add(record("k" + i, i, -1));
+      }
+      packStore.write(records);
+      assertEquals(countPacks(), 1);
+      for (int i = 0; i < 10; i++) {
+         assertEquals(payload(packStore, "k" + i), new byte[]{(byte) i});
+      }
+      assertNull(payload(packStore, "missing"));
+      assertEquals(packStore.names(null).count().blockingGet().longValue(), 10);
+      assertEquals(packStore.records(name -> name.compareTo("k5") < 0).count().blockingGet().longValue(), 5);
+   }
+
+   public void testLargeBatchIsSplitAtThePackSize() {
+      PackStore packStore = start(false);
+      byte[] large = new byte[(int) PACK_SIZE / 3];
+      List<PackStore.PackRecord> records = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+         large[0] = (byte) i;
+         records.add(new PackStore.PackRecord("k" + i, large.clone(), PayloadFormat.LEGACY, -1, -1, -1));
+      }
+      // a record larger than a pack gets one of its own
+      records.add(new PackStore.PackRecord("huge", new byte[(int) PACK_SIZE * 2], PayloadFormat.LEGACY, -1, -1, -1));
+      packStore.write(records);
+      assertEquals(countPacks(), 4);
+      for (StorageMetadata metadata : blobStore.list(CONTAINER, new ListContainerOptions().prefix(PackStore.PREFIX).recursive())) {
+         assertTrue(metadata.getSize() <= PACK_SIZE || metadata.getSize() > PACK_SIZE * 2, metadata.getName() + ": " + metadata.getSize());
+      }
+
+      PackStore restarted = start(false);
+      for (int i = 0; i < 6; i++) {
+         assertEquals(payload(restarted, "k" + i)[0], (byte) i);
+      }
+      assertEquals(payload(restarted, "huge").length, (int) PACK_SIZE * 2);
+   }
+
+   public void testIndexIsRebuiltFromFooters() {
+      PackStore packStore = start(false);
+      packStore.write(Arrays.asList(record("a", 1, -1), record("b", 1, -1), record("c", 1, -1)));
+      packStore.write(Collections.singletonList(new PackStore.PackRecord("a", new byte[]{2}, PayloadFormat.HEADER, -1, -1, -1)));
+      assertEquals(packStore.delete(Arrays.asList("b", "missing")), 1);
+      packStore.stop();
+
+      PackStore restarted = start(false);
+      assertEquals(payload(restarted, "a"), new byte[]{2});
+      assertEquals(restarted.read("a").format, PayloadFormat.HEADER);
+      assertEquals(restarted.read("c").format, PayloadFormat.LEGACY);
+      assertNull(payload(restarted, "b"));
+      assertEquals(payload(restarted, "c"), new byte[]{1});
+      assertEquals(restarted.names(null).count().blockingGet().longValue(), 2);
+   }
+
+   public void testExpiredEntries() {
+      PackStore packStore = start(false);
+      packStore.write(Arrays.asList(record("short", 1, 2000), record("immortal", 1, -1)));
+      assertNotNull(packStore.locate("short"));
+
+      now.set(3000);
+      assertNull(packStore.locate("short"));
+      assertNull(payload(packStore, "short"));
+      assertEquals(packStore.expiredNames(), Collections.singletonList("short"));
+      packStore.delete(packStore.expiredNames());
+      assertEquals(packStore.expiredNames(), Collections.emptyList());
+   }
+
+   public void testSmallPacksAreMerged() {
+      PackStore packStore = start(false);
+      for (int i = 0; i < 50; i++) {
+         packStore.write(Collections.singletonList(record("k" + i, i, -1)));
+      }
+      assertEquals(packStore.packCount(), countPacks());
+      assertTrue(countPacks() < 16, "packs: " + countPacks());
+      for (int i = 0; i < 50; i++) {
+         assertEquals(payload(packStore, "k" + i), new byte[]{(byte) i});
+      }
+
+      PackStore restarted = start(false);
+      for (int i = 0; i < 50; i++) {
+         assertEquals(payload(restarted, "k" + i), new byte[]{(byte) i});
+      }
+   }
+
+   public void testGarbageIsCompacted() {
+      PackStore packStore = start(false);
+      byte[] large = new byte[(int) PACK_SIZE / 8];
+      List<PackStore.PackRecord> records = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+         records.add(new PackStore.PackRecord("k" + i, large, PayloadFormat.LEGACY, -1, -1, -1));
+      }
+      packStore.write(records);
+      assertEquals(countPacks(), 1);
+
+      // more than half of the pack is deleted, its live entries are moved before it is removed
+      packStore.delete(Arrays.asList("k0", "k1", "k2"));
+      assertTrue(storedBytes() < 2 * large.length, "stored: " + storedBytes());
+      assertEquals(payload(packStore, "k3").length, large.length);
+      assertNull(payload(packStore, "k0"));
+
+      PackStore restarted = start(false);
+      assertNull(payload(restarted, "k0"));
+      assertEquals(payload(restarted, "k3").length, large.length);
+      assertEquals(restarted.names(null).count().blockingGet().longValue(), 1);
+   }
+
+   public void testSegmentsOfABatchAreCommittedOnTheExecutor() {
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         Set<String> threads = ConcurrentHashMap.newKeySet();
+         PackStore packStore = new PackStore(blobStore, CONTAINER, command -> executor.execute(() -> {
+            threads.add(Thread.currentThread().getName());
+            command.run();
+         }), Runnable::run, Schedulers.trampoline(), 4, true, PACK_SIZE, 0.5, now::get);
+         packStore.start();
+         List<PackStore.PackRecord> records = new ArrayList<>();
+         for (int segment = 0; segment < 8; segment++) {
+            records.add(record(segment + "/a", segment, -1));
+            records.add(record(segment + "/b", segment, -1));
+         }
+         packStore.write(records);
+         assertEquals(countPacks(), 8);
+         assertTrue(!threads.isEmpty() && !threads.contains(Thread.currentThread().getName()));
+         for (int segment = 0; segment < 8; segment++) {
+            assertEquals(payload(packStore, segment + "/b"), new byte[]{(byte) segment});
+         }
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   public void testClearSegments() {
+      PackStore packStore = start(true);
+      packStore.write(Arrays.asList(record("0/a", 1, -1), record("1/b", 1, -1), record("1/c", 1, -1)));
+      assertEquals(countPacks(), 2);
+
+      packStore.clear("1/"::equals);
+      assertEquals(countPacks(), 1);
+      assertEquals(payload(packStore, "0/a"), new byte[]{1});
+      assertNull(payload(packStore, "1/b"));
+      assertEquals(packStore.names(null).count().blockingGet().longValue(), 1);
+   }
+}
@@ -0,0 +1,38 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.PackedCloudCacheStoreTest")
+public class PackedCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.packed(true);
+   }
+
+   public void testBatchIsWrittenToOnePack() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      List<MarshalledEntry<?, ?>> entries = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+         entries.add(marshalledEntry(internalCacheEntry("k" + i, "v" + i, -1)));
+      }
+      store.writeBatch((Iterable) entries);
+
+      // the pack, and the layout and epoch of the container
+      assertEquals(store.getBlobStore().countBlobs(store.getContainerName()), 3);
+      assertEquals(store.getBlobStore().countBlobs(store.getContainerName(),
+            new ListContainerOptions().prefix(PackStore.PREFIX).recursive()), 1);
+      assertEquals(store.size(), 100);
+      for (int i = 0; i < 100; i++) {
+         assertEquals(store.load("k" + i).getValue(), "v" + i);
+      }
+   }
+}
@@ -0,0 +1,51 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.PartitionedCloudCacheStoreTest")
+public class PartitionedCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private static final int PARTITIONS = 8;
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.listingPartitions(PARTITIONS);
+   }
+
+   public void testEntriesAreSpreadOverPartitions() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      for (int i = 0; i < 100; i++) {
+         store.write(marshalledEntry("k" + i, "v" + i, null));
+      }
+
+      Set<String> prefixes = new HashSet<>();
+      for (StorageMetadata metadata : store.getBlobStore().list(store.getContainerName(), new ListContainerOptions().recursive())) {
+         if (metadata.getType() == StorageType.BLOB && !metadata.getName().startsWith(CloudStore.INTERNAL_PREFIX)) {
+            prefixes.add(metadata.getName().substring(0, metadata.getName().indexOf('/')));
+         }
+      }
+      assertEquals(prefixes.size(), PARTITIONS);
+      for (String prefix : prefixes) {
+         int partition = Integer.parseInt(prefix);
+         assertTrue(partition >= 0 && partition < PARTITIONS, prefix);
+      }
+
+      assertEquals(store.size(), 100);
+      assertEquals(store.load("k42").getValue(), "v42");
+      Set<Object> keys = new HashSet<>(Flowable.fromPublisher(store.publishKeys(null)).toList().blockingGet());
+      assertEquals(keys.size(), 100);
+      assertTrue(keys.contains("k99"));
+      assertEquals(Flowable.fromPublisher(store.publishEntries(null, true, true)).count().blockingGet().longValue(), 100);
+   }
+}
@@ -0,0 +1,78 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.infinispan.commons.util.Util;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.test.TestingUtil;
+import org.jclouds.blobstore.domain.Blob;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.ReadCacheCloudCacheStoreTest")
+public class ReadCacheCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private final String location = TestingUtil.tmpDirectory(getClass());
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.readCacheLocation(location).readCacheSize(1024 * 1024);
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void removeReadCache() {
+      Util.recursiveFileRemove(location);
+   }
+
+   public void testReadsAreCachedAndInvalidated() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry(internalCacheEntry("k", "v1", -1)));
+      assertEquals(store.load("k").getValue(), "v1");
+      assertEquals(store.load("k").getValue(), "v1");
+      assertTrue(store.contains("k"));
+      assertEquals(store.getReadCacheHits(), 2);
+
+      store.write(marshalledEntry(internalCacheEntry("k", "v2", -1)));
+      assertEquals(store.load("k").getValue(), "v2");
+      assertEquals(store.load("k").getValue(), "v2");
+
+      store.delete("k");
+      assertNull(store.load("k"));
+      assertFalse(store.contains("k"));
+   }
+
+   public void testCacheHasTheEpochOfTheContainer() throws IOException {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      String epoch = containerEpoch(store);
+      assertEquals(cacheEpoch(store), epoch);
+
+      store.clear();
+      assertNotEquals(containerEpoch(store), epoch);
+      assertEquals(cacheEpoch(store), containerEpoch(store));
+   }
+
+   private static String containerEpoch(CloudStore<Object, Object> store) {
+      Blob blob = store.getBlobStore().getBlob(store.getContainerName(), CloudStore.EPOCH);
+      return new String(Blobs.readPayload(blob), StandardCharsets.UTF_8);
+   }
+
+   private String cacheEpoch(CloudStore<Object, Object> store) throws IOException {
+      return new String(Files.readAllBytes(Paths.get(location, store.getContainerName(), "epoch")), StandardCharsets.UTF_8);
+   }
+
+   public void testCachedEntriesExpire() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry(internalCacheEntry("k", "v", 1000)));
+      assertEquals(store.load("k").getValue(), "v");
+      timeService.advance(2000);
+      assertNull(store.load("k"));
+   }
+}
@@ -0,0 +1,125 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.infinispan.commons.util.Util;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.ReadCacheTest")
+public class ReadCacheTest extends AbstractInfinispanTest {
+   private static final long SIZE = 1024 * 1024;
+   private static final Map<String, String> METADATA = Collections.singletonMap(CloudStore.EXPIRE_TIME, "-1");
+
+   private Path directory;
+
+   @BeforeMethod
+   public void setUp() {
+      directory = Paths.get(TestingUtil.tmpDirectory(getClass()));
+      Util.recursiveFileRemove(directory.toFile());
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      Util.recursiveFileRemove(directory.toFile());
+   }
+
+   public void testPutGetInvalidate() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         cache.putIfUnmodified("a", new byte[]{1, 2, 3}, METADATA, new Date(42), cache.version("a"));
+         ReadCache.CachedBlob blob = cache.get("a");
+         assertNotNull(blob);
+         assertEquals(blob.payload, new byte[]{1, 2, 3});
+         assertEquals(blob.userMetadata, METADATA);
+         assertEquals(blob.expires, new Date(42));
+
+         cache.invalidate("a");
+         assertNull(cache.get("a"));
+         assertEquals(cache.getHits(), 1);
+         assertEquals(cache.getMisses(), 1);
+      }
+   }
+
+   public void testStaleLoadIsNotCached() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         long version = cache.version("a");
+         long otherVersion = cache.version("b");
+         cache.invalidate("a");
+         cache.putIfUnmodified("a", new byte[]{1}, METADATA, null, version);
+         assertNull(cache.get("a"));
+         // a write to another name does not make the fetch stale
+         cache.putIfUnmodified("b", new byte[]{2}, METADATA, null, otherVersion);
+         assertEquals(cache.get("b").payload, new byte[]{2});
+
+         version = cache.version("c");
+         cache.clear();
+         cache.putIfUnmodified("c", new byte[]{3}, METADATA, null, version);
+         assertNull(cache.get("c"));
+      }
+   }
+
+   public void testSurvivesRestart() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         for (int i = 0; i < 100; i++) {
+            cache.putIfUnmodified("k" + i, new byte[]{(byte) i}, METADATA, null, cache.version("k" + i));
+         }
+         cache.invalidate("k7");
+      }
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         assertEquals(cache.size(), 99);
+         assertNull(cache.get("k7"));
+         assertEquals(cache.get("k8").payload, new byte[]{8});
+      }
+   }
+
+   public void testEvictionKeepsRecentlyReadEntries() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         byte[] payload = new byte[1024];
+         cache.putIfUnmodified("hot", payload, METADATA, null, cache.version("hot"));
+         for (int i = 0; i < 4 * SIZE / payload.length; i++) {
+            cache.putIfUnmodified("cold" + i, payload, METADATA, null, cache.version("cold" + i));
+            assertNotNull(cache.get("hot"));
+         }
+         assertNull(cache.get("cold0"));
+         assertEquals(cache.get("hot").payload.length, payload.length);
+      }
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         assertNotNull(cache.get("hot"));
+         assertNull(cache.get("cold0"));
+      }
+   }
+
+   public void testClear() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         cache.putIfUnmodified("a", new byte[]{1}, METADATA, null, cache.version("a"));
+         cache.clear();
+         assertNull(cache.get("a"));
+      }
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         assertEquals(cache.size(), 0);
+      }
+   }
+
+   public void testEpochIsRecorded() throws IOException {
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         assertNull(cache.readEpoch());
+         cache.writeEpoch("1");
+         cache.writeEpoch("2");
+      }
+      try (ReadCache cache = new ReadCache(directory, SIZE)) {
+         assertEquals(cache.readEpoch(), "2");
+      }
+   }
+}
@@ -0,0 +1,54 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.infinispan.commons.util.IntSets;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.SegmentedCloudCacheStoreTest")
+public class SegmentedCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.segmented(true);
+   }
+
+   public void testSegmentOperations() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      for (int segment = 1; segment <= 3; segment++) {
+         for (int i = 0; i < 5; i++) {
+            store.write(segment, marshalledEntry("k" + segment + "-" + i, "v" + i, null));
+         }
+      }
+      assertEquals(store.size(IntSets.immutableSet(1)), 5);
+      assertEquals(store.size(IntSets.mutableSet(1, 3)), 10);
+      assertEquals(store.load(2, "k2-3").getValue(), "v3");
+      assertTrue(store.contains(2, "k2-3"));
+
+      Set<Object> keys = new HashSet<>(Flowable.fromPublisher(store.publishKeys(IntSets.immutableSet(2), null)).toList().blockingGet());
+      assertEquals(keys.size(), 5);
+      for (Object key : keys) {
+         assertTrue(((String) key).startsWith("k2-"));
+      }
+      assertEquals(Flowable.fromPublisher(store.publishEntries(IntSets.mutableSet(1, 2), k -> !k.equals("k1-0"), true, true))
+            .count().blockingGet().longValue(), 9);
+
+      store.clear(IntSets.immutableSet(1));
+      assertEquals(store.size(IntSets.immutableSet(1)), 0);
+      assertEquals(store.size(IntSets.mutableSet(2, 3)), 10);
+      assertNull(store.load(1, "k1-0"));
+
+      assertTrue(store.delete(3, "k3-0"));
+      assertFalse(store.contains(3, "k3-0"));
+      assertEquals(store.size(IntSets.immutableSet(3)), 4);
+   }
+}
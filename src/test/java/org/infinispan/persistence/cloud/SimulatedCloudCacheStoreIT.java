@@ -0,0 +1,56 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Operation;
+import org.infinispan.persistence.cloud.CloudStoreMetrics.Outcome;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.cloud.simulated.SimulatedBlobStore;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+/**
+ * Runs the store tests against the simulated provider, whose requests take a few milliseconds and
+ * whose listings are split in small pages.
+ */
+@Test(groups = "unit", testName = "persistence.cloud.SimulatedCloudCacheStoreTest")
+public class SimulatedCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private static final int PAGE_SIZE = 100;
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.provider("simulated")
+            .addProperty(SimulatedBlobStore.LATENCY, "1")
+            .addProperty(SimulatedBlobStore.LATENCY_P99, "5")
+            .addProperty(SimulatedBlobStore.PAGE_SIZE, String.valueOf(PAGE_SIZE));
+   }
+
+   public void testRequestsTakeTheSimulatedLatency() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      SimulatedBlobStore blobStore = (SimulatedBlobStore) store.getBlobStore().getContext().getBlobStore();
+      store.write(marshalledEntry("k", "v", null));
+      store.getMetrics().resetStatistics();
+      for (int i = 0; i < 20; i++) {
+         assertEquals(store.load("k").getValue(), "v");
+      }
+      // the median of 20 draws of a log-normal latency whose median is 1 ms
+      assertTrue(store.getMetrics().histogram(Operation.LOAD, Outcome.HIT).percentile(50) >= TimeUnit.MICROSECONDS.toNanos(500));
+
+      List<MarshalledEntry<?, ?>> entries = new ArrayList<>();
+      for (int i = 0; i < 5 * PAGE_SIZE; i++) {
+         entries.add(marshalledEntry("key" + i, "value" + i, null));
+      }
+      store.writeBatch((List) entries);
+      long requests = blobStore.getRequests();
+      assertEquals(Flowable.fromPublisher(store.publishKeys(null)).count().blockingGet().longValue(), 5 * PAGE_SIZE + 1);
+      // one page after the other
+      assertTrue(blobStore.getRequests() - requests >= 5, (blobStore.getRequests() - requests) + " requests");
+   }
+}
@@ -0,0 +1,104 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.SingleFlightTest")
+public class SingleFlightTest extends AbstractInfinispanTest {
+
+   public void testConcurrentCallersShareOneRequest() throws Exception {
+      SingleFlight<Object> flight = new SingleFlight<>();
+      CountDownLatch release = new CountDownLatch(1);
+      AtomicInteger requests = new AtomicInteger();
+      Object result = new Object();
+      CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+         requests.incrementAndGet();
+         try {
+            release.await(10, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+         }
+         return result;
+      }));
+      eventually(() -> flight.isInFlight("k"));
+
+      List<CompletableFuture<Object>> followers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+         followers.add(CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+            requests.incrementAndGet();
+            return null;
+         })));
+      }
+      eventuallyEquals(4L, flight::getSharedCount);
+      release.countDown();
+      assertSame(leader.get(10, TimeUnit.SECONDS), result);
+      for (CompletableFuture<Object> follower : followers) {
+         assertSame(follower.get(10, TimeUnit.SECONDS), result);
+      }
+      assertEquals(requests.get(), 1);
+
+      // nothing in flight anymore
+      assertNull(flight.execute("k", () -> null));
+      assertEquals(requests.get(), 1);
+   }
+
+   public void testFailureIsReportedToAllCallers() throws Exception {
+      SingleFlight<Object> flight = new SingleFlight<>();
+      CountDownLatch release = new CountDownLatch(1);
+      CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+         try {
+            release.await(10, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+         }
+         throw new IllegalArgumentException("Unavailable");
+      }));
+      eventually(() -> flight.isInFlight("k"));
+      CompletableFuture<Object> follower = CompletableFuture.supplyAsync(() -> flight.execute("k", Object::new));
+      eventuallyEquals(1L, flight::getSharedCount);
+      release.countDown();
+      for (CompletableFuture<Object> caller : new CompletableFuture[]{leader, follower}) {
+         try {
+            caller.get(10, TimeUnit.SECONDS);
+            fail("Expected a failure");
+         } catch (ExecutionException e) {
+            assertEquals(e.getCause().getClass(), IllegalArgumentException.class);
+         }
+      }
+   }
+
+   public void testForgottenRequestIsNotShared() throws Exception {
+      SingleFlight<Object> flight = new SingleFlight<>();
+      CountDownLatch release = new CountDownLatch(1);
+      Object stale = new Object();
+      CompletableFuture<Object> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+         try {
+            release.await(10, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+         }
+         return stale;
+      }));
+      eventually(() -> flight.isInFlight("k"));
+
+      // a write completes while the request is in flight
+      flight.forget("k");
+      assertNotSame(flight.execute("k", Object::new), stale);
+      release.countDown();
+      assertSame(leader.get(10, TimeUnit.SECONDS), stale);
+   }
+}
@@ -0,0 +1,100 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.metadata.EmbeddedMetadata;
+import org.infinispan.metadata.InternalMetadata;
+import org.infinispan.metadata.impl.InternalMetadataImpl;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.SnapshotCloudCacheStoreTest")
+public class SnapshotCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      // snapshots are written by the tests
+      storeBuilder.snapshotInterval(TimeUnit.HOURS.toMillis(1));
+   }
+
+   private static InternalMetadata metadata(long created, long lifespan) {
+      return new InternalMetadataImpl(new EmbeddedMetadata.Builder().lifespan(lifespan, TimeUnit.MILLISECONDS).build(), created, created);
+   }
+
+   private static Map<Object, MarshalledEntry<Object, Object>> publish(CloudStore<Object, Object> store, boolean fetchValue) {
+      Map<Object, MarshalledEntry<Object, Object>> entries = new HashMap<>();
+      List<MarshalledEntry<Object, Object>> published = Flowable.fromPublisher(store.publishEntries(null, fetchValue, true)).toList().blockingGet();
+      for (MarshalledEntry<Object, Object> entry : published) {
+         entries.put(entry.getKey(), entry);
+      }
+      assertEquals(entries.size(), published.size());
+      return entries;
+   }
+
+   public void testEntriesAreReadFromTheSnapshot() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      long now = timeService.wallClockTime();
+      for (int i = 0; i < 20; i++) {
+         store.write(marshalledEntry((Object) ("k" + i), "v" + i, metadata(now, 60000)));
+      }
+      store.write(marshalledEntry((Object) "expired", "v", metadata(now - 120000, 60000)));
+      store.writeSnapshot();
+
+      store.write(marshalledEntry((Object) "k0", "changed", metadata(now, 60000)));
+      store.write(marshalledEntry((Object) "k20", "v20", metadata(now, 60000)));
+      store.delete("k1");
+
+      long snapshotEntries = store.getSnapshotEntries();
+      long tailEntries = store.getSnapshotTailEntries();
+      Map<Object, MarshalledEntry<Object, Object>> entries = publish(store, true);
+      assertEquals(entries.size(), 20);
+      assertEquals(entries.get("k0").getValue(), "changed");
+      assertEquals(entries.get("k20").getValue(), "v20");
+      assertEquals(entries.get("k19").getValue(), "v19");
+      assertEquals(entries.get("k19").getMetadata().lifespan(), 60000);
+      assertNull(entries.get("k1"));
+      assertNull(entries.get("expired"));
+      // k2 to k19 and the expired entry, whose blob is still there
+      assertEquals(store.getSnapshotEntries() - snapshotEntries, 19);
+      assertEquals(store.getSnapshotTailEntries() - tailEntries, 2);
+
+      entries = publish(store, false);
+      assertEquals(entries.size(), 20);
+      for (MarshalledEntry<Object, Object> entry : entries.values()) {
+         assertNull(entry.getValueBytes());
+         assertEquals(entry.getMetadata().created(), now);
+      }
+   }
+
+   private static long countSnapshotBlobs(CloudStore<Object, Object> store) {
+      return store.getBlobStore().countBlobs(store.getContainerName(), new ListContainerOptions().prefix(SnapshotStore.PREFIX).recursive());
+   }
+
+   public void testSnapshotIsOnlyRewrittenWhenEntriesChange() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      for (int i = 0; i < 10; i++) {
+         store.write(marshalledEntry(internalCacheEntry("k" + i, "v" + i, -1)));
+      }
+      store.writeSnapshot();
+      long snapshotBlobs = countSnapshotBlobs(store);
+      store.writeSnapshot();
+      assertEquals(countSnapshotBlobs(store), snapshotBlobs);
+      store.write(marshalledEntry(internalCacheEntry("k10", "v10", -1)));
+      store.writeSnapshot();
+      assertEquals(countSnapshotBlobs(store), 2 * snapshotBlobs);
+
+      store.clear();
+      assertEquals(countSnapshotBlobs(store), 0);
+      assertEquals(publish(store, true).size(), 0);
+   }
+}
@@ -0,0 +1,183 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.infinispan.persistence.cloud.codec.Codecs;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+
+@Test(groups = "unit", testName = "persistence.cloud.SnapshotStoreTest")
+public class SnapshotStoreTest extends AbstractInfinispanTest {
+   private static final String CONTAINER = "snapshots";
+   private static final int PART_SIZE = 512;
+
+   private BlobStoreContext context;
+   private BlobStore blobStore;
+   private SnapshotStore snapshotStore;
+
+   @BeforeMethod
+   public void setUp() {
+      context = ContextBuilder.newBuilder("transient").credentials("dummy", "dummy").buildView(BlobStoreContext.class);
+      blobStore = context.getBlobStore();
+      blobStore.createContainerInLocation(null, CONTAINER);
+      snapshotStore = new SnapshotStore(blobStore, CONTAINER, Schedulers.trampoline(), 1, PART_SIZE, this::list);
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      context.close();
+   }
+
+   private Flowable<StorageMetadata> list(String prefix) {
+      ListContainerOptions options = new ListContainerOptions().recursive();
+      if (!prefix.isEmpty()) {
+         options.prefix(prefix);
+      }
+      return Flowable.fromIterable(blobStore.list(CONTAINER, options))
+            .filter(metadata -> metadata.getType() == StorageType.BLOB && !metadata.getName().startsWith(CloudStore.INTERNAL_PREFIX))
+            .map(metadata -> (StorageMetadata) metadata);
+   }
+
+   private static byte[] payload(String value) throws Exception {
+      byte[] bytes = value.getBytes("UTF-8");
+      PayloadCodec.EncodedPayload encoded = new PayloadCodec.EncodedPayload(Codecs.NONE, Codecs.NONE.id(), 0, bytes.length, bytes, 0,
+            bytes.length);
+      return EntryFormat.toArray(EntryFormat.header(encoded, null, null), encoded);
+   }
+
+   private void put(String name, byte[] payload) {
+      blobStore.putBlob(CONTAINER, blobStore.blobBuilder(name).payload(payload).build());
+   }
+
+   private Map<String, byte[]> records(List<String> groups) {
+      Map<String, byte[]> records = new HashMap<>();
+      for (SnapshotStore.Record record : snapshotStore.records(groups).blockingIterable()) {
+         assertNull(records.put(record.name, record.payload), record.name);
+      }
+      return records;
+   }
+
+   public void testTailIsReadFromTheBlobs() throws Exception {
+      for (int i = 0; i < 20; i++) {
+         put("k" + i, payload("v" + i));
+      }
+      snapshotStore.write(Arrays.asList(""));
+
+      put("k1", payload("changed"));
+      blobStore.removeBlob(CONTAINER, "k2");
+      put("k20", payload("v20"));
+      // without entry header, so it is never held by a snapshot
+      put("legacy", new byte[]{1, 2, 3});
+
+      Map<String, byte[]> records = records(Arrays.asList(""));
+      assertEquals(records.size(), 21);
+      assertEquals(records.get("k0"), payload("v0"));
+      assertEquals(records.get("k19"), payload("v19"));
+      assertFalse(records.containsKey("k2"));
+      for (String tail : new String[]{"k1", "k20", "legacy"}) {
+         assertTrue(records.containsKey(tail));
+         assertNull(records.get(tail), tail);
+      }
+      assertEquals(snapshotStore.getSnapshotEntries(), 18);
+      assertEquals(snapshotStore.getTailEntries(), 3);
+   }
+
+   public void testUnchangedGroupsAreReused() throws Exception {
+      for (int i = 0; i < 20; i++) {
+         put("a/k" + i, payload("a" + i));
+         put("b/k" + i, payload("b" + i));
+      }
+      List<String> groups = Arrays.asList("a/", "b/");
+      snapshotStore.write(groups);
+      SnapshotStore.Manifest first = snapshotStore.readManifest();
+      assertTrue(first.parts("a/").size() > 1, "Parts are not split");
+
+      snapshotStore.write(groups);
+      assertEquals(snapshotStore.readManifest().parts, first.parts);
+
+      put("a/k3", payload("changed"));
+      snapshotStore.write(groups);
+      SnapshotStore.Manifest second = snapshotStore.readManifest();
+      assertNotEquals(second.parts("a/"), first.parts("a/"));
+      assertEquals(second.parts("b/"), first.parts("b/"));
+      Map<String, byte[]> records = records(groups);
+      assertEquals(records.size(), 40);
+      assertEquals(records.get("a/k3"), payload("changed"));
+      assertEquals(records.get("a/k4"), payload("a4"));
+
+      // the parts of the first snapshot are only removed once they are two snapshots behind
+      assertTrue(blobStore.blobExists(CONTAINER, first.parts("a/").get(0)));
+      put("a/k3", payload("changed again"));
+      snapshotStore.write(groups);
+      assertFalse(blobStore.blobExists(CONTAINER, first.parts("a/").get(0)));
+      assertFalse(blobStore.blobExists(CONTAINER, first.parts("a/").get(0) + SnapshotStore.INDEX_SUFFIX));
+      assertTrue(blobStore.blobExists(CONTAINER, first.parts("b/").get(0)));
+   }
+
+   public void testCorruptPartIsDiscarded() throws Exception {
+      for (int i = 0; i < 20; i++) {
+         put("k" + i, payload("v" + i));
+      }
+      snapshotStore.write(Arrays.asList(""));
+      List<String> parts = snapshotStore.readManifest().parts("");
+      put(parts.get(parts.size() - 1), new byte[]{1, 2, 3, 4});
+
+      Map<String, byte[]> records = records(Arrays.asList(""));
+      assertEquals(records.size(), 20);
+      assertTrue(snapshotStore.getTailEntries() > 0);
+      assertNull(snapshotStore.readManifest());
+
+      // the next snapshot is written from scratch
+      snapshotStore.write(Arrays.asList(""));
+      assertEquals(records(Arrays.asList("")).get("k7"), payload("v7"));
+   }
+
+   public void testMissingPartOfAnOlderSnapshotKeepsTheCurrentOne() throws Exception {
+      for (int i = 0; i < 20; i++) {
+         put("k" + i, payload("v" + i));
+      }
+      List<String> groups = Arrays.asList("");
+      snapshotStore.write(groups);
+      SnapshotStore writer = snapshotStore;
+      AtomicBoolean outlived = new AtomicBoolean();
+      snapshotStore = new SnapshotStore(blobStore, CONTAINER, Schedulers.trampoline(), 1, PART_SIZE, prefix -> {
+         if (outlived.compareAndSet(false, true)) {
+            // the iteration outlives two snapshots, which remove the parts it is about to read
+            for (String value : new String[]{"changed", "changed again"}) {
+               put("k3", payload(value));
+               writer.write(groups);
+            }
+         }
+         return list(prefix);
+      });
+
+      Map<String, byte[]> records = records(groups);
+      assertEquals(records.size(), 20);
+      assertEquals(snapshotStore.getTailEntries(), 20);
+      SnapshotStore.Manifest current = snapshotStore.readManifest();
+      assertNotNull(current);
+      assertTrue(blobStore.blobExists(CONTAINER, current.parts("").get(0)));
+   }
+}
@@ -0,0 +1,55 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infinispan.marshall.core.MarshalledEntry;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.persistence.cloud.simulated.SimulatedBlobStore;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the store tests against a provider which throttles some of the requests, which the store
+ * must retry without failing the operations.
+ */
+@Test(groups = "unit", testName = "persistence.cloud.ThrottledCloudCacheStoreTest")
+public class ThrottledCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private static final int MAX_CONCURRENT_REQUESTS = 8;
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      storeBuilder.provider("simulated")
+            .addProperty(SimulatedBlobStore.THROTTLE_PROBABILITY, "0.05")
+            .maxConcurrentRequests(MAX_CONCURRENT_REQUESTS)
+            .maxRetries(10)
+            .retryBackoff(1);
+   }
+
+   public void testThrottledRequestsAreRetried() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      SimulatedBlobStore blobStore = (SimulatedBlobStore) store.getBlobStore().getContext().getBlobStore();
+      CloudStoreMetrics metrics = store.getMetrics();
+      metrics.resetStatistics();
+      long throttled = blobStore.getThrottledRequests();
+
+      List<MarshalledEntry<?, ?>> entries = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+         entries.add(marshalledEntry("key" + i, "value" + i, null));
+      }
+      store.writeBatch((List) entries);
+      for (int i = 0; i < 500; i++) {
+         assertEquals(store.load("key" + i).getValue(), "value" + i);
+      }
+
+      assertEquals(metrics.getErrors(), 0);
+      assertEquals(metrics.getRetryBudgetExhausted(), 0);
+      assertEquals(metrics.getThrottledRequests(), blobStore.getThrottledRequests() - throttled);
+      assertTrue(metrics.getThrottledRequests() > 0);
+      assertEquals(metrics.getRetries(), metrics.getThrottledRequests());
+      assertTrue(metrics.getConcurrencyLimitDecreases() > 0);
+      assertTrue(metrics.getConcurrencyLimit() >= 1 && metrics.getConcurrencyLimit() <= MAX_CONCURRENT_REQUESTS);
+   }
+}
@@ -0,0 +1,86 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.util.Util;
+import org.infinispan.persistence.cloud.configuration.CloudStoreConfigurationBuilder;
+import org.infinispan.test.TestingUtil;
+import org.jclouds.blobstore.BlobStore;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import io.reactivex.Flowable;
+
+@Test(groups = "unit", testName = "persistence.cloud.WriteBackCloudCacheStoreTest")
+public class WriteBackCloudCacheStoreIT<K, V> extends CloudCacheStoreIT<K, V> {
+   private final String location = TestingUtil.tmpDirectory(getClass());
+
+   @Override
+   protected void configureStore(CloudStoreConfigurationBuilder storeBuilder) {
+      // flushed by the tests, or by the bulk operations
+      storeBuilder.writeBackLocation(location).writeBackFlushInterval(TimeUnit.HOURS.toMillis(1));
+   }
+
+   @AfterClass(alwaysRun = true)
+   public void removeJournal() {
+      Util.recursiveFileRemove(location);
+   }
+
+   private static int countBlobs(CloudStore<Object, Object> store) {
+      BlobStore blobStore = store.getBlobStore();
+      return (int) blobStore.countBlobs(store.getContainerName());
+   }
+
+   public void testWritesAreCoalesced() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry(internalCacheEntry("k1", "v1", -1)));
+      store.write(marshalledEntry(internalCacheEntry("k1", "v2", -1)));
+      store.write(marshalledEntry(internalCacheEntry("k2", "v1", -1)));
+      assertTrue(store.delete("k2"));
+      assertFalse(store.delete("k2"));
+      assertFalse(store.delete("k3"));
+
+      // read from the queue, nothing is stored yet
+      assertEquals(countBlobs(store), 0);
+      assertEquals(store.load("k1").getValue(), "v2");
+      assertTrue(store.contains("k1"));
+      assertNull(store.load("k2"));
+      assertFalse(store.contains("k2"));
+      assertEquals(store.getPendingWrites(), 2);
+      assertEquals(store.getCoalescedWrites(), 2);
+
+      assertEquals(store.size(), 1);
+      assertEquals(store.getPendingWrites(), 0);
+      assertEquals(countBlobs(store), 1);
+      assertEquals(store.load("k1").getValue(), "v2");
+   }
+
+   public void testPendingEntriesExpire() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      store.write(marshalledEntry(internalCacheEntry("k", "v", 1000)));
+      assertEquals(store.load("k").getValue(), "v");
+      timeService.advance(2000);
+      assertNull(store.load("k"));
+      assertFalse(store.contains("k"));
+   }
+
+   public void testBulkOperationsSeePendingWrites() {
+      CloudStore<Object, Object> store = (CloudStore<Object, Object>) cl;
+      for (int i = 0; i < 10; i++) {
+         store.write(marshalledEntry(internalCacheEntry("k" + i, "v" + i, -1)));
+      }
+      store.delete("k0");
+      assertEquals(Flowable.fromPublisher(store.publishKeys(null)).count().blockingGet().longValue(), 9);
+      assertEquals(countBlobs(store), 9);
+
+      store.write(marshalledEntry(internalCacheEntry("k10", "v10", -1)));
+      store.clear();
+      assertEquals(store.getPendingWrites(), 0);
+      assertEquals(store.size(), 0);
+   }
+}
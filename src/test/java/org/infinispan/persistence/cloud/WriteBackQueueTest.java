@@ -0,0 +1,185 @@
+package org.infinispan.persistence.cloud;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.commons.util.Util;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.WriteBackQueueTest")
+public class WriteBackQueueTest extends AbstractInfinispanTest {
+   private static final int JOURNAL_SIZE = 4096;
+   private static final long FLUSH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+   private Path directory;
+   private final List<List<WriteBackQueue.Operation>> flushes = new ArrayList<>();
+   private final List<WriteBackQueue> queues = new ArrayList<>();
+
+   @BeforeMethod
+   public void setUp() {
+      directory = Paths.get(TestingUtil.tmpDirectory(getClass()));
+      Util.recursiveFileRemove(directory.toFile());
+      flushes.clear();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      for (WriteBackQueue queue : queues) {
+         queue.stop();
+      }
+      queues.clear();
+      Util.recursiveFileRemove(directory.toFile());
+   }
+
+   private WriteBackQueue startQueue(int flushSize) throws IOException {
+      WriteBackQueue queue = new WriteBackQueue("test", directory, JOURNAL_SIZE, flushSize, FLUSH_INTERVAL, operations -> {
+         synchronized (flushes) {
+            flushes.add(new ArrayList<>(operations));
+         }
+      });
+      queue.start();
+      queues.add(queue);
+      return queue;
+   }
+
+   private Map<String, WriteBackQueue.Operation> flushed() {
+      Map<String, WriteBackQueue.Operation> operations = new LinkedHashMap<>();
+      synchronized (flushes) {
+         for (List<WriteBackQueue.Operation> flush : flushes) {
+            for (WriteBackQueue.Operation operation : flush) {
+               operations.put(operation.objectName, operation);
+            }
+         }
+      }
+      return operations;
+   }
+
+   public void testOperationsAreCoalesced() throws IOException {
+      WriteBackQueue queue = startQueue(100);
+      queue.write("a", new byte[]{1}, -1);
+      queue.write("a", new byte[]{2}, 42);
+      queue.write("b", new byte[]{3}, -1);
+      queue.delete("b");
+      assertEquals(queue.get("a").payload, new byte[]{2});
+      assertEquals(queue.get("a").expiryTime, 42);
+      assertNull(queue.get("b").payload);
+      assertEquals(queue.getPendingCount(), 2);
+      assertEquals(queue.getCoalescedCount(), 2);
+      assertTrue(flushes.isEmpty());
+
+      queue.flush();
+      assertEquals(flushes.size(), 1);
+      assertEquals(flushes.get(0).size(), 2);
+      assertNull(queue.get("a"));
+      assertEquals(queue.getPendingCount(), 0);
+   }
+
+   public void testPendingOperationsAreReplayed() throws IOException {
+      WriteBackQueue crashed = new WriteBackQueue("test", directory, JOURNAL_SIZE, 100, FLUSH_INTERVAL, operations -> {
+         throw new AssertionError("Nothing should be flushed");
+      });
+      crashed.start();
+      crashed.write("a", new byte[]{1}, -1);
+      crashed.write("b", new byte[]{2}, -1);
+      crashed.write("a", new byte[]{3}, -1);
+      crashed.delete("b");
+      // the first queue is dropped without being stopped, as by a crash of the process
+
+      startQueue(100);
+      Map<String, WriteBackQueue.Operation> flushed = flushed();
+      assertEquals(flushed.size(), 2);
+      assertEquals(flushed.get("a").payload, new byte[]{3});
+      assertNull(flushed.get("b").payload);
+
+      // replayed once only
+      flushes.clear();
+      startQueue(100);
+      assertTrue(flushes.isEmpty());
+   }
+
+   public void testTornRecordIsIgnored() throws IOException {
+      WriteBackQueue crashed = new WriteBackQueue("test", directory, JOURNAL_SIZE, 100, FLUSH_INTERVAL, operations -> {
+         throw new AssertionError("Nothing should be flushed");
+      });
+      crashed.start();
+      WriteBackQueue.Operation[] operations = {
+            new WriteBackQueue.Operation("a", new byte[]{1}, -1),
+            new WriteBackQueue.Operation("b", new byte[]{2}, -1),
+            new WriteBackQueue.Operation("c", new byte[]{3}, -1)};
+      long offset = 12;
+      for (WriteBackQueue.Operation operation : operations) {
+         crashed.write(operation.objectName, operation.payload, operation.expiryTime);
+         offset += 8 + operation.encode().length;
+      }
+      try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal-0.dat").toFile(), "rw")) {
+         // the last byte of the last record never made it
+         file.seek(offset - 1);
+         int last = file.read();
+         file.seek(offset - 1);
+         file.write(last ^ 0xff);
+      }
+
+      startQueue(100);
+      Map<String, WriteBackQueue.Operation> flushed = flushed();
+      assertEquals(flushed.keySet().toString(), "[a, b]");
+   }
+
+   public void testFullJournalIsFlushed() throws IOException {
+      WriteBackQueue queue = startQueue(Integer.MAX_VALUE);
+      byte[] payload = new byte[100];
+      for (int i = 0; i < 100; i++) {
+         queue.write("k" + i, payload, -1);
+      }
+      assertFalse(flushes.isEmpty(), "The journal never filled up");
+      assertTrue(queue.getPendingCount() < 100);
+
+      // larger than the journal, written through after the pending operations
+      queue.write("large", new byte[JOURNAL_SIZE], -1);
+      assertEquals(queue.getPendingCount(), 0);
+      Map<String, WriteBackQueue.Operation> flushed = flushed();
+      assertEquals(flushed.size(), 101);
+      assertEquals(new ArrayList<>(flushed.keySet()).get(100), "large");
+   }
+
+   public void testFailedFlushIsRetried() throws IOException {
+      boolean[] fail = {true};
+      WriteBackQueue queue = new WriteBackQueue("test", directory, JOURNAL_SIZE, 100, FLUSH_INTERVAL, operations -> {
+         if (fail[0]) {
+            throw new IllegalStateException("Unavailable");
+         }
+         flushes.add(new ArrayList<>(operations));
+      });
+      queue.start();
+      queues.add(queue);
+      queue.write("a", new byte[]{1}, -1);
+      try {
+         queue.flush();
+      } catch (IllegalStateException expected) {
+      }
+      // still visible while it is not stored
+      assertEquals(queue.get("a").payload, new byte[]{1});
+      queue.write("a", new byte[]{2}, -1);
+
+      fail[0] = false;
+      queue.flush();
+      assertEquals(flushes.size(), 2);
+      assertEquals(flushes.get(0).get(0).payload, new byte[]{1});
+      assertEquals(flushes.get(1).get(0).payload, new byte[]{2});
+   }
+}
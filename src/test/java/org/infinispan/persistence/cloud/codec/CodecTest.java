@@ -0,0 +1,237 @@
+package org.infinispan.persistence.cloud.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.codec.CodecTest")
+public class CodecTest extends AbstractInfinispanTest {
+
+   private static byte[] document(int i) {
+      return String.format("{\"id\":%d,\"name\":\"customer-%d\",\"email\":\"customer-%d@example.com\",\"status\":\"active\"," +
+            "\"tier\":\"gold\",\"country\":\"FR\",\"created\":\"2018-11-%02dT10:15:30Z\"}", i, i * 7, i * 7, i % 28 + 1)
+            .getBytes(StandardCharsets.UTF_8);
+   }
+
+   private static void assertRoundTrip(Codec codec, byte[] data, byte[] dictionary) throws IOException {
+      byte[] compressed = codec.compress(data, dictionary);
+      // compressing a range is what the store does with marshalled values
+      byte[] range = new byte[data.length + 7];
+      System.arraycopy(data, 0, range, 5, data.length);
+      ByteArrayOutputStream rangeOutput = new ByteArrayOutputStream();
+      codec.compress(range, 5, data.length, dictionary, rangeOutput);
+      assertEquals(rangeOutput.toByteArray(), compressed, codec.name());
+      // decompressing from an offset is what the store does with payloads starting with a header
+      byte[] payload = new byte[compressed.length + 3];
+      System.arraycopy(compressed, 0, payload, 2, compressed.length);
+      assertEquals(codec.decompress(payload, 2, compressed.length, dictionary), data, codec.name());
+   }
+
+   public void testRoundTrip() throws IOException {
+      Random random = new Random(42);
+      byte[] noise = new byte[10000];
+      random.nextBytes(noise);
+      byte[] repetitive = new byte[100000];
+      for (int i = 0; i < repetitive.length; i++) {
+         repetitive[i] = (byte) (i % 7);
+      }
+      for (Codec codec : Codecs.all()) {
+         for (byte[] data : Arrays.asList(new byte[0], new byte[]{1}, new byte[13], document(1), noise, repetitive)) {
+            assertRoundTrip(codec, data, null);
+         }
+      }
+   }
+
+   public void testLz4EdgeCases() throws IOException {
+      Codec lz4 = Codecs.LZ4;
+      // long literal runs and long matches need extra length bytes, overlapping matches repeat a short pattern
+      Random random = new Random(7);
+      for (int length : new int[]{12, 13, 15, 16, 19, 255, 270, 65536, 70000, 300000}) {
+         byte[] literals = new byte[length];
+         random.nextBytes(literals);
+         assertRoundTrip(lz4, literals, null);
+         byte[] run = new byte[length];
+         Arrays.fill(run, (byte) 'a');
+         assertRoundTrip(lz4, run, null);
+      }
+      byte[] repeated = new byte[200000];
+      byte[] block = new byte[100];
+      random.nextBytes(block);
+      for (int i = 0; i < repeated.length; i += block.length) {
+         System.arraycopy(block, 0, repeated, i, block.length);
+      }
+      byte[] compressed = lz4.compress(repeated, null);
+      assertTrue(compressed.length < repeated.length / 100, "Poor ratio: " + compressed.length);
+      assertEquals(lz4.decompress(compressed, 0, compressed.length, null), repeated);
+   }
+
+   public void testCorruptLz4FrameIsRejected() throws IOException {
+      byte[] data = document(3);
+      byte[] compressed = Codecs.LZ4.compress(data, null);
+      for (int length : new int[]{3, 5, 16, compressed.length - 1}) {
+         try {
+            Codecs.LZ4.decompress(compressed, 0, length, null);
+            fail("Truncated frame of " + length + " bytes was accepted");
+         } catch (IOException e) {
+            // expected
+         }
+      }
+      try {
+         Codecs.LZ4.decompress(compressed, 0, compressed.length, null, data.length + 1);
+         fail("Content size differing from the recorded one was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+      // the content checksum catches the flipped bits, even when they are literals
+      compressed[compressed.length / 2] ^= 0x5a;
+      try {
+         Codecs.LZ4.decompress(compressed, 0, compressed.length, null);
+         fail("Corrupt frame was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+   }
+
+   public void testLz4FrameWithoutContentSize() throws IOException {
+      // a frame as other LZ4 implementations may write it: no content size, an uncompressed block with a checksum
+      byte[] content = "hello, world".getBytes(StandardCharsets.UTF_8);
+      ByteArrayOutputStream frame = new ByteArrayOutputStream();
+      writeIntLE(frame, 0x184D2204);
+      byte[] descriptor = {0x70, 0x40};
+      frame.write(descriptor, 0, 2);
+      frame.write(XxHash32.hash(descriptor, 0, 2, 0) >>> 8);
+      writeIntLE(frame, content.length | 0x80000000);
+      frame.write(content, 0, content.length);
+      writeIntLE(frame, XxHash32.hash(content, 0, content.length, 0));
+      writeIntLE(frame, 0);
+      byte[] bytes = frame.toByteArray();
+      assertEquals(Codecs.LZ4.decompress(bytes, 0, bytes.length, null), content);
+      assertEquals(Codecs.LZ4.decompress(bytes, 0, bytes.length, null, content.length), content);
+      bytes[bytes.length - 8] ^= 1;
+      try {
+         Codecs.LZ4.decompress(bytes, 0, bytes.length, null);
+         fail("Corrupt block checksum was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+   }
+
+   private static void writeIntLE(ByteArrayOutputStream output, int value) {
+      for (int i = 0; i < 4; i++) {
+         output.write(value >>> (8 * i));
+      }
+   }
+
+   public void testXxHash32() {
+      assertEquals(XxHash32.hash(new byte[0], 0, 0, 0), 0x02CC5D05);
+      byte[] text = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8);
+      assertEquals(XxHash32.hash(text, 0, text.length, 0), 0xE2293B2F);
+   }
+
+   public void testGzipTrailerSizeIsNotTrusted() throws IOException {
+      byte[] data = document(5);
+      byte[] compressed = Codecs.GZIP.compress(data, null);
+      assertEquals(Codecs.GZIP.decompress(compressed, 0, compressed.length, null, data.length), data);
+      // a corrupt trailer claiming almost 2 GB
+      compressed[compressed.length - 1] = 0x7f;
+      try {
+         Codecs.GZIP.decompress(compressed, 0, compressed.length, null);
+         fail("Corrupt trailer was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+      try {
+         Codecs.GZIP.decompress(compressed, 0, compressed.length, null, data.length);
+         fail("Trailer size differing from the recorded one was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+   }
+
+   public void testTrainedDictionaryImprovesRatio() throws IOException {
+      List<byte[]> samples = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+         samples.add(document(i));
+      }
+      byte[] dictionary = DictionaryTrainer.train(samples, 4096);
+      assertTrue(dictionary.length > 0 && dictionary.length <= 4096, "Dictionary size " + dictionary.length);
+
+      long plain = 0, trained = 0;
+      for (int i = 1000; i < 1100; i++) {
+         byte[] data = document(i);
+         plain += Codecs.DEFLATE.compress(data, null).length;
+         trained += Codecs.DEFLATE.compress(data, dictionary).length;
+         assertRoundTrip(Codecs.DEFLATE, data, dictionary);
+      }
+      assertTrue(trained * 2 < plain, "Dictionary did not help: " + trained + " vs " + plain);
+   }
+
+   public void testZstdTrainedDictionaryImprovesRatio() throws IOException {
+      Codec zstd = Codecs.forName("zstd");
+      List<byte[]> samples = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+         samples.add(document(i));
+      }
+      byte[] dictionary = zstd.trainDictionary(samples, 4096);
+      assertTrue(dictionary.length > 0 && dictionary.length <= 4096, "Dictionary size " + dictionary.length);
+
+      long plain = 0, trained = 0;
+      for (int i = 1000; i < 1100; i++) {
+         byte[] data = document(i);
+         plain += zstd.compress(data, null).length;
+         trained += zstd.compress(data, dictionary).length;
+         assertRoundTrip(zstd, data, dictionary);
+         byte[] compressed = zstd.compress(data, dictionary);
+         assertEquals(zstd.decompress(compressed, 0, compressed.length, dictionary, data.length), data);
+      }
+      assertTrue(trained * 2 < plain, "Dictionary did not help: " + trained + " vs " + plain);
+   }
+
+   public void testZstdContentSizeIsChecked() throws IOException {
+      Codec zstd = Codecs.forName("zstd");
+      byte[] data = document(6);
+      byte[] compressed = zstd.compress(data, null);
+      try {
+         zstd.decompress(compressed, 0, compressed.length, null, data.length + 1);
+         fail("Content size differing from the recorded one was accepted");
+      } catch (IOException e) {
+         // expected
+      }
+   }
+
+   public void testMissingDictionaryIsDetected() throws IOException {
+      byte[] dictionary = DictionaryTrainer.train(Arrays.asList(document(1), document(2), document(3)), 1024);
+      byte[] compressed = Codecs.DEFLATE.compress(document(4), dictionary);
+      try {
+         Codecs.DEFLATE.decompress(compressed, 0, compressed.length, null);
+         fail("Decompressed without the dictionary");
+      } catch (IOException e) {
+         // expected
+      }
+   }
+
+   public void testRegistry() {
+      assertSame(Codecs.forName("lz4"), Codecs.LZ4);
+      assertSame(Codecs.forId(Codecs.GZIP.id()), Codecs.GZIP);
+      // zstd-jni is on the test classpath
+      assertEquals(Codecs.forName("zstd").id(), 4);
+      assertEquals(Codecs.forName("snappy"), null);
+      assertEquals(Codecs.forId(127), null);
+      assertEquals(Codecs.forId(-1), null);
+      for (Codec codec : Codecs.all()) {
+         assertSame(Codecs.forId(codec.id()), codec);
+      }
+   }
+}
@@ -1,5 +1,7 @@
 package org.infinispan.persistence.cloud.configuration;
 
+import static org.testng.Assert.assertEquals;
+
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -28,5 +30,6 @@ public class ConfigurationSerializerTest extends AbstractConfigurationSerializer
       super.compareStoreConfiguration(name, beforeStore, afterStore);
       CloudStoreConfiguration before = (CloudStoreConfiguration) beforeStore;
       CloudStoreConfiguration after = (CloudStoreConfiguration) afterStore;
+      assertEquals(after.attributes(), before.attributes());
    }
 }
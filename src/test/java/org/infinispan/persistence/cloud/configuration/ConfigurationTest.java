@@ -26,7 +26,8 @@ public class ConfigurationTest {
             .endpoint("http://test.endpoint")
             .compress(true)
             .properties(props)
-            .normalizeCacheNames(true);
+            .normalizeCacheNames(true)
+            .maxConcurrentRequests(32);
       
             
       Configuration configuration = b.build();
@@ -41,6 +42,7 @@ public class ConfigurationTest {
       assertEquals(store.properties().get("key1"), "val1");
       assertEquals(store.properties().get("key2"), "val2");
       assertTrue(store.normalizeCacheNames());
+      assertEquals(store.maxConcurrentRequests(), 32);
 
       b = new ConfigurationBuilder();
       b.persistence().addStore(CloudStoreConfigurationBuilder.class).read(store);
@@ -58,5 +60,6 @@ public class ConfigurationTest {
       assertEquals(store2.properties().get("key2"), "val2");
       assertTrue(store2.normalizeCacheNames());
       assertTrue(store2.normalizeCacheNames());
+      assertEquals(store2.maxConcurrentRequests(), 32);
    }
 }
\ No newline at end of file
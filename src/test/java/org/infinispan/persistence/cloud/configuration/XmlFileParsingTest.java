@@ -2,11 +2,24 @@ package org.infinispan.persistence.cloud.configuration;
 
 import static org.infinispan.test.TestingUtil.withCacheManager;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.infinispan.Cache;
+import org.infinispan.commons.configuration.attributes.Attribute;
+import org.infinispan.commons.configuration.attributes.AttributeDefinition;
+import org.infinispan.configuration.cache.AbstractStoreConfiguration;
+import org.infinispan.configuration.parsing.ConfigurationBuilderHolder;
+import org.infinispan.configuration.parsing.ParserRegistry;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.persistence.cloud.CloudStore;
 import org.infinispan.test.AbstractInfinispanTest;
@@ -16,6 +29,9 @@ import org.infinispan.test.fwk.TestCacheManagerFactory;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 @Test(groups = "unit", testName = "persistence.cloud.configuration.XmlFileParsingTest")
 public class XmlFileParsingTest<K, V> extends AbstractInfinispanTest {
@@ -85,4 +101,70 @@ public class XmlFileParsingTest<K, V> extends AbstractInfinispanTest {
       assertEquals(configuration.properties().get("key2"), "val2");
       assertTrue(configuration.normalizeCacheNames());
    }
-}
\ No newline at end of file
+
+   public void testParseAllAttributes() throws IOException {
+      ConfigurationBuilderHolder holder = new ParserRegistry(Thread.currentThread().getContextClassLoader()).parseFile("cloud-config.xml");
+      CloudStoreConfiguration configuration = storeConfiguration(holder, "testCache");
+      assertEquals(configuration.maxConcurrentRequests(), 32);
+      assertEquals(configuration.maxPendingRequests(), 512);
+      assertTrue(configuration.expirationIndex());
+      assertEquals(configuration.expirationBucketSize(), 30000);
+      assertTrue(configuration.bloomFilter());
+      assertEquals(configuration.bloomFilterExpectedEntries(), 5000);
+      assertEquals(configuration.bloomFilterFalsePositiveRate(), 0.05);
+      assertEquals(configuration.readCacheLocation(), "/tmp/read-cache");
+      assertEquals(configuration.readCacheSize(), 2097152);
+      assertEquals(configuration.codec(), "deflate");
+      assertEquals(configuration.compressionThreshold(), 128);
+      assertEquals(configuration.compressionDictionarySize(), 4096);
+      assertEquals(configuration.compressionDictionarySamples(), 500);
+      assertEquals(configuration.listingPartitions(), 8);
+      assertEquals(configuration.snapshotInterval(), 60000);
+      assertEquals(configuration.writeBackLocation(), "/tmp/write-back");
+      assertEquals(configuration.writeBackFlushInterval(), 500);
+      assertEquals(configuration.writeBackFlushSize(), 100);
+      assertEquals(configuration.writeBackJournalSize(), 2097152);
+      assertEquals(configuration.keyMappingCacheSize(), 128);
+      assertFalse(configuration.adaptiveConcurrency());
+      assertEquals(configuration.maxRetries(), 3);
+      assertEquals(configuration.retryBackoff(), 50);
+      assertEquals(configuration.hedgePercentile(), 95.0);
+      assertEquals(configuration.hedgeRate(), 10);
+      assertFalse(configuration.packed());
+
+      CloudStoreConfiguration packed = storeConfiguration(holder, "packedCache");
+      assertTrue(packed.packed());
+      assertTrue(packed.segmented());
+      assertEquals(packed.packSize(), 1048576);
+      assertEquals(packed.packCompactionThreshold(), 0.25);
+   }
+
+   private static CloudStoreConfiguration storeConfiguration(ConfigurationBuilderHolder holder, String cacheName) {
+      return (CloudStoreConfiguration) holder.getNamedConfigurationBuilders().get(cacheName).build().persistence().stores().get(0);
+   }
+
+   public void testSchemaDeclaresEveryAttribute() throws Exception {
+      Document schema;
+      try (InputStream input = getClass().getClassLoader().getResourceAsStream("schema/infinispan-cachestore-cloud-config-9.0.xsd")) {
+         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+         factory.setNamespaceAware(true);
+         schema = factory.newDocumentBuilder().parse(input);
+      }
+      Set<String> builtInTypes = new HashSet<>(Arrays.asList("xs:string", "xs:boolean", "xs:int", "xs:long", "xs:double"));
+      Set<String> declared = new HashSet<>();
+      NodeList attributes = schema.getElementsByTagNameNS(XMLConstants.W3C_XML_SCHEMA_NS_URI, "attribute");
+      for (int i = 0; i < attributes.getLength(); i++) {
+         Element attribute = (Element) attributes.item(i);
+         assertTrue(builtInTypes.contains(attribute.getAttribute("type")),
+               attribute.getAttribute("name") + " has the type " + attribute.getAttribute("type"));
+         declared.add(attribute.getAttribute("name"));
+      }
+      for (Attribute<?> attribute : CloudStoreConfiguration.attributeDefinitionSet().attributes()) {
+         AttributeDefinition<?> definition = attribute.getAttributeDefinition();
+         // the common store attributes are declared by the schema of the core
+         if (!AbstractStoreConfiguration.attributeDefinitionSet().contains(definition.name())) {
+            assertTrue(declared.contains(definition.xmlName()), definition.xmlName() + " is not declared");
+         }
+      }
+   }
+}
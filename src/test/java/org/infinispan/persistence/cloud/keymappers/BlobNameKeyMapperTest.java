@@ -0,0 +1,92 @@
+package org.infinispan.persistence.cloud.keymappers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import org.infinispan.commons.marshall.WrappedByteArray;
+import org.infinispan.commons.marshall.jboss.GenericJBossMarshaller;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.keymappers.BlobNameKeyMapperTest")
+public class BlobNameKeyMapperTest extends AbstractInfinispanTest {
+
+   private static BlobNameKeyMapper mapper(int cacheSize) {
+      BlobNameKeyMapper mapper = new BlobNameKeyMapper();
+      mapper.setMarshaller(new GenericJBossMarshaller());
+      mapper.setCacheSize(cacheSize);
+      return mapper;
+   }
+
+   private static String assertRoundTrip(BlobNameKeyMapper mapper, Object key) {
+      String name = mapper.getStringMapping(key);
+      assertTrue(name.matches("[A-Za-z0-9._-]+"), name);
+      assertEquals(mapper.getKeyMapping(name), key);
+      return name;
+   }
+
+   public void testStringKeys() {
+      BlobNameKeyMapper mapper = mapper(0);
+      assertEquals(assertRoundTrip(mapper, "customer-42.json"), "scustomer-42.json");
+      assertEquals(assertRoundTrip(mapper, ""), "s");
+      for (String key : new String[]{"a/b", ".ispn/bloom-filter", "with space", "café", "中文", "%2F"}) {
+         assertTrue(assertRoundTrip(mapper, key).startsWith("u"), key);
+      }
+   }
+
+   public void testByteKeysMatchBase64() {
+      BlobNameKeyMapper mapper = mapper(0);
+      Random random = new Random(42);
+      for (int length = 0; length < 20; length++) {
+         byte[] bytes = new byte[length];
+         random.nextBytes(bytes);
+         String name = assertRoundTrip(mapper, new WrappedByteArray(bytes));
+         assertEquals(name, "w" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+      }
+   }
+
+   public void testMarshalledKeys() {
+      BlobNameKeyMapper mapper = mapper(0);
+      assertEquals(assertRoundTrip(mapper, 42), "i42");
+      assertEquals(assertRoundTrip(mapper, Long.MIN_VALUE), "l" + Long.MIN_VALUE);
+      for (Object key : new Object[]{(short) 7, 3.5d, Arrays.asList("a", "b")}) {
+         assertTrue(assertRoundTrip(mapper, key).startsWith("m"), String.valueOf(key));
+      }
+   }
+
+   public void testCachedMappings() {
+      BlobNameKeyMapper mapper = mapper(16);
+      WrappedByteArray key = new WrappedByteArray(new byte[]{1, 2, 3});
+      String name = mapper.getStringMapping(key);
+      assertSame(mapper.getStringMapping(new WrappedByteArray(new byte[]{1, 2, 3})), name);
+      Object decoded = mapper.getKeyMapping(name);
+      assertSame(mapper.getKeyMapping(new String(name)), decoded);
+
+      // a colliding mapping replaces the cached one, both still map correctly
+      for (int i = 0; i < 100; i++) {
+         assertRoundTrip(mapper, "key" + i);
+      }
+      assertEquals(mapper.getKeyMapping(name), key);
+
+      mapper.setCacheSize(0);
+      assertNotSame(mapper.getKeyMapping(name), mapper.getKeyMapping(name));
+   }
+
+   public void testInvalidNames() {
+      BlobNameKeyMapper mapper = mapper(0);
+      for (String name : new String[]{"", "x", "wA", "w+AA", "wéAA", "i4x", "l"}) {
+         try {
+            mapper.getKeyMapping(name);
+            fail(name);
+         } catch (IllegalArgumentException expected) {
+         }
+      }
+   }
+}
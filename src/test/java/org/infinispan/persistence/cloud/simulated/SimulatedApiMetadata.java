@@ -0,0 +1,60 @@
+package org.infinispan.persistence.cloud.simulated;
+
+import java.net.URI;
+
+import org.jclouds.apis.internal.BaseApiMetadata;
+import org.jclouds.blobstore.BlobStoreContext;
+
+/**
+ * The {@code simulated} jclouds API: an in-memory blob store like the {@code transient} one, whose
+ * requests take time and may be throttled as those of a remote object store do. It is found by
+ * jclouds through the service loader whenever the test classes are on the class path, see
+ * {@link SimulatedBlobStore} for its settings.
+ *
+ * @since 9.0
+ */
+public class SimulatedApiMetadata extends BaseApiMetadata {
+
+   public static Builder builder() {
+      return new Builder();
+   }
+
+   @Override
+   public Builder toBuilder() {
+      return builder().fromApiMetadata(this);
+   }
+
+   public SimulatedApiMetadata() {
+      super(builder());
+   }
+
+   protected SimulatedApiMetadata(Builder builder) {
+      super(builder);
+   }
+
+   public static class Builder extends BaseApiMetadata.Builder<Builder> {
+
+      protected Builder() {
+         id("simulated")
+               .name("in-memory API simulating the latency and throttling of a remote object store")
+               .identityName("Unused")
+               .defaultEndpoint("http://localhost")
+               .defaultIdentity(System.getProperty("user.name"))
+               .defaultCredential("bar")
+               .version("1")
+               .view(BlobStoreContext.class)
+               .defaultModule(SimulatedBlobStoreContextModule.class)
+               .documentation(URI.create("http://infinispan.org/docs/stable/user_guide/user_guide.html"));
+      }
+
+      @Override
+      public SimulatedApiMetadata build() {
+         return new SimulatedApiMetadata(this);
+      }
+
+      @Override
+      protected Builder self() {
+         return this;
+      }
+   }
+}
@@ -0,0 +1,341 @@
+package org.infinispan.persistence.cloud.simulated;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.blobstore.domain.BlobMetadata;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.internal.PageSetImpl;
+import org.jclouds.blobstore.options.CopyOptions;
+import org.jclouds.blobstore.options.GetOptions;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.blobstore.options.PutOptions;
+import org.jclouds.blobstore.util.ForwardingBlobStore;
+import org.jclouds.domain.Location;
+import org.jclouds.http.HttpResponse;
+import org.jclouds.http.HttpResponseException;
+
+/**
+ * Makes each request to an in-memory blob store behave as one to a remote object store, so that
+ * batching, concurrency limits and retries can be evaluated without a network. Each request waits
+ * for a latency drawn from a log-normal distribution and for its payload to be transferred, may be
+ * rejected with a {@code 503 Slow Down} response, and listings are split in pages of a bounded size
+ * which may not show the blobs written last. The settings are read from the properties of the
+ * jclouds context, e.g. {@code CloudStoreConfigurationBuilder.addProperty}, then from the system
+ * properties, so that harnesses which fork JVMs can pass them with {@code -D}:
+ * <ul>
+ *    <li>{@value #LATENCY}: the median latency of a request in milliseconds, 0 by default</li>
+ *    <li>{@value #LATENCY_P99}: the 99th percentile of the latency in milliseconds, the median by
+ *    default, i.e. a constant latency</li>
+ *    <li>{@value #BANDWIDTH}: the bytes per second at which each request uploads or downloads its
+ *    payload, unlimited by default</li>
+ *    <li>{@value #REQUEST_RATE}: the requests per second above which requests are throttled, with
+ *    bursts of up to a second of requests, unlimited by default</li>
+ *    <li>{@value #THROTTLE_PROBABILITY}: the probability that any request is throttled, 0 by
+ *    default</li>
+ *    <li>{@value #PAGE_SIZE}: the largest number of blobs in a page of a listing, 1000 by default as
+ *    with S3</li>
+ *    <li>{@value #CONSISTENCY_DELAY}: the milliseconds during which a blob which was just written
+ *    is missing from the listings, 0 by default</li>
+ *    <li>{@value #SEED}: the seed of the random draws, which are only reproducible from a single
+ *    thread</li>
+ * </ul>
+ * A throttled request fails after its latency, as with S3, and has no effect.
+ *
+ * @since 9.0
+ */
+public class SimulatedBlobStore extends ForwardingBlobStore {
+   public static final String LATENCY = "simulated.latency";
+   public static final String LATENCY_P99 = "simulated.latency.p99";
+   public static final String BANDWIDTH = "simulated.bandwidth";
+   public static final String REQUEST_RATE = "simulated.request-rate";
+   public static final String THROTTLE_PROBABILITY = "simulated.throttle-probability";
+   public static final String PAGE_SIZE = "simulated.page-size";
+   public static final String CONSISTENCY_DELAY = "simulated.consistency-delay";
+   public static final String SEED = "simulated.seed";
+
+   // the standard normal quantile of the 99th percentile
+   private static final double Z99 = 2.3263;
+
+   private final long medianLatency;
+   private final double sigma;
+   private final long bandwidth;
+   private final int requestRate;
+   private final double throttleProbability;
+   private final int pageSize;
+   private final long consistencyDelay;
+   private final Random random;
+   // the names of the blobs written last, with the time at which they become listed
+   private final Map<String, Long> unlisted = new ConcurrentHashMap<>();
+   private final LongAdder requests = new LongAdder();
+   private final LongAdder throttled = new LongAdder();
+   // the blobs which were read since the first GETs were delayed
+   private final Set<String> fetched = ConcurrentHashMap.newKeySet();
+   private volatile long firstGetDelay;
+   private double tokens;
+   private long refilled = System.nanoTime();
+
+   public SimulatedBlobStore(BlobStore blobStore, Properties properties) {
+      super(blobStore);
+      double median = Double.parseDouble(property(properties, LATENCY, "0"));
+      double p99 = Double.parseDouble(property(properties, LATENCY_P99, String.valueOf(median)));
+      if (median < 0 || p99 < median) {
+         throw new IllegalArgumentException(LATENCY_P99 + " must be larger than " + LATENCY);
+      }
+      medianLatency = (long) (median * TimeUnit.MILLISECONDS.toNanos(1));
+      sigma = median == p99 ? 0 : Math.log(p99 / median) / Z99;
+      bandwidth = Long.parseLong(property(properties, BANDWIDTH, "0"));
+      requestRate = Integer.parseInt(property(properties, REQUEST_RATE, "0"));
+      throttleProbability = Double.parseDouble(property(properties, THROTTLE_PROBABILITY, "0"));
+      pageSize = Integer.parseInt(property(properties, PAGE_SIZE, "1000"));
+      consistencyDelay = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(property(properties, CONSISTENCY_DELAY, "0")));
+      String seed = property(properties, SEED, null);
+      random = seed == null ? new Random() : new Random(Long.parseLong(seed));
+      tokens = requestRate;
+   }
+
+   private static String property(Properties properties, String name, String defaultValue) {
+      return properties.getProperty(name, System.getProperty(name, defaultValue));
+   }
+
+   /**
+    * @return the number of requests received, throttled or not
+    */
+   public long getRequests() {
+      return requests.sum();
+   }
+
+   public long getThrottledRequests() {
+      return throttled.sum();
+   }
+
+   /**
+    * Makes the first GET of each blob from now on take the given time on top of its latency, as if
+    * the provider stalled on it, while the next GETs of the blob do not.
+    */
+   public void delayFirstGets(long delay, TimeUnit unit) {
+      fetched.clear();
+      firstGetDelay = unit.toNanos(delay);
+   }
+
+   /**
+    * @return the in-memory blob store, whose requests are immediate
+    */
+   @Override
+   protected BlobStore delegate() {
+      return super.delegate();
+   }
+
+   private void request() {
+      requests.increment();
+      long latency = medianLatency;
+      if (sigma > 0) {
+         latency = (long) (medianLatency * Math.exp(sigma * random.nextGaussian()));
+      }
+      pause(latency);
+      if (throttle()) {
+         throttled.increment();
+         HttpResponse response = HttpResponse.builder().statusCode(503).message("Slow Down").build();
+         throw new HttpResponseException("Please reduce your request rate.", null, response);
+      }
+   }
+
+   private boolean throttle() {
+      if (throttleProbability > 0 && random.nextDouble() < throttleProbability) {
+         return true;
+      }
+      return requestRate > 0 && !acquireToken();
+   }
+
+   private synchronized boolean acquireToken() {
+      long now = System.nanoTime();
+      tokens = Math.min(requestRate, tokens + (now - refilled) * requestRate / 1e9);
+      refilled = now;
+      if (tokens < 1) {
+         return false;
+      }
+      tokens--;
+      return true;
+   }
+
+   private void transfer(Long bytes) {
+      if (bandwidth > 0 && bytes != null) {
+         pause((long) (bytes * 1e9 / bandwidth));
+      }
+   }
+
+   private static void pause(long nanos) {
+      long deadline = System.nanoTime() + nanos;
+      for (long remaining = nanos; remaining > 0 && !Thread.currentThread().isInterrupted(); remaining = deadline - System.nanoTime()) {
+         LockSupport.parkNanos(remaining);
+      }
+   }
+
+   private static Long contentLength(Blob blob) {
+      return blob == null ? null : blob.getMetadata().getContentMetadata().getContentLength();
+   }
+
+   private void written(String container, String name) {
+      if (consistencyDelay > 0) {
+         unlisted.put(container + '/' + name, System.nanoTime() + consistencyDelay);
+      }
+   }
+
+   @Override
+   public boolean containerExists(String container) {
+      request();
+      return super.containerExists(container);
+   }
+
+   @Override
+   public boolean createContainerInLocation(Location location, String container) {
+      request();
+      return super.createContainerInLocation(location, container);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container) {
+      return list(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public PageSet<? extends StorageMetadata> list(String container, ListContainerOptions options) {
+      request();
+      if (options.getMaxResults() == null || options.getMaxResults() > pageSize) {
+         options = options.clone().maxResults(pageSize);
+      }
+      PageSet<? extends StorageMetadata> page = super.list(container, options);
+      if (unlisted.isEmpty()) {
+         return page;
+      }
+      long now = System.nanoTime();
+      List<StorageMetadata> listed = new ArrayList<>(page.size());
+      for (StorageMetadata metadata : page) {
+         String name = container + '/' + metadata.getName();
+         Long visible = unlisted.get(name);
+         if (visible == null) {
+            listed.add(metadata);
+         } else if (visible - now <= 0) {
+            unlisted.remove(name, visible);
+            listed.add(metadata);
+         }
+      }
+      return new PageSetImpl<>(listed, page.getNextMarker());
+   }
+
+   @Override
+   public void clearContainer(String container) {
+      clearRequests(container, ListContainerOptions.NONE);
+      super.clearContainer(container);
+   }
+
+   @Override
+   public void clearContainer(String container, ListContainerOptions options) {
+      clearRequests(container, options);
+      super.clearContainer(container, options);
+   }
+
+   private void clearRequests(String container, ListContainerOptions options) {
+      // a listing and a multi-object delete request per page
+      long count = super.countBlobs(container, options);
+      for (long listed = 0; listed == 0 || listed < count; listed += pageSize) {
+         request();
+         request();
+      }
+   }
+
+   @Override
+   public void deleteContainer(String container) {
+      request();
+      super.deleteContainer(container);
+   }
+
+   @Override
+   public boolean blobExists(String container, String name) {
+      request();
+      return super.blobExists(container, name);
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob) {
+      return putBlob(container, blob, PutOptions.NONE);
+   }
+
+   @Override
+   public String putBlob(String container, Blob blob, PutOptions options) {
+      request();
+      transfer(contentLength(blob));
+      String etag = super.putBlob(container, blob, options);
+      written(container, blob.getMetadata().getName());
+      return etag;
+   }
+
+   @Override
+   public String copyBlob(String fromContainer, String fromName, String toContainer, String toName, CopyOptions options) {
+      request();
+      String etag = super.copyBlob(fromContainer, fromName, toContainer, toName, options);
+      written(toContainer, toName);
+      return etag;
+   }
+
+   @Override
+   public BlobMetadata blobMetadata(String container, String name) {
+      request();
+      return super.blobMetadata(container, name);
+   }
+
+   @Override
+   public Blob getBlob(String container, String name) {
+      return getBlob(container, name, GetOptions.NONE);
+   }
+
+   @Override
+   public Blob getBlob(String container, String name, GetOptions options) {
+      if (firstGetDelay > 0 && fetched.add(container + '/' + name)) {
+         pause(firstGetDelay);
+      }
+      request();
+      Blob blob = super.getBlob(container, name, options);
+      transfer(contentLength(blob));
+      return blob;
+   }
+
+   @Override
+   public void removeBlob(String container, String name) {
+      request();
+      super.removeBlob(container, name);
+   }
+
+   @Override
+   public void removeBlobs(String container, Iterable<String> names) {
+      // a single multi-object delete request
+      request();
+      super.removeBlobs(container, names);
+   }
+
+   @Override
+   public long countBlobs(String container) {
+      return countBlobs(container, ListContainerOptions.NONE);
+   }
+
+   @Override
+   public long countBlobs(String container, ListContainerOptions options) {
+      // counted by listing the container, one request per page
+      long count = super.countBlobs(container, options);
+      for (long listed = 0; listed == 0 || listed < count; listed += pageSize) {
+         request();
+      }
+      return count;
+   }
+}
@@ -0,0 +1,72 @@
+package org.infinispan.persistence.cloud.simulated;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.jclouds.blobstore.BlobRequestSigner;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.LocalBlobRequestSigner;
+import org.jclouds.blobstore.LocalStorageStrategy;
+import org.jclouds.blobstore.TransientStorageStrategy;
+import org.jclouds.blobstore.attr.ConsistencyModel;
+import org.jclouds.blobstore.config.BlobStoreObjectModule;
+import org.jclouds.blobstore.config.LocalBlobStore;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.domain.StorageType;
+import org.jclouds.blobstore.strategy.ClearListStrategy;
+import org.jclouds.providers.ProviderMetadata;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.name.Names;
+
+/**
+ * Binds the blob store of the transient API, decorated by a {@link SimulatedBlobStore} configured
+ * with the properties of the context.
+ *
+ * @since 9.0
+ */
+public class SimulatedBlobStoreContextModule extends AbstractModule {
+   private static final String LOCAL = "simulated.local";
+
+   @Override
+   protected void configure() {
+      install(new BlobStoreObjectModule());
+      bind(ConsistencyModel.class).toInstance(ConsistencyModel.EVENTUAL);
+      bind(LocalStorageStrategy.class).to(TransientStorageStrategy.class);
+      bind(BlobRequestSigner.class).to(LocalBlobRequestSigner.class);
+      // bound to an interface, so that Guice can proxy it: the local store depends on the decorated one
+      bind(BlobStore.class).annotatedWith(Names.named(LOCAL)).to(LocalBlobStore.class);
+   }
+
+   @Provides
+   @Singleton
+   BlobStore provideBlobStore(@Named(LOCAL) BlobStore blobStore, ProviderMetadata providerMetadata) {
+      return new SimulatedBlobStore(blobStore, providerMetadata.getDefaultProperties());
+   }
+
+   /**
+    * Clears the containers through the local store: the default strategy would list and remove each
+    * blob through the decorated store, whose throttled requests it does not retry.
+    */
+   @Provides
+   @Singleton
+   ClearListStrategy provideClearListStrategy(@Named(LOCAL) BlobStore blobStore) {
+      return (container, options) -> {
+         if (!blobStore.containerExists(container)) {
+            return;
+         }
+         String marker = null;
+         do {
+            PageSet<? extends StorageMetadata> page = blobStore.list(container, marker == null ? options : options.clone().afterMarker(marker));
+            for (StorageMetadata metadata : page) {
+               if (metadata.getType() == StorageType.BLOB) {
+                  blobStore.removeBlob(container, metadata.getName());
+               }
+            }
+            marker = page.getNextMarker();
+         } while (marker != null);
+      };
+   }
+}
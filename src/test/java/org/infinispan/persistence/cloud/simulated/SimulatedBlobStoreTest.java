@@ -0,0 +1,147 @@
+package org.infinispan.persistence.cloud.simulated;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.PageSet;
+import org.jclouds.blobstore.domain.StorageMetadata;
+import org.jclouds.blobstore.options.ListContainerOptions;
+import org.jclouds.http.HttpResponseException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit", testName = "persistence.cloud.simulated.SimulatedBlobStoreTest")
+public class SimulatedBlobStoreTest extends AbstractInfinispanTest {
+   private static final String CONTAINER = "simulated";
+
+   private BlobStoreContext context;
+
+   private SimulatedBlobStore blobStore(String... settings) {
+      Properties properties = new Properties();
+      for (int i = 0; i < settings.length; i += 2) {
+         properties.setProperty(settings[i], settings[i + 1]);
+      }
+      context = ContextBuilder.newBuilder("simulated").overrides(properties).buildView(BlobStoreContext.class);
+      BlobStore blobStore = context.getBlobStore();
+      blobStore.createContainerInLocation(null, CONTAINER);
+      return (SimulatedBlobStore) blobStore;
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void closeContext() {
+      if (context != null) {
+         context.close();
+         context = null;
+      }
+   }
+
+   private static void put(BlobStore blobStore, String name, byte[] payload) {
+      blobStore.putBlob(CONTAINER, blobStore.blobBuilder(name).payload(payload).contentLength(payload.length).build());
+   }
+
+   public void testLatencyIsLogNormal() {
+      BlobStore blobStore = blobStore(SimulatedBlobStore.LATENCY, "2", SimulatedBlobStore.LATENCY_P99, "10",
+            SimulatedBlobStore.SEED, "7");
+      long[] latencies = new long[200];
+      for (int i = 0; i < latencies.length; i++) {
+         long start = System.nanoTime();
+         blobStore.blobExists(CONTAINER, "missing");
+         latencies[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(latencies);
+      long median = latencies[latencies.length / 2];
+      assertTrue(median >= TimeUnit.MICROSECONDS.toNanos(1500) && median < TimeUnit.MILLISECONDS.toNanos(4), median + " ns");
+      assertTrue(latencies[0] < median && latencies[latencies.length - 1] > 2 * median, Arrays.toString(latencies));
+   }
+
+   public void testBandwidthLimitsTransfers() {
+      BlobStore blobStore = blobStore(SimulatedBlobStore.BANDWIDTH, String.valueOf(1024 * 1024));
+      long start = System.nanoTime();
+      put(blobStore, "blob", new byte[100 * 1024]);
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(95));
+      start = System.nanoTime();
+      blobStore.getBlob(CONTAINER, "blob");
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(95));
+   }
+
+   public void testRequestsAboveTheRateAreThrottled() {
+      SimulatedBlobStore blobStore = blobStore(SimulatedBlobStore.REQUEST_RATE, "50");
+      int throttled = 0;
+      for (int i = 0; i < 200; i++) {
+         try {
+            put(blobStore, "blob-" + i, new byte[]{1});
+         } catch (HttpResponseException e) {
+            assertEquals(e.getResponse().getStatusCode(), 503);
+            assertEquals(e.getResponse().getMessage(), "Slow Down");
+            assertFalse(blobStore.delegate().blobExists(CONTAINER, "blob-" + i));
+            throttled++;
+         }
+      }
+      // the bucket starts with a second of requests
+      assertTrue(throttled > 100, throttled + " throttled");
+      assertEquals(blobStore.getThrottledRequests(), throttled);
+      assertEquals(blobStore.getRequests(), 201);
+   }
+
+   public void testRequestsAreThrottledWithTheGivenProbability() {
+      SimulatedBlobStore blobStore = blobStore(SimulatedBlobStore.THROTTLE_PROBABILITY, "0.25", SimulatedBlobStore.SEED, "3");
+      for (int i = 0; i < 400; i++) {
+         try {
+            blobStore.blobExists(CONTAINER, "missing");
+         } catch (HttpResponseException e) {
+            assertEquals(e.getResponse().getStatusCode(), 503);
+         }
+      }
+      assertEquals(blobStore.getRequests(), 401);
+      assertEquals(blobStore.getThrottledRequests(), 100, 30);
+   }
+
+   public void testListingsArePagedAndEventuallyConsistent() {
+      BlobStore blobStore = blobStore(SimulatedBlobStore.PAGE_SIZE, "10", SimulatedBlobStore.CONSISTENCY_DELAY, "500");
+      for (int i = 0; i < 25; i++) {
+         put(blobStore, "blob-" + i, new byte[]{1});
+      }
+      assertTrue(blobStore.list(CONTAINER).isEmpty());
+      assertTrue(blobStore.blobExists(CONTAINER, "blob-0"));
+
+      eventually(() -> listAll(blobStore).size() == 25);
+      int pages = 0;
+      String marker = null;
+      do {
+         ListContainerOptions options = ListContainerOptions.Builder.maxResults(100);
+         PageSet<? extends StorageMetadata> page = blobStore.list(CONTAINER, marker == null ? options : options.afterMarker(marker));
+         assertTrue(page.size() <= 10);
+         marker = page.getNextMarker();
+         pages++;
+      } while (marker != null);
+      assertEquals(pages, 3);
+   }
+
+   private static Set<String> listAll(BlobStore blobStore) {
+      Set<String> names = new HashSet<>();
+      String marker = null;
+      do {
+         PageSet<? extends StorageMetadata> page = blobStore.list(CONTAINER,
+               marker == null ? ListContainerOptions.NONE : ListContainerOptions.Builder.afterMarker(marker));
+         for (StorageMetadata metadata : page) {
+            if (!names.add(metadata.getName())) {
+               fail(metadata.getName() + " listed twice");
+            }
+         }
+         marker = page.getNextMarker();
+      } while (marker != null);
+      return names;
+   }
+}